@@ -0,0 +1,60 @@
+package com.taskroo.data;
+
+import com.mongodb.DBObject;
+import com.taskroo.domain.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static com.taskroo.data.TaskDao.PATH_KEY;
+
+/**
+ * Tasks tree building as it was before tasks were indexed by id: tasks are sorted by path, with path strings built on
+ * every comparison, and attached to parents which precede them. Kept only to compare benchmarks against.
+ */
+public class BaselineDbTasksConverter extends DbTasksConverter {
+
+    @Override
+    public List<Task> convertToTasksTree(List<DBObject> dbTasksObjects, TagsDictionary tagsDictionary, boolean buildingPartOfATree) {
+        List<Task> topLevelTasks = new LinkedList<>();
+        Map<String, Task> allTasksMap = new LinkedHashMap<>();
+
+        for (DBObject dbTask : sortTasksByPath(dbTasksObjects)) {
+            Task taskToAdd = convertSingleDbObjectToTask(dbTask, tagsDictionary);
+            List<String> path = (List<String>) dbTask.get(PATH_KEY);
+            if (path.isEmpty() || (buildingPartOfATree && !allTasksMap.containsKey(path.get(path.size() - 1)))) {
+                topLevelTasks.add(taskToAdd);
+            } else {
+                Task parentTask = allTasksMap.get(path.get(path.size() - 1));
+                parentTask.addSubtask(taskToAdd);
+                taskToAdd.setParentTask(parentTask);
+            }
+            allTasksMap.put(taskToAdd.getId(), taskToAdd);
+        }
+        return topLevelTasks;
+    }
+
+    private static List<DBObject> sortTasksByPath(List<DBObject> dbTasksObjects) {
+        List<DBObject> pathSortedDbTasks = new ArrayList<>(dbTasksObjects);
+        Collections.sort(pathSortedDbTasks, new Comparator<DBObject>() {
+            @Override
+            public int compare(DBObject taskDb1, DBObject taskDb2) {
+                StringBuilder task1Path = new StringBuilder();
+                for (String ancestorTaskId : (List<String>) taskDb1.get(PATH_KEY)) {
+                    task1Path.append(ancestorTaskId).append(",");
+                }
+                StringBuilder task2Path = new StringBuilder();
+                for (String ancestorTaskId : (List<String>) taskDb2.get(PATH_KEY)) {
+                    task2Path.append(ancestorTaskId).append(",");
+                }
+                return task1Path.toString().compareTo(task2Path.toString());
+            }
+        });
+        return pathSortedDbTasks;
+    }
+}
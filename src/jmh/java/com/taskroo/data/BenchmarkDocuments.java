@@ -0,0 +1,61 @@
+package com.taskroo.data;
+
+import com.mongodb.DBObject;
+import com.taskroo.domain.Task;
+import com.taskroo.testing.DatasetGenerator;
+
+import java.util.List;
+
+/**
+ * Task and tag documents of a single owner, as they are read from DB, for benchmarks. Documents are generated with
+ * fixed seed, so every benchmark run converts the same documents.
+ */
+public final class BenchmarkDocuments {
+
+    /**
+     * Shape of tasks tree: only top level tasks, chains of subtasks as deep as tasks can be, or top level tasks with
+     * many direct subtasks.
+     */
+    public enum TreeShape {
+        FLAT(1, 1), DEEP(Task.MAX_SUBTASKS_LEVELS, 1), WIDE(2, 100);
+
+        private final int levels;
+        private final int fanOut;
+
+        private TreeShape(int levels, int fanOut) {
+            this.levels = levels;
+            this.fanOut = fanOut;
+        }
+    }
+
+    private static final String OWNER_ID_PREFIX = "benchmark-owner-";
+    private static final int TAGS_PER_TASK = 3;
+    private static final double FINISHED_RATIO = 0.25;
+
+    private BenchmarkDocuments() {
+    }
+
+    public static List<DBObject> tags(int count) {
+        return user(TreeShape.FLAT, 0, count).getTags();
+    }
+
+    public static TagsDictionary tagsDictionary(List<DBObject> tags) {
+        return new TagsDictionary(new DbTagConverter().convertDbObjectsToSetOfTags(tags));
+    }
+
+    /**
+     * @return documents of the owner, with task documents ordered by path, as they are read by DAO
+     */
+    public static DatasetGenerator.UserDataset user(TreeShape shape, int tasksCount, int tagsCount) {
+        return new DatasetGenerator.Builder()
+                .setUserIdPrefix(OWNER_ID_PREFIX)
+                .setTasksPerUser(tasksCount)
+                .setLevels(shape.levels)
+                .setFanOut(shape.fanOut)
+                .setFinishedRatio(FINISHED_RATIO)
+                .setTagsPerUser(tagsCount)
+                .setTagsPerTask(TAGS_PER_TASK)
+                .build()
+                .generateUser(0);
+    }
+}
@@ -0,0 +1,43 @@
+package com.taskroo.data;
+
+import com.mongodb.DBObject;
+import com.taskroo.domain.Tag;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DbTagConverterBenchmark {
+
+    @Param({"10", "500"})
+    private int tagsCount;
+
+    private final DbTagConverter dbTagConverter = new DbTagConverter();
+    private List<DBObject> dbTags;
+
+    @Setup
+    public void setUp() {
+        dbTags = BenchmarkDocuments.tags(tagsCount);
+    }
+
+    @Benchmark
+    public List<Tag> convertDbObjectsToSetOfTags() {
+        return dbTagConverter.convertDbObjectsToSetOfTags(dbTags);
+    }
+}
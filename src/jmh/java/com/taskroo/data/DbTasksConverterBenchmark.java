@@ -0,0 +1,62 @@
+package com.taskroo.data;
+
+import com.mongodb.DBObject;
+import com.taskroo.domain.Task;
+import com.taskroo.testing.DatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DbTasksConverterBenchmark {
+
+    @Param({"FLAT", "DEEP", "WIDE"})
+    private BenchmarkDocuments.TreeShape shape;
+
+    @Param({"100", "5000", "10000", "100000"})
+    private int tasksCount;
+
+    private final DbTasksConverter dbTasksConverter = new DbTasksConverter();
+    private final DbTasksConverter baselineDbTasksConverter = new BaselineDbTasksConverter();
+    private List<DBObject> dbTasks;
+    private TagsDictionary tagsDictionary;
+
+    @Setup
+    public void setUp() {
+        DatasetGenerator.UserDataset user = BenchmarkDocuments.user(shape, tasksCount, 50);
+        tagsDictionary = BenchmarkDocuments.tagsDictionary(user.getTags());
+        dbTasks = user.getTasks();
+    }
+
+    @Benchmark
+    public Collection<Task> convertToTasksTree() {
+        return dbTasksConverter.convertToTasksTree(dbTasks, tagsDictionary);
+    }
+
+    @Benchmark
+    public Collection<Task> convertToTasksTreeBaseline() {
+        return baselineDbTasksConverter.convertToTasksTree(dbTasks, tagsDictionary);
+    }
+
+    @Benchmark
+    public List<Task> convertToFlatTasksList() {
+        return dbTasksConverter.convertToFlatTasksList(dbTasks, tagsDictionary);
+    }
+}
@@ -0,0 +1,94 @@
+package com.taskroo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.taskroo.data.BenchmarkDocuments;
+import com.taskroo.data.DbTasksConverter;
+import com.taskroo.data.TaskProjection;
+import com.taskroo.domain.Task;
+import com.taskroo.testing.DatasetGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import javax.ws.rs.core.MediaType;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of task trees by the JSON provider of Jersey, which writes tasks returned in collections, and by
+ * {@link TasksStreamingOutput}, which writes streamed tasks as JSON or Smile.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaskSerializationBenchmark {
+
+    @Param({"FLAT", "DEEP", "WIDE"})
+    private BenchmarkDocuments.TreeShape shape;
+
+    @Param({"5000"})
+    private int tasksCount;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private Collection<Task> tasks;
+
+    @Setup
+    public void setUp() {
+        DatasetGenerator.UserDataset user = BenchmarkDocuments.user(shape, tasksCount, 50);
+        tasks = new DbTasksConverter().convertToTasksTree(user.getTasks(), BenchmarkDocuments.tagsDictionary(user.getTags()));
+    }
+
+    @Benchmark
+    public void writeJsonWithObjectMapper(Blackhole blackhole) throws IOException {
+        objectMapper.writeValue(new BlackholeOutputStream(blackhole), tasks);
+    }
+
+    @Benchmark
+    public void streamJson(Blackhole blackhole) throws IOException {
+        new TasksStreamingOutput(tasks, TaskProjection.ALL, MediaType.APPLICATION_JSON_TYPE)
+                .write(new BlackholeOutputStream(blackhole));
+    }
+
+    @Benchmark
+    public void streamSmile(Blackhole blackhole) throws IOException {
+        new TasksStreamingOutput(tasks, TaskProjection.ALL, TaskRooMediaType.APPLICATION_SMILE_TYPE)
+                .write(new BlackholeOutputStream(blackhole));
+    }
+
+    /**
+     * Consumes written bytes, so writing is not optimized away and no memory is allocated for the output.
+     */
+    private static class BlackholeOutputStream extends OutputStream {
+
+        private final Blackhole blackhole;
+
+        private BlackholeOutputStream(Blackhole blackhole) {
+            this.blackhole = blackhole;
+        }
+
+        @Override
+        public void write(int b) {
+            blackhole.consume(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            blackhole.consume(b);
+            blackhole.consume(len);
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.taskroo.service.paramconverter;
+
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JodaDateTimeParamConverterBenchmark {
+
+    @Param({"2014-01-21", "2014-01-21T12:32:11Z", "2014-01-21T12:32:11.123+01:00"})
+    private String value;
+
+    private final JodaDateTimeParamConverter converter = new JodaDateTimeParamConverter();
+
+    @Benchmark
+    public DateTime fromString() {
+        return converter.fromString(value);
+    }
+}
@@ -0,0 +1,31 @@
+package com.taskroo.service.security;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SecurityContextFilterBenchmark {
+
+    private String authorizationHeader =
+            "TaskRooAuth realm=\"taskroo@aetas.pl\",tokenKey=\"5c2f4a8e-9b7d-4f1e-a3c6-0d8e7b6a5f41\",cnonce=\"f81d4fae7dec\"";
+
+    @Benchmark
+    public Map<String, String> parseAuthorizationHeader() {
+        return SecurityContextFilter.parseAuthorizationHeader(authorizationHeader);
+    }
+}
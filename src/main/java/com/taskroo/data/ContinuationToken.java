@@ -0,0 +1,86 @@
+package com.taskroo.data;
+
+import com.taskroo.domain.Task;
+import org.bson.types.ObjectId;
+
+import java.util.Date;
+import java.util.Objects;
+
+/**
+ * Position in the list of finished tasks ordered by closed date and id (both descending), pointing at the last task of
+ * the page already read. Encoded as opaque string: id of the task, optionally followed by hexadecimal closed date.
+ */
+public class ContinuationToken {
+
+    private static final int OBJECT_ID_LENGTH = 24;
+
+    private final Date closedDate;
+    private final ObjectId taskId;
+
+    ContinuationToken(Date closedDate, ObjectId taskId) {
+        this.closedDate = closedDate;
+        this.taskId = Objects.requireNonNull(taskId);
+    }
+
+    /**
+     * Creates token pointing at given task, so the next page starts with the task following it
+     */
+    public static ContinuationToken after(Task task) {
+        return new ContinuationToken(task.getClosedDate(), new ObjectId(task.getId()));
+    }
+
+    /**
+     * @param encodedToken token encoded with {@link #encode()}
+     * @return decoded token
+     * @throws IllegalArgumentException when given string is not a valid token
+     */
+    public static ContinuationToken decode(String encodedToken) {
+        if (encodedToken == null || encodedToken.length() < OBJECT_ID_LENGTH ||
+                !ObjectId.isValid(encodedToken.substring(0, OBJECT_ID_LENGTH))) {
+            throw new IllegalArgumentException("Invalid continuation token: " + encodedToken);
+        }
+        Date closedDate = null;
+        if (encodedToken.length() > OBJECT_ID_LENGTH) {
+            try {
+                closedDate = new Date(Long.parseLong(encodedToken.substring(OBJECT_ID_LENGTH), 16));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid continuation token: " + encodedToken, e);
+            }
+        }
+        return new ContinuationToken(closedDate, new ObjectId(encodedToken.substring(0, OBJECT_ID_LENGTH)));
+    }
+
+    public String encode() {
+        return closedDate == null ? taskId.toString() : taskId.toString() + Long.toString(closedDate.getTime(), 16);
+    }
+
+    Date getClosedDate() {
+        return closedDate;
+    }
+
+    ObjectId getTaskId() {
+        return taskId;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ContinuationToken other = (ContinuationToken) o;
+        return Objects.equals(closedDate, other.closedDate) && taskId.equals(other.taskId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(closedDate, taskId);
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+}
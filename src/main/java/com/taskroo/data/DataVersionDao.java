@@ -0,0 +1,49 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.springframework.stereotype.Repository;
+
+import javax.inject.Inject;
+
+/**
+ * Keeps per-owner version of tasks and tags data. Version is increased after every modification of owner's tasks or
+ * tags, so clients can check whether data they have read before is still up to date with a single lookup by id.
+ */
+@Repository
+public class DataVersionDao {
+
+    public static final String ID_KEY = "_id";
+    public static final String VERSION_KEY = "version";
+
+    private final InstrumentedCollection dataVersionsCollection;
+
+    @Inject
+    public DataVersionDao(DBCollection dataVersionsCollection, MongoOperationMetrics mongoOperationMetrics) {
+        this.dataVersionsCollection = new InstrumentedCollection(dataVersionsCollection, "DataVersionDao",
+                mongoOperationMetrics);
+    }
+
+    /**
+     * @param ownerId owner of the data
+     * @return current version of owner's data, 0 when owner's data has never been modified
+     */
+    public long getVersion(String ownerId) {
+        DBObject dbVersion = dataVersionsCollection.findOne("getVersion", new BasicDBObject(ID_KEY, ownerId),
+                new BasicDBObject(VERSION_KEY, true));
+        if (dbVersion == null || dbVersion.get(VERSION_KEY) == null) {
+            return 0;
+        }
+        return ((Number) dbVersion.get(VERSION_KEY)).longValue();
+    }
+
+    /**
+     * Increases version of owner's data. Has to be called after the modification is written, so data read with the
+     * previous version is never tagged with the new one.
+     */
+    void increment(String ownerId) {
+        dataVersionsCollection.update("increment", new BasicDBObject(ID_KEY, ownerId),
+                new BasicDBObject("$inc", new BasicDBObject(VERSION_KEY, 1L)), true, false);
+    }
+}
@@ -17,11 +17,16 @@ public class DbTagConverter {
         String color = (String) dbTag.get(TagDao.COLOR_KEY);
         boolean isVisibleInWorkView = (boolean) dbTag.get(TagDao.VISIBLE_IN_WORK_VIEW_KEY);
 
-        return Tag.TagBuilder.start(ownerId, name)
+        Tag tag = Tag.TagBuilder.start(ownerId, name)
                 .id(id)
                 .color(color)
                 .visibleInWorkView(isVisibleInWorkView)
                 .build();
+        Object size = dbTag.get(TagDao.SIZE_KEY);
+        if (size != null) {
+            tag.setSize(((Number) size).intValue());
+        }
+        return tag;
     }
 
     public List<Tag> convertDbObjectsToSetOfTags(List<DBObject> dbTags) {
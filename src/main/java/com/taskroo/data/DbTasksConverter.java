@@ -12,70 +12,79 @@ import static com.taskroo.data.TaskDao.*;
 @Component
 public class DbTasksConverter {
 
-    public List<Task> convertToTasksTree(List<DBObject> dbTasksObjects, List<Tag> allUserTags, boolean buildingPartOfATree) {
-        Map<String, Tag> tagsMap = convertTagsToTagsMap(allUserTags);
-        List<Task> topLevelTasks = new LinkedList<>();
-        Map<String, Task> allTasksMap = new LinkedHashMap<>();
-
-        List<DBObject> pathSortedDbTasks = sortTasksByPath(dbTasksObjects);
+    public List<Task> convertToTasksTree(List<DBObject> dbTasksObjects, TagsDictionary tagsDictionary, boolean buildingPartOfATree) {
+        Map<String, Task> allTasksMap = new HashMap<>(dbTasksObjects.size() * 4 / 3 + 1);
+        List<Task> tasks = new ArrayList<>(dbTasksObjects.size());
+        for (DBObject dbTask : dbTasksObjects) {
+            Task task = convertSingleDbObjectToTask(dbTask, tagsDictionary);
+            tasks.add(task);
+            allTasksMap.put(task.getId(), task);
+        }
 
-        for (DBObject dbTask : pathSortedDbTasks) {
-            Task taskToAdd = convertSingleDbObjectToTask(dbTask, tagsMap);
-            if (isTopLevelTask(dbTask, allTasksMap, buildingPartOfATree)) {
-                topLevelTasks.add(taskToAdd);
-                allTasksMap.put(taskToAdd.getId(), taskToAdd);
+        List<Task> topLevelTasks = new ArrayList<>();
+        List<List<String>> topLevelTasksPaths = new ArrayList<>();
+        boolean topLevelTasksHaveAncestors = false;
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            List<String> path = (List<String>) dbTasksObjects.get(i).get(PATH_KEY);
+            Task parentTask = path.isEmpty() ? null : allTasksMap.get(path.get(path.size() - 1));
+            if (path.isEmpty() || (buildingPartOfATree && parentTask == null)) {
+                topLevelTasks.add(task);
+                topLevelTasksPaths.add(path);
+                topLevelTasksHaveAncestors |= !path.isEmpty();
             } else {
-                List<String> path = (List<String>) dbTask.get(PATH_KEY);
-                Task parentTask = allTasksMap.get(path.get(path.size() - 1));
                 assert parentTask != null : "Parent task cannot be null. " +
-                        "Did you forget about sorting tasks by path or trying to build part of a tree?";
-                parentTask.addSubtask(taskToAdd);
-                taskToAdd.setParentTask(parentTask);
-                allTasksMap.put(taskToAdd.getId(), taskToAdd);
+                        "Did you forget about trying to build part of a tree?";
+                parentTask.addSubtask(task);
+                task.setParentTask(parentTask);
             }
         }
+
+        if (topLevelTasksHaveAncestors) {
+            return sortTasksByPath(topLevelTasks, topLevelTasksPaths);
+        }
         return topLevelTasks;
     }
 
-    private List<DBObject> sortTasksByPath(List<DBObject> dbTasksObjects) {
-        List<DBObject> pathSortedDbTasks = new ArrayList<>(dbTasksObjects);
-        Collections.sort(pathSortedDbTasks, new Comparator<DBObject>() {
+    /**
+     * Orders top level tasks of part of a tree the way they were ordered when the tree was assembled from tasks sorted
+     * by path: tasks closer to the root first, tasks with the same path in the given order.
+     */
+    private List<Task> sortTasksByPath(List<Task> tasks, List<List<String>> paths) {
+        List<Map.Entry<String, Task>> tasksWithPathKeys = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            StringBuilder pathKey = new StringBuilder();
+            for (String ancestorTaskId : paths.get(i)) {
+                pathKey.append(ancestorTaskId).append(",");
+            }
+            tasksWithPathKeys.add(new AbstractMap.SimpleImmutableEntry<>(pathKey.toString(), tasks.get(i)));
+        }
+        Collections.sort(tasksWithPathKeys, new Comparator<Map.Entry<String, Task>>() {
             @Override
-            public int compare(DBObject taskDb1, DBObject taskDb2) {
-                StringBuilder task1Path = new StringBuilder();
-                for (String ancestorTaskId : (List<String>) taskDb1.get(PATH_KEY)) {
-                    task1Path.append(ancestorTaskId).append(",");
-                }
-                StringBuilder task2Path = new StringBuilder();
-                for (String ancestorTaskId : (List<String>) taskDb2.get(PATH_KEY)) {
-                    task2Path.append(ancestorTaskId).append(",");
-                }
-                return task1Path.toString().compareTo(task2Path.toString());
+            public int compare(Map.Entry<String, Task> task1, Map.Entry<String, Task> task2) {
+                return task1.getKey().compareTo(task2.getKey());
             }
         });
-        return pathSortedDbTasks;
-    }
-
-    public Collection<Task> convertToTasksTree(List<DBObject> dbTasksObjects, List<Tag> allUserTags) {
-        return convertToTasksTree(dbTasksObjects, allUserTags, false);
+        List<Task> pathSortedTasks = new ArrayList<>(tasks.size());
+        for (Map.Entry<String, Task> taskWithPathKey : tasksWithPathKeys) {
+            pathSortedTasks.add(taskWithPathKey.getValue());
+        }
+        return pathSortedTasks;
     }
 
-    private boolean isTopLevelTask(DBObject dbTask, Map<String, Task> alreadyReadTasks, boolean buildingPartOfATree) {
-        List<String> path = (List<String>) dbTask.get(PATH_KEY);
-        return path.isEmpty() ||
-                (buildingPartOfATree && !alreadyReadTasks.containsKey(path.get(path.size() - 1)));
+    public Collection<Task> convertToTasksTree(List<DBObject> dbTasksObjects, TagsDictionary tagsDictionary) {
+        return convertToTasksTree(dbTasksObjects, tagsDictionary, false);
     }
 
-    public List<Task> convertToFlatTasksList(List<DBObject> dbTasksObjects, List<Tag> allUserTags) {
-        Map<String, Tag> tagsMap = convertTagsToTagsMap(allUserTags);
+    public List<Task> convertToFlatTasksList(List<DBObject> dbTasksObjects, TagsDictionary tagsDictionary) {
         List<Task> tasks = new ArrayList<>(dbTasksObjects.size());
         for (DBObject dbTask : dbTasksObjects) {
-            tasks.add(convertSingleDbObjectToTask(dbTask, tagsMap));
+            tasks.add(convertSingleDbObjectToTask(dbTask, tagsDictionary));
         }
         return tasks;
     }
 
-    public Task convertSingleDbObjectToTask(DBObject dbTask, Map<String, Tag> tagsMap) {
+    public Task convertSingleDbObjectToTask(DBObject dbTask, TagsDictionary tagsDictionary) {
         String ownerId = dbTask.get(OWNER_ID_KEY).toString();
         Task.TaskBuilder builder = new Task.TaskBuilder()
                 .setOwnerId(ownerId)
@@ -86,11 +95,15 @@ public class DbTasksConverter {
                 .setStartDate((Date) dbTask.get(START_DATE_KEY))
                 .setCreatedDate((Date) dbTask.get(CREATED_DATE_KEY))
                 .setClosedDate((Date) dbTask.get(CLOSED_DATE_KEY))
-                .setFinished((boolean) dbTask.get(FINISHED_KEY));
+                .setFinished(Boolean.TRUE.equals(dbTask.get(FINISHED_KEY)));
 
         if (dbTask.get(TAGS_KEY) != null) {
             for (String tagId : (Collection<String>) dbTask.get(TAGS_KEY)) {
-                builder.addTag(tagsMap.get(tagId));
+                Tag tag = tagsDictionary.getById(tagId);
+                // tag removed after the task has been read is skipped, it is pulled from the task by the removal
+                if (tag != null) {
+                    builder.addTag(tag);
+                }
             }
         }
 
@@ -98,13 +111,4 @@ public class DbTasksConverter {
     }
 
 
-    private Map<String, Tag> convertTagsToTagsMap(List<Tag> tags) {
-        Map<String, Tag> tagsMap = new HashMap<>();
-        for (Tag tag : tags) {
-            tagsMap.put(tag.getId(), tag);
-        }
-        return tagsMap;
-    }
-
-
 }
@@ -0,0 +1,8 @@
+package com.taskroo.data;
+
+public class ExpiredCheckpointException extends Exception {
+
+    public ExpiredCheckpointException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,40 @@
+package com.taskroo.data;
+
+import com.mongodb.DBCursor;
+import com.taskroo.domain.Task;
+
+/**
+ * Tasks cursor of tasks without their subtasks, in the order of DB cursor.
+ */
+class FlatTasksCursor implements TasksCursor {
+
+    private final DBCursor dbCursor;
+    private final DbTasksConverter dbTasksConverter;
+    private final TagsDictionary tagsDictionary;
+
+    FlatTasksCursor(DBCursor dbCursor, DbTasksConverter dbTasksConverter, TagsDictionary tagsDictionary) {
+        this.dbCursor = dbCursor;
+        this.dbTasksConverter = dbTasksConverter;
+        this.tagsDictionary = tagsDictionary;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return dbCursor.hasNext();
+    }
+
+    @Override
+    public Task next() {
+        return dbTasksConverter.convertSingleDbObjectToTask(dbCursor.next(), tagsDictionary);
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Tasks cannot be removed using tasks cursor");
+    }
+
+    @Override
+    public void close() {
+        dbCursor.close();
+    }
+}
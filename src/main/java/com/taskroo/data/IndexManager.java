@@ -0,0 +1,206 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Declares indexes required by queries issued by the DAOs, creates them at startup and verifies that every declared
+ * query shape is supported by an index existing in DB. Problems are logged as warnings or, in strict mode, stop the
+ * application from starting.
+ */
+@Component
+public class IndexManager {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final boolean strictMode;
+    private final List<IndexDefinition> indexDefinitions = new ArrayList<>();
+    private final List<QueryShape> queryShapes = new ArrayList<>();
+
+    @Inject
+    public IndexManager(DBCollection tasksCollection, DBCollection tagsCollection, DBCollection securityTokensCollection,
+                        DBCollection tombstonesCollection, @Named("tombstonesRetentionDays") Integer tombstonesRetentionDays,
+                        @Named("mongoIndexesStrictMode") Boolean strictMode) {
+        this.strictMode = strictMode;
+
+        indexDefinitions.add(new IndexDefinition(tasksCollection, "owner_finished_closed_date",
+                new BasicDBObject(TaskDao.OWNER_ID_KEY, 1).append(TaskDao.FINISHED_KEY, 1)
+                        .append(TaskDao.CLOSED_DATE_KEY, -1).append(TaskDao.ID_KEY, -1)));
+        indexDefinitions.add(new IndexDefinition(tasksCollection, "owner_path",
+                new BasicDBObject(TaskDao.OWNER_ID_KEY, 1).append(TaskDao.PATH_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tasksCollection, "path",
+                new BasicDBObject(TaskDao.PATH_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tasksCollection, "owner_tags",
+                new BasicDBObject(TaskDao.OWNER_ID_KEY, 1).append(TaskDao.TAGS_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tasksCollection, "owner_modified_date",
+                new BasicDBObject(TaskDao.OWNER_ID_KEY, 1).append(TaskDao.MODIFIED_DATE_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tagsCollection, "owner_name",
+                new BasicDBObject(TagDao.OWNER_ID_KEY, 1).append(TagDao.NAME_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tagsCollection, "owner_modified_date",
+                new BasicDBObject(TagDao.OWNER_ID_KEY, 1).append(TagDao.MODIFIED_DATE_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tombstonesCollection, "owner_removed_date",
+                new BasicDBObject(TombstoneDao.OWNER_ID_KEY, 1).append(TombstoneDao.REMOVED_DATE_KEY, 1)));
+        indexDefinitions.add(new IndexDefinition(tombstonesCollection, "removed_date_ttl",
+                new BasicDBObject(TombstoneDao.REMOVED_DATE_KEY, 1),
+                new BasicDBObject("expireAfterSeconds", TimeUnit.DAYS.toSeconds(tombstonesRetentionDays))));
+
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.OWNER_ID_KEY));
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.OWNER_ID_KEY, TaskDao.FINISHED_KEY)
+                .withRange(TaskDao.CLOSED_DATE_KEY));
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.OWNER_ID_KEY, TaskDao.PATH_KEY));
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.OWNER_ID_KEY, TaskDao.TAGS_KEY));
+        // unfinished subtasks of a task are filtered among its subtasks found by path
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.PATH_KEY));
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.ID_KEY, TaskDao.OWNER_ID_KEY));
+        queryShapes.add(new QueryShape(tasksCollection, TaskDao.OWNER_ID_KEY).withRange(TaskDao.MODIFIED_DATE_KEY));
+        queryShapes.add(new QueryShape(tagsCollection, TagDao.OWNER_ID_KEY));
+        queryShapes.add(new QueryShape(tagsCollection, TagDao.OWNER_ID_KEY, TagDao.NAME_KEY));
+        queryShapes.add(new QueryShape(tagsCollection, TagDao.ID_KEY, TagDao.OWNER_ID_KEY));
+        queryShapes.add(new QueryShape(tagsCollection, TagDao.OWNER_ID_KEY).withRange(TagDao.MODIFIED_DATE_KEY));
+        queryShapes.add(new QueryShape(securityTokensCollection, "_id"));
+        queryShapes.add(new QueryShape(tombstonesCollection, TombstoneDao.OWNER_ID_KEY)
+                .withRange(TombstoneDao.REMOVED_DATE_KEY));
+    }
+
+    @PostConstruct
+    public void ensureIndexes() {
+        createIndexes();
+        List<QueryShape> unsupportedQueryShapes = findUnsupportedQueryShapes();
+        if (!unsupportedQueryShapes.isEmpty()) {
+            reportProblem("Queries " + unsupportedQueryShapes + " are not supported by any index", null);
+        }
+    }
+
+    void createIndexes() {
+        for (IndexDefinition indexDefinition : indexDefinitions) {
+            try {
+                BasicDBObject options = new BasicDBObject("name", indexDefinition.name).append("background", true);
+                options.putAll(indexDefinition.options);
+                indexDefinition.collection.ensureIndex(indexDefinition.keys, options);
+            } catch (MongoException e) {
+                reportProblem("Unable to create index " + indexDefinition, e);
+            }
+        }
+    }
+
+    /**
+     * Finds query shapes for which no index exists in DB. A query is considered supported by an index which leading
+     * keys are all its equality fields, in any order, followed by its range or sort field, if it has one. Unique
+     * indexes (including _id index) support also queries which are more selective than them, i.e. which equality
+     * fields include all keys of the index.
+     */
+    List<QueryShape> findUnsupportedQueryShapes() {
+        List<QueryShape> unsupportedQueryShapes = new ArrayList<>();
+        for (QueryShape queryShape : queryShapes) {
+            if (!isSupportedByExistingIndex(queryShape)) {
+                unsupportedQueryShapes.add(queryShape);
+            }
+        }
+        return unsupportedQueryShapes;
+    }
+
+    private boolean isSupportedByExistingIndex(QueryShape queryShape) {
+        for (DBObject indexInfo : queryShape.collection.getIndexInfo()) {
+            DBObject keys = (DBObject) indexInfo.get("key");
+            if (keys == null || keys.keySet().isEmpty()) {
+                continue;
+            }
+            if (supportsQueryShape(new ArrayList<>(keys.keySet()), queryShape)
+                    || isUnique(indexInfo) && queryShape.equalityFields.containsAll(keys.keySet())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean supportsQueryShape(List<String> indexKeys, QueryShape queryShape) {
+        int equalityFieldsCount = queryShape.equalityFields.size();
+        int requiredKeysCount = equalityFieldsCount + (queryShape.rangeField == null ? 0 : 1);
+        if (indexKeys.size() < requiredKeysCount) {
+            return false;
+        }
+        Set<String> leadingKeys = new HashSet<>(indexKeys.subList(0, equalityFieldsCount));
+        return leadingKeys.equals(new HashSet<>(queryShape.equalityFields))
+                && (queryShape.rangeField == null || queryShape.rangeField.equals(indexKeys.get(equalityFieldsCount)));
+    }
+
+    private static boolean isUnique(DBObject indexInfo) {
+        return "_id_".equals(indexInfo.get("name")) || Boolean.TRUE.equals(indexInfo.get("unique"));
+    }
+
+    private void reportProblem(String message, MongoException cause) {
+        if (strictMode) {
+            LOGGER.error(message, cause);
+            throw new IllegalStateException(message, cause);
+        }
+        LOGGER.warn(message, cause);
+    }
+
+    private static class IndexDefinition {
+        private final DBCollection collection;
+        private final String name;
+        private final DBObject keys;
+        private final DBObject options;
+
+        private IndexDefinition(DBCollection collection, String name, DBObject keys) {
+            this(collection, name, keys, new BasicDBObject());
+        }
+
+        private IndexDefinition(DBCollection collection, String name, DBObject keys, DBObject options) {
+            this.collection = collection;
+            this.name = name;
+            this.keys = keys;
+            this.options = options;
+        }
+
+        @Override
+        public String toString() {
+            return collection.getName() + "." + name + " " + keys;
+        }
+    }
+
+    /**
+     * Fields a query selects documents by: fields compared by equality (or $in) and an optional field compared by range
+     * or sorted by, which can be served by an index only after all the equality fields.
+     */
+    static class QueryShape {
+        private final DBCollection collection;
+        private final List<String> equalityFields;
+        private String rangeField;
+
+        private QueryShape(DBCollection collection, String... equalityFields) {
+            this.collection = collection;
+            this.equalityFields = Collections.unmodifiableList(Arrays.asList(equalityFields));
+        }
+
+        private QueryShape withRange(String rangeField) {
+            this.rangeField = rangeField;
+            return this;
+        }
+
+        @Override
+        public String toString() {
+            List<String> fields = new ArrayList<>(equalityFields);
+            if (rangeField != null) {
+                fields.add(rangeField);
+            }
+            return collection.getName() + " by " + fields;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.taskroo.data;
+
+import com.mongodb.AggregationOutput;
+import com.mongodb.CommandResult;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Collection recording every operation made by a DAO in {@link MongoOperationMetrics}. Every operation is given the
+ * name of the DAO method making it, so operations are recorded per DAO method and operation type. Operations of
+ * cursors returned by find are recorded when the cursors are read.
+ */
+class InstrumentedCollection {
+
+    private final DBCollection collection;
+    private final String daoName;
+    private final MongoOperationMetrics mongoOperationMetrics;
+
+    /**
+     * @param collection collection to make operations on
+     * @param daoName name of the DAO, prefix of names of its methods in metrics
+     * @param mongoOperationMetrics metrics to record operations in
+     */
+    InstrumentedCollection(DBCollection collection, String daoName, MongoOperationMetrics mongoOperationMetrics) {
+        this.collection = collection;
+        this.daoName = daoName;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+    }
+
+    String getName() {
+        return collection.getName();
+    }
+
+    DBCursor find(String daoMethod, DBObject query) {
+        return find(daoMethod, query, null);
+    }
+
+    DBCursor find(String daoMethod, DBObject query, DBObject fields) {
+        DBCursor cursor = fields == null ? collection.find(query) : collection.find(query, fields);
+        return new InstrumentedDBCursor(cursor, daoName + "." + daoMethod, mongoOperationMetrics);
+    }
+
+    DBObject findOne(String daoMethod, DBObject query) {
+        return findOne(daoMethod, query, null);
+    }
+
+    DBObject findOne(String daoMethod, DBObject query, DBObject fields) {
+        long startTime = System.nanoTime();
+        DBObject result = null;
+        try {
+            result = collection.findOne(query, fields);
+            return result;
+        } finally {
+            record(daoMethod, "findOne", query, startTime, result == null ? 0 : 1);
+        }
+    }
+
+    long count(String daoMethod, DBObject query) {
+        long startTime = System.nanoTime();
+        try {
+            return collection.count(query);
+        } finally {
+            record(daoMethod, "count", query, startTime, 0);
+        }
+    }
+
+    List<?> distinct(String daoMethod, String key) {
+        long startTime = System.nanoTime();
+        List<?> result = null;
+        try {
+            result = collection.distinct(key);
+            return result;
+        } finally {
+            record(daoMethod, "distinct", null, startTime, result == null ? 0 : result.size());
+        }
+    }
+
+    AggregationOutput aggregate(String daoMethod, DBObject firstOperation, DBObject... additionalOperations) {
+        long startTime = System.nanoTime();
+        AggregationOutput result = null;
+        try {
+            result = collection.aggregate(firstOperation, additionalOperations);
+            return result;
+        } finally {
+            int documents = result != null && result.results() instanceof Collection
+                    ? ((Collection<?>) result.results()).size() : 0;
+            record(daoMethod, "aggregate", firstOperation, startTime, documents);
+        }
+    }
+
+    WriteResult insert(String daoMethod, DBObject document) {
+        long startTime = System.nanoTime();
+        try {
+            return collection.insert(document);
+        } finally {
+            record(daoMethod, "insert", null, startTime, 0);
+        }
+    }
+
+    WriteResult insert(String daoMethod, List<DBObject> documents) {
+        long startTime = System.nanoTime();
+        try {
+            return collection.insert(documents);
+        } finally {
+            record(daoMethod, "insert", null, startTime, 0);
+        }
+    }
+
+    WriteResult update(String daoMethod, DBObject query, DBObject update) {
+        return update(daoMethod, query, update, false, false);
+    }
+
+    WriteResult update(String daoMethod, DBObject query, DBObject update, boolean upsert, boolean multi) {
+        long startTime = System.nanoTime();
+        try {
+            return collection.update(query, update, upsert, multi);
+        } finally {
+            record(daoMethod, "update", query, startTime, 0);
+        }
+    }
+
+    WriteResult remove(String daoMethod, DBObject query) {
+        long startTime = System.nanoTime();
+        try {
+            return collection.remove(query);
+        } finally {
+            record(daoMethod, "remove", query, startTime, 0);
+        }
+    }
+
+    DBObject findAndModify(String daoMethod, DBObject query, DBObject fields, DBObject sort, boolean remove,
+                           DBObject update, boolean returnNew, boolean upsert) {
+        long startTime = System.nanoTime();
+        DBObject result = null;
+        try {
+            result = collection.findAndModify(query, fields, sort, remove, update, returnNew, upsert);
+            return result;
+        } finally {
+            record(daoMethod, "findAndModify", query, startTime, result == null ? 0 : 1);
+        }
+    }
+
+    /**
+     * Runs command on the DB of the collection
+     */
+    CommandResult command(String daoMethod, DBObject command) {
+        long startTime = System.nanoTime();
+        try {
+            return collection.getDB().command(command);
+        } finally {
+            record(daoMethod, "command", command, startTime, 0);
+        }
+    }
+
+    private void record(String daoMethod, String operation, DBObject query, long startTime, int documentsReturned) {
+        mongoOperationMetrics.record(daoName + "." + daoMethod, operation, query, System.nanoTime() - startTime,
+                documentsReturned);
+    }
+}
@@ -0,0 +1,116 @@
+package com.taskroo.data;
+
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * DB cursor recording find operation in {@link MongoOperationMetrics} when it is read to the end or closed. Latency of
+ * the find is the time spent in reading the cursor, including following batches, and not the time spent between reads.
+ */
+class InstrumentedDBCursor extends DBCursor {
+
+    private final String daoMethod;
+    private final MongoOperationMetrics mongoOperationMetrics;
+
+    private long readNanos;
+    private int documentsReturned;
+    private boolean read;
+    private boolean recorded;
+
+    /**
+     * @param cursor cursor of the find, not read yet, which collection, query, fields and read preference are used
+     * @param daoMethod DAO method which made the find, e.g. TaskDao.findAllByOwnerId
+     * @param mongoOperationMetrics metrics to record the find in
+     */
+    InstrumentedDBCursor(DBCursor cursor, String daoMethod, MongoOperationMetrics mongoOperationMetrics) {
+        super(cursor.getCollection(), cursor.getQuery(), cursor.getKeysWanted(), cursor.getReadPreference());
+        this.daoMethod = daoMethod;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+    }
+
+    @Override
+    public boolean hasNext() {
+        long startTime = System.nanoTime();
+        boolean hasNext = true;
+        try {
+            hasNext = super.hasNext();
+            return hasNext;
+        } finally {
+            addReadTime(startTime);
+            if (!hasNext) {
+                recordFind();
+            }
+        }
+    }
+
+    @Override
+    public DBObject next() {
+        long startTime = System.nanoTime();
+        try {
+            DBObject next = super.next();
+            documentsReturned++;
+            return next;
+        } finally {
+            addReadTime(startTime);
+        }
+    }
+
+    @Override
+    public List<DBObject> toArray(int max) {
+        long startTime = System.nanoTime();
+        try {
+            List<DBObject> documents = super.toArray(max);
+            documentsReturned = documents.size();
+            return documents;
+        } finally {
+            addReadTime(startTime);
+            recordFind();
+        }
+    }
+
+    /**
+     * Counting documents of the cursor is a separate round trip, so it is recorded as a separate count operation.
+     */
+    @Override
+    public int count() {
+        long startTime = System.nanoTime();
+        try {
+            return super.count();
+        } finally {
+            mongoOperationMetrics.record(daoMethod, "count", getQuery(), System.nanoTime() - startTime, 0);
+        }
+    }
+
+    /**
+     * Iterates this cursor instead of its copy, as copies are not instrumented. Cursors returned by find are read
+     * only once, so iterating them in for-each loops is not affected.
+     */
+    @Override
+    public Iterator<DBObject> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } finally {
+            recordFind();
+        }
+    }
+
+    private void addReadTime(long startTime) {
+        readNanos += System.nanoTime() - startTime;
+        read = true;
+    }
+
+    private void recordFind() {
+        if (read && !recorded) {
+            recorded = true;
+            mongoOperationMetrics.record(daoMethod, "find", getQuery(), readNanos, documentsReturned);
+        }
+    }
+}
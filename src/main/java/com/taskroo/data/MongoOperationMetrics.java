@@ -0,0 +1,220 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.taskroo.service.metrics.LatencyHistogram;
+import com.taskroo.service.tracing.Span;
+import com.taskroo.service.tracing.Tracer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and numbers of returned documents of Mongo operations made by DAOs, recorded separately for every DAO
+ * method and operation type, and numbers of Mongo operations made per request. Operations slower than the threshold
+ * are logged to the slow operations log together with the shape of their query. Operations of traced requests are
+ * traced as client spans.
+ */
+@Component
+public class MongoOperationMetrics {
+
+    static final Logger SLOW_OPERATIONS_LOGGER = LogManager.getLogger("com.taskroo.data.SlowMongoOperations");
+
+    private static final String VALUE_PLACEHOLDER = "?";
+    private static final String MONGO_SERVICE_NAME = "mongodb";
+
+    private final long slowOperationThresholdNanos;
+    private final Tracer tracer;
+    private final ConcurrentMap<String, OperationMetrics> operations = new ConcurrentHashMap<>();
+    private final ThreadLocal<int[]> requestOperationsCount = new ThreadLocal<>();
+
+    private final AtomicLong requestsCount = new AtomicLong();
+    private final AtomicLong requestsOperationsCount = new AtomicLong();
+    private final AtomicLong maxRequestOperationsCount = new AtomicLong();
+
+    @Inject
+    public MongoOperationMetrics(@Named("mongoSlowOperationThresholdMillis") Integer slowOperationThresholdMillis,
+                                 Tracer tracer) {
+        if (slowOperationThresholdMillis < 0) {
+            throw new IllegalArgumentException("Slow Mongo operation threshold cannot be negative");
+        }
+        this.slowOperationThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowOperationThresholdMillis);
+        this.tracer = tracer;
+    }
+
+    /**
+     * Records finished Mongo operation
+     *
+     * @param daoMethod DAO method which made the operation, e.g. TaskDao.update
+     * @param operation type of the operation, e.g. findAndModify
+     * @param query query of the operation or null when the operation has no query
+     * @param durationNanos time the operation took
+     * @param documentsReturned number of documents read by the operation
+     */
+    void record(String daoMethod, String operation, DBObject query, long durationNanos, int documentsReturned) {
+        getOperationMetrics(daoMethod, operation).record(durationNanos, documentsReturned);
+        int[] operationsCount = requestOperationsCount.get();
+        if (operationsCount != null) {
+            operationsCount[0]++;
+        }
+        if (durationNanos > slowOperationThresholdNanos) {
+            SLOW_OPERATIONS_LOGGER.warn("{} {} took {} ms and returned {} documents, query: {}", daoMethod, operation,
+                    TimeUnit.NANOSECONDS.toMillis(durationNanos), documentsReturned, query == null ? "-" : queryShape(query));
+        }
+        trace(daoMethod, operation, query, durationNanos, documentsReturned);
+    }
+
+    /**
+     * Operations are traced once they are done, so their spans start the given duration ago. Spans of finds start
+     * when the cursor would have been read without breaks, as their duration is the time spent in reading the cursor.
+     */
+    private void trace(String daoMethod, String operation, DBObject query, long durationNanos, int documentsReturned) {
+        Span span = tracer.startClientSpan(daoMethod + " " + operation, System.nanoTime() - durationNanos);
+        if (span == null) {
+            return;
+        }
+        span.setRemoteServiceName(MONGO_SERVICE_NAME);
+        span.tag("dao.method", daoMethod).tag("mongo.operation", operation)
+                .tag("mongo.documents_returned", String.valueOf(documentsReturned));
+        if (query != null) {
+            span.tag("mongo.query", queryShape(query).toString());
+        }
+        tracer.finish(span);
+    }
+
+    private OperationMetrics getOperationMetrics(String daoMethod, String operation) {
+        String key = daoMethod + " " + operation;
+        OperationMetrics operationMetrics = operations.get(key);
+        if (operationMetrics == null) {
+            OperationMetrics newOperationMetrics = new OperationMetrics(daoMethod, operation);
+            operationMetrics = operations.putIfAbsent(key, newOperationMetrics);
+            if (operationMetrics == null) {
+                operationMetrics = newOperationMetrics;
+            }
+        }
+        return operationMetrics;
+    }
+
+    /**
+     * Starts counting Mongo operations made by the current thread for a request
+     */
+    public void startRequest() {
+        requestOperationsCount.set(new int[1]);
+    }
+
+    /**
+     * Stops counting Mongo operations of the request started by the current thread
+     *
+     * @return number of Mongo operations made since the request has been started
+     */
+    public int finishRequest() {
+        int[] operationsCount = requestOperationsCount.get();
+        requestOperationsCount.remove();
+        if (operationsCount == null) {
+            return 0;
+        }
+        requestsCount.incrementAndGet();
+        requestsOperationsCount.addAndGet(operationsCount[0]);
+        long currentMax;
+        while (operationsCount[0] > (currentMax = maxRequestOperationsCount.get())
+                && !maxRequestOperationsCount.compareAndSet(currentMax, operationsCount[0])) {
+            // retries until the max is updated by this or another thread
+        }
+        return operationsCount[0];
+    }
+
+    /**
+     * Returns query with all values replaced by placeholders, so queries differing only in values have the same shape.
+     * Lists of values become a single placeholder, lists of subqueries (e.g. $or) keep their distinct shapes.
+     */
+    static Object queryShape(Object value) {
+        if (value instanceof List) {
+            Set<Object> shapes = new LinkedHashSet<>();
+            for (Object element : (List<?>) value) {
+                if (!(element instanceof DBObject)) {
+                    return VALUE_PLACEHOLDER;
+                }
+                shapes.add(queryShape(element));
+            }
+            return new ArrayList<>(shapes);
+        }
+        if (value instanceof DBObject) {
+            DBObject dbObject = (DBObject) value;
+            BasicDBObject shape = new BasicDBObject();
+            for (String key : dbObject.keySet()) {
+                shape.put(key, queryShape(dbObject.get(key)));
+            }
+            return shape;
+        }
+        return VALUE_PLACEHOLDER;
+    }
+
+    /**
+     * @return metrics of all operations which have been made, sorted by DAO method and operation type
+     */
+    public Collection<OperationMetrics> getOperations() {
+        SortedMap<String, OperationMetrics> sortedOperations = new TreeMap<>(operations);
+        return Collections.unmodifiableCollection(new ArrayList<>(sortedOperations.values()));
+    }
+
+    public long getRequestsCount() {
+        return requestsCount.get();
+    }
+
+    public long getRequestsOperationsCount() {
+        return requestsOperationsCount.get();
+    }
+
+    public long getMaxRequestOperationsCount() {
+        return maxRequestOperationsCount.get();
+    }
+
+    public static class OperationMetrics {
+
+        private final String daoMethod;
+        private final String operation;
+        private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        private final AtomicLong documentsReturned = new AtomicLong();
+
+        private OperationMetrics(String daoMethod, String operation) {
+            this.daoMethod = daoMethod;
+            this.operation = operation;
+        }
+
+        private void record(long durationNanos, int documents) {
+            latencyHistogram.record(durationNanos, TimeUnit.NANOSECONDS);
+            documentsReturned.addAndGet(documents);
+        }
+
+        public String getDaoMethod() {
+            return daoMethod;
+        }
+
+        public String getOperation() {
+            return operation;
+        }
+
+        public LatencyHistogram getLatencyHistogram() {
+            return latencyHistogram;
+        }
+
+        public long getDocumentsReturned() {
+            return documentsReturned.get();
+        }
+    }
+}
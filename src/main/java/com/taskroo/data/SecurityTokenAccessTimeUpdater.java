@@ -0,0 +1,134 @@
+package com.taskroo.data;
+
+import com.taskroo.service.security.SecurityToken;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records accesses to security tokens in memory and writes them to DB in the background, as one update of
+ * last_accessed_time per flush interval. Accesses of the same token are coalesced and an access is not recorded at all
+ * when last_accessed_time of the token is newer than the accepted staleness.
+ */
+@Component
+public class SecurityTokenAccessTimeUpdater {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final SecurityTokenDao securityTokenDao;
+    private final long flushIntervalMillis;
+    private final long stalenessMillis;
+
+    private final Map<String, Long> pendingAccessTimes = new ConcurrentHashMap<>();
+    private final Map<String, Long> writtenAccessTimes = new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public SecurityTokenAccessTimeUpdater(SecurityTokenDao securityTokenDao,
+                                          @Named("securityTokenAccessTimeFlushIntervalSeconds") Integer flushIntervalSeconds,
+                                          @Named("securityTokenAccessTimeStalenessSeconds") Integer stalenessSeconds) {
+        if (flushIntervalSeconds <= 0 || stalenessSeconds < 0) {
+            throw new IllegalArgumentException("Flush interval has to be positive and staleness cannot be negative");
+        }
+        this.securityTokenDao = securityTokenDao;
+        this.flushIntervalMillis = flushIntervalSeconds * 1000L;
+        this.stalenessMillis = stalenessSeconds * 1000L;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "security-token-access-time-updater");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdown();
+        }
+        flush();
+    }
+
+    public void recordAccess(SecurityToken securityToken) {
+        long now = System.currentTimeMillis();
+        Long lastWrittenAccessTime = writtenAccessTimes.get(securityToken.getId());
+        if (isFresh(lastWrittenAccessTime, now) ||
+                (securityToken.getLastAccessedTime() != null && isFresh(securityToken.getLastAccessedTime().getTime(), now))) {
+            return;
+        }
+        pendingAccessTimes.put(securityToken.getId(), now);
+    }
+
+    private boolean isFresh(Long accessTime, long now) {
+        return accessTime != null && now - accessTime < stalenessMillis;
+    }
+
+    /**
+     * Writes all recorded accesses to DB with a single update. Called periodically, but can be called directly too.
+     */
+    public void flush() {
+        List<String> securityTokensIds = new ArrayList<>(pendingAccessTimes.size());
+        for (Map.Entry<String, Long> pendingAccessTime : pendingAccessTimes.entrySet()) {
+            if (pendingAccessTimes.remove(pendingAccessTime.getKey(), pendingAccessTime.getValue())) {
+                securityTokensIds.add(pendingAccessTime.getKey());
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        if (!securityTokensIds.isEmpty()) {
+            try {
+                securityTokenDao.updateLastAccessedTime(securityTokensIds, new Date(now));
+                for (String securityTokenId : securityTokensIds) {
+                    writtenAccessTimes.put(securityTokenId, now);
+                }
+                LOGGER.debug("Last accessed time updated for {} security tokens", securityTokensIds.size());
+            } catch (RuntimeException e) {
+                LOGGER.error("Unable to update last accessed time of security tokens. Update will be retried.", e);
+                for (String securityTokenId : securityTokensIds) {
+                    if (!pendingAccessTimes.containsKey(securityTokenId)) {
+                        pendingAccessTimes.put(securityTokenId, now);
+                    }
+                }
+            }
+        }
+
+        Iterator<Long> writtenAccessTimesIterator = writtenAccessTimes.values().iterator();
+        while (writtenAccessTimesIterator.hasNext()) {
+            if (!isFresh(writtenAccessTimesIterator.next(), now)) {
+                writtenAccessTimesIterator.remove();
+            }
+        }
+    }
+
+    int getPendingAccessesCount() {
+        return pendingAccessTimes.size();
+    }
+}
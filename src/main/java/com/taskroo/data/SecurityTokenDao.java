@@ -8,6 +8,7 @@ import org.apache.logging.log4j.Logger;
 import org.springframework.stereotype.Repository;
 
 import javax.inject.Inject;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashSet;
 import java.util.Set;
@@ -17,16 +18,16 @@ public class SecurityTokenDao {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
-    private DBCollection securityTokensCollection;
+    private InstrumentedCollection securityTokensCollection;
 
     @Inject
-    public SecurityTokenDao(DBCollection securityTokensCollection) {
-        this.securityTokensCollection = securityTokensCollection;
+    public SecurityTokenDao(DBCollection securityTokensCollection, MongoOperationMetrics mongoOperationMetrics) {
+        this.securityTokensCollection = new InstrumentedCollection(securityTokensCollection, "SecurityTokenDao",
+                mongoOperationMetrics);
     }
 
-    public SecurityToken findOneAndUpdateLastAccessedTime(String securityTokenId) {
-        DBObject secTokenDbObject = securityTokensCollection.findAndModify(QueryBuilder.start("_id").is(securityTokenId).get(), null,
-                null, false, new BasicDBObject("$set", new BasicDBObject("last_accessed_time", new Date())), true, false);
+    public SecurityToken findOne(String securityTokenId) {
+        DBObject secTokenDbObject = securityTokensCollection.findOne("findOne", QueryBuilder.start("_id").is(securityTokenId).get());
 
         if (secTokenDbObject == null) {
             LOGGER.debug("Security token not found.");
@@ -35,6 +36,14 @@ public class SecurityTokenDao {
         return mapDbObjectToSecurityToken(secTokenDbObject);
     }
 
+    public void updateLastAccessedTime(Collection<String> securityTokensIds, Date lastAccessedTime) {
+        if (securityTokensIds.isEmpty()) {
+            return;
+        }
+        securityTokensCollection.update("updateLastAccessedTime", QueryBuilder.start("_id").in(securityTokensIds).get(),
+                new BasicDBObject("$set", new BasicDBObject("last_accessed_time", lastAccessedTime)), false, true);
+    }
+
     private SecurityToken mapDbObjectToSecurityToken(DBObject securityTokenDbObject) {
         String userId = securityTokenDbObject.get("user_id").toString();
         Date createTime = (Date) securityTokenDbObject.get("create_time");
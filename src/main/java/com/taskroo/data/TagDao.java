@@ -20,33 +20,135 @@ public class TagDao {
     public static final String OWNER_ID_KEY = "owner_id";
     public static final String COLOR_KEY = "color";
     public static final String VISIBLE_IN_WORK_VIEW_KEY = "visible_in_workview";
+    public static final String SIZE_KEY = "size";
+    public static final String MODIFIED_DATE_KEY = "modified_date";
 
-    private final DBCollection tagsCollection;
+    private final InstrumentedCollection tagsCollection;
     private final DbTagConverter dbTagConverter;
-    private final DBCollection tasksCollection;
+    private final InstrumentedCollection tasksCollection;
+    private final TagsDictionaryCache tagsDictionaryCache;
+    private final DataVersionDao dataVersionDao;
+    private final TombstoneDao tombstoneDao;
 
     @Inject
-    public TagDao(DBCollection tagsCollection, DbTagConverter dbTagConverter, DBCollection tasksCollection) {
-        this.tagsCollection = tagsCollection;
+    public TagDao(DBCollection tagsCollection, DbTagConverter dbTagConverter, DBCollection tasksCollection,
+                  TagsDictionaryCache tagsDictionaryCache, DataVersionDao dataVersionDao, TombstoneDao tombstoneDao,
+                  MongoOperationMetrics mongoOperationMetrics) {
+        this.tagsCollection = new InstrumentedCollection(tagsCollection, "TagDao", mongoOperationMetrics);
         this.dbTagConverter = dbTagConverter;
-        this.tasksCollection = tasksCollection;
+        this.tasksCollection = new InstrumentedCollection(tasksCollection, "TagDao", mongoOperationMetrics);
+        this.tagsDictionaryCache = tagsDictionaryCache;
+        this.dataVersionDao = dataVersionDao;
+        this.tombstoneDao = tombstoneDao;
     }
 
     public List<Tag> getAllTagsByOwnerId(String ownerId) {
-        DBCursor dbTags = tagsCollection.find(QueryBuilder.start(OWNER_ID_KEY).is(ownerId).get());
+        DBCursor dbTags = tagsCollection.find("getAllTagsByOwnerId", QueryBuilder.start(OWNER_ID_KEY).is(ownerId).get());
+        return dbTagConverter.convertDbObjectsToSetOfTags(dbTags.toArray());
+    }
+
+    /**
+     * Returns tags of the owner for resolving tags of tasks by id or name. Tags are served from the cache when possible.
+     * Sizes of the tags are not loaded, as they change with almost every task modification. Tags which are not found in
+     * the cached dictionary, e.g. because they have been created by another instance of the application, are looked up
+     * in the dictionary reloaded from DB, which replaces the cached one.
+     *
+     * @param ownerId owner of the tags
+     * @return dictionary of all tags of the owner
+     */
+    public TagsDictionary getTagsDictionary(String ownerId) {
+        TagsDictionary tagsDictionary = tagsDictionaryCache.get(ownerId);
+        if (tagsDictionary != null) {
+            return tagsDictionary;
+        }
+        return loadTagsDictionary(ownerId);
+    }
+
+    private TagsDictionary loadTagsDictionary(final String ownerId) {
+        long version = tagsDictionaryCache.getVersion(ownerId);
+        DBCursor dbTags = tagsCollection.find("getTagsDictionary", QueryBuilder.start(OWNER_ID_KEY).is(ownerId).get(),
+                new BasicDBObject(SIZE_KEY, false));
+        List<Tag> tags = new ArrayList<>();
+        for (DBObject dbTag : dbTags) {
+            tags.add(dbTagConverter.convertDbObjectToTag(dbTag));
+        }
+        TagsDictionary tagsDictionary = new TagsDictionary(tags, new TagsDictionary.Reloader() {
+            @Override
+            public TagsDictionary reload() {
+                return loadTagsDictionary(ownerId);
+            }
+        });
+        tagsDictionaryCache.put(ownerId, version, tagsDictionary);
+        return tagsDictionary;
+    }
+
+    /**
+     * Changes number of unfinished tasks stored in the tags. Sizes of tags with the same change are updated together.
+     *
+     * @param sizeChangesPerTag change of the size per tag id
+     */
+    void changeSizes(Map<String, Integer> sizeChangesPerTag) {
+        Map<Integer, List<ObjectId>> tagsIdsPerSizeChange = new HashMap<>();
+        for (Map.Entry<String, Integer> sizeChange : sizeChangesPerTag.entrySet()) {
+            if (sizeChange.getValue() == 0 || !ObjectId.isValid(sizeChange.getKey())) {
+                continue;
+            }
+            List<ObjectId> tagsIds = tagsIdsPerSizeChange.get(sizeChange.getValue());
+            if (tagsIds == null) {
+                tagsIds = new ArrayList<>();
+                tagsIdsPerSizeChange.put(sizeChange.getValue(), tagsIds);
+            }
+            tagsIds.add(new ObjectId(sizeChange.getKey()));
+        }
+        for (Map.Entry<Integer, List<ObjectId>> tagsIdsWithSizeChange : tagsIdsPerSizeChange.entrySet()) {
+            tagsCollection.update("changeSizes", QueryBuilder.start(ID_KEY).in(tagsIdsWithSizeChange.getValue()).get(),
+                    new BasicDBObject("$inc", new BasicDBObject(SIZE_KEY, tagsIdsWithSizeChange.getKey())), false, true);
+        }
+    }
 
+    /**
+     * Counts unfinished tasks of each tag of the owner and repairs sizes stored in the tags when they differ.
+     * <p>
+     * Stored sizes are read before tasks are counted, and a size is repaired only when it is still the one read.
+     * A size changed after it has been read, e.g. by a task modified while tasks were counted, is left for the next
+     * recalculation, so the count never overwrites a change it may not include.
+     *
+     * @param ownerId owner of the tags
+     * @return number of tags which size has been repaired
+     */
+    public int recalculateSizes(String ownerId) {
+        List<DBObject> dbTags = tagsCollection.find("recalculateSizes", QueryBuilder.start(OWNER_ID_KEY).is(ownerId).get(),
+                new BasicDBObject(SIZE_KEY, true)).toArray();
         Map<String, Integer> numberOfTasksPerTag = getNumberOfUnfinishedTasksForTags(ownerId);
-        List<Tag> tags = dbTagConverter.convertDbObjectsToSetOfTags(dbTags.toArray());
-        for (Tag tag : tags) {
-            if (numberOfTasksPerTag.containsKey(tag.getId())) {
-                tag.setSize(numberOfTasksPerTag.get(tag.getId()));
+        int repairedTags = 0;
+        for (DBObject dbTag : dbTags) {
+            Integer expectedSize = numberOfTasksPerTag.get(dbTag.get(ID_KEY).toString());
+            if (expectedSize == null) {
+                expectedSize = 0;
+            }
+            Object storedSize = dbTag.get(SIZE_KEY);
+            if (storedSize == null || ((Number) storedSize).intValue() != expectedSize) {
+                DBObject queryTagWithUnchangedSize = new BasicDBObject(ID_KEY, dbTag.get(ID_KEY)).append(SIZE_KEY, storedSize);
+                WriteResult result = tagsCollection.update("recalculateSizes", queryTagWithUnchangedSize,
+                        new BasicDBObject("$set", new BasicDBObject(SIZE_KEY, expectedSize)));
+                if (result.getN() > 0) {
+                    repairedTags++;
+                }
             }
         }
-        return tags;
+        if (repairedTags > 0) {
+            dataVersionDao.increment(ownerId);
+        }
+        return repairedTags;
+    }
+
+    @SuppressWarnings("unchecked")
+    List<String> findAllOwnersIds() {
+        return (List<String>) tagsCollection.distinct("findAllOwnersIds", OWNER_ID_KEY);
     }
 
     private Map<String, Integer> getNumberOfUnfinishedTasksForTags(String ownerId) {
-        AggregationOutput aggregate = tasksCollection.aggregate(
+        AggregationOutput aggregate = tasksCollection.aggregate("getNumberOfUnfinishedTasksForTags", 
                 new BasicDBObject("$match", new BasicDBObject(OWNER_ID_KEY, ownerId).append(TaskDao.FINISHED_KEY, false)),
                 new BasicDBObject("$project", new BasicDBObject("tags", 1)),
                 new BasicDBObject("$unwind", "$tags"),
@@ -63,7 +165,7 @@ public class TagDao {
         assert ownerId != null;
         assert tagId != null;
         DBObject query = new BasicDBObject(ID_KEY, new ObjectId(tagId)).append(OWNER_ID_KEY, ownerId);
-        long count = tagsCollection.count(query);
+        long count = tagsCollection.count("exists", query);
         return count > 0;
     }
 
@@ -75,16 +177,20 @@ public class TagDao {
         DBObject dbTag = BasicDBObjectBuilder.start(OWNER_ID_KEY, tag.getOwnerId())
                 .add(NAME_KEY, tag.getName())
                 .add(COLOR_KEY, tag.getColor())
-                .add(VISIBLE_IN_WORK_VIEW_KEY, tag.isVisibleInWorkView()).get();
+                .add(VISIBLE_IN_WORK_VIEW_KEY, tag.isVisibleInWorkView())
+                .add(SIZE_KEY, 0)
+                .add(MODIFIED_DATE_KEY, new Date()).get();
 
-        tagsCollection.insert(dbTag);
+        tagsCollection.insert("insert", dbTag);
+        tagsDictionaryCache.invalidate(tag.getOwnerId());
+        dataVersionDao.increment(tag.getOwnerId());
         return dbTagConverter.convertDbObjectToTag(dbTag);
     }
 
     public Tag findByName(String ownerId, String name) {
         Objects.requireNonNull(ownerId);
         Objects.requireNonNull(name);
-        DBObject tag = tagsCollection.findOne(new BasicDBObject("owner_id", ownerId).append("name", name));
+        DBObject tag = tagsCollection.findOne("findByName", new BasicDBObject("owner_id", ownerId).append("name", name));
         if (tag == null) {
             return null;
         }
@@ -101,13 +207,17 @@ public class TagDao {
         }
 
         BasicDBObject queryTagByOwnerAndId = new BasicDBObject(TagDao.OWNER_ID_KEY, ownerId).append(TagDao.ID_KEY, new ObjectId(tagId));
-        tagsCollection.remove(queryTagByOwnerAndId);
+        tagsCollection.remove("remove", queryTagByOwnerAndId);
+        tagsDictionaryCache.invalidate(ownerId);
         removeTagFromAllTasksOfThisUser(ownerId, tagId);
+        tombstoneDao.addTag(ownerId, tagId, new Date());
+        dataVersionDao.increment(ownerId);
     }
 
     private void removeTagFromAllTasksOfThisUser(String ownerId, String tagId) {
         DBObject queryTasksByOwnerWithTag = QueryBuilder.start(TaskDao.OWNER_ID_KEY).is(ownerId).and(TaskDao.TAGS_KEY).is(tagId).get();
-        tasksCollection.update(queryTasksByOwnerWithTag, new BasicDBObject("$pull", new BasicDBObject(TaskDao.TAGS_KEY, tagId)), false, true);
+        tasksCollection.update("removeTagFromAllTasksOfThisUser", queryTasksByOwnerWithTag, new BasicDBObject("$pull", new BasicDBObject(TaskDao.TAGS_KEY, tagId))
+                .append("$set", new BasicDBObject(TaskDao.MODIFIED_DATE_KEY, new Date())), false, true);
     }
 
     public Tag update(String ownerId, String tagId, Tag tagToUpdate) throws NonExistingResourceOperationException{
@@ -124,8 +234,12 @@ public class TagDao {
         DBObject dbTagToUpdate = BasicDBObjectBuilder.start(OWNER_ID_KEY, ownerId)
                 .add(NAME_KEY, tagToUpdate.getName())
                 .add(COLOR_KEY, tagToUpdate.getColor())
-                .add(VISIBLE_IN_WORK_VIEW_KEY, tagToUpdate.isVisibleInWorkView()).get();
-        DBObject dbTagAfterUpdate = tagsCollection.findAndModify(queryTagByOwnerAndId, null, null, false, dbTagToUpdate, true, false);
+                .add(VISIBLE_IN_WORK_VIEW_KEY, tagToUpdate.isVisibleInWorkView())
+                .add(MODIFIED_DATE_KEY, new Date()).get();
+        DBObject dbTagAfterUpdate = tagsCollection.findAndModify("update", queryTagByOwnerAndId, null, null, false,
+                new BasicDBObject("$set", dbTagToUpdate), true, false);
+        tagsDictionaryCache.invalidate(ownerId);
+        dataVersionDao.increment(ownerId);
         if (dbTagAfterUpdate == null) {
             throw new NonExistingResourceOperationException("Tag: " + tagId + " for user: " + ownerId +
                     " cannot be updated, because it has not been found");
@@ -133,12 +247,22 @@ public class TagDao {
         return dbTagConverter.convertDbObjectToTag(dbTagAfterUpdate);
     }
 
+    /**
+     * Finds tags of the owner inserted or updated since given date. Changes of sizes of tags are not modifications.
+     */
+    List<Tag> findModifiedSince(String ownerId, Date since) {
+        DBObject queryByOwnerModifiedSince = QueryBuilder.start(OWNER_ID_KEY).is(ownerId)
+                .and(MODIFIED_DATE_KEY).greaterThanEquals(since).get();
+        return dbTagConverter.convertDbObjectsToSetOfTags(
+                tagsCollection.find("findModifiedSince", queryByOwnerModifiedSince).toArray());
+    }
+
     Set<String> findNonExistingTags(Set<String> tagsIds) {
         Set<ObjectId> tagsIdsObjectIds = new HashSet<>();
         for (String tagId : tagsIds) {
             tagsIdsObjectIds.add(new ObjectId(tagId));
         }
-        DBCursor existingTags = tagsCollection.find(new BasicDBObject("_id", new BasicDBObject("$in", tagsIdsObjectIds)), new BasicDBObject("_id", true));
+        DBCursor existingTags = tagsCollection.find("findNonExistingTags", new BasicDBObject("_id", new BasicDBObject("$in", tagsIdsObjectIds)), new BasicDBObject("_id", true));
         Set<String> existingTagsIds = new HashSet<>();
         for (DBObject existingTag : existingTags) {
             existingTagsIds.add(existingTag.get("_id").toString());
@@ -0,0 +1,77 @@
+package com.taskroo.data;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically recalculates number of unfinished tasks of every tag and repairs sizes stored in tags which have drifted
+ * from the real value, e.g. because of concurrent tasks modifications.
+ */
+@Component
+public class TagSizeReconciliationJob {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final TagDao tagDao;
+    private final long intervalMinutes;
+
+    private ScheduledExecutorService scheduler;
+
+    @Inject
+    public TagSizeReconciliationJob(TagDao tagDao, @Named("tagSizeReconciliationIntervalMinutes") Integer intervalMinutes) {
+        if (intervalMinutes <= 0) {
+            throw new IllegalArgumentException("Tag size reconciliation interval has to be positive");
+        }
+        this.tagDao = tagDao;
+        this.intervalMinutes = intervalMinutes;
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "tag-size-reconciliation");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                reconcile();
+            }
+        }, 0, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void reconcile() {
+        try {
+            int repairedTags = 0;
+            for (String ownerId : tagDao.findAllOwnersIds()) {
+                repairedTags += tagDao.recalculateSizes(ownerId);
+            }
+            if (repairedTags > 0) {
+                LOGGER.warn("Size of {} tags has drifted from number of unfinished tasks and has been repaired", repairedTags);
+            }
+        } catch (RuntimeException e) {
+            LOGGER.error("Tag size reconciliation failed", e);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.taskroo.data;
+
+import com.taskroo.domain.Tag;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Tags of a single owner indexed by id and by name, used to resolve tags of tasks without searching the list of tags.
+ * Dictionary may be cached and miss tags created by other instances of the application since it has been loaded, so
+ * when a tag is not found, it is looked up once more in the current tags of the owner, reloaded by the given reloader.
+ */
+public class TagsDictionary {
+
+    /**
+     * Loads current tags of the owner of the dictionary.
+     */
+    interface Reloader {
+        TagsDictionary reload();
+    }
+
+    private final Map<String, Tag> tagsById;
+    private final Map<String, String> tagsIdsByName;
+    private final Reloader reloader;
+    private volatile TagsDictionary reloadedTagsDictionary;
+
+    public TagsDictionary(Collection<Tag> tags) {
+        this(tags, null);
+    }
+
+    TagsDictionary(Collection<Tag> tags, Reloader reloader) {
+        Map<String, Tag> tagsById = new HashMap<>();
+        Map<String, String> tagsIdsByName = new HashMap<>();
+        for (Tag tag : tags) {
+            tagsById.put(tag.getId(), tag);
+            tagsIdsByName.put(tag.getName(), tag.getId());
+        }
+        this.tagsById = Collections.unmodifiableMap(tagsById);
+        this.tagsIdsByName = Collections.unmodifiableMap(tagsIdsByName);
+        this.reloader = reloader;
+    }
+
+    public static TagsDictionary empty() {
+        return new TagsDictionary(Collections.<Tag>emptyList());
+    }
+
+    /**
+     * @return tag of given id or null when the owner has no such tag, even after reloading
+     */
+    public Tag getById(String tagId) {
+        Tag tag = tagsById.get(tagId);
+        if (tag == null && reloader != null) {
+            return reload().tagsById.get(tagId);
+        }
+        return tag;
+    }
+
+    /**
+     * @return id of tag of given name or null when the owner has no such tag, even after reloading
+     */
+    public String findIdByName(String tagName) {
+        String tagId = tagsIdsByName.get(tagName);
+        if (tagId == null && reloader != null) {
+            return reload().tagsIdsByName.get(tagName);
+        }
+        return tagId;
+    }
+
+    /**
+     * Tags are reloaded at most once per dictionary, so tasks with tags removed in the meantime do not reload them again
+     * and again.
+     */
+    private TagsDictionary reload() {
+        TagsDictionary tagsDictionary = reloadedTagsDictionary;
+        if (tagsDictionary == null) {
+            tagsDictionary = reloader.reload();
+            reloadedTagsDictionary = tagsDictionary;
+        }
+        return tagsDictionary;
+    }
+
+    public int size() {
+        return tagsById.size();
+    }
+}
@@ -0,0 +1,171 @@
+package com.taskroo.data;
+
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of tags dictionaries of owners, evicted when least recently used or when older than the time
+ * to live. Tags changed by this instance invalidate the cached dictionary immediately, tags changed by other instances
+ * of the application are picked up once the dictionary expires.
+ *
+ * Every invalidated owner is stamped with a new version, so a dictionary loaded before the change is never cached.
+ * Versions are kept only for as many owners as dictionaries; when the version of an owner is evicted, it is folded into
+ * the version of all the other owners, so loads which have started before are not cached either.
+ */
+@Component
+public class TagsDictionaryCache {
+
+    private final int maxSize;
+    private final long timeToLiveMillis;
+    private final LinkedHashMap<String, CachedTagsDictionary> dictionaries;
+    private final LinkedHashMap<String, Long> versions;
+    private long lastVersion;
+    private long evictedVersion;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    @Inject
+    public TagsDictionaryCache(@Named("tagsDictionaryCacheMaxSize") Integer maxSize,
+                               @Named("tagsDictionaryCacheTimeToLiveSeconds") Integer timeToLiveSeconds) {
+        if (maxSize < 0 || timeToLiveSeconds < 0) {
+            throw new IllegalArgumentException("Tags dictionary cache size and time to live cannot be negative");
+        }
+        this.maxSize = maxSize;
+        this.timeToLiveMillis = TimeUnit.SECONDS.toMillis(timeToLiveSeconds);
+        this.dictionaries = new LinkedHashMap<String, CachedTagsDictionary>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedTagsDictionary> eldest) {
+                if (size() > TagsDictionaryCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+        this.versions = new LinkedHashMap<String, Long>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                if (size() > TagsDictionaryCache.this.maxSize) {
+                    evictedVersion = Math.max(evictedVersion, eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached tags dictionary of the owner
+     *
+     * @param ownerId owner of the tags
+     * @return tags dictionary or null when it is not cached or has expired
+     */
+    public TagsDictionary get(String ownerId) {
+        synchronized (dictionaries) {
+            CachedTagsDictionary cachedTagsDictionary = dictionaries.get(ownerId);
+            if (cachedTagsDictionary != null && currentTimeMillis() - cachedTagsDictionary.loadTime >= timeToLiveMillis) {
+                dictionaries.remove(ownerId);
+                evictionCount.incrementAndGet();
+                cachedTagsDictionary = null;
+            }
+            if (cachedTagsDictionary == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            return cachedTagsDictionary.tagsDictionary;
+        }
+    }
+
+    /**
+     * Returns current version of tags of the owner. It has to be read before loading the tags to put them into cache.
+     */
+    public long getVersion(String ownerId) {
+        synchronized (dictionaries) {
+            Long version = versions.get(ownerId);
+            return version == null ? evictedVersion : version;
+        }
+    }
+
+    /**
+     * Caches tags dictionary of the owner unless tags of the owner have changed since given version has been read.
+     *
+     * @param ownerId owner of the tags
+     * @param version version of tags read before the dictionary has been loaded
+     * @param tagsDictionary dictionary to cache
+     */
+    public void put(String ownerId, long version, TagsDictionary tagsDictionary) {
+        if (maxSize == 0 || timeToLiveMillis == 0) {
+            return;
+        }
+        synchronized (dictionaries) {
+            if (getVersion(ownerId) == version) {
+                dictionaries.put(ownerId, new CachedTagsDictionary(tagsDictionary, currentTimeMillis()));
+            }
+        }
+    }
+
+    public void invalidate(String ownerId) {
+        synchronized (dictionaries) {
+            versions.put(ownerId, ++lastVersion);
+            dictionaries.remove(ownerId);
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (dictionaries) {
+            evictedVersion = ++lastVersion;
+            versions.clear();
+            dictionaries.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (dictionaries) {
+            return dictionaries.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * @return ratio of lookups served from the cache or 0 when there has been no lookup yet
+     */
+    public double getHitRatio() {
+        long hits = hitCount.get();
+        long lookups = hits + missCount.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private static class CachedTagsDictionary {
+        private final TagsDictionary tagsDictionary;
+        private final long loadTime;
+
+        private CachedTagsDictionary(TagsDictionary tagsDictionary, long loadTime) {
+            this.tagsDictionary = tagsDictionary;
+            this.loadTime = loadTime;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.taskroo.data;
 
 import com.mongodb.*;
+import com.taskroo.domain.BatchItemResult;
 import com.taskroo.domain.Tag;
 import com.taskroo.domain.Task;
+import com.taskroo.domain.TaskChange;
+import com.taskroo.domain.TasksChanges;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.bson.types.ObjectId;
@@ -28,19 +31,141 @@ public class TaskDao {
     public static final String PATH_KEY = "path";
     public static final String OWNER_ID_KEY = "owner_id";
     public static final String TITLE_KEY = "title";
+    public static final String MODIFIED_DATE_KEY = "modified_date";
 
-    private final DBCollection tasksCollection;
+    static final int STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE = 100;
+    /**
+     * Changes are read from this long before the checkpoint, so changes written with a slightly late clock or still
+     * being written when the checkpoint was taken are not missed. Clients may receive the same change twice.
+     * <p>
+     * Modification dates and checkpoints are taken from clocks of application instances, not of the DB server. Clocks
+     * of all instances have to be synchronized (e.g. with NTP) much more closely than this overlap; a change stamped by
+     * an instance which clock is behind by more than the overlap may never be returned as a change.
+     */
+    static final long CHANGES_OVERLAP_MILLIS = 10000;
+
+    private final InstrumentedCollection tasksCollection;
     private final TagDao tagDao;
     private final DbTasksConverter dbTasksConverter;
+    private final DataVersionDao dataVersionDao;
+    private final TombstoneDao tombstoneDao;
 
     @Inject
-    public TaskDao(DBCollection tasksCollection, TagDao tagDao, DbTasksConverter dbTasksConverter) {
-        this.tasksCollection = tasksCollection;
+    public TaskDao(DBCollection tasksCollection, TagDao tagDao, DbTasksConverter dbTasksConverter,
+                   DataVersionDao dataVersionDao, TombstoneDao tombstoneDao, MongoOperationMetrics mongoOperationMetrics) {
+        this.tasksCollection = new InstrumentedCollection(tasksCollection, "TaskDao", mongoOperationMetrics);
         this.tagDao = tagDao;
         this.dbTasksConverter = dbTasksConverter;
+        this.dataVersionDao = dataVersionDao;
+        this.tombstoneDao = tombstoneDao;
     }
 
     public Task insert(Task task) {
+        prepareTaskToInsert(task);
+
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(task.getOwnerId());
+
+        Set<String> tagsIdsForTask = getTagsIds(task.getTags(), tagsDictionary);
+        DBObject taskDbObject = createDbTaskToInsert(task, tagsIdsForTask);
+
+        tasksCollection.insert("insert", taskDbObject);
+
+        taskDbObject = updateTagsIfConcurrentTagsModificationHappen(tagsIdsForTask, taskDbObject);
+        String taskId = taskDbObject.get(ID_KEY).toString();
+        task.setId(taskId);
+        if (!task.isFinished()) {
+            changeTagsSizes(Collections.singletonList(taskDbObject), 1);
+        }
+        dataVersionDao.increment(task.getOwnerId());
+
+        return dbTasksConverter.convertToTasksTree(Collections.singletonList(taskDbObject), tagsDictionary, true).iterator().next();
+    }
+
+    /**
+     * Inserts tasks of the owner with a single write. Tags are resolved and checked for concurrent removal once for
+     * all tasks. Tasks which cannot be inserted do not stop insertion of the other ones.
+     *
+     * @param ownerId owner of all the tasks
+     * @param tasks tasks to insert
+     * @return result for every task, in the order of given tasks
+     */
+    public List<BatchItemResult> insertAll(String ownerId, List<Task> tasks) {
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+
+        BatchItemResult[] results = new BatchItemResult[tasks.size()];
+        List<DBObject> dbTasksToInsert = new ArrayList<>(tasks.size());
+        List<Integer> indexesOfTasksToInsert = new ArrayList<>(tasks.size());
+        Set<String> tagsIdsOfAllTasks = new HashSet<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            try {
+                if (!ownerId.equals(task.getOwnerId())) {
+                    throw new UnsupportedDataOperationException("Task has different owner than the other tasks of the batch");
+                }
+                if (task.getTitle() == null || task.getTitle().trim().isEmpty()) {
+                    throw new UnsupportedDataOperationException("Task title cannot be blank");
+                }
+                prepareTaskToInsert(task);
+                Set<String> tagsIdsForTask = getTagsIds(task.getTags(), tagsDictionary);
+                dbTasksToInsert.add(createDbTaskToInsert(task, tagsIdsForTask));
+                indexesOfTasksToInsert.add(i);
+                tagsIdsOfAllTasks.addAll(tagsIdsForTask);
+            } catch (UnsupportedDataOperationException e) {
+                results[i] = BatchItemResult.failure(i, BatchItemResult.Status.INVALID, null, e.getMessage());
+            }
+        }
+
+        if (!dbTasksToInsert.isEmpty()) {
+            tasksCollection.insert("insertAll", dbTasksToInsert);
+            List<Object> insertedTasksIds = new ArrayList<>(dbTasksToInsert.size());
+            for (DBObject dbTask : dbTasksToInsert) {
+                insertedTasksIds.add(dbTask.get(ID_KEY));
+            }
+            Set<String> tagsRemovedInTheMeanTime = removeTagsRemovedConcurrently(insertedTasksIds, tagsIdsOfAllTasks);
+            for (DBObject dbTask : dbTasksToInsert) {
+                ((Collection<String>) dbTask.get(TAGS_KEY)).removeAll(tagsRemovedInTheMeanTime);
+            }
+
+            List<DBObject> unfinishedDbTasks = new ArrayList<>();
+            for (DBObject dbTask : dbTasksToInsert) {
+                if (!(boolean) dbTask.get(FINISHED_KEY)) {
+                    unfinishedDbTasks.add(dbTask);
+                }
+            }
+            changeTagsSizes(unfinishedDbTasks, 1);
+            dataVersionDao.increment(ownerId);
+
+            List<Task> insertedTasks = dbTasksConverter.convertToFlatTasksList(dbTasksToInsert, tagsDictionary);
+            for (int i = 0; i < insertedTasks.size(); i++) {
+                int index = indexesOfTasksToInsert.get(i);
+                results[index] = BatchItemResult.success(index, BatchItemResult.Status.CREATED, insertedTasks.get(i));
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Removes tags, which have been removed after tasks were written, from given tasks with a single update
+     *
+     * @return ids of tags removed from tasks
+     */
+    private Set<String> removeTagsRemovedConcurrently(List<Object> tasksIds, Set<String> tagsIds) {
+        if (tagsIds.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<String> tagsRemovedInTheMeanTime = tagDao.findNonExistingTags(tagsIds);
+        if (tagsRemovedInTheMeanTime.isEmpty()) {
+            return tagsRemovedInTheMeanTime;
+        }
+        LOGGER.info("Some tags have been removed in the time of processing batch of tasks. " +
+                "These tags will be removed from tasks: {}", tagsRemovedInTheMeanTime);
+        tasksCollection.update("removeTagsRemovedConcurrently", QueryBuilder.start(ID_KEY).in(tasksIds).get(),
+                new BasicDBObject("$pullAll", new BasicDBObject(TAGS_KEY, new ArrayList<>(tagsRemovedInTheMeanTime)))
+                        .append("$set", new BasicDBObject(MODIFIED_DATE_KEY, new Date())), false, true);
+        return tagsRemovedInTheMeanTime;
+    }
+
+    private void prepareTaskToInsert(Task task) {
         if (!task.getSubtasks().isEmpty()) {
             LOGGER.warn("POSSIBLE CLIENT MALFUNCTION: Trying to insert task with subtasks.");
             throw new UnsupportedDataOperationException("Cannot insert task with subtasks. This is not supported.");
@@ -58,11 +183,10 @@ public class TaskDao {
         if (task.getCreatedDate() == null) {
             task.setCreatedDate(new Date());
         }
+    }
 
-        List<Tag> allUserTags = tagDao.getAllTagsByOwnerId(task.getOwnerId());
-
-        Set<String> tagsIdsForTask = getTagsIds(task.getTags(), allUserTags);
-        DBObject taskDbObject = BasicDBObjectBuilder.start(TITLE_KEY, task.getTitle())
+    private DBObject createDbTaskToInsert(Task task, Set<String> tagsIdsForTask) {
+        return BasicDBObjectBuilder.start(TITLE_KEY, task.getTitle())
                 .append(DESCRIPTION_KEY, task.getDescription())
                 .append(DUE_DATE_KEY, task.getDueDate())
                 .append(START_DATE_KEY, task.getStartDate())
@@ -72,21 +196,14 @@ public class TaskDao {
                 .append(OWNER_ID_KEY, task.getOwnerId())
                 .append(TAGS_KEY, tagsIdsForTask)
                 .append(PATH_KEY, Collections.emptyList())
+                .append(MODIFIED_DATE_KEY, new Date())
                 .get();
-
-        tasksCollection.insert(taskDbObject);
-
-        taskDbObject = updateTagsIfConcurrentTagsModificationHappen(tagsIdsForTask, taskDbObject);
-        String taskId = taskDbObject.get(ID_KEY).toString();
-        task.setId(taskId);
-
-        return dbTasksConverter.convertToTasksTree(Collections.singletonList(taskDbObject), allUserTags, true).iterator().next();
     }
 
-    private Set<String> getTagsIds(Set<Tag> taskTags, List<Tag> allUserTags) {
+    private Set<String> getTagsIds(Set<Tag> taskTags, TagsDictionary tagsDictionary) {
         Set<String> tagsIds = new HashSet<>();
         for (Tag taskTag : taskTags) {
-            String tagId = findTagOnListByName(allUserTags, taskTag);
+            String tagId = tagsDictionary.findIdByName(taskTag.getName());
             if (tagId == null) {
                 LOGGER.warn("POSSIBLE CLIENT MALFUNCTION: Trying to add task with non-existing tag.");
                 throw new UnsupportedDataOperationException("Cannot add tag '"+ taskTag.getName() +
@@ -97,23 +214,12 @@ public class TaskDao {
         return tagsIds;
     }
 
-    private String findTagOnListByName(List<Tag> allUserTags, Tag taskTag) {
-        String tagId = null;
-        for (Tag userTag : allUserTags) {
-            if (userTag.getName().equals(taskTag.getName())) {
-                tagId = userTag.getId();
-                break;
-            }
-        }
-        return tagId;
-    }
-
     private List<String> getPath(String ownerId, String taskId, boolean includingTaskId) throws NonExistingResourceOperationException {
         if (taskId == null) {
             return Collections.emptyList();
         }
 
-        DBObject dbPath = tasksCollection.findOne(new BasicDBObject(ID_KEY, new ObjectId(taskId)).append(OWNER_ID_KEY, ownerId),
+        DBObject dbPath = tasksCollection.findOne("getPath", new BasicDBObject(ID_KEY, new ObjectId(taskId)).append(OWNER_ID_KEY, ownerId),
                 new BasicDBObject(PATH_KEY, true));
 
         if (dbPath == null) {
@@ -128,18 +234,52 @@ public class TaskDao {
         return parentPath;
     }
 
+    /**
+     * Streaming counterpart of {@link #findAllByOwnerId(String)}. Subtasks are read for
+     * {@value #STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE} top level tasks at once.
+     */
+    public TasksCursor streamAllByOwnerId(String ownerId) {
+        return streamAllByOwnerId(ownerId, TaskProjection.ALL);
+    }
+
+    public TasksCursor streamAllByOwnerId(String ownerId, TaskProjection projection) {
+        DBObject queryByOwnerId = QueryBuilder.start(OWNER_ID_KEY).is(ownerId).get();
+        DBObject queryTopLevelByOwnerId = QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(PATH_KEY).is(Collections.emptyList()).get();
+        DBObject dbProjection = projection.toDbProjection();
+        return new TasksTreeCursor(tasksCollection.find("streamAllByOwnerId", queryTopLevelByOwnerId, dbProjection),
+                tasksCollection, queryByOwnerId, null, dbProjection, STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE, dbTasksConverter, tagDao.getTagsDictionary(ownerId));
+    }
+
     public Collection<Task> findAllByOwnerId(String ownerId) {
         DBObject queryByOwnerId = QueryBuilder.start(OWNER_ID_KEY).is(ownerId).get();
-        DBCursor dbTasks = tasksCollection.find(queryByOwnerId);
-        List<Tag> allUserTags = tagDao.getAllTagsByOwnerId(ownerId);
-        return dbTasksConverter.convertToTasksTree(dbTasks.toArray(), allUserTags);
+        DBCursor dbTasks = tasksCollection.find("findAllByOwnerId", queryByOwnerId);
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+        return dbTasksConverter.convertToTasksTree(dbTasks.toArray(), tagsDictionary);
+    }
+
+    /**
+     * Streaming counterpart of {@link #findUnfinishedByOwnerId(String)}. Unfinished tasks can have finished ancestors
+     * (e.g. after being added as subtasks of finished tasks), so they cannot be read as subtasks of unfinished top level
+     * tasks. Unfinished tasks are read for {@value #STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE} top level tasks, finished or
+     * not, at once instead.
+     */
+    public TasksCursor streamUnfinishedByOwnerId(String ownerId) {
+        return streamUnfinishedByOwnerId(ownerId, TaskProjection.ALL);
+    }
+
+    public TasksCursor streamUnfinishedByOwnerId(String ownerId, TaskProjection projection) {
+        DBObject queryTopLevelByOwnerId = QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(PATH_KEY).is(Collections.emptyList()).get();
+        DBObject queryByOwnerAndFinished = QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(FINISHED_KEY).is(false).get();
+        return new TasksForestCursor(tasksCollection.find("streamUnfinishedByOwnerId", queryTopLevelByOwnerId,
+                new BasicDBObject(ID_KEY, true)), tasksCollection, queryByOwnerAndFinished, projection.toDbProjection(),
+                STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE, dbTasksConverter, tagDao.getTagsDictionary(ownerId));
     }
 
     public Collection<Task> findUnfinishedByOwnerId(String ownerId) {
         DBObject queryByOwnerAndFinished = QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(FINISHED_KEY).is(false).get();
-        DBCursor dbTasks = tasksCollection.find(queryByOwnerAndFinished).sort(new BasicDBObject(CLOSED_DATE_KEY, -1));
-        List<Tag> allUserTags = tagDao.getAllTagsByOwnerId(ownerId);
-        return dbTasksConverter.convertToTasksTree(dbTasks.toArray(), allUserTags, true);
+        DBCursor dbTasks = tasksCollection.find("findUnfinishedByOwnerId", queryByOwnerAndFinished).sort(new BasicDBObject(CLOSED_DATE_KEY, -1));
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+        return dbTasksConverter.convertToTasksTree(dbTasks.toArray(), tagsDictionary, true);
     }
 
     public void remove(String ownerId, String taskId) throws NonExistingResourceOperationException {
@@ -147,11 +287,31 @@ public class TaskDao {
             LOGGER.warn("Task id is invalid: {} (ownerId: {}). Nothing has been removed.", taskId, ownerId);
             throw new NonExistingResourceOperationException("Invalid task id: " + taskId);
         }
-        WriteResult result = tasksCollection.remove(findTaskWithSubtasksQuery(ownerId, taskId));
-        if (result.getN() == 0) {
+        if (removeTasks(ownerId, findTaskWithSubtasksQuery(ownerId, taskId)) == 0) {
             LOGGER.info("Task with id {} and ownerId {} not found in DB. Nothing has been removed.", taskId, ownerId);
             throw new NonExistingResourceOperationException("Task with id " + taskId + "and ownerId " + ownerId + " not found in DB");
         }
+        dataVersionDao.increment(ownerId);
+    }
+
+    /**
+     * Removes tasks matching given query, leaves tombstones of them and decreases sizes of tags of the unfinished ones
+     *
+     * @return number of removed tasks
+     */
+    private int removeTasks(String ownerId, DBObject query) {
+        List<String> tasksIdsToRemove = new ArrayList<>();
+        List<DBObject> unfinishedTasksToRemove = new ArrayList<>();
+        for (DBObject dbTask : tasksCollection.find("removeTasks", query, new BasicDBObject(TAGS_KEY, true).append(FINISHED_KEY, true))) {
+            tasksIdsToRemove.add(dbTask.get(ID_KEY).toString());
+            if (Boolean.FALSE.equals(dbTask.get(FINISHED_KEY))) {
+                unfinishedTasksToRemove.add(dbTask);
+            }
+        }
+        WriteResult result = tasksCollection.remove("removeTasks", query);
+        tombstoneDao.addTasks(ownerId, tasksIdsToRemove, new Date());
+        changeTagsSizes(unfinishedTasksToRemove, -1);
+        return result.getN();
     }
 
     public Task update(String ownerId, Task task) throws NonExistingResourceOperationException {
@@ -162,45 +322,385 @@ public class TaskDao {
         DBObject findByIdAndOwnerIdQuery = QueryBuilder.start(ID_KEY).is(new ObjectId(task.getId()))
                 .and(TaskDao.OWNER_ID_KEY).is(ownerId).get();
 
-        List<Tag> allUserTags = tagDao.getAllTagsByOwnerId(ownerId);
-        Set<String> tagsIdsForTask = getTagsIds(task.getTags(), allUserTags);
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+        Set<String> tagsIdsForTask = getTagsIds(task.getTags(), tagsDictionary);
         DBObject taskDbObject = BasicDBObjectBuilder.start(TITLE_KEY, task.getTitle())
                 .append(DESCRIPTION_KEY, task.getDescription())
                 .append(DUE_DATE_KEY, task.getDueDate())
                 .append(START_DATE_KEY, task.getStartDate())
                 .append(TAGS_KEY, tagsIdsForTask)
+                .append(MODIFIED_DATE_KEY, new Date())
                 .get();
 
-        DBObject dbTaskAfterUpdate = tasksCollection.findAndModify(findByIdAndOwnerIdQuery, null, null, false,
-                new BasicDBObject("$set", taskDbObject), true, false);
+        DBObject dbTaskBeforeUpdate = tasksCollection.findAndModify("update", findByIdAndOwnerIdQuery, null, null, false,
+                new BasicDBObject("$set", taskDbObject), false, false);
 
-        if (dbTaskAfterUpdate == null) {
+        if (dbTaskBeforeUpdate == null) {
             LOGGER.info("Task with id {} and ownerId {} not found in DB. Nothing has been updated.", task.getId(), ownerId);
             throw new NonExistingResourceOperationException("Task with id " + task.getId() + "and ownerId " + ownerId + " not found in DB");
         }
 
-        if (task.isFinished() != (boolean) dbTaskAfterUpdate.get(FINISHED_KEY)) {
+        boolean finishedBeforeUpdate = (boolean) dbTaskBeforeUpdate.get(FINISHED_KEY);
+        if (!finishedBeforeUpdate) {
+            Map<String, Integer> sizeChangesPerTag = new HashMap<>();
+            addTagsSizeChange(sizeChangesPerTag, (Collection<String>) dbTaskBeforeUpdate.get(TAGS_KEY), -1);
+            addTagsSizeChange(sizeChangesPerTag, tagsIdsForTask, 1);
+            tagDao.changeSizes(sizeChangesPerTag);
+        }
+
+        if (task.isFinished() != finishedBeforeUpdate) {
             changeTaskStatus(ownerId, task.getId(), task.isFinished());
         }
 
-        updateTagsIfConcurrentTagsModificationHappen(tagsIdsForTask, dbTaskAfterUpdate);
+        updateTagsIfConcurrentTagsModificationHappen(tagsIdsForTask, dbTaskBeforeUpdate);
+        dataVersionDao.increment(ownerId);
         return getTask(ownerId, task.getId());
     }
 
+    /**
+     * Updates tasks of the owner the way {@link #update(String, Task)} does, but with grouped writes: tags are resolved
+     * once, fields of all tasks are set with a single update command, statuses are changed with one update for all
+     * finished and one for all reopened tasks, and updated tasks are read once at the end. Tasks which cannot be
+     * updated do not stop update of the other ones. Tasks modified concurrently since they have been read are not
+     * updated and are reported as conflicts.
+     *
+     * @param ownerId owner of all the tasks
+     * @param tasks tasks to update, identified by their ids
+     * @return result for every task, in the order of given tasks
+     */
+    public List<BatchItemResult> updateAll(String ownerId, List<Task> tasks) {
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+
+        BatchItemResult[] results = new BatchItemResult[tasks.size()];
+        Map<ObjectId, Integer> indexesOfTasksToUpdate = new LinkedHashMap<>();
+        Map<ObjectId, Set<String>> tagsIdsOfTasksToUpdate = new HashMap<>();
+        for (int i = 0; i < tasks.size(); i++) {
+            Task task = tasks.get(i);
+            String taskId = task == null ? null : task.getId();
+            if (taskId == null || !ObjectId.isValid(taskId)) {
+                results[i] = BatchItemResult.failure(i, BatchItemResult.Status.NOT_FOUND, taskId, "Invalid task id");
+                continue;
+            }
+            try {
+                if (indexesOfTasksToUpdate.containsKey(new ObjectId(taskId))) {
+                    throw new UnsupportedDataOperationException("Task cannot be updated more than once in the batch");
+                }
+                if (task.getTitle() == null || task.getTitle().trim().isEmpty()) {
+                    throw new UnsupportedDataOperationException("Task title cannot be blank");
+                }
+                tagsIdsOfTasksToUpdate.put(new ObjectId(taskId), getTagsIds(task.getTags(), tagsDictionary));
+                indexesOfTasksToUpdate.put(new ObjectId(taskId), i);
+            } catch (UnsupportedDataOperationException e) {
+                results[i] = BatchItemResult.failure(i, BatchItemResult.Status.INVALID, taskId, e.getMessage());
+            }
+        }
+        if (indexesOfTasksToUpdate.isEmpty()) {
+            return Arrays.asList(results);
+        }
+
+        DBObject findByIdsAndOwnerIdQuery = QueryBuilder.start(ID_KEY).in(indexesOfTasksToUpdate.keySet())
+                .and(OWNER_ID_KEY).is(ownerId).get();
+        Map<ObjectId, DBObject> dbTasksBeforeUpdate = new HashMap<>();
+        for (DBObject dbTask : tasksCollection.find("updateAll", findByIdsAndOwnerIdQuery,
+                new BasicDBObject(TAGS_KEY, true).append(FINISHED_KEY, true).append(PATH_KEY, true))) {
+            dbTasksBeforeUpdate.put((ObjectId) dbTask.get(ID_KEY), dbTask);
+        }
+
+        Date modifiedDate = new Date();
+        List<DBObject> updateStatements = new ArrayList<>(dbTasksBeforeUpdate.size());
+        List<ObjectId> tasksIdsOfUpdateStatements = new ArrayList<>(dbTasksBeforeUpdate.size());
+        for (ObjectId taskId : indexesOfTasksToUpdate.keySet()) {
+            DBObject dbTaskBeforeUpdate = dbTasksBeforeUpdate.get(taskId);
+            if (dbTaskBeforeUpdate == null) {
+                continue;
+            }
+            Task task = tasks.get(indexesOfTasksToUpdate.get(taskId));
+            // tags sizes and status changes are computed from the state read before, so the update applies only to it
+            updateStatements.add(new BasicDBObject("q", new BasicDBObject(ID_KEY, taskId).append(OWNER_ID_KEY, ownerId)
+                    .append(TAGS_KEY, dbTaskBeforeUpdate.get(TAGS_KEY))
+                    .append(FINISHED_KEY, dbTaskBeforeUpdate.get(FINISHED_KEY)))
+                    .append("u", new BasicDBObject("$set", BasicDBObjectBuilder.start(TITLE_KEY, task.getTitle())
+                            .append(DESCRIPTION_KEY, task.getDescription())
+                            .append(DUE_DATE_KEY, task.getDueDate())
+                            .append(START_DATE_KEY, task.getStartDate())
+                            .append(TAGS_KEY, tagsIdsOfTasksToUpdate.get(taskId))
+                            .append(MODIFIED_DATE_KEY, modifiedDate)
+                            .get())));
+            tasksIdsOfUpdateStatements.add(taskId);
+        }
+
+        Map<ObjectId, BatchItemResult> failuresOfTasks = new HashMap<>();
+        if (!updateStatements.isEmpty()) {
+            failuresOfTasks = executeUpdateCommand(ownerId, updateStatements, tasksIdsOfUpdateStatements,
+                    indexesOfTasksToUpdate, modifiedDate);
+        }
+
+        List<ObjectId> updatedTasksIds = new ArrayList<>(tasksIdsOfUpdateStatements.size());
+        Map<String, Integer> sizeChangesPerTag = new HashMap<>();
+        Set<String> tagsIdsOfAllTasks = new HashSet<>();
+        List<ObjectId> tasksIdsToFinish = new ArrayList<>();
+        List<ObjectId> tasksIdsToReopen = new ArrayList<>();
+        Set<ObjectId> ancestorsIdsOfTasksToReopen = new HashSet<>();
+        for (ObjectId taskId : tasksIdsOfUpdateStatements) {
+            if (failuresOfTasks.containsKey(taskId)) {
+                continue;
+            }
+            updatedTasksIds.add(taskId);
+            DBObject dbTaskBeforeUpdate = dbTasksBeforeUpdate.get(taskId);
+            Task task = tasks.get(indexesOfTasksToUpdate.get(taskId));
+            Set<String> tagsIdsForTask = tagsIdsOfTasksToUpdate.get(taskId);
+            tagsIdsOfAllTasks.addAll(tagsIdsForTask);
+
+            boolean finishedBeforeUpdate = (boolean) dbTaskBeforeUpdate.get(FINISHED_KEY);
+            if (!finishedBeforeUpdate) {
+                addTagsSizeChange(sizeChangesPerTag, (Collection<String>) dbTaskBeforeUpdate.get(TAGS_KEY), -1);
+                addTagsSizeChange(sizeChangesPerTag, tagsIdsForTask, 1);
+            }
+            if (task.isFinished() && !finishedBeforeUpdate) {
+                tasksIdsToFinish.add(taskId);
+            } else if (!task.isFinished() && finishedBeforeUpdate) {
+                tasksIdsToReopen.add(taskId);
+                for (String ancestorId : (List<String>) dbTaskBeforeUpdate.get(PATH_KEY)) {
+                    ancestorsIdsOfTasksToReopen.add(new ObjectId(ancestorId));
+                }
+            }
+        }
+
+        if (!updatedTasksIds.isEmpty()) {
+            tagDao.changeSizes(sizeChangesPerTag);
+            finishTasks(ownerId, tasksIdsToFinish);
+            reopenTasks(ownerId, tasksIdsToReopen, ancestorsIdsOfTasksToReopen);
+            removeTagsRemovedConcurrently(new ArrayList<Object>(updatedTasksIds), tagsIdsOfAllTasks);
+            dataVersionDao.increment(ownerId);
+        }
+
+        Map<String, Task> updatedTasks = findTasksWithSubtasks(ownerId, updatedTasksIds, tagsDictionary);
+        for (Map.Entry<ObjectId, Integer> taskToUpdate : indexesOfTasksToUpdate.entrySet()) {
+            int index = taskToUpdate.getValue();
+            Task updatedTask = updatedTasks.get(taskToUpdate.getKey().toString());
+            if (failuresOfTasks.containsKey(taskToUpdate.getKey())) {
+                results[index] = failuresOfTasks.get(taskToUpdate.getKey());
+            } else if (updatedTask == null) {
+                results[index] = BatchItemResult.failure(index, BatchItemResult.Status.NOT_FOUND,
+                        taskToUpdate.getKey().toString(), "Task not found");
+            } else {
+                results[index] = BatchItemResult.success(index, BatchItemResult.Status.UPDATED, updatedTask);
+            }
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Sends all given update statements to DB in one unordered update command, so they are executed in a single round
+     * trip. Single update statement does not match more than one task. Update command reports only the total number
+     * of matched tasks, so when some statement has not matched its task, the tasks which have not been set given
+     * modified date are found to be modified concurrently.
+     *
+     * @return failures of tasks which have not been updated, by task id
+     */
+    private Map<ObjectId, BatchItemResult> executeUpdateCommand(String ownerId, List<DBObject> updateStatements,
+                                                                List<ObjectId> tasksIdsOfUpdateStatements,
+                                                                Map<ObjectId, Integer> indexesOfTasks, Date modifiedDate) {
+        CommandResult result = tasksCollection.command("executeUpdateCommand", new BasicDBObject("update", tasksCollection.getName())
+                .append("updates", updateStatements)
+                .append("ordered", false));
+        result.throwOnError();
+
+        Map<ObjectId, BatchItemResult> failuresOfTasks = new HashMap<>();
+        if (result.get("writeErrors") != null) {
+            LOGGER.warn("Some tasks of the batch have not been updated: {}", result.get("writeErrors"));
+            for (Object writeError : (List<?>) result.get("writeErrors")) {
+                ObjectId taskId = tasksIdsOfUpdateStatements.get(((Number) ((DBObject) writeError).get("index")).intValue());
+                failuresOfTasks.put(taskId, BatchItemResult.failure(indexesOfTasks.get(taskId),
+                        BatchItemResult.Status.FAILED, taskId.toString(), (String) ((DBObject) writeError).get("errmsg")));
+            }
+        }
+
+        int matchedCount = ((Number) result.get("n")).intValue();
+        if (matchedCount + failuresOfTasks.size() < updateStatements.size()) {
+            List<ObjectId> tasksIdsToCheck = new ArrayList<>(tasksIdsOfUpdateStatements);
+            tasksIdsToCheck.removeAll(failuresOfTasks.keySet());
+            Set<Object> updatedTasksIds = new HashSet<>();
+            for (DBObject dbTask : tasksCollection.find("executeUpdateCommand",
+                    QueryBuilder.start(ID_KEY).in(tasksIdsToCheck).and(OWNER_ID_KEY).is(ownerId)
+                            .and(MODIFIED_DATE_KEY).is(modifiedDate).get(), new BasicDBObject(ID_KEY, true))) {
+                updatedTasksIds.add(dbTask.get(ID_KEY));
+            }
+            for (ObjectId taskId : tasksIdsToCheck) {
+                if (!updatedTasksIds.contains(taskId)) {
+                    LOGGER.info("Task with id {} and ownerId {} has been modified concurrently. It has not been updated.",
+                            taskId, ownerId);
+                    failuresOfTasks.put(taskId, BatchItemResult.failure(indexesOfTasks.get(taskId),
+                            BatchItemResult.Status.CONFLICT, taskId.toString(), "Task has been modified concurrently"));
+                }
+            }
+        }
+        return failuresOfTasks;
+    }
+
+    private void finishTasks(String ownerId, List<ObjectId> tasksIds) {
+        if (tasksIds.isEmpty()) {
+            return;
+        }
+        List<String> tasksIdsStrings = new ArrayList<>(tasksIds.size());
+        for (ObjectId taskId : tasksIds) {
+            tasksIdsStrings.add(taskId.toString());
+        }
+        DBObject findTasksWithUnfinishedSubtasksQuery = QueryBuilder.start().or(
+                QueryBuilder.start(ID_KEY).in(tasksIds).and(OWNER_ID_KEY).is(ownerId).get(),
+                QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(PATH_KEY).in(tasksIdsStrings).and(FINISHED_KEY).is(false).get())
+                .get();
+        List<DBObject> tasksToFinish = findTasksTags(findTasksWithUnfinishedSubtasksQuery, false);
+        tasksCollection.update("finishTasks", findTasksWithUnfinishedSubtasksQuery,
+                new BasicDBObject("$set", new BasicDBObject(FINISHED_KEY, true).append(CLOSED_DATE_KEY, new Date())
+                        .append(MODIFIED_DATE_KEY, new Date())),
+                false, true);
+        changeTagsSizes(tasksToFinish, -1);
+    }
+
+    private void reopenTasks(String ownerId, List<ObjectId> tasksIds, Set<ObjectId> ancestorsIds) {
+        if (tasksIds.isEmpty()) {
+            return;
+        }
+        Set<ObjectId> tasksWithAncestorsIds = new HashSet<>(tasksIds);
+        tasksWithAncestorsIds.addAll(ancestorsIds);
+        DBObject findTasksWithAncestorsQuery = QueryBuilder.start(ID_KEY).in(tasksWithAncestorsIds)
+                .and(OWNER_ID_KEY).is(ownerId).get();
+        List<DBObject> tasksToReopen = findTasksTags(findTasksWithAncestorsQuery, true);
+        tasksCollection.update("reopenTasks", findTasksWithAncestorsQuery,
+                new BasicDBObject("$set", new BasicDBObject(FINISHED_KEY, false).append(CLOSED_DATE_KEY, null)
+                        .append(MODIFIED_DATE_KEY, new Date())),
+                false, true);
+        changeTagsSizes(tasksToReopen, 1);
+    }
+
+    /**
+     * Reads given tasks with their subtasks in a single query
+     *
+     * @return all read tasks, including subtasks, by their ids
+     */
+    private Map<String, Task> findTasksWithSubtasks(String ownerId, Collection<ObjectId> tasksIds, TagsDictionary tagsDictionary) {
+        Map<String, Task> tasksById = new HashMap<>();
+        if (tasksIds.isEmpty()) {
+            return tasksById;
+        }
+        List<String> tasksIdsStrings = new ArrayList<>(tasksIds.size());
+        for (ObjectId taskId : tasksIds) {
+            tasksIdsStrings.add(taskId.toString());
+        }
+        DBObject findTasksWithSubtasksQuery = QueryBuilder.start().or(
+                QueryBuilder.start(ID_KEY).in(tasksIds).and(OWNER_ID_KEY).is(ownerId).get(),
+                QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(PATH_KEY).in(tasksIdsStrings).get())
+                .get();
+        List<Task> topLevelTasks = dbTasksConverter.convertToTasksTree(tasksCollection.find("findTasksWithSubtasks", findTasksWithSubtasksQuery).toArray(),
+                tagsDictionary, true);
+        Deque<Task> tasksToIndex = new ArrayDeque<>(topLevelTasks);
+        while (!tasksToIndex.isEmpty()) {
+            Task task = tasksToIndex.pop();
+            tasksById.put(task.getId(), task);
+            tasksToIndex.addAll(task.getSubtasks());
+        }
+        return tasksById;
+    }
+
+    /**
+     * Removes tasks of the owner together with their subtasks the way {@link #remove(String, String)} does, but with
+     * a single query for existing tasks, a single read of tags of removed tasks and a single remove.
+     *
+     * @param ownerId owner of all the tasks
+     * @param tasksIds ids of tasks to remove
+     * @return result for every task id, in the order of given ids
+     */
+    public List<BatchItemResult> removeAll(String ownerId, List<String> tasksIds) {
+        BatchItemResult[] results = new BatchItemResult[tasksIds.size()];
+        Set<ObjectId> validTasksIds = new HashSet<>();
+        for (String taskId : tasksIds) {
+            if (taskId != null && ObjectId.isValid(taskId)) {
+                validTasksIds.add(new ObjectId(taskId));
+            }
+        }
+
+        Set<String> existingTasksIds = new HashSet<>();
+        if (!validTasksIds.isEmpty()) {
+            DBObject findByIdsAndOwnerIdQuery = QueryBuilder.start(ID_KEY).in(validTasksIds).and(OWNER_ID_KEY).is(ownerId).get();
+            for (DBObject dbTask : tasksCollection.find("removeAll", findByIdsAndOwnerIdQuery, new BasicDBObject(ID_KEY, true))) {
+                existingTasksIds.add(dbTask.get(ID_KEY).toString());
+            }
+        }
+
+        if (!existingTasksIds.isEmpty()) {
+            List<ObjectId> existingTasksObjectIds = new ArrayList<>(existingTasksIds.size());
+            for (String taskId : existingTasksIds) {
+                existingTasksObjectIds.add(new ObjectId(taskId));
+            }
+            DBObject findTasksWithSubtasksQuery = QueryBuilder.start().or(
+                    QueryBuilder.start(ID_KEY).in(existingTasksObjectIds).and(OWNER_ID_KEY).is(ownerId).get(),
+                    QueryBuilder.start(OWNER_ID_KEY).is(ownerId).and(PATH_KEY).in(existingTasksIds).get())
+                    .get();
+            removeTasks(ownerId, findTasksWithSubtasksQuery);
+            dataVersionDao.increment(ownerId);
+        }
+
+        for (int i = 0; i < tasksIds.size(); i++) {
+            String taskId = tasksIds.get(i);
+            results[i] = existingTasksIds.contains(taskId) ?
+                    BatchItemResult.success(i, BatchItemResult.Status.DELETED, taskId) :
+                    BatchItemResult.failure(i, BatchItemResult.Status.NOT_FOUND, taskId, "Task not found");
+        }
+        return Arrays.asList(results);
+    }
+
     private void changeTaskStatus(String ownerId, String taskId, boolean finished) {
         DBObject findByIdAndOwnerIdQuery = QueryBuilder.start(ID_KEY).is(new ObjectId(taskId)).and(TaskDao.OWNER_ID_KEY)
                 .is(ownerId).get();
         if (finished) {
-            tasksCollection.update(findTaskWithUnfinishedSubtasksQuery(ownerId, taskId),
-                    new BasicDBObject("$set", new BasicDBObject(FINISHED_KEY, true).append(CLOSED_DATE_KEY, new Date())),
+            DBObject findTaskWithUnfinishedSubtasksQuery = findTaskWithUnfinishedSubtasksQuery(ownerId, taskId);
+            List<DBObject> tasksToFinish = findTasksTags(findTaskWithUnfinishedSubtasksQuery, false);
+            tasksCollection.update("changeTaskStatus", findTaskWithUnfinishedSubtasksQuery,
+                    new BasicDBObject("$set", new BasicDBObject(FINISHED_KEY, true).append(CLOSED_DATE_KEY, new Date())
+                            .append(MODIFIED_DATE_KEY, new Date())),
                     false, true);
+            changeTagsSizes(tasksToFinish, -1);
         } else {
-            DBObject taskPathDb = tasksCollection.findOne(findByIdAndOwnerIdQuery, new BasicDBObject(PATH_KEY, true));
+            DBObject taskPathDb = tasksCollection.findOne("changeTaskStatus", findByIdAndOwnerIdQuery, new BasicDBObject(PATH_KEY, true));
             List<String> ancestorsIds = (List<String>) taskPathDb.get(PATH_KEY);
 
-            tasksCollection.update(findTaskWithAncestorsQuery(ownerId, taskId, ancestorsIds),
-                    new BasicDBObject("$set", new BasicDBObject(FINISHED_KEY, false).append(CLOSED_DATE_KEY, null)),
+            DBObject findTaskWithAncestorsQuery = findTaskWithAncestorsQuery(ownerId, taskId, ancestorsIds);
+            List<DBObject> tasksToReopen = findTasksTags(findTaskWithAncestorsQuery, true);
+            tasksCollection.update("changeTaskStatus", findTaskWithAncestorsQuery,
+                    new BasicDBObject("$set", new BasicDBObject(FINISHED_KEY, false).append(CLOSED_DATE_KEY, null)
+                            .append(MODIFIED_DATE_KEY, new Date())),
                     false, true);
+            changeTagsSizes(tasksToReopen, 1);
+        }
+    }
+
+    private List<DBObject> findTasksTags(DBObject query, boolean finished) {
+        DBCursor dbTasks = tasksCollection.find("findTasksTags", query, new BasicDBObject(TAGS_KEY, true).append(FINISHED_KEY, true));
+        List<DBObject> tasksWithGivenStatus = new ArrayList<>();
+        for (DBObject dbTask : dbTasks) {
+            if (Boolean.valueOf(finished).equals(dbTask.get(FINISHED_KEY))) {
+                tasksWithGivenStatus.add(dbTask);
+            }
+        }
+        return tasksWithGivenStatus;
+    }
+
+    private void changeTagsSizes(List<DBObject> dbTasks, int sizeChange) {
+        Map<String, Integer> sizeChangesPerTag = new HashMap<>();
+        for (DBObject dbTask : dbTasks) {
+            addTagsSizeChange(sizeChangesPerTag, (Collection<String>) dbTask.get(TAGS_KEY), sizeChange);
+        }
+        tagDao.changeSizes(sizeChangesPerTag);
+    }
+
+    private static void addTagsSizeChange(Map<String, Integer> sizeChangesPerTag, Collection<String> tagsIds, int sizeChange) {
+        if (tagsIds == null) {
+            return;
+        }
+        for (String tagId : tagsIds) {
+            Integer currentSizeChange = sizeChangesPerTag.get(tagId);
+            sizeChangesPerTag.put(tagId, (currentSizeChange == null ? 0 : currentSizeChange) + sizeChange);
         }
     }
 
@@ -229,8 +729,9 @@ public class TaskDao {
             LOGGER.info("Some tags have been removed in the time of processing task change/create (id={}). " +
                     "These tags will be removed from task: {}", dbTaskAfterUpdate.get(ID_KEY), tagsRemovedInTheMeanTime);
             tagsIdsForTask.removeAll(tagsRemovedInTheMeanTime);
-            return tasksCollection.findAndModify(findByIdQuery, null, null, false,
-                    new BasicDBObject("$set", new BasicDBObject(TAGS_KEY, tagsIdsForTask)), true, false);
+            return tasksCollection.findAndModify("updateTagsIfConcurrentTagsModificationHappen", findByIdQuery, null, null, false,
+                    new BasicDBObject("$set", new BasicDBObject(TAGS_KEY, tagsIdsForTask).append(MODIFIED_DATE_KEY, new Date())),
+                    true, false);
         }
         return dbTaskAfterUpdate;
     }
@@ -257,7 +758,8 @@ public class TaskDao {
 
         if (!allTasksExists(parentTaskPath)) {
             LOGGER.warn("Concurrent task hierarchy modification. Task with id {} and all its subtasks will be removed, because new parent task has been removed.", subtaskId);
-            tasksCollection.remove(findTaskWithSubtasksQuery(ownerId, subtaskId));
+            removeTasks(ownerId, findTaskWithSubtasksQuery(ownerId, subtaskId));
+            dataVersionDao.increment(ownerId);
             throw new ConcurrentTasksModificationException("Ascendants tasks have been removed when processing this request. " +
                     "Tasks have been removed to keep data consistent.");
         }
@@ -265,11 +767,12 @@ public class TaskDao {
         if (!parentTaskPath.equals(getPath(ownerId, parentId, true))) {
             LOGGER.warn("Concurrent task hierarchy modification. Task with id {} will be moved to top level, because new ancestors hierarchy has changed.", subtaskId);
             moveTaskWithSubtasksToTopLevel(ownerId, subtaskId);
+            dataVersionDao.increment(ownerId);
             throw new ConcurrentTasksModificationException("Ascendants tasks have been shuffled when processing this request. " +
                     "Task has been move to top-level to keep data consistent.");
         }
 
-
+        dataVersionDao.increment(ownerId);
         return getTask(ownerId, parentId);
     }
 
@@ -285,46 +788,100 @@ public class TaskDao {
             objectIds.add(new ObjectId(ancestorId));
         }
         DBObject findTasksByIdQuery = QueryBuilder.start(ID_KEY).in(objectIds).get();
-        return (tasksCollection.count(findTasksByIdQuery) == tasksIds.size());
+        return (tasksCollection.count("allTasksExists", findTasksByIdQuery) == tasksIds.size());
     }
 
     private void moveTaskWithSubtasksToNewPath(String ownerId, String taskId, List<String> newParentPath) {
-        BasicDBObject prependNewParentPath = new BasicDBObject("$push", new BasicDBObject(PATH_KEY, new BasicDBObject("$each", newParentPath).append("$position", 0)));
-        tasksCollection.update(findTaskWithSubtasksQuery(ownerId, taskId), prependNewParentPath, false, true);
+        BasicDBObject prependNewParentPath = new BasicDBObject("$push", new BasicDBObject(PATH_KEY, new BasicDBObject("$each", newParentPath).append("$position", 0)))
+                .append("$set", new BasicDBObject(MODIFIED_DATE_KEY, new Date()));
+        tasksCollection.update("moveTaskWithSubtasksToNewPath", findTaskWithSubtasksQuery(ownerId, taskId), prependNewParentPath, false, true);
     }
 
     private void moveTaskWithSubtasksToTopLevel(String ownerId, String taskId) throws NonExistingResourceOperationException {
         DBObject findSubtaskWithItsSubtasksQuery = findTaskWithSubtasksQuery(ownerId, taskId);
         List<String> previousTaskPath = getPath(ownerId, taskId, false);
-        BasicDBObject removeHigherLevelTasksFromPath = new BasicDBObject("$pullAll", new BasicDBObject(PATH_KEY, previousTaskPath));
-        tasksCollection.update(findSubtaskWithItsSubtasksQuery, removeHigherLevelTasksFromPath, false, true);
+        BasicDBObject removeHigherLevelTasksFromPath = new BasicDBObject("$pullAll", new BasicDBObject(PATH_KEY, previousTaskPath))
+                .append("$set", new BasicDBObject(MODIFIED_DATE_KEY, new Date()));
+        tasksCollection.update("moveTaskWithSubtasksToTopLevel", findSubtaskWithItsSubtasksQuery, removeHigherLevelTasksFromPath, false, true);
     }
 
     private boolean taskDoesNotExistInDb(String ownerId, String taskId) {
         DBObject findTaskByIdAndOwnerIdQuery = QueryBuilder.start(ID_KEY).is(new ObjectId(taskId))
                 .and(TaskDao.OWNER_ID_KEY).is(ownerId).get();
-        return tasksCollection.count(findTaskByIdAndOwnerIdQuery) == 0;
+        return tasksCollection.count("taskDoesNotExistInDb", findTaskByIdAndOwnerIdQuery) == 0;
     }
 
     private Task getTask(String ownerId, String taskId) throws NonExistingResourceOperationException {
         DBObject findTaskWithSubtasks = QueryBuilder.start().or(new BasicDBObject(ID_KEY, new ObjectId(taskId)),
                 new BasicDBObject(PATH_KEY, taskId)).get();
-        DBCursor dbTasks = tasksCollection.find(findTaskWithSubtasks);
+        DBCursor dbTasks = tasksCollection.find("getTask", findTaskWithSubtasks);
         if (dbTasks.count() == 0) {
             throw new NonExistingResourceOperationException("Task with id: " + taskId + " does not exists for customer with id: " + ownerId);
         }
-        Collection<Task> tasks = dbTasksConverter.convertToTasksTree(dbTasks.toArray(), tagDao.getAllTagsByOwnerId(ownerId), true);
+        Collection<Task> tasks = dbTasksConverter.convertToTasksTree(dbTasks.toArray(), tagDao.getTagsDictionary(ownerId), true);
 
         return tasks.iterator().next();
     }
 
     public Task moveToTopLevel(String ownerId, String taskId) throws NonExistingResourceOperationException {
         moveTaskWithSubtasksToTopLevel(ownerId, taskId);
+        dataVersionDao.increment(ownerId);
         return getTask(ownerId, taskId);
     }
 
 
+    /**
+     * Finds tasks and tags modified and tasks and tags removed since given checkpoint. Reads changes from
+     * {@value #CHANGES_OVERLAP_MILLIS} ms before the checkpoint, so some of the changes may have been already returned.
+     *
+     * @param ownerId owner of the tasks
+     * @param since checkpoint of the previously read changes (milliseconds since epoch)
+     * @return changes with the checkpoint to read the following changes from
+     * @throws ExpiredCheckpointException when tombstones of tasks removed since the checkpoint may have already expired,
+     * so all tasks have to be read again
+     */
+    public TasksChanges findChangesSince(String ownerId, long since) throws ExpiredCheckpointException {
+        long checkpoint = System.currentTimeMillis();
+        Date changedSince = new Date(since - CHANGES_OVERLAP_MILLIS);
+        if (changedSince.before(tombstoneDao.getRetentionStart())) {
+            LOGGER.info("Changes of tasks of user {} requested since expired checkpoint {}", ownerId, since);
+            throw new ExpiredCheckpointException("Changes since " + since + " are not known anymore");
+        }
+
+        DBObject queryByOwnerModifiedSince = QueryBuilder.start(OWNER_ID_KEY).is(ownerId)
+                .and(MODIFIED_DATE_KEY).greaterThanEquals(changedSince).get();
+        List<DBObject> dbTasks = tasksCollection.find("findChangesSince", queryByOwnerModifiedSince).toArray();
+        List<Task> tasks = dbTasksConverter.convertToFlatTasksList(dbTasks, tagDao.getTagsDictionary(ownerId));
+        List<TaskChange> changedTasks = new ArrayList<>(tasks.size());
+        for (int i = 0; i < tasks.size(); i++) {
+            List<String> path = (List<String>) dbTasks.get(i).get(PATH_KEY);
+            changedTasks.add(new TaskChange(tasks.get(i), path.isEmpty() ? null : path.get(path.size() - 1)));
+        }
+
+        Map<String, Set<String>> removedIdsPerType = tombstoneDao.findRemovedSince(ownerId, changedSince);
+        return new TasksChanges(checkpoint, changedTasks, tagDao.findModifiedSince(ownerId, changedSince),
+                removedIdsPerType.get(TombstoneDao.TASK_TYPE), removedIdsPerType.get(TombstoneDao.TAG_TYPE));
+    }
+
     public Collection<Task> findFinishedByOwnerAndClosedBetween(String ownerId, DateTime startRange, DateTime endRange) {
+        DBCursor dbTasks = findFinishedByOwnerAndClosedBetweenCursor(ownerId, startRange, endRange, TaskProjection.ALL);
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+
+        return dbTasksConverter.convertToFlatTasksList(dbTasks.toArray(), tagsDictionary);
+    }
+
+    public TasksCursor streamFinishedByOwnerAndClosedBetween(String ownerId, DateTime startRange, DateTime endRange) {
+        return streamFinishedByOwnerAndClosedBetween(ownerId, startRange, endRange, TaskProjection.ALL);
+    }
+
+    public TasksCursor streamFinishedByOwnerAndClosedBetween(String ownerId, DateTime startRange, DateTime endRange,
+                                                             TaskProjection projection) {
+        return new FlatTasksCursor(findFinishedByOwnerAndClosedBetweenCursor(ownerId, startRange, endRange, projection),
+                dbTasksConverter, tagDao.getTagsDictionary(ownerId));
+    }
+
+    private DBCursor findFinishedByOwnerAndClosedBetweenCursor(String ownerId, DateTime startRange, DateTime endRange,
+                                                               TaskProjection projection) {
         QueryBuilder queryByOwnerAndFinishedAndClosedBetweenBuilder = QueryBuilder
                 .start(OWNER_ID_KEY).is(ownerId)
                 .and(FINISHED_KEY).is(true);
@@ -337,24 +894,137 @@ public class TaskDao {
         }
 
         DBObject queryByOwnerAndFinishedAndClosedBetween = queryByOwnerAndFinishedAndClosedBetweenBuilder.get();
-        DBCursor dbTasks = tasksCollection.find(queryByOwnerAndFinishedAndClosedBetween).sort(new BasicDBObject(CLOSED_DATE_KEY, -1));
-        List<Tag> allUserTags = tagDao.getAllTagsByOwnerId(ownerId);
+        return tasksCollection.find("findFinishedByOwnerAndClosedBetween", queryByOwnerAndFinishedAndClosedBetween, projection.toDbProjection()).sort(new BasicDBObject(CLOSED_DATE_KEY, -1));
+    }
 
-        return dbTasksConverter.convertToFlatTasksList(dbTasks.toArray(), allUserTags);
+    /**
+     * Returns page of finished tasks ordered by closed date, starting after the task given continuation token points at.
+     * Unlike offset paging, cost of reading a page does not depend on its position.
+     *
+     * @param ownerId owner of the tasks
+     * @param continuationToken token of the last task of the previous page or null to read the first page
+     * @param limit maximum number of tasks on the page
+     * @return flat list of finished tasks
+     */
+    public List<Task> findFinished(String ownerId, ContinuationToken continuationToken, int limit) {
+        return findFinished(ownerId, null, null, continuationToken, limit, TaskProjection.ALL);
+    }
+
+    /**
+     * Returns page of finished tasks closed in given range, ordered by closed date, starting after the task given
+     * continuation token points at. Tasks without closed date are returned only when no range is given.
+     *
+     * @param ownerId owner of the tasks
+     * @param closedDateAfter lower inclusive bound of closed date or null
+     * @param closedDateBefore upper inclusive bound of closed date or null
+     * @param continuationToken token of the last task of the previous page or null to read the first page
+     * @param limit maximum number of tasks on the page
+     * @param projection fields of tasks to read
+     * @return flat list of finished tasks
+     */
+    public List<Task> findFinished(String ownerId, DateTime closedDateAfter, DateTime closedDateBefore,
+                                   ContinuationToken continuationToken, int limit, TaskProjection projection) {
+        BasicDBObject closedDateRange = closedDateBetween(closedDateAfter, closedDateBefore);
+        DBObject query = continuationToken == null
+                ? queryFinishedByOwnerClosedIn(ownerId, closedDateRange)
+                : queryFinishedByOwnerClosedInAfter(ownerId, closedDateRange, continuationToken);
+
+        DBCursor dbTasks = tasksCollection.find("findFinished", query, projection.toDbProjection())
+                .sort(new BasicDBObject(CLOSED_DATE_KEY, -1).append(ID_KEY, -1))
+                .limit(limit);
+
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+        return dbTasksConverter.convertToFlatTasksList(dbTasks.toArray(), tagsDictionary);
+    }
+
+    private static BasicDBObject closedDateBetween(DateTime closedDateAfter, DateTime closedDateBefore) {
+        if (closedDateAfter == null && closedDateBefore == null) {
+            return null;
+        }
+        BasicDBObject closedDateRange = new BasicDBObject();
+        if (closedDateAfter != null) {
+            closedDateRange.append("$gte", closedDateAfter.toDate());
+        }
+        if (closedDateBefore != null) {
+            closedDateRange.append("$lte", closedDateBefore.toDate());
+        }
+        return closedDateRange;
+    }
+
+    private BasicDBObject queryFinishedByOwner(String ownerId) {
+        return new BasicDBObject(OWNER_ID_KEY, ownerId).append(FINISHED_KEY, true);
+    }
+
+    private BasicDBObject queryFinishedByOwnerClosedIn(String ownerId, BasicDBObject closedDateRange) {
+        BasicDBObject query = queryFinishedByOwner(ownerId);
+        if (closedDateRange != null) {
+            query.append(CLOSED_DATE_KEY, closedDateRange);
+        }
+        return query;
+    }
+
+    /**
+     * Every alternative repeats owner, finished and closed date range conditions, so each of them is bounded by the
+     * index on owner, finished, closed date and id instead of scanning all finished tasks of the owner.
+     */
+    private DBObject queryFinishedByOwnerClosedInAfter(String ownerId, BasicDBObject closedDateRange,
+                                                       ContinuationToken continuationToken) {
+        // tasks without closed date are the last ones in descending order
+        DBObject queryWithoutClosedDateAndIdLower = queryFinishedByOwner(ownerId)
+                .append(CLOSED_DATE_KEY, closedDateEquals(closedDateRange, null))
+                .append(ID_KEY, new BasicDBObject("$lt", continuationToken.getTaskId()));
+        if (continuationToken.getClosedDate() == null) {
+            return queryWithoutClosedDateAndIdLower;
+        }
+        return QueryBuilder.start().or(
+                queryFinishedByOwner(ownerId).append(CLOSED_DATE_KEY,
+                        closedDateLowerThan(closedDateRange, continuationToken.getClosedDate())),
+                queryFinishedByOwner(ownerId).append(CLOSED_DATE_KEY,
+                        closedDateEquals(closedDateRange, continuationToken.getClosedDate()))
+                        .append(ID_KEY, new BasicDBObject("$lt", continuationToken.getTaskId())),
+                queryFinishedByOwner(ownerId).append(CLOSED_DATE_KEY,
+                        closedDateEquals(closedDateRange, null))).get();
+    }
+
+    private static Object closedDateEquals(BasicDBObject closedDateRange, Date closedDate) {
+        if (closedDateRange == null) {
+            return closedDate;
+        }
+        // both conditions have to apply to the same key; tasks without closed date are never in a range
+        return new BasicDBObject(closedDateRange.toMap()).append("$in", Collections.singletonList(closedDate));
+    }
+
+    private static BasicDBObject closedDateLowerThan(BasicDBObject closedDateRange, Date closedDate) {
+        BasicDBObject closedDateCondition = closedDateRange == null
+                ? new BasicDBObject()
+                : new BasicDBObject(closedDateRange.toMap());
+        return closedDateCondition.append("$lt", closedDate);
     }
 
     public Collection<Task> findFinished(String ownerId, int offset, int limit) {
+        DBCursor dbTasks = findFinishedCursor(ownerId, offset, limit, TaskProjection.ALL);
+        TagsDictionary tagsDictionary = tagDao.getTagsDictionary(ownerId);
+        return dbTasksConverter.convertToFlatTasksList(dbTasks.toArray(), tagsDictionary);
+    }
+
+    public TasksCursor streamFinished(String ownerId, int offset, int limit) {
+        return streamFinished(ownerId, offset, limit, TaskProjection.ALL);
+    }
+
+    public TasksCursor streamFinished(String ownerId, int offset, int limit, TaskProjection projection) {
+        return new FlatTasksCursor(findFinishedCursor(ownerId, offset, limit, projection), dbTasksConverter,
+                tagDao.getTagsDictionary(ownerId));
+    }
+
+    private DBCursor findFinishedCursor(String ownerId, int offset, int limit, TaskProjection projection) {
         DBObject queryByOwnerAndFinished = QueryBuilder
                 .start(OWNER_ID_KEY).is(ownerId)
                 .and(FINISHED_KEY).is(true)
                 .get();
 
-        DBCursor dbTasks = tasksCollection.find(queryByOwnerAndFinished)
+        return tasksCollection.find("findFinished", queryByOwnerAndFinished, projection.toDbProjection())
                 .skip(offset)
                 .limit(limit)
                 .sort(new BasicDBObject(CLOSED_DATE_KEY, -1));
-
-        List<Tag> allUserTags = tagDao.getAllTagsByOwnerId(ownerId);
-        return dbTasksConverter.convertToFlatTasksList(dbTasks.toArray(), allUserTags);
     }
 }
@@ -0,0 +1,131 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Fields of tasks requested by the client, given as comma separated JSON properties of tasks, e.g.
+ * "title,finished,tags.id". Fields of tags are given as "tags.&lt;property&gt;", plain "tags" means whole tags. Id and
+ * subtasks of tasks are always included, as they are needed to identify tasks and to build tasks trees.
+ */
+public class TaskProjection {
+
+    public static final TaskProjection ALL = new TaskProjection(null, null);
+
+    private static final Map<String, String> DB_KEYS_OF_TASK_FIELDS = new HashMap<>();
+    private static final Set<String> ALWAYS_INCLUDED_TASK_FIELDS = new HashSet<>(Arrays.asList("id", "subtasks"));
+    private static final Set<String> TAG_FIELDS = new HashSet<>(Arrays.asList("id", "ownerId", "name", "color", "size",
+            "visibleInWorkView"));
+    private static final String TAG_FIELD_PREFIX = "tags.";
+
+    static {
+        DB_KEYS_OF_TASK_FIELDS.put("title", TaskDao.TITLE_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("description", TaskDao.DESCRIPTION_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("finished", TaskDao.FINISHED_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("tags", TaskDao.TAGS_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("createdDate", TaskDao.CREATED_DATE_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("closedDate", TaskDao.CLOSED_DATE_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("startDate", TaskDao.START_DATE_KEY);
+        DB_KEYS_OF_TASK_FIELDS.put("dueDate", TaskDao.DUE_DATE_KEY);
+    }
+
+    private final Set<String> taskFields;
+    private final Set<String> tagFields;
+
+    private TaskProjection(Set<String> taskFields, Set<String> tagFields) {
+        this.taskFields = taskFields;
+        this.tagFields = tagFields;
+    }
+
+    /**
+     * @param fields comma separated fields or null to include all fields
+     * @return projection including given fields
+     * @throws IllegalArgumentException when unknown field is given
+     */
+    public static TaskProjection parse(String fields) {
+        if (fields == null || fields.trim().isEmpty()) {
+            return ALL;
+        }
+        Set<String> taskFields = new LinkedHashSet<>(ALWAYS_INCLUDED_TASK_FIELDS);
+        Set<String> tagFields = new LinkedHashSet<>();
+        boolean allTagFields = false;
+        for (String field : fields.split(",")) {
+            String trimmedField = field.trim();
+            if (trimmedField.startsWith(TAG_FIELD_PREFIX)) {
+                String tagField = trimmedField.substring(TAG_FIELD_PREFIX.length());
+                if (!TAG_FIELDS.contains(tagField)) {
+                    throw new IllegalArgumentException("Unknown field of tags: " + tagField);
+                }
+                tagFields.add(tagField);
+                taskFields.add("tags");
+            } else if (DB_KEYS_OF_TASK_FIELDS.containsKey(trimmedField) || ALWAYS_INCLUDED_TASK_FIELDS.contains(trimmedField)) {
+                allTagFields |= trimmedField.equals("tags");
+                taskFields.add(trimmedField);
+            } else {
+                throw new IllegalArgumentException("Unknown field of tasks: " + trimmedField);
+            }
+        }
+        return new TaskProjection(Collections.unmodifiableSet(taskFields),
+                allTagFields ? null : Collections.unmodifiableSet(tagFields));
+    }
+
+    public boolean includesAllTaskFields() {
+        return taskFields == null;
+    }
+
+    public boolean includesAllTagFields() {
+        return tagFields == null;
+    }
+
+    /**
+     * @return JSON properties of tasks to include, not defined when all fields are included
+     */
+    public Set<String> getTaskFields() {
+        return taskFields;
+    }
+
+    /**
+     * @return JSON properties of tags to include, not defined when all fields are included
+     */
+    public Set<String> getTagFields() {
+        return tagFields;
+    }
+
+    /**
+     * Keys of DB tasks to read. Besides requested fields, owner and path are needed to convert and assemble tasks,
+     * title and created date are required to build a task and closed date to continue paging of finished tasks.
+     *
+     * @return projection of DB query or null when all fields are included
+     */
+    DBObject toDbProjection() {
+        if (includesAllTaskFields()) {
+            return null;
+        }
+        BasicDBObject dbProjection = new BasicDBObject(TaskDao.ID_KEY, 1)
+                .append(TaskDao.OWNER_ID_KEY, 1)
+                .append(TaskDao.PATH_KEY, 1)
+                .append(TaskDao.TITLE_KEY, 1)
+                .append(TaskDao.CREATED_DATE_KEY, 1)
+                .append(TaskDao.CLOSED_DATE_KEY, 1);
+        for (String taskField : taskFields) {
+            String dbKey = DB_KEYS_OF_TASK_FIELDS.get(taskField);
+            if (dbKey != null) {
+                dbProjection.append(dbKey, 1);
+            }
+        }
+        return dbProjection;
+    }
+
+    @Override
+    public String toString() {
+        return includesAllTaskFields() ? "all fields" : taskFields + " with tags " + (includesAllTagFields() ? "all fields" : tagFields);
+    }
+}
@@ -0,0 +1,16 @@
+package com.taskroo.data;
+
+import com.taskroo.domain.Task;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * Iterates over tasks read from DB cursor, converting them on demand, so tasks do not have to be loaded into memory
+ * all at once. Has to be closed when not iterated to the end.
+ */
+public interface TasksCursor extends Iterator<Task>, Closeable {
+
+    @Override
+    void close();
+}
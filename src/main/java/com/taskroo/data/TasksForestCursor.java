@@ -0,0 +1,124 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.QueryBuilder;
+import com.taskroo.domain.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Tasks cursor of tasks trees read for a number of roots at once. Used when tasks cannot be read as subtasks of top
+ * level tasks matching the query, because ancestors of some of them do not match it, e.g. unfinished subtasks of
+ * finished tasks. Roots are read from given DB cursor whether they match the query or not. Tasks matching the query
+ * in the trees of a batch of roots are assembled together, and those whose parent has not been read become top level
+ * tasks, as in {@link DbTasksConverter#convertToTasksTree(List, TagsDictionary, boolean)}. Only one batch of tasks is
+ * held in memory at once.
+ */
+class TasksForestCursor implements TasksCursor {
+
+    private final DBCursor rootsDbCursor;
+    private final InstrumentedCollection tasksCollection;
+    private final DBObject tasksQuery;
+    private final DBObject dbProjection;
+    private final int batchSize;
+    private final DbTasksConverter dbTasksConverter;
+    private final TagsDictionary tagsDictionary;
+
+    private Iterator<Task> currentBatch = Collections.<Task>emptyList().iterator();
+
+    /**
+     * @param rootsDbCursor cursor of roots of tasks trees, only their ids are used
+     * @param tasksQuery query for tasks which will be extended with root condition
+     * @param dbProjection keys of tasks to read, null to read whole tasks
+     * @param batchSize number of roots to read tasks for at once
+     */
+    TasksForestCursor(DBCursor rootsDbCursor, InstrumentedCollection tasksCollection, DBObject tasksQuery,
+                      DBObject dbProjection, int batchSize, DbTasksConverter dbTasksConverter,
+                      TagsDictionary tagsDictionary) {
+        this.rootsDbCursor = rootsDbCursor;
+        this.tasksCollection = tasksCollection;
+        this.tasksQuery = tasksQuery;
+        this.dbProjection = dbProjection;
+        this.batchSize = batchSize;
+        this.dbTasksConverter = dbTasksConverter;
+        this.tagsDictionary = tagsDictionary;
+    }
+
+    @Override
+    public boolean hasNext() {
+        // trees without tasks matching the query give empty batches
+        while (!currentBatch.hasNext() && rootsDbCursor.hasNext()) {
+            currentBatch = readNextBatch();
+        }
+        return currentBatch.hasNext();
+    }
+
+    @Override
+    public Task next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentBatch.next();
+    }
+
+    private Iterator<Task> readNextBatch() {
+        List<Object> rootsIds = new ArrayList<>(batchSize);
+        List<String> rootsIdsStrings = new ArrayList<>(batchSize);
+        while (rootsDbCursor.hasNext() && rootsIds.size() < batchSize) {
+            Object rootId = rootsDbCursor.next().get(TaskDao.ID_KEY);
+            rootsIds.add(rootId);
+            rootsIdsStrings.add(rootId.toString());
+        }
+
+        // every alternative repeats the query, so each of them is bounded by an index
+        DBObject tasksOfBatchQuery = QueryBuilder.start().or(
+                new BasicDBObject(tasksQuery.toMap()).append(TaskDao.ID_KEY, new BasicDBObject("$in", rootsIds)),
+                new BasicDBObject(tasksQuery.toMap()).append(TaskDao.PATH_KEY, new BasicDBObject("$in", rootsIdsStrings)))
+                .get();
+        Set<String> rootsIdsSet = new HashSet<>(rootsIdsStrings);
+        Map<String, DBObject> dbRoots = new HashMap<>();
+        List<DBObject> dbTasks = new ArrayList<>();
+        DBCursor dbTasksOfBatch = tasksCollection.find("streamTasksOfRoots", tasksOfBatchQuery, dbProjection);
+        try {
+            for (DBObject dbTask : dbTasksOfBatch) {
+                String taskId = dbTask.get(TaskDao.ID_KEY).toString();
+                if (rootsIdsSet.contains(taskId)) {
+                    dbRoots.put(taskId, dbTask);
+                } else {
+                    dbTasks.add(dbTask);
+                }
+            }
+        } finally {
+            dbTasksOfBatch.close();
+        }
+        // roots keep the order of roots cursor
+        List<DBObject> orderedDbTasks = new ArrayList<>(dbRoots.size() + dbTasks.size());
+        for (String rootId : rootsIdsStrings) {
+            if (dbRoots.containsKey(rootId)) {
+                orderedDbTasks.add(dbRoots.get(rootId));
+            }
+        }
+        orderedDbTasks.addAll(dbTasks);
+        return dbTasksConverter.convertToTasksTree(orderedDbTasks, tagsDictionary, true).iterator();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Tasks cannot be removed using tasks cursor");
+    }
+
+    @Override
+    public void close() {
+        rootsDbCursor.close();
+    }
+}
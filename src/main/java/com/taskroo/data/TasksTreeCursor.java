@@ -0,0 +1,100 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.taskroo.domain.Task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Tasks cursor of top level tasks with their whole subtasks trees. Top level tasks are read from given DB cursor,
+ * subtasks are read in batches, for a number of top level tasks at once.
+ */
+class TasksTreeCursor implements TasksCursor {
+
+    private final DBCursor topLevelTasksDbCursor;
+    private final InstrumentedCollection tasksCollection;
+    private final DBObject subtasksQuery;
+    private final DBObject subtasksSort;
+    private final DBObject dbProjection;
+    private final int batchSize;
+    private final DbTasksConverter dbTasksConverter;
+    private final TagsDictionary tagsDictionary;
+
+    private Iterator<Task> currentBatch = Collections.<Task>emptyList().iterator();
+
+    /**
+     * @param topLevelTasksDbCursor cursor of top level tasks
+     * @param tasksCollection collection to read subtasks from
+     * @param subtasksQuery query for subtasks which will be extended with path condition
+     * @param subtasksSort sort of subtasks, same as sort of top level tasks
+     * @param dbProjection keys of subtasks to read, same as keys of top level tasks, null to read whole subtasks
+     * @param batchSize number of top level tasks to read subtasks for at once
+     */
+    TasksTreeCursor(DBCursor topLevelTasksDbCursor, InstrumentedCollection tasksCollection, DBObject subtasksQuery,
+                    DBObject subtasksSort, DBObject dbProjection, int batchSize, DbTasksConverter dbTasksConverter,
+                    TagsDictionary tagsDictionary) {
+        this.topLevelTasksDbCursor = topLevelTasksDbCursor;
+        this.tasksCollection = tasksCollection;
+        this.subtasksQuery = subtasksQuery;
+        this.subtasksSort = subtasksSort;
+        this.dbProjection = dbProjection;
+        this.batchSize = batchSize;
+        this.dbTasksConverter = dbTasksConverter;
+        this.tagsDictionary = tagsDictionary;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!currentBatch.hasNext() && topLevelTasksDbCursor.hasNext()) {
+            currentBatch = readNextBatch();
+        }
+        return currentBatch.hasNext();
+    }
+
+    @Override
+    public Task next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return currentBatch.next();
+    }
+
+    private Iterator<Task> readNextBatch() {
+        List<DBObject> dbTasks = new ArrayList<>();
+        List<String> topLevelTasksIds = new ArrayList<>(batchSize);
+        while (topLevelTasksDbCursor.hasNext() && topLevelTasksIds.size() < batchSize) {
+            DBObject dbTopLevelTask = topLevelTasksDbCursor.next();
+            dbTasks.add(dbTopLevelTask);
+            topLevelTasksIds.add(dbTopLevelTask.get(TaskDao.ID_KEY).toString());
+        }
+
+        DBObject subtasksOfBatchQuery = new BasicDBObject(subtasksQuery.toMap())
+                .append(TaskDao.PATH_KEY, new BasicDBObject("$in", topLevelTasksIds));
+        DBCursor dbSubtasks = tasksCollection.find("streamSubtasks", subtasksOfBatchQuery, dbProjection).sort(subtasksSort);
+        try {
+            for (DBObject dbSubtask : dbSubtasks) {
+                dbTasks.add(dbSubtask);
+            }
+        } finally {
+            dbSubtasks.close();
+        }
+        // subtasks which parent has not been read (finished parent of unfinished subtask) become top level tasks
+        return dbTasksConverter.convertToTasksTree(dbTasks, tagsDictionary, true).iterator();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException("Tasks cannot be removed using tasks cursor");
+    }
+
+    @Override
+    public void close() {
+        topLevelTasksDbCursor.close();
+    }
+}
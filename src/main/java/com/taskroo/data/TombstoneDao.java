@@ -0,0 +1,88 @@
+package com.taskroo.data;
+
+import com.mongodb.BasicDBObjectBuilder;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.QueryBuilder;
+import org.springframework.stereotype.Repository;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records ids of removed tasks and tags, so clients synchronizing changes can remove them too. Tombstones are kept
+ * for the retention period only and are removed by TTL index afterwards.
+ */
+@Repository
+public class TombstoneDao {
+
+    public static final String OWNER_ID_KEY = "owner_id";
+    public static final String TYPE_KEY = "type";
+    public static final String REMOVED_ID_KEY = "removed_id";
+    public static final String REMOVED_DATE_KEY = "removed_date";
+
+    static final String TASK_TYPE = "task";
+    static final String TAG_TYPE = "tag";
+
+    private final InstrumentedCollection tombstonesCollection;
+    private final long retentionMillis;
+
+    @Inject
+    public TombstoneDao(DBCollection tombstonesCollection, @Named("tombstonesRetentionDays") Integer retentionDays,
+                        MongoOperationMetrics mongoOperationMetrics) {
+        this.tombstonesCollection = new InstrumentedCollection(tombstonesCollection, "TombstoneDao",
+                mongoOperationMetrics);
+        this.retentionMillis = TimeUnit.DAYS.toMillis(retentionDays);
+    }
+
+    void addTasks(String ownerId, Collection<String> removedTasksIds, Date removedDate) {
+        add(ownerId, TASK_TYPE, removedTasksIds, removedDate);
+    }
+
+    void addTag(String ownerId, String removedTagId, Date removedDate) {
+        add(ownerId, TAG_TYPE, Collections.singleton(removedTagId), removedDate);
+    }
+
+    private void add(String ownerId, String type, Collection<String> removedIds, Date removedDate) {
+        if (removedIds.isEmpty()) {
+            return;
+        }
+        List<DBObject> tombstones = new ArrayList<>(removedIds.size());
+        for (String removedId : removedIds) {
+            tombstones.add(BasicDBObjectBuilder.start(OWNER_ID_KEY, ownerId)
+                    .append(TYPE_KEY, type)
+                    .append(REMOVED_ID_KEY, removedId)
+                    .append(REMOVED_DATE_KEY, removedDate)
+                    .get());
+        }
+        tombstonesCollection.insert("add", tombstones);
+    }
+
+    /**
+     * @return ids of removed tasks and tags of the owner, by type of removed item ({@value #TASK_TYPE} or
+     * {@value #TAG_TYPE})
+     */
+    Map<String, Set<String>> findRemovedSince(String ownerId, Date since) {
+        Map<String, Set<String>> removedIdsPerType = new HashMap<>();
+        removedIdsPerType.put(TASK_TYPE, new HashSet<String>());
+        removedIdsPerType.put(TAG_TYPE, new HashSet<String>());
+        DBObject queryByOwnerRemovedSince = QueryBuilder.start(OWNER_ID_KEY).is(ownerId)
+                .and(REMOVED_DATE_KEY).greaterThanEquals(since).get();
+        for (DBObject tombstone : tombstonesCollection.find("findRemovedSince", queryByOwnerRemovedSince)) {
+            Set<String> removedIds = removedIdsPerType.get(tombstone.get(TYPE_KEY));
+            if (removedIds != null) {
+                removedIds.add((String) tombstone.get(REMOVED_ID_KEY));
+            }
+        }
+        return removedIdsPerType;
+    }
+
+    /**
+     * @return the oldest date since which all removals are still known
+     */
+    public Date getRetentionStart() {
+        return new Date(System.currentTimeMillis() - retentionMillis);
+    }
+}
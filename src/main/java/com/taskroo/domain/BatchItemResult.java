@@ -0,0 +1,62 @@
+package com.taskroo.domain;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.Objects;
+
+/**
+ * Result of a single item of a batch operation on tasks. Items are identified by their index in the batch request.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchItemResult {
+
+    public enum Status {
+        CREATED, UPDATED, DELETED, INVALID, NOT_FOUND, CONFLICT, FAILED
+    }
+
+    private final int index;
+    private final Status status;
+    private final String taskId;
+    private final Task task;
+    private final String error;
+
+    private BatchItemResult(int index, Status status, String taskId, Task task, String error) {
+        this.index = index;
+        this.status = Objects.requireNonNull(status);
+        this.taskId = taskId;
+        this.task = task;
+        this.error = error;
+    }
+
+    public static BatchItemResult success(int index, Status status, Task task) {
+        return new BatchItemResult(index, status, task.getId(), task, null);
+    }
+
+    public static BatchItemResult success(int index, Status status, String taskId) {
+        return new BatchItemResult(index, status, taskId, null, null);
+    }
+
+    public static BatchItemResult failure(int index, Status status, String taskId, String error) {
+        return new BatchItemResult(index, status, taskId, null, error);
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
@@ -10,7 +10,7 @@ import java.util.*;
 @JsonDeserialize(builder = Task.TaskBuilder.class)
 public class Task {
 
-    private static final int MAX_SUBTASKS_LEVELS = 10;
+    public static final int MAX_SUBTASKS_LEVELS = 10;
 
     private String id;
     @JsonIgnore
@@ -0,0 +1,24 @@
+package com.taskroo.domain;
+
+/**
+ * Task created or modified since the synchronization checkpoint, without its subtasks. Parent task id places the task
+ * in the tasks tree, it is null for top level tasks.
+ */
+public class TaskChange {
+
+    private final Task task;
+    private final String parentTaskId;
+
+    public TaskChange(Task task, String parentTaskId) {
+        this.task = task;
+        this.parentTaskId = parentTaskId;
+    }
+
+    public Task getTask() {
+        return task;
+    }
+
+    public String getParentTaskId() {
+        return parentTaskId;
+    }
+}
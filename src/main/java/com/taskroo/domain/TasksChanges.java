@@ -0,0 +1,50 @@
+package com.taskroo.domain;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tasks and tags changed since a synchronization checkpoint. Checkpoint of these changes is passed as "since" to
+ * get the following changes.
+ */
+public class TasksChanges {
+
+    private final long checkpoint;
+    private final List<TaskChange> changedTasks;
+    private final List<Tag> changedTags;
+    private final Set<String> removedTasksIds;
+    private final Set<String> removedTagsIds;
+
+    public TasksChanges(long checkpoint, List<TaskChange> changedTasks, List<Tag> changedTags,
+                        Set<String> removedTasksIds, Set<String> removedTagsIds) {
+        this.checkpoint = checkpoint;
+        this.changedTasks = changedTasks;
+        this.changedTags = changedTags;
+        this.removedTasksIds = removedTasksIds;
+        this.removedTagsIds = removedTagsIds;
+    }
+
+    public long getCheckpoint() {
+        return checkpoint;
+    }
+
+    public List<TaskChange> getChangedTasks() {
+        return changedTasks;
+    }
+
+    /**
+     * @return tags created or updated since the checkpoint; tags embedded in tasks which have not changed have to be
+     * updated from them
+     */
+    public List<Tag> getChangedTags() {
+        return changedTags;
+    }
+
+    public Set<String> getRemovedTasksIds() {
+        return removedTasksIds;
+    }
+
+    public Set<String> getRemovedTagsIds() {
+        return removedTagsIds;
+    }
+}
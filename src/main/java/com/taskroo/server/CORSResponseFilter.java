@@ -1,6 +1,8 @@
 package com.taskroo.server;
 
 
+import com.taskroo.service.TasksService;
+
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerResponseContext;
 import javax.ws.rs.container.ContainerResponseFilter;
@@ -18,6 +20,8 @@ public class CORSResponseFilter
         headers.add("Access-Control-Allow-Origin", "*");
         //headers.add("Access-Control-Allow-Origin", "http://taskroo.com"); //allows CORS requests only coming from taskroo.com
         headers.add("Access-Control-Allow-Methods", "GET, POST, DELETE, PUT");
-        headers.add("Access-Control-Allow-Headers", "X-Requested-With, Content-Type, X-Codingpedia");
+        headers.add("Access-Control-Allow-Headers", "X-Requested-With, Content-Type, X-Codingpedia, If-None-Match, Content-Encoding");
+        headers.add("Access-Control-Expose-Headers", TasksService.CONTINUATION_TOKEN_HEADER + ", " +
+                TasksService.SYNC_CHECKPOINT_HEADER + ", ETag");
     }
 }
\ No newline at end of file
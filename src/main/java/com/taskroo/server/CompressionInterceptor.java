@@ -0,0 +1,313 @@
+package com.taskroo.server;
+
+import javax.annotation.Priority;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.Priorities;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.ReaderInterceptor;
+import javax.ws.rs.ext.ReaderInterceptorContext;
+import javax.ws.rs.ext.WriterInterceptor;
+import javax.ws.rs.ext.WriterInterceptorContext;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Compresses responses with gzip or deflate, whichever is preferred in Accept-Encoding header of the request, and
+ * decompresses request bodies sent with gzip or deflate Content-Encoding. Responses smaller than the threshold are sent
+ * uncompressed, as compressing them costs more than it saves. Reading of decompressed request body fails with 413
+ * (request entity too large) when it exceeds the limit, so a small compressed body cannot expand without bounds.
+ */
+@Priority(Priorities.ENTITY_CODER)
+public class CompressionInterceptor implements ContainerResponseFilter, WriterInterceptor, ReaderInterceptor {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private final int thresholdBytes;
+    private final int compressionLevel;
+    private final long decompressedRequestMaxBytes;
+
+    @Inject
+    public CompressionInterceptor(@Named("responseCompressionThresholdBytes") Integer thresholdBytes,
+                                  @Named("responseCompressionLevel") Integer compressionLevel,
+                                  @Named("requestDecompressionMaxBytes") Long decompressedRequestMaxBytes) {
+        if (compressionLevel < Deflater.NO_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level has to be between 0 and 9, but is " + compressionLevel);
+        }
+        if (decompressedRequestMaxBytes < 0) {
+            throw new IllegalArgumentException("Maximum size of decompressed request cannot be negative");
+        }
+        this.thresholdBytes = thresholdBytes;
+        this.compressionLevel = compressionLevel;
+        this.decompressedRequestMaxBytes = decompressedRequestMaxBytes;
+    }
+
+    /**
+     * Chooses encoding of the response. The response is compressed later, while its entity is written.
+     */
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) {
+        if (!responseContext.hasEntity() || responseContext.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            return;
+        }
+        responseContext.getHeaders().add(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String encoding = chooseEncoding(requestContext.getHeaderString(HttpHeaders.ACCEPT_ENCODING));
+        if (encoding != null) {
+            responseContext.getHeaders().putSingle(HttpHeaders.CONTENT_ENCODING, encoding);
+        }
+    }
+
+    /**
+     * @return gzip or deflate, whichever has higher quality in given Accept-Encoding header, gzip when both are equal,
+     * null when none of them is acceptable
+     */
+    static String chooseEncoding(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzipQuality = 0;
+        float deflateQuality = 0;
+        float anyQuality = 0;
+        boolean gzipGiven = false;
+        boolean deflateGiven = false;
+        for (String acceptedEncoding : acceptEncoding.split(",")) {
+            String[] encodingAndParameters = acceptedEncoding.split(";");
+            String encoding = encodingAndParameters[0].trim().toLowerCase();
+            float quality = parseQuality(encodingAndParameters);
+            if (encoding.equals(GZIP) || encoding.equals("x-gzip")) {
+                gzipQuality = quality;
+                gzipGiven = true;
+            } else if (encoding.equals(DEFLATE)) {
+                deflateQuality = quality;
+                deflateGiven = true;
+            } else if (encoding.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        gzipQuality = gzipGiven ? gzipQuality : anyQuality;
+        deflateQuality = deflateGiven ? deflateQuality : anyQuality;
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return GZIP;
+        }
+        return deflateQuality > 0 ? DEFLATE : null;
+    }
+
+    private static float parseQuality(String[] encodingAndParameters) {
+        for (int i = 1; i < encodingAndParameters.length; i++) {
+            String parameter = encodingAndParameters[i].trim();
+            if (parameter.startsWith("q=")) {
+                try {
+                    return Float.parseFloat(parameter.substring(2));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public void aroundWriteTo(WriterInterceptorContext context) throws IOException {
+        Object encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (GZIP.equals(encoding) || DEFLATE.equals(encoding)) {
+            context.setOutputStream(new ThresholdCompressingOutputStream(context.getOutputStream(), context.getHeaders(),
+                    (String) encoding));
+        }
+        context.proceed();
+    }
+
+    @Override
+    public Object aroundReadFrom(ReaderInterceptorContext context) throws IOException {
+        String encoding = context.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (encoding == null) {
+            return context.proceed();
+        }
+        encoding = encoding.trim().toLowerCase();
+        LimitedInputStream decompressingInput;
+        if (encoding.equals(GZIP) || encoding.equals("x-gzip")) {
+            decompressingInput = new LimitedInputStream(new GZIPInputStream(context.getInputStream()),
+                    decompressedRequestMaxBytes);
+        } else if (encoding.equals(DEFLATE)) {
+            decompressingInput = new LimitedInputStream(new InflaterInputStream(context.getInputStream()),
+                    decompressedRequestMaxBytes);
+        } else {
+            return context.proceed();
+        }
+        context.setInputStream(decompressingInput);
+        context.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        try {
+            return context.proceed();
+        } catch (IOException | RuntimeException e) {
+            // entity providers may wrap the failure of the stream, e.g. Jackson into JsonMappingException
+            if (decompressingInput.isLimitExceeded()) {
+                throw new WebApplicationException(e, Response.Status.REQUEST_ENTITY_TOO_LARGE);
+            }
+            throw e;
+        }
+    }
+
+    private OutputStream compress(OutputStream output, String encoding) throws IOException {
+        if (encoding.equals(GZIP)) {
+            return new LeveledGZIPOutputStream(output, compressionLevel);
+        }
+        return new LeveledDeflaterOutputStream(output, compressionLevel);
+    }
+
+    /**
+     * Buffers written bytes until the threshold is reached and compresses them from then on. When the stream is closed
+     * below the threshold, bytes are written uncompressed and Content-Encoding header is removed. Headers are sent with
+     * the first byte written to the underlying stream, so they can still be changed then.
+     */
+    private class ThresholdCompressingOutputStream extends OutputStream {
+
+        private final OutputStream output;
+        private final MultivaluedMap<String, Object> headers;
+        private final String encoding;
+
+        private ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private OutputStream compressingOutput;
+
+        private ThresholdCompressingOutputStream(OutputStream output, MultivaluedMap<String, Object> headers, String encoding) {
+            this.output = output;
+            this.headers = headers;
+            this.encoding = encoding;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (compressingOutput != null) {
+                compressingOutput.write(bytes, offset, length);
+                return;
+            }
+            buffer.write(bytes, offset, length);
+            if (buffer.size() >= thresholdBytes) {
+                compressingOutput = compress(output, encoding);
+                buffer.writeTo(compressingOutput);
+                buffer = null;
+            }
+        }
+
+        /**
+         * Flushing below the threshold is ignored, as it would send the headers before compression is decided.
+         */
+        @Override
+        public void flush() throws IOException {
+            if (compressingOutput != null) {
+                compressingOutput.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (compressingOutput != null) {
+                compressingOutput.close();
+                return;
+            }
+            headers.remove(HttpHeaders.CONTENT_ENCODING);
+            buffer.writeTo(output);
+            output.close();
+        }
+    }
+
+    /**
+     * Counts bytes read and fails once more than the limit has been read.
+     */
+    private static class LimitedInputStream extends FilterInputStream {
+
+        private final long maxBytes;
+        private long readBytes;
+
+        private LimitedInputStream(InputStream input, long maxBytes) {
+            super(input);
+            this.maxBytes = maxBytes;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                countRead(1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            int read = super.read(bytes, offset, length);
+            if (read > 0) {
+                countRead(read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            countRead(skipped);
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private void countRead(long bytes) throws IOException {
+            readBytes += bytes;
+            if (isLimitExceeded()) {
+                throw new IOException("Decompressed request body is larger than " + maxBytes + " bytes");
+            }
+        }
+
+        private boolean isLimitExceeded() {
+            return readBytes > maxBytes;
+        }
+    }
+
+    private static class LeveledGZIPOutputStream extends GZIPOutputStream {
+
+        private LeveledGZIPOutputStream(OutputStream output, int level) throws IOException {
+            super(output);
+            def.setLevel(level);
+        }
+    }
+
+    /**
+     * Deflater given to the stream is not released by the stream itself, so it is released on close.
+     */
+    private static class LeveledDeflaterOutputStream extends DeflaterOutputStream {
+
+        private LeveledDeflaterOutputStream(OutputStream output, int level) {
+            super(output, new Deflater(level));
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                def.end();
+            }
+        }
+    }
+}
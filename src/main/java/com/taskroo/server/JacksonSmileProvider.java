@@ -0,0 +1,72 @@
+package com.taskroo.server;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.taskroo.service.TaskRooMediaType;
+
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes entities in Smile format, binary equivalent of JSON, with the same Jackson annotations as JSON.
+ * Parsing errors are reported the same way as errors of JSON, as Smile parser throws the same exceptions.
+ */
+@Provider
+@Consumes(TaskRooMediaType.APPLICATION_SMILE)
+@Produces(TaskRooMediaType.APPLICATION_SMILE)
+public class JacksonSmileProvider implements MessageBodyReader<Object>, MessageBodyWriter<Object> {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper(new SmileFactory());
+
+    static {
+        OBJECT_MAPPER.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        OBJECT_MAPPER.getFactory().disable(JsonParser.Feature.AUTO_CLOSE_SOURCE);
+    }
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isSmile(mediaType);
+    }
+
+    @Override
+    public Object readFrom(Class<Object> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                           MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        return OBJECT_MAPPER.readValue(entityStream, OBJECT_MAPPER.getTypeFactory().constructType(genericType));
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return isSmile(mediaType);
+    }
+
+    /**
+     * Wildcards are not matched, so JSON stays the default when client accepts any type.
+     */
+    private static boolean isSmile(MediaType mediaType) {
+        return mediaType != null && TaskRooMediaType.APPLICATION_SMILE_TYPE.getType().equalsIgnoreCase(mediaType.getType()) &&
+                TaskRooMediaType.APPLICATION_SMILE_TYPE.getSubtype().equalsIgnoreCase(mediaType.getSubtype());
+    }
+
+    @Override
+    public long getSize(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object value, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        OBJECT_MAPPER.writeValue(entityStream, value);
+    }
+}
@@ -3,7 +3,11 @@ package com.taskroo.server;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.glassfish.jersey.jetty.JettyHttpContainer;
 import org.glassfish.jersey.jetty.JettyHttpContainerFactory;
+import org.glassfish.jersey.server.ContainerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
 
 import javax.ws.rs.core.UriBuilder;
@@ -15,6 +19,15 @@ public class JettyRunner {
 
     private static Logger LOGGER = LogManager.getLogger();
 
+    /**
+     * System property switching Jetty to run every request on a new virtual thread. Requires the application to be
+     * built with the virtual-threads profile and run on Java 21 or newer. Does not increase throughput of DB calls,
+     * see VirtualThreadPool for the limitation.
+     */
+    public static final String VIRTUAL_THREADS_PROPERTY = "jetty.virtualThreads";
+
+    private static final String VIRTUAL_THREAD_POOL_CLASS = "com.taskroo.server.VirtualThreadPool";
+
     private static Server server;
 
     public static void main(String[] args) {
@@ -29,7 +42,9 @@ public class JettyRunner {
         LOGGER.info("Starting Jetty on {}:{}", hostname, port);
         URI baseUri = UriBuilder.fromUri("http://" + hostname).port(port).build();
         ResourceConfig config = new TaskRooResourceConfig();
-        server = JettyHttpContainerFactory.createServer(baseUri, config);
+        server = Boolean.getBoolean(VIRTUAL_THREADS_PROPERTY)
+                ? createVirtualThreadsServer(hostname, port, config)
+                : JettyHttpContainerFactory.createServer(baseUri, config);
         try {
             server.start();
         } catch (Exception e) {
@@ -38,6 +53,32 @@ public class JettyRunner {
         }
     }
 
+    private static Server createVirtualThreadsServer(String hostname, int port, ResourceConfig config) {
+        LOGGER.warn("Requests will be executed on virtual threads. Mongo driver pins virtual threads to carrier threads "
+                + "during DB calls, so DB calls have to be executed by DAO executor (dao.executor.enabled=true).");
+        Server virtualThreadsServer = new Server(createVirtualThreadPool());
+        ServerConnector connector = new ServerConnector(virtualThreadsServer);
+        connector.setHost(hostname);
+        connector.setPort(port);
+        virtualThreadsServer.addConnector(connector);
+        virtualThreadsServer.setHandler(ContainerFactory.createContainer(JettyHttpContainer.class, config));
+        return virtualThreadsServer;
+    }
+
+    /**
+     * Virtual thread pool is loaded by name, as it is compiled only by the virtual-threads profile targeting Java 21.
+     */
+    private static ThreadPool createVirtualThreadPool() {
+        try {
+            return (ThreadPool) Class.forName(VIRTUAL_THREAD_POOL_CLASS).newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException("Virtual threads are not available, build the application with " +
+                    "virtual-threads profile", e);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalStateException("Could not create virtual thread pool: " + e.getMessage(), e);
+        }
+    }
+
     private static boolean isJettyRunningOn(String hostname, int port) {
         try{
             new Socket(hostname, port);
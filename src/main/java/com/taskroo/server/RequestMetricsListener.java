@@ -0,0 +1,66 @@
+package com.taskroo.server;
+
+import com.taskroo.service.metrics.RequestMetrics;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.model.ResourceMethod;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Method;
+
+/**
+ * Records latency and response status of every request under the resource method which has handled it.
+ */
+public class RequestMetricsListener implements ApplicationEventListener {
+
+    private final RequestMetrics requestMetrics;
+
+    @Inject
+    public RequestMetricsListener(RequestMetrics requestMetrics) {
+        this.requestMetrics = requestMetrics;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        requestMetrics.requestStarted();
+        return new MetricsRequestEventListener(System.nanoTime());
+    }
+
+    static String resourceName(ResourceMethod resourceMethod) {
+        if (resourceMethod == null) {
+            return RequestMetrics.UNMATCHED_RESOURCE;
+        }
+        Method method = resourceMethod.getInvocable().getDefinitionMethod();
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    private class MetricsRequestEventListener implements RequestEventListener {
+
+        private final long startTime;
+
+        private MetricsRequestEventListener(long startTime) {
+            this.startTime = startTime;
+        }
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            if (event.getType() != RequestEvent.Type.FINISHED) {
+                return;
+            }
+            ContainerResponse response = event.getContainerResponse();
+            // response is missing when exception thrown by the request could not be mapped
+            int status = response != null ? response.getStatus() : Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+            requestMetrics.requestFinished(event.getContainerRequest().getMethod(),
+                    resourceName(event.getUriInfo().getMatchedResourceMethod()), status, System.nanoTime() - startTime);
+        }
+    }
+}
@@ -10,8 +10,12 @@ import javax.ws.rs.ApplicationPath;
 public class TaskRooResourceConfig extends ResourceConfig {
     public TaskRooResourceConfig() {
         register(ExceptionListener.class);
+        register(RequestMetricsListener.class);
+        register(TracingListener.class);
         register(RolesAllowedDynamicFeature.class);
         register(CORSResponseFilter.class);
+        register(CompressionInterceptor.class);
+        register(JacksonSmileProvider.class);
         property(ServerProperties.BV_SEND_ERROR_IN_RESPONSE, true);
         packages("com.taskroo.service", "com.wordnik.swagger.jersey.listing");
     }
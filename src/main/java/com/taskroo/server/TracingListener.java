@@ -0,0 +1,77 @@
+package com.taskroo.server;
+
+import com.taskroo.service.tracing.Span;
+import com.taskroo.service.tracing.Tracer;
+import org.glassfish.jersey.server.ContainerResponse;
+import org.glassfish.jersey.server.monitoring.ApplicationEvent;
+import org.glassfish.jersey.server.monitoring.ApplicationEventListener;
+import org.glassfish.jersey.server.monitoring.RequestEvent;
+import org.glassfish.jersey.server.monitoring.RequestEventListener;
+
+import javax.inject.Inject;
+import javax.ws.rs.core.Response;
+
+/**
+ * Starts trace of every request before its filters are run and finishes it once the response is written, so the trace
+ * includes authentication, DAO calls and streaming of the response.
+ */
+public class TracingListener implements ApplicationEventListener {
+
+    private final Tracer tracer;
+
+    @Inject
+    public TracingListener(Tracer tracer) {
+        this.tracer = tracer;
+    }
+
+    @Override
+    public void onEvent(ApplicationEvent event) {
+
+    }
+
+    @Override
+    public RequestEventListener onRequest(RequestEvent requestEvent) {
+        Span span = tracer.startTrace("http request");
+        if (span == null) {
+            return null;
+        }
+        span.tag("http.method", requestEvent.getContainerRequest().getMethod());
+        span.tag("http.path", "/" + requestEvent.getUriInfo().getPath());
+        return new TracingRequestEventListener(span);
+    }
+
+    private class TracingRequestEventListener implements RequestEventListener {
+
+        private final Span span;
+
+        private TracingRequestEventListener(Span span) {
+            this.span = span;
+        }
+
+        @Override
+        public void onEvent(RequestEvent event) {
+            switch (event.getType()) {
+                case RESOURCE_METHOD_FINISHED:
+                    // suspended requests continue on DAO executor threads, so server thread does not keep their span
+                    if (tracer.getCurrentSpan() == span) {
+                        tracer.setCurrentSpan(null);
+                    }
+                    break;
+                case FINISHED:
+                    ContainerResponse response = event.getContainerResponse();
+                    int status = response != null ? response.getStatus()
+                            : Response.Status.INTERNAL_SERVER_ERROR.getStatusCode();
+                    span.setName(event.getContainerRequest().getMethod() + " "
+                            + RequestMetricsListener.resourceName(event.getUriInfo().getMatchedResourceMethod()));
+                    span.tag("http.status_code", String.valueOf(status));
+                    if (event.getException() != null) {
+                        span.tag("error", event.getException().toString());
+                    }
+                    tracer.finish(span);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.taskroo.service;
+
+import com.taskroo.data.MongoOperationMetrics;
+import com.taskroo.service.tracing.Span;
+import com.taskroo.service.tracing.Tracer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Executes DAO work of resource methods on a bounded thread pool and resumes their suspended responses, so requests
+ * waiting for DB do not hold server threads. When disabled, DAO work is executed on the calling server thread.
+ *
+ * Requests which cannot be queued or which are still queued when the timeout expires are answered with 503 (Service
+ * Unavailable); their DAO call is never made, so they can be safely retried. Requests which DAO call has already started
+ * when the timeout expires are answered with 504 (Gateway Timeout). The call is not interrupted and may still write its
+ * changes, so outcome of such requests is unknown and clients have to check the state before retrying non-idempotent
+ * ones, like creating tasks.
+ */
+@Component
+public class DaoExecutor {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private final boolean enabled;
+    private final int timeoutMillis;
+    private final ThreadPoolExecutor executor;
+    private final MongoOperationMetrics mongoOperationMetrics;
+    private final Tracer tracer;
+
+    private final AtomicLong submittedCount = new AtomicLong();
+    private final AtomicLong completedCount = new AtomicLong();
+    private final AtomicLong rejectedCount = new AtomicLong();
+    private final AtomicLong timedOutCount = new AtomicLong();
+    private final AtomicLong totalQueueWaitNanos = new AtomicLong();
+    private final AtomicLong totalExecutionNanos = new AtomicLong();
+
+    @Inject
+    public DaoExecutor(@Named("daoExecutorEnabled") Boolean enabled, @Named("daoExecutorThreads") Integer threads,
+                       @Named("daoExecutorQueueCapacity") Integer queueCapacity,
+                       @Named("daoExecutorTimeoutMillis") Integer timeoutMillis,
+                       MongoOperationMetrics mongoOperationMetrics, Tracer tracer) {
+        if (threads <= 0 || queueCapacity <= 0 || timeoutMillis <= 0) {
+            throw new IllegalArgumentException("Threads, queue capacity and timeout of DAO executor have to be positive");
+        }
+        this.enabled = enabled;
+        this.timeoutMillis = timeoutMillis;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+        this.tracer = tracer;
+        this.executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "dao-executor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdown();
+    }
+
+    /**
+     * Executes given DAO call and resumes the response with its result. Exceptions thrown by the call are passed to
+     * the response, so they are mapped the same way as exceptions thrown by synchronous resource methods.
+     */
+    public void execute(final AsyncResponse asyncResponse, final Callable<Response> daoCall) {
+        submittedCount.incrementAndGet();
+        final Span requestSpan = tracer.getCurrentSpan();
+        if (!enabled) {
+            callAndResume(asyncResponse, daoCall, requestSpan, 0);
+            return;
+        }
+        final long submitTime = System.nanoTime();
+        final AtomicBoolean claimed = new AtomicBoolean();
+        final Runnable daoTask = new Runnable() {
+            @Override
+            public void run() {
+                if (!claimed.compareAndSet(false, true)) {
+                    return;
+                }
+                long queueWaitNanos = System.nanoTime() - submitTime;
+                totalQueueWaitNanos.addAndGet(queueWaitNanos);
+                callAndResume(asyncResponse, daoCall, requestSpan, queueWaitNanos);
+            }
+        };
+        // timeout has to be set before the task is submitted, as the response cannot be changed once it is resumed
+        asyncResponse.setTimeoutHandler(new TimeoutHandler() {
+            @Override
+            public void handleTimeout(AsyncResponse timedOutResponse) {
+                timedOutCount.incrementAndGet();
+                if (claimed.compareAndSet(false, true)) {
+                    executor.remove(daoTask);
+                    LOGGER.warn("Request has not been started within {} ms", timeoutMillis);
+                    timedOutResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+                } else {
+                    // call which has already started is not interrupted, as interrupting DB driver breaks its connection
+                    LOGGER.warn("Request has not been processed within {} ms, its DAO call is still running",
+                            timeoutMillis);
+                    timedOutResponse.resume(Response.status(Response.Status.GATEWAY_TIMEOUT).build());
+                }
+            }
+        });
+        asyncResponse.setTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            executor.execute(daoTask);
+        } catch (RejectedExecutionException e) {
+            rejectedCount.incrementAndGet();
+            LOGGER.warn("Request rejected, all {} DAO executor threads are busy and its queue is full",
+                    executor.getMaximumPoolSize());
+            asyncResponse.resume(Response.status(Response.Status.SERVICE_UNAVAILABLE).build());
+        }
+    }
+
+    /**
+     * Mongo operations are counted and traced until the response is resumed, as streamed responses are read from DB
+     * while they are written by the resuming thread.
+     */
+    private void callAndResume(AsyncResponse asyncResponse, Callable<Response> daoCall, Span requestSpan,
+                               long queueWaitNanos) {
+        long startTime = System.nanoTime();
+        mongoOperationMetrics.startRequest();
+        Span previousSpan = tracer.getCurrentSpan();
+        tracer.setCurrentSpan(requestSpan);
+        Span span = tracer.startSpan("DaoExecutor.call");
+        if (span != null) {
+            span.tag("queue.wait_ms", String.valueOf(TimeUnit.NANOSECONDS.toMillis(queueWaitNanos)));
+        }
+        try {
+            asyncResponse.resume(daoCall.call());
+        } catch (Exception e) {
+            asyncResponse.resume(e);
+        } finally {
+            tracer.finish(span);
+            tracer.setCurrentSpan(previousSpan);
+            mongoOperationMetrics.finishRequest();
+            totalExecutionNanos.addAndGet(System.nanoTime() - startTime);
+            completedCount.incrementAndGet();
+        }
+    }
+
+    public long getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public long getCompletedCount() {
+        return completedCount.get();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    public long getTimedOutCount() {
+        return timedOutCount.get();
+    }
+
+    public long getTotalQueueWaitMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalQueueWaitNanos.get());
+    }
+
+    public long getTotalExecutionMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalExecutionNanos.get());
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+}
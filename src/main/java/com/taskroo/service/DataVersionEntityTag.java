@@ -0,0 +1,22 @@
+package com.taskroo.service;
+
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.MediaType;
+
+/**
+ * Creates entity tags of responses built from tasks and tags of an owner. Tag is derived from version of owner's data
+ * and from the owner, so clients sharing cache between users never get data of another user confirmed as current.
+ * Tag is derived from media type of the response too, as JSON and Smile representations of the same data differ, and
+ * responses tagged with it have to vary by Accept header. Tags are weak, as the same representation can be sent
+ * compressed or not.
+ */
+final class DataVersionEntityTag {
+
+    private DataVersionEntityTag() {
+    }
+
+    static EntityTag of(String ownerId, long dataVersion, MediaType mediaType) {
+        return new EntityTag(Integer.toHexString(ownerId.hashCode()) + "-" + Long.toHexString(dataVersion) + "-"
+                + mediaType.getSubtype(), true);
+    }
+}
@@ -0,0 +1,185 @@
+package com.taskroo.service;
+
+import com.taskroo.data.MongoOperationMetrics;
+import com.taskroo.data.TagsDictionaryCache;
+import com.taskroo.service.metrics.LatencyHistogram;
+import com.taskroo.service.metrics.RequestMetrics;
+import com.taskroo.service.security.SecurityTokenCache;
+import com.wordnik.swagger.annotations.Api;
+import com.wordnik.swagger.annotations.ApiOperation;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.security.RolesAllowed;
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Exposes request, DAO executor, Mongo operation and cache metrics in Prometheus text format. The endpoint is served on the
+ * public API, so it requires a security token with admin role; scrapers send it in the Authorization header like
+ * other clients. Latencies are exposed as cumulative histogram buckets, so monitoring can compute current percentiles
+ * from the rate of the buckets.
+ */
+@Component
+@RolesAllowed("admin")
+@Path("metrics")
+@Api(value = "metrics", description = "Metrics of the application for monitoring")
+public class MetricsService {
+
+    static final String TEXT_FORMAT_MEDIA_TYPE = "text/plain; version=0.0.4";
+
+    private static final double[] BUCKET_BOUNDS_SECONDS = {0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1,
+            2.5, 5, 10};
+    private static final double MICROS_PER_SECOND = 1000000.0;
+
+    private final RequestMetrics requestMetrics;
+    private final DaoExecutor daoExecutor;
+    private final MongoOperationMetrics mongoOperationMetrics;
+    private final SecurityTokenCache securityTokenCache;
+    private final TagsDictionaryCache tagsDictionaryCache;
+
+    @Inject
+    public MetricsService(RequestMetrics requestMetrics, DaoExecutor daoExecutor,
+                          MongoOperationMetrics mongoOperationMetrics, SecurityTokenCache securityTokenCache,
+                          TagsDictionaryCache tagsDictionaryCache) {
+        this.requestMetrics = requestMetrics;
+        this.daoExecutor = daoExecutor;
+        this.mongoOperationMetrics = mongoOperationMetrics;
+        this.securityTokenCache = securityTokenCache;
+        this.tagsDictionaryCache = tagsDictionaryCache;
+    }
+
+    @GET
+    @Produces(TEXT_FORMAT_MEDIA_TYPE)
+    @ApiOperation(value = "Get metrics in Prometheus text format")
+    public String getMetrics() {
+        StringBuilder metrics = new StringBuilder();
+        writeRequestMetrics(metrics);
+        writeDaoExecutorMetrics(metrics);
+        writeMongoOperationMetrics(metrics);
+        writeCacheMetrics(metrics);
+        return metrics.toString();
+    }
+
+    private void writeRequestMetrics(StringBuilder metrics) {
+        writeHeader(metrics, "taskroo_http_request_duration_seconds", "histogram",
+                "Latency of requests by resource method");
+        for (RequestMetrics.EndpointMetrics endpoint : requestMetrics.getEndpoints()) {
+            writeHistogram(metrics, "taskroo_http_request_duration_seconds", "method=\"" + endpoint.getHttpMethod()
+                    + "\",resource=\"" + endpoint.getResource() + "\"", endpoint.getLatencyHistogram());
+        }
+        writeHeader(metrics, "taskroo_http_responses_total", "counter", "Responses by resource method and status");
+        for (RequestMetrics.EndpointMetrics endpoint : requestMetrics.getEndpoints()) {
+            for (Map.Entry<Integer, Long> statusCount : endpoint.getStatusCounts().entrySet()) {
+                writeSample(metrics, "taskroo_http_responses_total", "method=\"" + endpoint.getHttpMethod() +
+                        "\",resource=\"" + endpoint.getResource() + "\",status=\"" + statusCount.getKey() + "\"",
+                        String.valueOf(statusCount.getValue()));
+            }
+        }
+        writeHeader(metrics, "taskroo_http_requests_in_flight", "gauge", "Requests being processed");
+        writeSample(metrics, "taskroo_http_requests_in_flight", null, String.valueOf(requestMetrics.getInFlightCount()));
+    }
+
+    private void writeDaoExecutorMetrics(StringBuilder metrics) {
+        writeHeader(metrics, "taskroo_dao_executor_submitted_total", "counter", "DAO calls submitted to DAO executor");
+        writeSample(metrics, "taskroo_dao_executor_submitted_total", null, String.valueOf(daoExecutor.getSubmittedCount()));
+        writeHeader(metrics, "taskroo_dao_executor_rejected_total", "counter", "DAO calls rejected because the queue was full");
+        writeSample(metrics, "taskroo_dao_executor_rejected_total", null, String.valueOf(daoExecutor.getRejectedCount()));
+        writeHeader(metrics, "taskroo_dao_executor_timed_out_total", "counter", "DAO calls not finished within the timeout");
+        writeSample(metrics, "taskroo_dao_executor_timed_out_total", null, String.valueOf(daoExecutor.getTimedOutCount()));
+        writeHeader(metrics, "taskroo_dao_executor_queue_wait_seconds_total", "counter", "Time DAO calls waited in the queue");
+        writeSample(metrics, "taskroo_dao_executor_queue_wait_seconds_total", null,
+                seconds(daoExecutor.getTotalQueueWaitMillis() * 1000));
+        writeHeader(metrics, "taskroo_dao_executor_active_threads", "gauge", "DAO executor threads executing DAO calls");
+        writeSample(metrics, "taskroo_dao_executor_active_threads", null, String.valueOf(daoExecutor.getActiveCount()));
+        writeHeader(metrics, "taskroo_dao_executor_queue_size", "gauge", "DAO calls waiting in the queue");
+        writeSample(metrics, "taskroo_dao_executor_queue_size", null, String.valueOf(daoExecutor.getQueueSize()));
+    }
+
+    private void writeMongoOperationMetrics(StringBuilder metrics) {
+        writeHeader(metrics, "taskroo_mongo_operation_duration_seconds", "histogram",
+                "Latency of Mongo operations by DAO method and operation type");
+        for (MongoOperationMetrics.OperationMetrics operation : mongoOperationMetrics.getOperations()) {
+            writeHistogram(metrics, "taskroo_mongo_operation_duration_seconds", mongoOperationLabels(operation),
+                    operation.getLatencyHistogram());
+        }
+        writeHeader(metrics, "taskroo_mongo_documents_returned_total", "counter",
+                "Documents read by Mongo operations by DAO method and operation type");
+        for (MongoOperationMetrics.OperationMetrics operation : mongoOperationMetrics.getOperations()) {
+            writeSample(metrics, "taskroo_mongo_documents_returned_total", mongoOperationLabels(operation),
+                    String.valueOf(operation.getDocumentsReturned()));
+        }
+        writeHeader(metrics, "taskroo_mongo_operations_per_request", "summary", "Mongo operations made by requests");
+        writeSample(metrics, "taskroo_mongo_operations_per_request_sum", null,
+                String.valueOf(mongoOperationMetrics.getRequestsOperationsCount()));
+        writeSample(metrics, "taskroo_mongo_operations_per_request_count", null,
+                String.valueOf(mongoOperationMetrics.getRequestsCount()));
+        writeHeader(metrics, "taskroo_mongo_operations_per_request_max", "gauge", "Most Mongo operations made by a request");
+        writeSample(metrics, "taskroo_mongo_operations_per_request_max", null,
+                String.valueOf(mongoOperationMetrics.getMaxRequestOperationsCount()));
+    }
+
+    private void writeCacheMetrics(StringBuilder metrics) {
+        writeHeader(metrics, "taskroo_security_token_cache_hits_total", "counter", "Security tokens found in the cache");
+        writeSample(metrics, "taskroo_security_token_cache_hits_total", null,
+                String.valueOf(securityTokenCache.getHitCount()));
+        writeHeader(metrics, "taskroo_security_token_cache_misses_total", "counter",
+                "Security tokens not found in the cache or expired");
+        writeSample(metrics, "taskroo_security_token_cache_misses_total", null,
+                String.valueOf(securityTokenCache.getMissCount()));
+        writeHeader(metrics, "taskroo_security_token_cache_evictions_total", "counter",
+                "Security tokens evicted from the cache because it was full or they expired");
+        writeSample(metrics, "taskroo_security_token_cache_evictions_total", null,
+                String.valueOf(securityTokenCache.getEvictionCount()));
+        writeHeader(metrics, "taskroo_tags_dictionary_cache_hits_total", "counter", "Tags dictionaries found in the cache");
+        writeSample(metrics, "taskroo_tags_dictionary_cache_hits_total", null,
+                String.valueOf(tagsDictionaryCache.getHitCount()));
+        writeHeader(metrics, "taskroo_tags_dictionary_cache_misses_total", "counter",
+                "Tags dictionaries not found in the cache or expired");
+        writeSample(metrics, "taskroo_tags_dictionary_cache_misses_total", null,
+                String.valueOf(tagsDictionaryCache.getMissCount()));
+        writeHeader(metrics, "taskroo_tags_dictionary_cache_evictions_total", "counter",
+                "Tags dictionaries evicted from the cache because it was full or they expired");
+        writeSample(metrics, "taskroo_tags_dictionary_cache_evictions_total", null,
+                String.valueOf(tagsDictionaryCache.getEvictionCount()));
+        writeHeader(metrics, "taskroo_tags_dictionary_cache_hit_ratio", "gauge",
+                "Ratio of tags dictionary lookups served from the cache");
+        writeSample(metrics, "taskroo_tags_dictionary_cache_hit_ratio", null,
+                String.format(Locale.ROOT, "%.6f", tagsDictionaryCache.getHitRatio()));
+    }
+
+    private static void writeHistogram(StringBuilder metrics, String name, String labels,
+                                       LatencyHistogram latencyHistogram) {
+        for (double bound : BUCKET_BOUNDS_SECONDS) {
+            writeSample(metrics, name + "_bucket", labels + ",le=\"" + bound + "\"",
+                    String.valueOf(latencyHistogram.getCountAtOrBelow((long) (bound * MICROS_PER_SECOND))));
+        }
+        writeSample(metrics, name + "_bucket", labels + ",le=\"+Inf\"", String.valueOf(latencyHistogram.getCount()));
+        writeSample(metrics, name + "_sum", labels, seconds(latencyHistogram.getTotalMicros()));
+        writeSample(metrics, name + "_count", labels, String.valueOf(latencyHistogram.getCount()));
+    }
+
+    private static String mongoOperationLabels(MongoOperationMetrics.OperationMetrics operation) {
+        return "dao_method=\"" + operation.getDaoMethod() + "\",operation=\"" + operation.getOperation() + "\"";
+    }
+
+    private static void writeHeader(StringBuilder metrics, String name, String type, String help) {
+        metrics.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        metrics.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void writeSample(StringBuilder metrics, String name, String labels, String value) {
+        metrics.append(name);
+        if (labels != null) {
+            metrics.append('{').append(labels).append('}');
+        }
+        metrics.append(' ').append(value).append('\n');
+    }
+
+    private static String seconds(long micros) {
+        return String.format(Locale.ROOT, "%.6f", micros / MICROS_PER_SECOND);
+    }
+}
@@ -5,6 +5,7 @@ import com.wordnik.swagger.annotations.ApiOperation;
 import com.wordnik.swagger.annotations.ApiResponse;
 import com.wordnik.swagger.annotations.ApiResponses;
 import org.springframework.stereotype.Component;
+import com.taskroo.data.DataVersionDao;
 import com.taskroo.data.NonExistingResourceOperationException;
 import com.taskroo.data.TagDao;
 import com.taskroo.domain.Tag;
@@ -12,12 +13,18 @@ import com.taskroo.domain.Tag;
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import java.net.URI;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 @Component
 @RolesAllowed("user")
@@ -26,39 +33,63 @@ import java.util.List;
 public class TagsService {
 
     private final TagDao tagDao;
+    private final DataVersionDao dataVersionDao;
+    private final DaoExecutor daoExecutor;
 
     @Inject
-    public TagsService(TagDao tagDao) {
+    public TagsService(TagDao tagDao, DataVersionDao dataVersionDao, DaoExecutor daoExecutor) {
         this.tagDao = tagDao;
+        this.dataVersionDao = dataVersionDao;
+        this.daoExecutor = daoExecutor;
     }
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Get all tags", responseContainer = "List", response = Tag.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Correct response"),
+            @ApiResponse(code = 304, message = "Tags have not changed since the version given in If-None-Match header"),
             @ApiResponse(code = 403, message = "Access forbidden")})
-    public List<Tag> getAll(@Context SecurityContext sc) {
-        String userId = sc.getUserPrincipal().getName();
-        return tagDao.getAllTagsByOwnerId(userId);
+    public void getAll(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext sc, @Context final Request request) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                String userId = sc.getUserPrincipal().getName();
+                MediaType mediaType = TaskRooMediaType.selectResponseMediaType(request);
+                EntityTag entityTag = DataVersionEntityTag.of(userId, dataVersionDao.getVersion(userId), mediaType);
+                Response.ResponseBuilder notModifiedResponse = request.evaluatePreconditions(entityTag);
+                if (notModifiedResponse != null) {
+                    return notModifiedResponse.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+                }
+                List<Tag> tags = tagDao.getAllTagsByOwnerId(userId);
+                return Response.ok(tags, mediaType).tag(entityTag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+            }
+        });
     }
 
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Create new tag", notes = "Returns created tag", response = Tag.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Tag with given name already exists"),
             @ApiResponse(code = 201, message = "Tag created"),
             @ApiResponse(code = 403, message = "Access forbidden")})
-    public Response create(@Context SecurityContext securityContext, Tag tag) {
-        tag.setOwnerId(securityContext.getUserPrincipal().getName());
-        Tag existingTag;
-        if ((existingTag = tagDao.findByName(tag.getOwnerId(), tag.getName())) != null) {
-            return Response.ok(existingTag).build();
-        }
-        Tag savedTag = tagDao.insert(tag);
-        return Response.created(URI.create("tasks/" + savedTag.getId())).entity(savedTag).build();
+    public void create(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext securityContext, final Tag tag) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                tag.setOwnerId(securityContext.getUserPrincipal().getName());
+                Tag existingTag;
+                if ((existingTag = tagDao.findByName(tag.getOwnerId(), tag.getName())) != null) {
+                    return Response.ok(existingTag).build();
+                }
+                Tag savedTag = tagDao.insert(tag);
+                return Response.created(URI.create("tasks/" + savedTag.getId())).entity(savedTag).build();
+            }
+        });
     }
 
     @DELETE
@@ -68,41 +99,54 @@ public class TagsService {
             @ApiResponse(code = 204, message = "Tag removed"),
             @ApiResponse(code = 404, message = "Tag not found"),
             @ApiResponse(code = 403, message = "Access forbidden")})
-    public Response delete(@Context SecurityContext securityContext, @PathParam("tagId") String tagId) {
-        String ownerId = securityContext.getUserPrincipal().getName();
-        try {
-            tagDao.remove(ownerId, tagId);
-        } catch (NonExistingResourceOperationException e) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.noContent().build();
+    public void delete(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext securityContext, @PathParam("tagId") final String tagId) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                String ownerId = securityContext.getUserPrincipal().getName();
+                try {
+                    tagDao.remove(ownerId, tagId);
+                } catch (NonExistingResourceOperationException e) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                return Response.noContent().build();
+            }
+        });
     }
 
     @PUT
     @Path("/{tagId}")
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Update existing tag", notes = "Returns updated tag", response = Tag.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Tag updated"),
             @ApiResponse(code = 400, message = "Invalid input data"),
             @ApiResponse(code = 404, message = "Tag with given id not found"),
             @ApiResponse(code = 403, message = "Access forbidden")})
-    public Response update(@Context SecurityContext securityContext, @PathParam("tagId") String tagId, Tag tag) {
-        if (tag == null) {
-            return Response.status(Response.Status.BAD_REQUEST).build();
-        }
-        String ownerId = securityContext.getUserPrincipal().getName();
-        tag.setOwnerId(ownerId);
-        Tag existingTagWithSameName = tagDao.findByName(tag.getOwnerId(), tag.getName());
-        if (existingTagWithSameName != null && !existingTagWithSameName.getId().equals(tagId)) {
-            return Response.status(Response.Status.BAD_REQUEST).entity("Tag with name: " + tag.getName() + " already exists.").build();
-        }
-        try {
-            Tag tagAfterUpdate = tagDao.update(ownerId, tagId, tag);
-            return Response.ok(tagAfterUpdate).build();
-        } catch (NonExistingResourceOperationException e) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
+    public void update(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext securityContext, @PathParam("tagId") final String tagId,
+                       final Tag tag) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                if (tag == null) {
+                    return Response.status(Response.Status.BAD_REQUEST).build();
+                }
+                String ownerId = securityContext.getUserPrincipal().getName();
+                tag.setOwnerId(ownerId);
+                Tag existingTagWithSameName = tagDao.findByName(tag.getOwnerId(), tag.getName());
+                if (existingTagWithSameName != null && !existingTagWithSameName.getId().equals(tagId)) {
+                    return Response.status(Response.Status.BAD_REQUEST).entity("Tag with name: " + tag.getName() + " already exists.").build();
+                }
+                try {
+                    Tag tagAfterUpdate = tagDao.update(ownerId, tagId, tag);
+                    return Response.ok(tagAfterUpdate).build();
+                } catch (NonExistingResourceOperationException e) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+            }
+        });
     }
 }
@@ -0,0 +1,32 @@
+package com.taskroo.service;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
+import javax.ws.rs.core.Variant;
+import java.util.List;
+
+/**
+ * Media types supported by resources besides JSON.
+ */
+public final class TaskRooMediaType {
+
+    /**
+     * Binary JSON encoded with Jackson Smile format, smaller and faster to parse than textual JSON
+     */
+    public static final String APPLICATION_SMILE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE_TYPE = new MediaType("application", "x-jackson-smile");
+
+    private static final List<Variant> RESPONSE_VARIANTS = Variant.mediaTypes(MediaType.APPLICATION_JSON_TYPE,
+            APPLICATION_SMILE_TYPE).build();
+
+    private TaskRooMediaType() {
+    }
+
+    /**
+     * Selects media type of the response by Accept header of the request, JSON when none of supported types is accepted.
+     */
+    static MediaType selectResponseMediaType(Request request) {
+        Variant variant = request.selectVariant(RESPONSE_VARIANTS);
+        return variant == null ? MediaType.APPLICATION_JSON_TYPE : variant.getMediaType();
+    }
+}
@@ -1,11 +1,18 @@
 package com.taskroo.service;
 
 import com.taskroo.data.ConcurrentTasksModificationException;
+import com.taskroo.data.ContinuationToken;
+import com.taskroo.data.DataVersionDao;
+import com.taskroo.data.ExpiredCheckpointException;
 import com.taskroo.data.NonExistingResourceOperationException;
 import com.taskroo.data.TaskDao;
+import com.taskroo.data.TaskProjection;
+import com.taskroo.data.TasksCursor;
 import com.taskroo.data.UnsupportedDataOperationException;
+import com.taskroo.domain.BatchItemResult;
 import com.taskroo.domain.Tag;
 import com.taskroo.domain.Task;
+import com.taskroo.domain.TasksChanges;
 import com.wordnik.swagger.annotations.*;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -13,16 +20,24 @@ import org.joda.time.DateTime;
 
 import javax.annotation.security.RolesAllowed;
 import javax.inject.Inject;
+import javax.inject.Named;
 import javax.inject.Singleton;
 import javax.validation.Valid;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
 import javax.ws.rs.core.Context;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.SecurityContext;
 import java.net.URI;
 import java.util.Collection;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.Callable;
 
 @Singleton
 @RolesAllowed("user")
@@ -32,59 +47,283 @@ public class TasksService {
 
     private static final Logger LOGGER = LogManager.getLogger();
 
+    public static final String CONTINUATION_TOKEN_HEADER = "X-Continuation-Token";
+    public static final String SYNC_CHECKPOINT_HEADER = "X-Sync-Checkpoint";
+    public static final int MAX_BATCH_SIZE = 1000;
+
     private final TaskDao taskDao;
+    private final DataVersionDao dataVersionDao;
+    private final DaoExecutor daoExecutor;
+    private final boolean streamingEnabled;
 
     @Inject
-    public TasksService(TaskDao taskDao) {
+    public TasksService(TaskDao taskDao, DataVersionDao dataVersionDao, DaoExecutor daoExecutor,
+                        @Named("tasksResponseStreamingEnabled") Boolean streamingEnabled) {
         this.taskDao = taskDao;
+        this.dataVersionDao = dataVersionDao;
+        this.daoExecutor = daoExecutor;
+        this.streamingEnabled = streamingEnabled;
     }
 
 
     @GET
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Get all tasks", responseContainer = "List", response=Task.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Correct response"),
+            @ApiResponse(code = 304, message = "Tasks have not changed since the version given in If-None-Match header"),
+            @ApiResponse(code = 400, message = "Invalid limit, continuation token or fields"),
             @ApiResponse(code = 403, message = "Access forbidden")})
-    public Response getAll(@Context SecurityContext sc,
-                           @ApiParam(value = "Specify if you want to filter by finished") @QueryParam("finished") Boolean finished,
-                           @QueryParam("closedDateAfter") DateTime closedDateAfter, @QueryParam("closedDateBefore") DateTime closedDateBefore,
-                           @QueryParam("offset") Integer offset, @QueryParam("limit") Integer limit) {
-        Collection<Task> tasks;
-        String ownerId = sc.getUserPrincipal().getName();
+    public void getAll(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext sc, @Context final Request request,
+                       @ApiParam(value = "Specify if you want to filter by finished") @QueryParam("finished") final Boolean finished,
+                       @QueryParam("closedDateAfter") final DateTime closedDateAfter,
+                       @QueryParam("closedDateBefore") final DateTime closedDateBefore,
+                       @QueryParam("offset") final Integer offset, @QueryParam("limit") final Integer limit,
+                       @ApiParam(value = "Token returned in " + CONTINUATION_TOKEN_HEADER + " header of the previous page of finished tasks")
+                       @QueryParam("continuationToken") final String continuationToken,
+                       @ApiParam(value = "Comma separated fields of tasks to return, e.g. title,finished,tags.id; " +
+                               "id and subtasks are always returned")
+                       @QueryParam("fields") final String fields) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                String ownerId = sc.getUserPrincipal().getName();
+                TaskProjection projection = parseProjection(fields);
+                MediaType mediaType = TaskRooMediaType.selectResponseMediaType(request);
+                // version has to be read before tasks, so tasks modified in the meantime are never tagged as current
+                EntityTag entityTag = DataVersionEntityTag.of(ownerId, dataVersionDao.getVersion(ownerId), mediaType);
+                Response.ResponseBuilder notModifiedResponse = request.evaluatePreconditions(entityTag);
+                if (notModifiedResponse != null) {
+                    return notModifiedResponse.header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+                }
+                // taken before tasks are read, so changes made while reading are returned by the following changes request
+                long syncCheckpoint = System.currentTimeMillis();
+
+                if (finished != null && finished && offset == null && limit != null) {
+                    return getFinishedPage(ownerId, closedDateAfter, closedDateBefore, continuationToken, limit, projection,
+                            mediaType).tag(entityTag)
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+                }
+                // only streaming output writes selected fields of tasks
+                if (streamingEnabled || !projection.includesAllTaskFields()) {
+                    TasksCursor tasksCursor = streamTasks(ownerId, finished, closedDateAfter, closedDateBefore, offset, limit,
+                            projection);
+                    return Response.ok(new TasksStreamingOutput(tasksCursor, projection, mediaType), mediaType).tag(entityTag)
+                            .header(HttpHeaders.VARY, HttpHeaders.ACCEPT).header(SYNC_CHECKPOINT_HEADER, syncCheckpoint)
+                            .build();
+                }
+
+                Collection<Task> tasks;
+                if (finished != null && finished && offset != null && limit != null) {
+                    tasks = taskDao.findFinished(ownerId, offset, limit);
+                } else if (finished == null) {
+                    tasks = taskDao.findAllByOwnerId(ownerId);
+                } else if (!finished) {
+                    tasks = taskDao.findUnfinishedByOwnerId(ownerId);
+                } else {
+                    tasks = taskDao.findFinishedByOwnerAndClosedBetween(ownerId, closedDateAfter, closedDateBefore);
+                }
+                return Response.ok(tasks, mediaType).tag(entityTag).header(HttpHeaders.VARY, HttpHeaders.ACCEPT)
+                        .header(SYNC_CHECKPOINT_HEADER, syncCheckpoint).build();
+            }
+        });
+    }
+
+    @GET
+    @Path("/changes")
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @ApiOperation(value = "Get tasks and tags changed and tasks and tags removed since the checkpoint",
+            notes = "Checkpoint is taken from " + SYNC_CHECKPOINT_HEADER + " header of all tasks response or from " +
+                    "the previous changes response. The same change may be returned twice.", response = TasksChanges.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Correct response"),
+            @ApiResponse(code = 400, message = "Checkpoint not given"),
+            @ApiResponse(code = 403, message = "Access forbidden"),
+            @ApiResponse(code = 410, message = "Checkpoint is too old, all tasks have to be read again")})
+    public void getChanges(@Suspended AsyncResponse asyncResponse, @Context final SecurityContext sc,
+                           @ApiParam(value = "Checkpoint of tasks read before") @QueryParam("since") final Long since) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                if (since == null) {
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+                try {
+                    return Response.ok(taskDao.findChangesSince(sc.getUserPrincipal().getName(), since)).build();
+                } catch (ExpiredCheckpointException e) {
+                    return Response.status(Response.Status.GONE).build();
+                }
+            }
+        });
+    }
 
+    private TaskProjection parseProjection(String fields) {
+        try {
+            return TaskProjection.parse(fields);
+        } catch (IllegalArgumentException e) {
+            LOGGER.warn("Invalid fields of tasks requested: {}", fields);
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+    }
+
+    private Response.ResponseBuilder getFinishedPage(String ownerId, DateTime closedDateAfter, DateTime closedDateBefore,
+                                                     String encodedContinuationToken, int limit,
+                                                     TaskProjection projection, MediaType mediaType) {
+        if (limit <= 0) {
+            throw new WebApplicationException(Response.Status.BAD_REQUEST);
+        }
+        ContinuationToken continuationToken = null;
+        if (encodedContinuationToken != null) {
+            try {
+                continuationToken = ContinuationToken.decode(encodedContinuationToken);
+            } catch (IllegalArgumentException e) {
+                LOGGER.warn("Invalid continuation token received: {}", encodedContinuationToken);
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+        }
+        List<Task> tasks = taskDao.findFinished(ownerId, closedDateAfter, closedDateBefore, continuationToken, limit,
+                projection);
+        Response.ResponseBuilder responseBuilder = projection.includesAllTaskFields()
+                ? Response.ok(tasks, mediaType)
+                : Response.ok(new TasksStreamingOutput(tasks, projection, mediaType), mediaType);
+        if (tasks.size() == limit) {
+            responseBuilder.header(CONTINUATION_TOKEN_HEADER, ContinuationToken.after(tasks.get(tasks.size() - 1)).encode());
+        }
+        return responseBuilder;
+    }
+
+    private TasksCursor streamTasks(String ownerId, Boolean finished, DateTime closedDateAfter, DateTime closedDateBefore,
+                                    Integer offset, Integer limit, TaskProjection projection) {
         if (finished != null && finished && offset != null && limit != null) {
-            tasks = taskDao.findFinished(ownerId, offset, limit);
+            return taskDao.streamFinished(ownerId, offset, limit, projection);
         } else if (finished == null) {
-            tasks = taskDao.findAllByOwnerId(ownerId);
+            return taskDao.streamAllByOwnerId(ownerId, projection);
         } else if (!finished) {
-            tasks = taskDao.findUnfinishedByOwnerId(ownerId);
+            return taskDao.streamUnfinishedByOwnerId(ownerId, projection);
         } else {
-            tasks = taskDao.findFinishedByOwnerAndClosedBetween(ownerId, closedDateAfter, closedDateBefore);
+            return taskDao.streamFinishedByOwnerAndClosedBetween(ownerId, closedDateAfter, closedDateBefore, projection);
         }
-        return Response.ok(tasks).build();
     }
 
     @POST
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Create new task", notes = "Returns created task with unique id", response=Task.class)
     @ApiResponses(value = {
             @ApiResponse(code = 201, message = "Task created"),
             @ApiResponse(code = 400, message = "Incorrect input data"),
             @ApiResponse(code = 403, message = "Access forbidden")})
-    public Response create(@Context SecurityContext sc, @Valid Task task) {
-        LOGGER.debug("Create task request received");
-        task.setOwnerId(sc.getUserPrincipal().getName());
-        for (Tag tag : task.getTags()) {
-            tag.setOwnerId(sc.getUserPrincipal().getName());
-        }
-        try {
-            Task savedTask = taskDao.insert(task);
-            LOGGER.debug("New task created for customer: {} with task id: {}", task.getOwnerId(), task.getId());
-            return Response.created(URI.create("tasks/" + savedTask.getId())).entity(savedTask).build();
-        } catch (UnsupportedDataOperationException e) {
-            LOGGER.warn("Unsupported data operation when trying to insert task", e);
+    public void create(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext sc, @Valid final Task task) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                LOGGER.debug("Create task request received");
+                task.setOwnerId(sc.getUserPrincipal().getName());
+                for (Tag tag : task.getTags()) {
+                    tag.setOwnerId(sc.getUserPrincipal().getName());
+                }
+                try {
+                    Task savedTask = taskDao.insert(task);
+                    LOGGER.debug("New task created for customer: {} with task id: {}", task.getOwnerId(), task.getId());
+                    return Response.created(URI.create("tasks/" + savedTask.getId())).entity(savedTask).build();
+                } catch (UnsupportedDataOperationException e) {
+                    LOGGER.warn("Unsupported data operation when trying to insert task", e);
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+            }
+        });
+    }
+
+    @POST
+    @Path("/batch")
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @ApiOperation(value = "Create many tasks at once", notes = "Returns result for every task, in the order of the request",
+            responseContainer = "List", response = BatchItemResult.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Tasks processed, see result of every task"),
+            @ApiResponse(code = 400, message = "No tasks, more than " + MAX_BATCH_SIZE + " tasks or null task given"),
+            @ApiResponse(code = 403, message = "Access forbidden")})
+    public void createAll(@Suspended AsyncResponse asyncResponse,
+                          @Context final SecurityContext sc, final List<Task> tasks) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                LOGGER.debug("Create tasks batch request received");
+                validateBatchSize(tasks);
+                String ownerId = sc.getUserPrincipal().getName();
+                for (Task task : tasks) {
+                    task.setOwnerId(ownerId);
+                    for (Tag tag : task.getTags()) {
+                        tag.setOwnerId(ownerId);
+                    }
+                }
+                List<BatchItemResult> results = taskDao.insertAll(ownerId, tasks);
+                LOGGER.debug("Batch of {} tasks processed for customer: {}", tasks.size(), ownerId);
+                return Response.ok(results).build();
+            }
+        });
+    }
+
+    @PUT
+    @Path("/batch")
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @ApiOperation(value = "Update many tasks at once", notes = "Returns result for every task, in the order of the request",
+            responseContainer = "List", response = BatchItemResult.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Tasks processed, see result of every task"),
+            @ApiResponse(code = 400, message = "No tasks, more than " + MAX_BATCH_SIZE + " tasks or null task given"),
+            @ApiResponse(code = 403, message = "Access forbidden")})
+    public void updateAll(@Suspended AsyncResponse asyncResponse,
+                          @Context final SecurityContext sc, final List<Task> tasks) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                LOGGER.debug("Update tasks batch request received");
+                validateBatchSize(tasks);
+                String ownerId = sc.getUserPrincipal().getName();
+                for (Task task : tasks) {
+                    for (Tag tag : task.getTags()) {
+                        tag.setOwnerId(ownerId);
+                    }
+                }
+                List<BatchItemResult> results = taskDao.updateAll(ownerId, tasks);
+                LOGGER.debug("Batch of {} tasks updated for customer: {}", tasks.size(), ownerId);
+                return Response.ok(results).build();
+            }
+        });
+    }
+
+    @POST
+    @Path("/batch/delete")
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @ApiOperation(value = "Delete many tasks at once", notes = "Takes list of ids of tasks to delete. " +
+            "Returns result for every task, in the order of the request", responseContainer = "List", response = BatchItemResult.class)
+    @ApiResponses(value = {
+            @ApiResponse(code = 200, message = "Tasks processed, see result of every task"),
+            @ApiResponse(code = 400, message = "No tasks, more than " + MAX_BATCH_SIZE + " tasks or null task given"),
+            @ApiResponse(code = 403, message = "Access forbidden")})
+    public void deleteAll(@Suspended AsyncResponse asyncResponse,
+                          @Context final SecurityContext sc, final List<String> tasksIds) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                LOGGER.debug("Delete tasks batch request received");
+                validateBatchSize(tasksIds);
+                String ownerId = sc.getUserPrincipal().getName();
+                List<BatchItemResult> results = taskDao.removeAll(ownerId, tasksIds);
+                LOGGER.debug("Batch of {} tasks deleted for customer: {}", tasksIds.size(), ownerId);
+                return Response.ok(results).build();
+            }
+        });
+    }
+
+    private void validateBatchSize(List<?> batch) {
+        if (batch == null || batch.isEmpty() || batch.size() > MAX_BATCH_SIZE || batch.contains(null)) {
             throw new WebApplicationException(Response.Status.BAD_REQUEST);
         }
     }
@@ -96,49 +335,61 @@ public class TasksService {
             @ApiResponse(code = 204, message = "Task deleted"),
             @ApiResponse(code = 403, message = "Access forbidden"),
             @ApiResponse(code = 404, message = "Task with given id does not exist")})
-    public Response delete(@Context SecurityContext sc, @PathParam("taskId") String id) {
-        LOGGER.debug("Delete task request received");
-        try {
-            taskDao.remove(sc.getUserPrincipal().getName(), id);
-        } catch(NonExistingResourceOperationException e) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
-        return Response.noContent().build();
+    public void delete(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext sc, @PathParam("taskId") final String id) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                LOGGER.debug("Delete task request received");
+                try {
+                    taskDao.remove(sc.getUserPrincipal().getName(), id);
+                } catch(NonExistingResourceOperationException e) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+                return Response.noContent().build();
+            }
+        });
     }
 
     @PUT
     @Path("/{taskId}")
-    @Produces(MediaType.APPLICATION_JSON)
-    @Consumes(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
+    @Consumes({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Update task", notes = "Returns updated task", response = Task.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Task updated"),
             @ApiResponse(code = 400, message = "Incorrect input data"),
             @ApiResponse(code = 403, message = "Access forbidden"),
             @ApiResponse(code = 404, message = "Task with given id does not exist")})
-    public Response update(@Context SecurityContext sc, @PathParam("taskId") String id, Task task) {
-        LOGGER.debug("Update task request received");
-        if (task == null) {
-            throw new WebApplicationException(Response.Status.BAD_REQUEST);
-        }
-        task.setId(id);
-        for (Tag tag : task.getTags()) {
-            tag.setOwnerId(sc.getUserPrincipal().getName());
-        }
-        try {
-            Task taskAfterUpdate = taskDao.update(sc.getUserPrincipal().getName(), task);
-            return Response.ok(taskAfterUpdate).build();
-        } catch (NonExistingResourceOperationException e) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        } catch (UnsupportedDataOperationException e) {
-            LOGGER.warn("Unsupported data operation when trying to update task", e);
-            throw new WebApplicationException(Response.Status.BAD_REQUEST);
-        }
+    public void update(@Suspended AsyncResponse asyncResponse,
+                       @Context final SecurityContext sc, @PathParam("taskId") final String id, final Task task) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                LOGGER.debug("Update task request received");
+                if (task == null) {
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+                task.setId(id);
+                for (Tag tag : task.getTags()) {
+                    tag.setOwnerId(sc.getUserPrincipal().getName());
+                }
+                try {
+                    Task taskAfterUpdate = taskDao.update(sc.getUserPrincipal().getName(), task);
+                    return Response.ok(taskAfterUpdate).build();
+                } catch (NonExistingResourceOperationException e) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                } catch (UnsupportedDataOperationException e) {
+                    LOGGER.warn("Unsupported data operation when trying to update task", e);
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                }
+            }
+        });
     }
 
     @POST
     @Path("/{parentTaskId}/subtasks/{subtaskId}")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Move task to be subtask of parent task", notes = "Returns parent task", response = Task.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Task moved"),
@@ -146,40 +397,52 @@ public class TasksService {
             @ApiResponse(code = 403, message = "Access forbidden"),
             @ApiResponse(code = 404, message = "Parent task or subtask with given id does not exist"),
             @ApiResponse(code = 409, message = "Conflicting concurrent task or tags modification")})
-    public Response addSubtask(@Context SecurityContext sc, @PathParam("parentTaskId") String parentTaskId,
-                               @PathParam("subtaskId") String subtaskId) {
-        Objects.requireNonNull(parentTaskId);
-        Objects.requireNonNull(subtaskId);
+    public void addSubtask(@Suspended AsyncResponse asyncResponse,
+                           @Context final SecurityContext sc, @PathParam("parentTaskId") final String parentTaskId,
+                           @PathParam("subtaskId") final String subtaskId) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                Objects.requireNonNull(parentTaskId);
+                Objects.requireNonNull(subtaskId);
 
-        try {
-            Task parentTaskAfterUpdate = taskDao.addSubtask(sc.getUserPrincipal().getName(), parentTaskId, subtaskId);
-            return Response.ok(parentTaskAfterUpdate).build();
-        } catch (NonExistingResourceOperationException e) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        } catch (UnsupportedDataOperationException e) {
-            LOGGER.warn("Unsupported data operation when trying to add subtask", e);
-            throw new WebApplicationException(Response.Status.BAD_REQUEST);
-        } catch (ConcurrentTasksModificationException e) {
-            return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
-        }
+                try {
+                    Task parentTaskAfterUpdate = taskDao.addSubtask(sc.getUserPrincipal().getName(), parentTaskId, subtaskId);
+                    return Response.ok(parentTaskAfterUpdate).build();
+                } catch (NonExistingResourceOperationException e) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                } catch (UnsupportedDataOperationException e) {
+                    LOGGER.warn("Unsupported data operation when trying to add subtask", e);
+                    throw new WebApplicationException(Response.Status.BAD_REQUEST);
+                } catch (ConcurrentTasksModificationException e) {
+                    return Response.status(Response.Status.CONFLICT).entity(e.getMessage()).build();
+                }
+            }
+        });
     }
 
     @POST
     @Path("/{subtaskId}")
-    @Produces(MediaType.APPLICATION_JSON)
+    @Produces({MediaType.APPLICATION_JSON, TaskRooMediaType.APPLICATION_SMILE})
     @ApiOperation(value = "Move task to be top-level task", notes = "Returns moved task", response = Task.class)
     @ApiResponses(value = {
             @ApiResponse(code = 200, message = "Task moved"),
             @ApiResponse(code = 403, message = "Access forbidden"),
             @ApiResponse(code = 404, message = "Task with given id does not exist")})
-    public Response moveToTopLevel(@Context SecurityContext sc, @PathParam("subtaskId") String subtaskId) {
-        Objects.requireNonNull(subtaskId);
-        try {
-            Task taskAfterUpdate = taskDao.moveToTopLevel(sc.getUserPrincipal().getName(), subtaskId);
-            return Response.ok(taskAfterUpdate).build();
-        } catch (NonExistingResourceOperationException e) {
-            return Response.status(Response.Status.NOT_FOUND).build();
-        }
+    public void moveToTopLevel(@Suspended AsyncResponse asyncResponse,
+                               @Context final SecurityContext sc, @PathParam("subtaskId") final String subtaskId) {
+        daoExecutor.execute(asyncResponse, new Callable<Response>() {
+            @Override
+            public Response call() {
+                Objects.requireNonNull(subtaskId);
+                try {
+                    Task taskAfterUpdate = taskDao.moveToTopLevel(sc.getUserPrincipal().getName(), subtaskId);
+                    return Response.ok(taskAfterUpdate).build();
+                } catch (NonExistingResourceOperationException e) {
+                    return Response.status(Response.Status.NOT_FOUND).build();
+                }
+            }
+        });
     }
 }
 
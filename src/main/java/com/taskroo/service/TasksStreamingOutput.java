@@ -0,0 +1,130 @@
+package com.taskroo.service;
+
+import com.fasterxml.jackson.annotation.JsonFilter;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.ser.impl.SimpleBeanPropertyFilter;
+import com.fasterxml.jackson.databind.ser.impl.SimpleFilterProvider;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.taskroo.data.TaskProjection;
+import com.taskroo.data.TasksCursor;
+import com.taskroo.domain.Tag;
+import com.taskroo.domain.Task;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+
+/**
+ * Writes tasks as JSON array while they are read from DB, so the whole list of tasks is never held in memory.
+ * Only fields of tasks and tags included in given projection are written. The array is written as Smile when Smile
+ * media type is given.
+ */
+class TasksStreamingOutput implements StreamingOutput {
+
+    private static final Logger LOGGER = LogManager.getLogger();
+
+    private static final String TASK_FILTER_ID = "task";
+    private static final String TAG_FILTER_ID = "tag";
+
+    private static final ObjectMapper JSON_OBJECT_MAPPER = createObjectMapper(new JsonFactory());
+    private static final ObjectMapper SMILE_OBJECT_MAPPER = createObjectMapper(new SmileFactory());
+
+    private final TasksCursor tasksCursor;
+    private final TaskProjection projection;
+    private final ObjectMapper objectMapper;
+
+    TasksStreamingOutput(TasksCursor tasksCursor, TaskProjection projection, MediaType mediaType) {
+        this.tasksCursor = tasksCursor;
+        this.projection = projection;
+        this.objectMapper = TaskRooMediaType.APPLICATION_SMILE_TYPE.equals(mediaType) ? SMILE_OBJECT_MAPPER : JSON_OBJECT_MAPPER;
+    }
+
+    /**
+     * Writes tasks already read from DB, so they are written with the same projection as streamed tasks.
+     */
+    TasksStreamingOutput(Collection<Task> tasks, TaskProjection projection, MediaType mediaType) {
+        this(new CollectionTasksCursor(tasks), projection, mediaType);
+    }
+
+    private static ObjectMapper createObjectMapper(JsonFactory jsonFactory) {
+        ObjectMapper objectMapper = new ObjectMapper(jsonFactory)
+                .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        objectMapper.getFactory().disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        // filters are attached with mix-ins, so serialization of tasks by JAX-RS providers is not affected
+        objectMapper.addMixInAnnotations(Task.class, TaskFilterMixIn.class);
+        objectMapper.addMixInAnnotations(Tag.class, TagFilterMixIn.class);
+        return objectMapper;
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        ObjectWriter objectWriter = objectMapper.writer(createFilterProvider());
+        try (TasksCursor tasks = tasksCursor;
+             JsonGenerator jsonGenerator = objectMapper.getFactory().createGenerator(output)) {
+            jsonGenerator.writeStartArray();
+            while (tasks.hasNext()) {
+                objectWriter.writeValue(jsonGenerator, tasks.next());
+            }
+            jsonGenerator.writeEndArray();
+        } catch (RuntimeException e) {
+            LOGGER.error("Streaming of tasks failed after response has been started", e);
+            throw e;
+        }
+    }
+
+    private SimpleFilterProvider createFilterProvider() {
+        return new SimpleFilterProvider()
+                .addFilter(TASK_FILTER_ID, projection.includesAllTaskFields()
+                        ? SimpleBeanPropertyFilter.serializeAllExcept(Collections.<String>emptySet())
+                        : SimpleBeanPropertyFilter.filterOutAllExcept(projection.getTaskFields()))
+                .addFilter(TAG_FILTER_ID, projection.includesAllTagFields()
+                        ? SimpleBeanPropertyFilter.serializeAllExcept(Collections.<String>emptySet())
+                        : SimpleBeanPropertyFilter.filterOutAllExcept(projection.getTagFields()));
+    }
+
+    @JsonFilter(TASK_FILTER_ID)
+    private static abstract class TaskFilterMixIn {
+    }
+
+    @JsonFilter(TAG_FILTER_ID)
+    private static abstract class TagFilterMixIn {
+    }
+
+    private static class CollectionTasksCursor implements TasksCursor {
+
+        private final Iterator<Task> tasks;
+
+        private CollectionTasksCursor(Collection<Task> tasks) {
+            this.tasks = tasks.iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return tasks.hasNext();
+        }
+
+        @Override
+        public Task next() {
+            return tasks.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("Tasks cannot be removed using tasks cursor");
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.taskroo.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies in microseconds. Every power of two is split into 16 linear buckets, so
+ * percentiles are reported with relative error below 7% while the histogram has a fixed size. Latencies are counted
+ * since the start of the application.
+ */
+public class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long duration, TimeUnit unit) {
+        long micros = Math.max(0, unit.toMicros(duration));
+        counts.incrementAndGet(bucketIndex(micros));
+        totalCount.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        long currentMax;
+        while (micros > (currentMax = maxMicros.get()) && !maxMicros.compareAndSet(currentMax, micros)) {
+            // retries until the max is updated by this or another thread
+        }
+    }
+
+    /**
+     * Returns the upper bound of the bucket containing given percentile of recorded latencies, never greater than
+     * the highest recorded latency.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return latency in microseconds or 0 when nothing has been recorded
+     */
+    public long getValueAtPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile has to be between 0 and 100, but was " + percentile);
+        }
+        long count = totalCount.get();
+        if (count == 0) {
+            return 0;
+        }
+        long targetCount = Math.max(1, (long) Math.ceil(percentile / 100 * count));
+        long cumulativeCount = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            cumulativeCount += counts.get(i);
+            if (cumulativeCount >= targetCount) {
+                return Math.min(bucketUpperBound(i), maxMicros.get());
+            }
+        }
+        return maxMicros.get();
+    }
+
+    /**
+     * Returns the number of recorded latencies not greater than given bound, as cumulative buckets of Prometheus
+     * histograms. Latencies in the bucket containing the bound are counted too, so the bound is as precise as the
+     * buckets are.
+     *
+     * @param micros bound in microseconds
+     * @return number of recorded latencies up to the bound
+     */
+    public long getCountAtOrBelow(long micros) {
+        int lastBucket = bucketIndex(Math.max(0, micros));
+        long cumulativeCount = 0;
+        for (int i = 0; i <= lastBucket; i++) {
+            cumulativeCount += counts.get(i);
+        }
+        return cumulativeCount;
+    }
+
+    public long getCount() {
+        return totalCount.get();
+    }
+
+    public long getTotalMicros() {
+        return totalMicros.get();
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    static int bucketIndex(long micros) {
+        if (micros < SUB_BUCKETS) {
+            return (int) micros;
+        }
+        int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros(micros);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) ((micros >>> shift) & (SUB_BUCKETS - 1));
+    }
+
+    static long bucketUpperBound(int bucketIndex) {
+        if (bucketIndex < SUB_BUCKETS) {
+            return bucketIndex;
+        }
+        int shift = bucketIndex / SUB_BUCKETS - 1;
+        long subBucket = SUB_BUCKETS + bucketIndex % SUB_BUCKETS;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,117 @@
+package com.taskroo.service.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Latencies and response statuses of requests, recorded separately for every resource method, and the number of
+ * requests being processed.
+ */
+@Component
+public class RequestMetrics {
+
+    /**
+     * Name of the endpoint of requests not matched to any resource method.
+     */
+    public static final String UNMATCHED_RESOURCE = "unmatched";
+
+    private final ConcurrentMap<String, EndpointMetrics> endpoints = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlightCount = new AtomicInteger();
+
+    public void requestStarted() {
+        inFlightCount.incrementAndGet();
+    }
+
+    public void requestFinished(String httpMethod, String resource, int status, long durationNanos) {
+        inFlightCount.decrementAndGet();
+        getEndpointMetrics(httpMethod, resource).record(status, durationNanos);
+    }
+
+    private EndpointMetrics getEndpointMetrics(String httpMethod, String resource) {
+        String key = httpMethod + " " + resource;
+        EndpointMetrics endpointMetrics = endpoints.get(key);
+        if (endpointMetrics == null) {
+            EndpointMetrics newEndpointMetrics = new EndpointMetrics(httpMethod, resource);
+            endpointMetrics = endpoints.putIfAbsent(key, newEndpointMetrics);
+            if (endpointMetrics == null) {
+                endpointMetrics = newEndpointMetrics;
+            }
+        }
+        return endpointMetrics;
+    }
+
+    public int getInFlightCount() {
+        return inFlightCount.get();
+    }
+
+    /**
+     * @return metrics of all endpoints which have been requested, sorted by resource and HTTP method
+     */
+    public Collection<EndpointMetrics> getEndpoints() {
+        SortedMap<String, EndpointMetrics> sortedEndpoints = new TreeMap<>();
+        for (EndpointMetrics endpointMetrics : endpoints.values()) {
+            sortedEndpoints.put(endpointMetrics.getResource() + " " + endpointMetrics.getHttpMethod(), endpointMetrics);
+        }
+        return Collections.unmodifiableCollection(new ArrayList<>(sortedEndpoints.values()));
+    }
+
+    public static class EndpointMetrics {
+
+        private final String httpMethod;
+        private final String resource;
+        private final LatencyHistogram latencyHistogram = new LatencyHistogram();
+        private final ConcurrentMap<Integer, AtomicLong> statusCounts = new ConcurrentHashMap<>();
+
+        private EndpointMetrics(String httpMethod, String resource) {
+            this.httpMethod = httpMethod;
+            this.resource = resource;
+        }
+
+        private void record(int status, long durationNanos) {
+            latencyHistogram.record(durationNanos, TimeUnit.NANOSECONDS);
+            AtomicLong statusCount = statusCounts.get(status);
+            if (statusCount == null) {
+                AtomicLong newStatusCount = new AtomicLong();
+                statusCount = statusCounts.putIfAbsent(status, newStatusCount);
+                if (statusCount == null) {
+                    statusCount = newStatusCount;
+                }
+            }
+            statusCount.incrementAndGet();
+        }
+
+        public String getHttpMethod() {
+            return httpMethod;
+        }
+
+        public String getResource() {
+            return resource;
+        }
+
+        public LatencyHistogram getLatencyHistogram() {
+            return latencyHistogram;
+        }
+
+        /**
+         * @return number of responses by status, sorted by status
+         */
+        public SortedMap<Integer, Long> getStatusCounts() {
+            SortedMap<Integer, Long> counts = new TreeMap<>();
+            for (Map.Entry<Integer, AtomicLong> statusCount : statusCounts.entrySet()) {
+                counts.put(statusCount.getKey(), statusCount.getValue().get());
+            }
+            return counts;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.taskroo.service.security;
 
+import com.taskroo.data.SecurityTokenAccessTimeUpdater;
 import com.taskroo.data.SecurityTokenDao;
 import com.taskroo.domain.Role;
 import com.taskroo.domain.User;
+import com.taskroo.service.tracing.Span;
+import com.taskroo.service.tracing.Tracer;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -26,11 +29,19 @@ public class SecurityContextFilter implements ContainerRequestFilter {
     private static final Logger LOGGER = LogManager.getLogger();
 
     private final SecurityTokenDao securityTokenDao;
+    private final SecurityTokenCache securityTokenCache;
+    private final SecurityTokenAccessTimeUpdater securityTokenAccessTimeUpdater;
+    private final Tracer tracer;
     private String authenticationServiceUrl;
 
     @Inject
-    public SecurityContextFilter(SecurityTokenDao securityTokenDao, @Named("authenticationServiceUrl") String authenticationServiceUrl) {
+    public SecurityContextFilter(SecurityTokenDao securityTokenDao, SecurityTokenCache securityTokenCache,
+                                 SecurityTokenAccessTimeUpdater securityTokenAccessTimeUpdater, Tracer tracer,
+                                 @Named("authenticationServiceUrl") String authenticationServiceUrl) {
         this.securityTokenDao = securityTokenDao;
+        this.securityTokenCache = securityTokenCache;
+        this.securityTokenAccessTimeUpdater = securityTokenAccessTimeUpdater;
+        this.tracer = tracer;
         this.authenticationServiceUrl = authenticationServiceUrl;
     }
 
@@ -53,11 +64,27 @@ public class SecurityContextFilter implements ContainerRequestFilter {
 
         if (tokenKey != null && !tokenKey.isEmpty()) {
             LOGGER.debug("Security TokenKey found - checking if TokenKey is correct...");
-            securityToken = securityTokenDao.findOneAndUpdateLastAccessedTime(tokenKey);
+            Span span = tracer.startSpan("SecurityContextFilter.findSecurityToken");
+            try {
+                securityToken = securityTokenCache.get(tokenKey);
+                if (span != null) {
+                    span.tag("cache.hit", String.valueOf(securityToken != null));
+                }
+                if (securityToken == null) {
+                    securityToken = securityTokenDao.findOne(tokenKey);
+                    if (securityToken != null) {
+                        securityTokenCache.put(securityToken);
+                    }
+                }
+            } finally {
+                tracer.finish(span);
+            }
 
             if (null != securityToken) {
                 LOGGER.debug("User authenticated correctly.");
-                Set<Role> roles = new HashSet<>();
+                securityTokenAccessTimeUpdater.recordAccess(securityToken);
+                // every authenticated user is a user, admins additionally get roles of their tokens
+                Set<Role> roles = new HashSet<>(securityToken.getRoles());
                 roles.add(Role.USER);
                 user = new User(securityToken.getUserId(), roles);
             }
@@ -66,7 +93,7 @@ public class SecurityContextFilter implements ContainerRequestFilter {
         requestContext.setSecurityContext(new TaskRooSecurityContext(securityToken, user, authenticationServiceUrl));
     }
 
-    private Map<String, String> parseAuthorizationHeader(String authorizationHeader) {
+    static Map<String, String> parseAuthorizationHeader(String authorizationHeader) {
         Map<String, String> authHeaderMap = new HashMap<>();
 
         authorizationHeader = authorizationHeader.replace("TaskRooAuth ", "");
@@ -0,0 +1,137 @@
+package com.taskroo.service.security;
+
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded in-memory cache of security tokens, so repeated requests with the same tokenKey do not have to hit
+ * the securityTokens collection. Entries are evicted when least recently used and when they are older than TTL.
+ *
+ * Code removing security tokens from the securityTokens collection has to invalidate them here as well, otherwise
+ * a removed token is accepted until its entry expires.
+ */
+@Component
+public class SecurityTokenCache {
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final LinkedHashMap<String, CachedSecurityToken> tokens;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    @Inject
+    public SecurityTokenCache(@Named("securityTokenCacheMaxSize") Integer maxSize,
+                              @Named("securityTokenCacheTtlSeconds") Integer ttlSeconds) {
+        if (maxSize < 0 || ttlSeconds < 0) {
+            throw new IllegalArgumentException("Security token cache size and TTL cannot be negative");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlSeconds * 1000L;
+        this.tokens = new LinkedHashMap<String, CachedSecurityToken>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedSecurityToken> eldest) {
+                if (size() > SecurityTokenCache.this.maxSize) {
+                    evictionCount.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns cached security token with given key
+     *
+     * @param tokenKey key of the security token
+     * @return security token or null when it is not cached or cached entry has expired
+     */
+    public SecurityToken get(String tokenKey) {
+        synchronized (tokens) {
+            CachedSecurityToken cachedToken = tokens.get(tokenKey);
+            if (cachedToken == null) {
+                missCount.incrementAndGet();
+                return null;
+            }
+            if (cachedToken.isExpired(System.currentTimeMillis())) {
+                tokens.remove(tokenKey);
+                evictionCount.incrementAndGet();
+                missCount.incrementAndGet();
+                return null;
+            }
+            hitCount.incrementAndGet();
+            return cachedToken.securityToken;
+        }
+    }
+
+    public void put(SecurityToken securityToken) {
+        if (maxSize == 0 || ttlMillis == 0) {
+            return;
+        }
+        synchronized (tokens) {
+            tokens.put(securityToken.getId(), new CachedSecurityToken(securityToken, System.currentTimeMillis() + ttlMillis));
+        }
+    }
+
+    public void invalidate(String tokenKey) {
+        synchronized (tokens) {
+            tokens.remove(tokenKey);
+        }
+    }
+
+    public void invalidateAllOfUser(String userId) {
+        synchronized (tokens) {
+            Iterator<CachedSecurityToken> iterator = tokens.values().iterator();
+            while (iterator.hasNext()) {
+                if (iterator.next().securityToken.getUserId().equals(userId)) {
+                    iterator.remove();
+                }
+            }
+        }
+    }
+
+    public void invalidateAll() {
+        synchronized (tokens) {
+            tokens.clear();
+        }
+    }
+
+    public int size() {
+        synchronized (tokens) {
+            return tokens.size();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    private static class CachedSecurityToken {
+        private final SecurityToken securityToken;
+        private final long expirationTime;
+
+        private CachedSecurityToken(SecurityToken securityToken, long expirationTime) {
+            this.securityToken = securityToken;
+            this.expirationTime = expirationTime;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expirationTime;
+        }
+    }
+}
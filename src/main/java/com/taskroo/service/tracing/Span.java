@@ -0,0 +1,108 @@
+package com.taskroo.service.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timed operation of a traced request. Spans are created and exported by {@link Tracer}.
+ */
+public class Span {
+
+    /**
+     * Zipkin span kind
+     */
+    public enum Kind {
+        SERVER, CLIENT
+    }
+
+    private final String traceId;
+    private final String id;
+    private final Span parent;
+    private final Kind kind;
+    private final long timestampMicros;
+    private final long startNanos;
+    private final Map<String, String> tags = new LinkedHashMap<>();
+    private String name;
+    private String remoteServiceName;
+    private long durationMicros = -1;
+
+    Span(String traceId, String id, Span parent, String name, Kind kind, long timestampMicros, long startNanos) {
+        this.traceId = traceId;
+        this.id = id;
+        this.parent = parent;
+        this.name = name;
+        this.kind = kind;
+        this.timestampMicros = timestampMicros;
+        this.startNanos = startNanos;
+    }
+
+    public Span tag(String key, String value) {
+        tags.put(key, value);
+        return this;
+    }
+
+    /**
+     * Renames the span, e.g. when the resource method handling the request becomes known after the span is started
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets name of the service called by client span, e.g. the database
+     */
+    public void setRemoteServiceName(String remoteServiceName) {
+        this.remoteServiceName = remoteServiceName;
+    }
+
+    void finish(long endNanos) {
+        // zipkin drops spans with zero duration
+        durationMicros = Math.max(1, TimeUnit.NANOSECONDS.toMicros(endNanos - startNanos));
+    }
+
+    public String getTraceId() {
+        return traceId;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getParentId() {
+        return parent == null ? null : parent.getId();
+    }
+
+    Span getParent() {
+        return parent;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getRemoteServiceName() {
+        return remoteServiceName;
+    }
+
+    public long getTimestampMicros() {
+        return timestampMicros;
+    }
+
+    public long getDurationMicros() {
+        return durationMicros;
+    }
+
+    public boolean isFinished() {
+        return durationMicros >= 0;
+    }
+
+    public Map<String, String> getTags() {
+        return Collections.unmodifiableMap(tags);
+    }
+}
@@ -0,0 +1,177 @@
+package com.taskroo.service.tracing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.springframework.stereotype.Component;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates spans of traced requests and exports finished spans in Zipkin JSON v2 format, one span per line, to the
+ * spans log. The span of the current thread is the parent of spans started by the thread, so it has to be handed over
+ * when a request continues on another thread. When tracing is disabled no spans are created and all methods accept
+ * null spans.
+ */
+@Component
+public class Tracer {
+
+    static final Logger SPANS_LOGGER = LogManager.getLogger("com.taskroo.service.tracing.Spans");
+
+    static final String SERVICE_NAME = "taskroo-api";
+
+    private static final Logger LOGGER = LogManager.getLogger();
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final boolean enabled;
+    private final ThreadLocal<Span> currentSpan = new ThreadLocal<>();
+
+    @Inject
+    public Tracer(@Named("tracingEnabled") Boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts new trace with server span, which becomes the span of the current thread
+     *
+     * @return root span of the trace or null when tracing is disabled
+     */
+    public Span startTrace(String name) {
+        if (!enabled) {
+            return null;
+        }
+        String traceId = newId();
+        Span span = new Span(traceId, traceId, null, name, Span.Kind.SERVER, currentTimeMicros(), System.nanoTime());
+        currentSpan.set(span);
+        return span;
+    }
+
+    /**
+     * Starts child of the span of the current thread, which becomes the span of the current thread until it is finished
+     *
+     * @return started span or null when the current thread has no span
+     */
+    public Span startSpan(String name) {
+        Span span = startChildSpan(name, null, System.nanoTime());
+        if (span != null) {
+            currentSpan.set(span);
+        }
+        return span;
+    }
+
+    /**
+     * Starts client child of the span of the current thread, which does not become the span of the current thread.
+     * Start time can be in the past for operations which are traced once they are done.
+     *
+     * @param startNanos start time from {@link System#nanoTime()}
+     * @return started span or null when the current thread has no span
+     */
+    public Span startClientSpan(String name, long startNanos) {
+        return startChildSpan(name, Span.Kind.CLIENT, startNanos);
+    }
+
+    private Span startChildSpan(String name, Span.Kind kind, long startNanos) {
+        Span parent = currentSpan.get();
+        if (parent == null) {
+            return null;
+        }
+        long timestampMicros = currentTimeMicros() - TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos);
+        return new Span(parent.getTraceId(), newId(), parent, name, kind, timestampMicros, startNanos);
+    }
+
+    /**
+     * Finishes and exports the span. When it is the span of the current thread, its parent becomes the span of the
+     * current thread.
+     */
+    public void finish(Span span) {
+        if (span == null || span.isFinished()) {
+            return;
+        }
+        span.finish(System.nanoTime());
+        if (currentSpan.get() == span) {
+            setCurrentSpan(span.getParent());
+        }
+        if (SPANS_LOGGER.isInfoEnabled()) {
+            try {
+                SPANS_LOGGER.info(toJson(span));
+            } catch (IOException e) {
+                LOGGER.error("Could not export span " + span.getName(), e);
+            }
+        }
+    }
+
+    public Span getCurrentSpan() {
+        return currentSpan.get();
+    }
+
+    /**
+     * Sets the span of the current thread, e.g. to continue the trace of a request on another thread
+     *
+     * @param span span of the current thread, or null to remove it
+     */
+    public void setCurrentSpan(Span span) {
+        if (span == null) {
+            currentSpan.remove();
+        } else {
+            currentSpan.set(span);
+        }
+    }
+
+    static String toJson(Span span) throws IOException {
+        StringWriter json = new StringWriter(256);
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(json)) {
+            generator.writeStartObject();
+            generator.writeStringField("traceId", span.getTraceId());
+            if (span.getParentId() != null) {
+                generator.writeStringField("parentId", span.getParentId());
+            }
+            generator.writeStringField("id", span.getId());
+            if (span.getKind() != null) {
+                generator.writeStringField("kind", span.getKind().name());
+            }
+            generator.writeStringField("name", span.getName());
+            generator.writeNumberField("timestamp", span.getTimestampMicros());
+            generator.writeNumberField("duration", span.getDurationMicros());
+            generator.writeObjectFieldStart("localEndpoint");
+            generator.writeStringField("serviceName", SERVICE_NAME);
+            generator.writeEndObject();
+            if (span.getRemoteServiceName() != null) {
+                generator.writeObjectFieldStart("remoteEndpoint");
+                generator.writeStringField("serviceName", span.getRemoteServiceName());
+                generator.writeEndObject();
+            }
+            if (!span.getTags().isEmpty()) {
+                generator.writeObjectFieldStart("tags");
+                for (Map.Entry<String, String> tag : span.getTags().entrySet()) {
+                    generator.writeStringField(tag.getKey(), tag.getValue());
+                }
+                generator.writeEndObject();
+            }
+            generator.writeEndObject();
+        }
+        return json.toString();
+    }
+
+    private static String newId() {
+        long id;
+        do {
+            id = ThreadLocalRandom.current().nextLong();
+        } while (id == 0);
+        return String.format("%016x", id);
+    }
+
+    private static long currentTimeMicros() {
+        return TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,77 @@
+package com.taskroo.server;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Jetty thread pool starting a new virtual thread for every task. Compiled only with the virtual-threads profile.
+ * <p>
+ * This pool does not increase the number of concurrent DB calls. The Mongo driver (2.10) does every round trip, as
+ * well as getLastError and commands, inside synchronized methods. A virtual thread doing Mongo I/O is therefore pinned
+ * to its carrier thread, and no more DB calls can be in flight than there are carrier threads, which is fewer than
+ * the threads of the default Jetty pool. DB calls have to stay on the platform threads of the DAO executor
+ * (dao.executor.enabled=true), which bounds their concurrency; virtual threads only let more requests wait for them
+ * without a platform thread each. Not a throughput option until the driver does I/O without holding monitors.
+ */
+public class VirtualThreadPool extends AbstractLifeCycle implements ThreadPool {
+
+    private final AtomicInteger runningTasks = new AtomicInteger();
+    private volatile ExecutorService executor;
+
+    @Override
+    protected void doStart() throws Exception {
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("jetty-virtual-", 0).factory());
+        super.doStart();
+    }
+
+    @Override
+    protected void doStop() throws Exception {
+        super.doStop();
+        executor.shutdown();
+        if (!executor.awaitTermination(getStopTimeout(), TimeUnit.MILLISECONDS)) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void execute(final Runnable task) {
+        executor.execute(() -> {
+            runningTasks.incrementAndGet();
+            try {
+                task.run();
+            } finally {
+                runningTasks.decrementAndGet();
+            }
+        });
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        while (!executor.awaitTermination(1, TimeUnit.DAYS)) {
+            // waits until the pool is stopped
+        }
+    }
+
+    @Override
+    public int getThreads() {
+        return runningTasks.get();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    /**
+     * Virtual threads are created on demand, so the pool never runs out of them.
+     */
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
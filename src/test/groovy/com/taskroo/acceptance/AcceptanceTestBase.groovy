@@ -17,6 +17,8 @@ abstract class AcceptanceTestBase extends Specification {
     public static final DBCollection tagsCollection = db.getCollection('tags')
     public static final DBCollection tasksCollection = db.getCollection('tasks')
     public static final DBCollection securityTokensCollection = db.getCollection("securityTokens")
+    public static final DBCollection dataVersionsCollection = db.getCollection('dataVersions')
+    public static final DBCollection tombstonesCollection = db.getCollection('tombstones')
 
     public static final String TEST_USER_ID = 'userName'
 
@@ -29,6 +31,8 @@ abstract class AcceptanceTestBase extends Specification {
         securityTokensCollection.remove(QueryBuilder.start('user_id').is(TEST_USER_ID).get())
         tasksCollection.remove(QueryBuilder.start('owner_id').is(TEST_USER_ID).get())
         tagsCollection.remove(QueryBuilder.start('_id.owner_id').is(TEST_USER_ID).get())
+        dataVersionsCollection.remove(QueryBuilder.start('_id').is(TEST_USER_ID).get())
+        tombstonesCollection.remove(QueryBuilder.start('owner_id').is(TEST_USER_ID).get())
     }
 
 
@@ -39,6 +39,34 @@ class TasksServiceSpec extends AcceptanceTestBase {
         response.data.tags.first().name == 'planned'
     }
 
+    def "should return 200 with result of each task when batch of tasks has been sent"() {
+        given: "user is authenticated"
+        def securityTokenId = createSecurityTokenWithUser(TEST_USER_ID)
+        when: "client sends POST request to create batch of tasks"
+        def response = client.post(path: 'tasks/batch', body: '[{"title": "taskTitle1"}, {"title": ""}]',
+                requestContentType: ContentType.JSON, headers: ['Authorization': generateAuthorizationHeader(securityTokenId)])
+        then: "result of each task is returned"
+        response.status == 200
+        response.data.size() == 2
+        response.data[0].status == 'CREATED'
+        response.data[0].task.title == 'taskTitle1'
+        response.data[1].status == 'INVALID'
+        response.data[1].error != null
+    }
+
+    def "should return 200 with result of each task when batch of tasks to delete has been sent"() {
+        given: "user is authenticated and has a task"
+        def securityTokenId = createSecurityTokenWithUser(TEST_USER_ID)
+        def createTaskResponse = client.post(path: 'tasks', body: '{"title": "taskTitle1"}', requestContentType: ContentType.JSON,
+                headers: ['Authorization': generateAuthorizationHeader(securityTokenId)])
+        when: "client sends POST request to delete batch of tasks"
+        def response = client.post(path: 'tasks/batch/delete', body: "[\"${createTaskResponse.data.id}\", \"${ObjectId.get()}\"]",
+                requestContentType: ContentType.JSON, headers: ['Authorization': generateAuthorizationHeader(securityTokenId)])
+        then: "result of each task is returned"
+        response.status == 200
+        response.data*.status == ['DELETED', 'NOT_FOUND']
+    }
+
     def "should return 400 (Bad Request) when trying to insert task with non-existing tags"() {
         given: "user is authenticated"
         def securityTokenId = createSecurityTokenWithUser(TEST_USER_ID)
@@ -131,6 +159,27 @@ class TasksServiceSpec extends AcceptanceTestBase {
         response.data.collect { it.title }.toSet() == ['taskTitle1', 'taskTitle2'].toSet()
     }
 
+    def "should return 304 (Not Modified) when tasks have not changed since the version known to client"() {
+        given: 'user has tasks and has read them'
+        def securityTokenId = createSecurityTokenWithUser(TEST_USER_ID)
+        client.post(path: 'tasks', body: '{"title": "taskTitle1"}', requestContentType: ContentType.JSON,
+                headers: ['Authorization': generateAuthorizationHeader(securityTokenId)])
+        def firstResponse = client.get([path: 'tasks', headers: ['Authorization': generateAuthorizationHeader(securityTokenId)]])
+        def entityTag = firstResponse.headers['ETag'].value
+        when: 'client sends conditional request before and after tasks are modified'
+        def notModifiedResponse = client.get([path: 'tasks', headers: ['Authorization': generateAuthorizationHeader(securityTokenId),
+                                                                       'If-None-Match': entityTag]])
+        client.post(path: 'tasks', body: '{"title": "taskTitle2"}', requestContentType: ContentType.JSON,
+                headers: ['Authorization': generateAuthorizationHeader(securityTokenId)])
+        def modifiedResponse = client.get([path: 'tasks', headers: ['Authorization': generateAuthorizationHeader(securityTokenId),
+                                                                    'If-None-Match': entityTag]])
+        then: '304 is returned until tasks are modified'
+        firstResponse.status == 200
+        notModifiedResponse.status == 304
+        modifiedResponse.status == 200
+        modifiedResponse.headers['ETag'].value != entityTag
+    }
+
     def "should remove task of given id from DB and return 204"() {
         given: 'user exists in security token and user has tasks'
         def securityTokenId = createSecurityTokenWithUser(TEST_USER_ID)
@@ -0,0 +1,25 @@
+package com.taskroo.data
+
+import org.bson.types.ObjectId
+import spock.lang.Specification
+
+class ContinuationTokenTest extends Specification {
+
+    def "should decode encoded token"() {
+        given:
+        def token = new ContinuationToken(closedDate, ObjectId.get())
+        expect:
+        ContinuationToken.decode(token.encode()) == token
+        where:
+        closedDate << [new Date(), new Date(-1000), null]
+    }
+
+    def "should throw exception when decoding invalid token"() {
+        when:
+        ContinuationToken.decode(encodedToken)
+        then:
+        thrown(IllegalArgumentException)
+        where:
+        encodedToken << [null, '', 'abc', 'z' * 24, ObjectId.get().toString() + 'xyz']
+    }
+}
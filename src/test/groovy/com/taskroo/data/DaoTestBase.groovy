@@ -2,6 +2,7 @@ package com.taskroo.data
 import com.mongodb.DB
 import com.mongodb.DBCollection
 import com.taskroo.mongo.MongoConnector
+import com.taskroo.service.tracing.Tracer
 import spock.lang.Specification
 
 class DaoTestBase extends Specification {
@@ -12,4 +13,7 @@ class DaoTestBase extends Specification {
     public static final DBCollection tagsCollection = db.getCollection('tags')
     public static final DBCollection tasksCollection = db.getCollection('tasks')
     public static final DBCollection securityTokensCollection = db.getCollection('securityTokens')
+    public static final DBCollection dataVersionsCollection = db.getCollection('dataVersions')
+    public static final DBCollection tombstonesCollection = db.getCollection('tombstones')
+    public static final MongoOperationMetrics mongoOperationMetrics = new MongoOperationMetrics(100, new Tracer(false))
 }
@@ -0,0 +1,83 @@
+package com.taskroo.data
+
+import com.taskroo.domain.Tag
+import com.taskroo.domain.Task
+
+class DataVersionDaoIT extends DaoTestBase {
+
+    DataVersionDao dataVersionDao
+    TagDao tagDao
+    TaskDao taskDao
+
+    void setup() {
+        cleanup()
+        dataVersionDao = new DataVersionDao(dataVersionsCollection, mongoOperationMetrics)
+        tagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection, new TagsDictionaryCache(100, 60), dataVersionDao,
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        taskDao = new TaskDao(tasksCollection, tagDao, new DbTasksConverter(), dataVersionDao,
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+    }
+
+    void cleanup() {
+        [tasksCollection, tagsCollection, dataVersionsCollection, tombstonesCollection]*.drop()
+    }
+
+    def "should return 0 as version of data of owner which has never been modified"() {
+        expect:
+        dataVersionDao.getVersion('mariusz') == 0
+    }
+
+    def "should increase version of owner's data only"() {
+        when:
+        dataVersionDao.increment('mariusz')
+        dataVersionDao.increment('mariusz')
+        dataVersionDao.increment('other')
+        then:
+        dataVersionDao.getVersion('mariusz') == 2
+        dataVersionDao.getVersion('other') == 1
+    }
+
+    def "should record operations on data versions and tombstones in Mongo operation metrics"() {
+        given:
+        def tombstoneDao = new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics)
+        when:
+        dataVersionDao.increment('mariusz')
+        dataVersionDao.getVersion('mariusz')
+        tombstoneDao.addTag('mariusz', 'tagId', new Date())
+        tombstoneDao.findRemovedSince('mariusz', new Date(0))
+        then:
+        mongoOperationMetrics.operations*.daoMethod.containsAll(['DataVersionDao.increment', 'DataVersionDao.getVersion',
+                                                                 'TombstoneDao.add', 'TombstoneDao.findRemovedSince'])
+    }
+
+    def "should increase version of owner's data with every modification of tasks and tags"() {
+        given:
+        def versions = [dataVersionDao.getVersion('mariusz')]
+        when:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        versions << dataVersionDao.getVersion('mariusz')
+        def task = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task').addTag(tag).build())
+        versions << dataVersionDao.getVersion('mariusz')
+        def subtask = taskDao.insertAll('mariusz', [new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').build()])
+                .first().task
+        versions << dataVersionDao.getVersion('mariusz')
+        taskDao.addSubtask('mariusz', task.id, subtask.id)
+        versions << dataVersionDao.getVersion('mariusz')
+        taskDao.moveToTopLevel('mariusz', subtask.id)
+        versions << dataVersionDao.getVersion('mariusz')
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(task.id).setTitle('updated task').setFinished(true).build())
+        versions << dataVersionDao.getVersion('mariusz')
+        taskDao.updateAll('mariusz', [new Task.TaskBuilder().setId(subtask.id).setTitle('updated subtask').build()])
+        versions << dataVersionDao.getVersion('mariusz')
+        taskDao.remove('mariusz', subtask.id)
+        versions << dataVersionDao.getVersion('mariusz')
+        taskDao.removeAll('mariusz', [task.id])
+        versions << dataVersionDao.getVersion('mariusz')
+        tagDao.update('mariusz', tag.id, new Tag(null, 'mariusz', 'tagB', null, false))
+        versions << dataVersionDao.getVersion('mariusz')
+        tagDao.remove('mariusz', tag.id)
+        versions << dataVersionDao.getVersion('mariusz')
+        then:
+        versions == (0..11).collect { it as long }
+    }
+}
@@ -24,6 +24,15 @@ class DbTagConverterTest extends Specification {
         tag.isVisibleInWorkView() == true
     }
 
+    def "should set size of tag when converting db object with size"() {
+        given:
+        def dbTag = new BasicDBObject([_id: '123', name: 'tagName', owner_id: 'tagOwner', color: 'blue', visible_in_workview: true, size: 7])
+        when:
+        def tag = dbTagConverter.convertDbObjectToTag(dbTag)
+        then:
+        tag.size == 7
+    }
+
     def "should convert list of db objects to list of tags"() {
         given:
         List<DBObject> dbTags = []
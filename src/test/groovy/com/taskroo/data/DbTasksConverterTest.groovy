@@ -2,6 +2,7 @@ package com.taskroo.data
 
 import com.mongodb.BasicDBObject
 import com.mongodb.DBObject
+import com.taskroo.domain.Tag
 import spock.lang.Specification
 
 class DbTasksConverterTest extends Specification {
@@ -28,14 +29,14 @@ class DbTasksConverterTest extends Specification {
 
     def "should put tasks with no elements in path as top level tasks"() {
         when:
-        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, Collections.emptyList())
+        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, TagsDictionary.empty())
         then:
         tasks.collect { it.id } as Set == ['1', '9', '10'] as Set
     }
 
     def "should add subtasks of top level tasks when subtasks given"() {
         when:
-        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, Collections.emptyList())
+        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, TagsDictionary.empty())
         then:
         tasks.find { it.id == '1' }.subtasks.collect { it.id } as Set == ['2', '3', '5'] as Set
         tasks.find { it.id == '10' }.subtasks.collect { it.id } == ['11']
@@ -43,7 +44,7 @@ class DbTasksConverterTest extends Specification {
 
     def "should add lower level subtasks to proper tasks"() {
         when:
-        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, Collections.emptyList())
+        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, TagsDictionary.empty())
         then:
         tasks.find { it.id == '1' }.subtasks.find { it.id == '3' }.subtasks.collect { it.id } == ['4']
         tasks.find { it.id == '1' }.subtasks.find { it.id == '5' }.subtasks.collect { it.id } == ['6']
@@ -55,9 +56,55 @@ class DbTasksConverterTest extends Specification {
 
     def "should set parentId for the tasks when task is a subtask"() {
         when:
-        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, Collections.emptyList())
+        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, TagsDictionary.empty())
         then:
         def topLevelTask = tasks.find { it.id == '1' }
         topLevelTask.subtasks.each { assert it.parentTask == topLevelTask }
     }
+
+    def "should keep order of given tasks among top level tasks and among subtasks"() {
+        when:
+        def tasks = dbTasksConverter.convertToTasksTree(dbTasks, TagsDictionary.empty())
+        then:
+        tasks.collect { it.id } == ['1', '9', '10']
+        tasks.find { it.id == '1' }.subtasks.collect { it.id } == ['3', '2', '5']
+        tasks.find { it.id == '1' }.subtasks.find { it.id == '5' }.subtasks.find { it.id == '6' }.subtasks.collect {
+            it.id
+        } == ['8', '7']
+    }
+
+    def "should put tasks with parent missing as top level tasks ordered by path when building part of a tree"() {
+        given:
+        def partOfTree = dbTasks.findAll { !(it._id in ['1', '10', '6']) }
+        when:
+        def tasks = dbTasksConverter.convertToTasksTree(partOfTree, TagsDictionary.empty(), true)
+        then:
+        tasks.collect { it.id } == ['9', '3', '2', '5', '8', '7', '11']
+        tasks.find { it.id == '3' }.subtasks.collect { it.id } == ['4']
+        tasks.find { it.id == '11' }.subtasks.collect { it.id } == ['12']
+        tasks.find { it.id == '5' }.subtasks.isEmpty()
+    }
+
+    def "should skip tags of task which do not exist anymore"() {
+        given:
+        def tagsDictionary = new TagsDictionary([new Tag('tagId1', 'ownerId', 'tag1', null, true)])
+        def dbTask = new BasicDBObject([_id: '1', title: 'title 1', finished: false, created_date: new Date(), owner_id: 'ownerId', path: [],
+                                        tags: ['tagId1', 'removedTagId']])
+        when:
+        def task = dbTasksConverter.convertSingleDbObjectToTask(dbTask, tagsDictionary)
+        then:
+        task.tags*.id == ['tagId1']
+    }
+
+    def "should convert task read with projection without optional keys"() {
+        given:
+        def projectedDbTask = new BasicDBObject([_id: '1', title: 'title 1', created_date: new Date(), owner_id: 'ownerId', path: []])
+        when:
+        def task = dbTasksConverter.convertSingleDbObjectToTask(projectedDbTask, TagsDictionary.empty())
+        then:
+        task.title == 'title 1'
+        !task.finished
+        task.description == null
+        task.tags.isEmpty()
+    }
 }
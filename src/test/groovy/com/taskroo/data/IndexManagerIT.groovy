@@ -0,0 +1,22 @@
+package com.taskroo.data
+
+class IndexManagerIT extends DaoTestBase {
+
+    void cleanup() {
+        tasksCollection.drop()
+        tagsCollection.drop()
+        tombstonesCollection.drop()
+    }
+
+    def "should support all declared query shapes after indexes have been created"() {
+        given:
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, true)
+        when:
+        indexManager.ensureIndexes()
+        then:
+        indexManager.findUnsupportedQueryShapes().isEmpty()
+        tasksCollection.getIndexInfo()*.name.containsAll(['owner_finished_closed_date', 'owner_path', 'path', 'owner_tags'])
+        tagsCollection.getIndexInfo()*.name.contains('owner_name')
+        tombstonesCollection.getIndexInfo()*.name.containsAll(['owner_removed_date', 'removed_date_ttl'])
+    }
+}
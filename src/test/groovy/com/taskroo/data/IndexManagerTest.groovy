@@ -0,0 +1,111 @@
+package com.taskroo.data
+
+import com.mongodb.BasicDBObject
+import com.mongodb.DBCollection
+import com.mongodb.DBObject
+import com.mongodb.MongoException
+import spock.lang.Specification
+
+class IndexManagerTest extends Specification {
+
+    DBCollection tasksCollection = Mock(DBCollection)
+    DBCollection tagsCollection = Mock(DBCollection)
+    DBCollection securityTokensCollection = Mock(DBCollection)
+    DBCollection tombstonesCollection = Mock(DBCollection)
+    Map<DBCollection, List> indexes = [:]
+
+    void setup() {
+        tasksCollection.getName() >> 'tasks'
+        tagsCollection.getName() >> 'tags'
+        securityTokensCollection.getName() >> 'securityTokens'
+        tombstonesCollection.getName() >> 'tombstones'
+        [tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection].each { collection ->
+            indexes[collection] = [new BasicDBObject([name: '_id_', key: new BasicDBObject('_id', 1)])]
+            collection.getIndexInfo() >> { indexes[collection] }
+        }
+    }
+
+    def "should create declared indexes in background"() {
+        given:
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, false)
+        when:
+        indexManager.createIndexes()
+        then:
+        1 * tasksCollection.ensureIndex(new BasicDBObject([owner_id: 1, finished: 1, closed_date: -1, _id: -1]),
+                { it.get('background') == true && it.get('name') == 'owner_finished_closed_date' })
+        1 * tagsCollection.ensureIndex(new BasicDBObject([owner_id: 1, name: 1]), _)
+        1 * tombstonesCollection.ensureIndex(new BasicDBObject([removed_date: 1]), { it.get('expireAfterSeconds') == 30 * 24 * 3600 })
+    }
+
+    def "should find query shapes without supporting index"() {
+        given:
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, false)
+        when:
+        def unsupportedQueryShapes = indexManager.findUnsupportedQueryShapes()*.toString()
+        then:
+        unsupportedQueryShapes.contains('tasks by [owner_id, finished, closed_date]')
+        unsupportedQueryShapes.contains('tags by [owner_id, name]')
+        !unsupportedQueryShapes.contains('securityTokens by [_id]')
+    }
+
+    def "should not consider leading key of index as support for queries by more fields"() {
+        given:
+        indexes[tasksCollection] << new BasicDBObject([name: 'owner', key: new BasicDBObject('owner_id', 1)])
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, false)
+        when:
+        def unsupportedQueryShapes = indexManager.findUnsupportedQueryShapes()*.toString()
+        then:
+        !unsupportedQueryShapes.contains('tasks by [owner_id]')
+        !unsupportedQueryShapes.contains('tasks by [_id, owner_id]')
+        unsupportedQueryShapes.contains('tasks by [owner_id, finished, closed_date]')
+        unsupportedQueryShapes.contains('tasks by [owner_id, path]')
+        unsupportedQueryShapes.contains('tasks by [owner_id, modified_date]')
+    }
+
+    def "should require range field of query right after its equality fields in compound index"() {
+        given:
+        indexes[tasksCollection] << new BasicDBObject([name: 'owner_closed_date_finished',
+                key: new BasicDBObject([owner_id: 1, closed_date: -1, finished: 1])])
+        indexes[tasksCollection] << new BasicDBObject([name: 'finished_owner_closed_date',
+                key: new BasicDBObject([finished: 1, owner_id: 1, closed_date: -1])])
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, false)
+        when:
+        def unsupportedQueryShapes = indexManager.findUnsupportedQueryShapes()*.toString()
+        then:
+        !unsupportedQueryShapes.contains('tasks by [owner_id, finished, closed_date]')
+        unsupportedQueryShapes.contains('tasks by [owner_id, modified_date]')
+    }
+
+    def "should find all query shapes supported by declared indexes"() {
+        given:
+        [tasksCollection, tagsCollection, tombstonesCollection].each { collection ->
+            collection.ensureIndex(_, _) >> { DBObject keys, DBObject options ->
+                indexes[collection] << new BasicDBObject([name: options.get('name'), key: keys])
+            }
+        }
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, true)
+        when:
+        indexManager.ensureIndexes()
+        then:
+        indexManager.findUnsupportedQueryShapes().isEmpty()
+    }
+
+    def "should only log when index cannot be created and strict mode is disabled"() {
+        given:
+        tasksCollection.ensureIndex(_, _) >> { throw new MongoException('index build failed') }
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, false)
+        when:
+        indexManager.createIndexes()
+        then:
+        noExceptionThrown()
+    }
+
+    def "should fail when query shape has no supporting index in strict mode"() {
+        given:
+        def indexManager = new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, true)
+        when:
+        indexManager.ensureIndexes()
+        then:
+        thrown(IllegalStateException)
+    }
+}
@@ -0,0 +1,72 @@
+package com.taskroo.data
+
+import com.mongodb.BasicDBList
+import com.mongodb.BasicDBObject
+import com.taskroo.service.tracing.Tracer
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class MongoOperationMetricsTest extends Specification {
+
+    MongoOperationMetrics mongoOperationMetrics = new MongoOperationMetrics(100, new Tracer(false))
+
+    def "should record latency and returned documents per DAO method and operation"() {
+        when:
+        mongoOperationMetrics.record('TaskDao.update', 'findAndModify', null, TimeUnit.MILLISECONDS.toNanos(1), 1)
+        mongoOperationMetrics.record('TaskDao.findAllByOwnerId', 'find', null, TimeUnit.MILLISECONDS.toNanos(3), 20)
+        mongoOperationMetrics.record('TaskDao.findAllByOwnerId', 'find', null, TimeUnit.MILLISECONDS.toNanos(5), 30)
+        then:
+        def operations = mongoOperationMetrics.operations as List
+        operations*.daoMethod == ['TaskDao.findAllByOwnerId', 'TaskDao.update']
+        operations*.operation == ['find', 'findAndModify']
+        operations[0].latencyHistogram.count == 2
+        operations[0].latencyHistogram.totalMicros == 8000
+        operations[0].documentsReturned == 50
+        operations[1].documentsReturned == 1
+    }
+
+    def "should count operations made between start and finish of request on the same thread"() {
+        given:
+        mongoOperationMetrics.record('TagDao.findAllByOwnerId', 'find', null, 1000, 1)
+        when:
+        mongoOperationMetrics.startRequest()
+        3.times { mongoOperationMetrics.record('TaskDao.getTask', 'findOne', null, 1000, 1) }
+        def firstRequestOperations = mongoOperationMetrics.finishRequest()
+        mongoOperationMetrics.startRequest()
+        mongoOperationMetrics.record('TaskDao.getTask', 'findOne', null, 1000, 1)
+        mongoOperationMetrics.finishRequest()
+        then:
+        firstRequestOperations == 3
+        mongoOperationMetrics.requestsCount == 2
+        mongoOperationMetrics.requestsOperationsCount == 4
+        mongoOperationMetrics.maxRequestOperationsCount == 3
+    }
+
+    def "should not count request which has not been started"() {
+        expect:
+        mongoOperationMetrics.finishRequest() == 0
+        mongoOperationMetrics.requestsCount == 0
+    }
+
+    def "should replace query values with placeholders keeping distinct shapes of subqueries"() {
+        given:
+        def ownerIds = new BasicDBList()
+        ownerIds.addAll(['mariusz', 'john'])
+        def subqueries = new BasicDBList()
+        subqueries.add(new BasicDBObject('finished', false))
+        subqueries.add(new BasicDBObject('finished', true))
+        subqueries.add(new BasicDBObject('closed_date', new BasicDBObject('$gt', new Date())))
+        def query = new BasicDBObject('owner_id', new BasicDBObject('$in', ownerIds)).append('$or', subqueries)
+        expect:
+        MongoOperationMetrics.queryShape(query).toString() ==
+                '{ "owner_id" : { "$in" : "?"} , "$or" : [ { "finished" : "?"} , { "closed_date" : { "$gt" : "?"}}]}'
+    }
+
+    def "should not accept negative slow operation threshold"() {
+        when:
+        new MongoOperationMetrics(-1, new Tracer(false))
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,106 @@
+package com.taskroo.data
+
+import com.taskroo.domain.Tag
+import com.taskroo.domain.Task
+import com.taskroo.testing.DatasetGenerator
+import org.joda.time.DateTime
+import spock.lang.Shared
+
+/**
+ * Runs operations of all DAOs against a dataset of many users, captures every query they send and fails when any of
+ * them is not supported by an index. Size and shape of the dataset can be changed with queryPlan.* system properties,
+ * e.g. -DqueryPlan.tasksPerUser=20000 -DqueryPlan.levels=10 to check plans against production scale users.
+ */
+class QueryPlanIT extends DaoTestBase {
+
+    private static final DatasetGenerator DATASET_GENERATOR = new DatasetGenerator.Builder()
+            .setUserIdPrefix('owner')
+            .setUsers(Integer.getInteger('queryPlan.users', 20))
+            .setTasksPerUser(Integer.getInteger('queryPlan.tasksPerUser', 700))
+            .setLevels(Integer.getInteger('queryPlan.levels', 3))
+            .setFanOut(Integer.getInteger('queryPlan.fanOut', 3))
+            .setFinishedRatio(0.6)
+            .setTagsPerUser(10)
+            .setTagsPerTask(2)
+            .build()
+    private static final String OWNER_ID = DATASET_GENERATOR.getUserId(0)
+
+    @Shared QueryPlanVerifier queryPlanVerifier = new QueryPlanVerifier(tasksCollection.getDB(),
+            ['tasks', 'tags', 'securityTokens', 'dataVersions', 'tombstones'], 10, 50)
+
+    TagDao tagDao
+    TaskDao taskDao
+    SecurityTokenDao securityTokenDao
+
+    void setupSpec() {
+        [tasksCollection, tagsCollection, securityTokensCollection, dataVersionsCollection, tombstonesCollection]*.drop()
+        new IndexManager(tasksCollection, tagsCollection, securityTokensCollection, tombstonesCollection, 30, true).ensureIndexes()
+        DATASET_GENERATOR.write(tasksCollection, tagsCollection, securityTokensCollection)
+    }
+
+    void cleanupSpec() {
+        [tasksCollection, tagsCollection, securityTokensCollection, dataVersionsCollection, tombstonesCollection]*.drop()
+    }
+
+    void setup() {
+        tagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection, new TagsDictionaryCache(0, 60),
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        taskDao = new TaskDao(tasksCollection, tagDao, new DbTasksConverter(),
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        securityTokenDao = new SecurityTokenDao(securityTokensCollection, mongoOperationMetrics)
+    }
+
+    def "should support every query sent by DAOs with an index"() {
+        given:
+        queryPlanVerifier.startCapturing()
+        runAllDaoOperations()
+        def capturedQueries = queryPlanVerifier.stopCapturing()
+        expect:
+        !capturedQueries.isEmpty()
+        queryPlanVerifier.findInefficientQueries(capturedQueries) == []
+    }
+
+    private void runAllDaoOperations() {
+        def tag = tagDao.insert(new Tag(null, OWNER_ID, 'newTag', 'red', true))
+        tagDao.update(OWNER_ID, tag.id, new Tag(null, OWNER_ID, 'changedTag', 'blue', false))
+        tagDao.findByName(OWNER_ID, 'changedTag')
+        tagDao.getAllTagsByOwnerId(OWNER_ID)
+        tagDao.recalculateSizes(OWNER_ID)
+
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId(OWNER_ID).setTitle('parent')
+                .addTag(Tag.TagBuilder.start(OWNER_ID, 'changedTag').build()).build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId(OWNER_ID).setTitle('subtask').build())
+        taskDao.addSubtask(OWNER_ID, parentTask.id, subtask.id)
+        taskDao.update(OWNER_ID, new Task.TaskBuilder().setId(parentTask.id).setOwnerId(OWNER_ID).setTitle('parent')
+                .setFinished(true).build())
+        taskDao.update(OWNER_ID, new Task.TaskBuilder().setId(subtask.id).setOwnerId(OWNER_ID).setTitle('subtask')
+                .setFinished(false).build())
+        taskDao.moveToTopLevel(OWNER_ID, subtask.id)
+        taskDao.insertAll(OWNER_ID, [new Task.TaskBuilder().setOwnerId(OWNER_ID).setTitle('batch task').build()])
+        taskDao.updateAll(OWNER_ID, [new Task.TaskBuilder().setId(parentTask.id).setTitle('parent').setFinished(false).build(),
+                                     new Task.TaskBuilder().setId(subtask.id).setTitle('subtask').setFinished(true).build()])
+        taskDao.removeAll(OWNER_ID, [subtask.id])
+        taskDao.remove(OWNER_ID, parentTask.id)
+        tagDao.remove(OWNER_ID, tag.id)
+
+        taskDao.findAllByOwnerId(OWNER_ID)
+        taskDao.findUnfinishedByOwnerId(OWNER_ID)
+        taskDao.streamAllByOwnerId(OWNER_ID).collect()
+        taskDao.streamUnfinishedByOwnerId(OWNER_ID).collect()
+        taskDao.findFinishedByOwnerAndClosedBetween(OWNER_ID, DateTime.now().minusDays(30), DateTime.now())
+        taskDao.findFinished(OWNER_ID, 20, 10)
+        def firstPage = taskDao.findFinished(OWNER_ID, null, 10)
+        taskDao.findFinished(OWNER_ID, ContinuationToken.after(firstPage.last()), 10)
+        def firstPageInRange = taskDao.findFinished(OWNER_ID, DateTime.now().minusDays(30), DateTime.now(), null, 10,
+                TaskProjection.ALL)
+        taskDao.findFinished(OWNER_ID, DateTime.now().minusDays(30), DateTime.now(),
+                ContinuationToken.after(firstPageInRange.last()), 10, TaskProjection.ALL)
+        taskDao.findChangesSince(OWNER_ID, System.currentTimeMillis() - 60000)
+
+        def securityTokenId = securityTokensCollection.findOne().get('_id').toString()
+        securityTokenDao.findOne(securityTokenId)
+        securityTokenDao.updateLastAccessedTime([securityTokenId], new Date())
+    }
+}
@@ -0,0 +1,171 @@
+package com.taskroo.data
+
+import com.mongodb.BasicDBObject
+import com.mongodb.DB
+import com.mongodb.DBObject
+
+/**
+ * Captures queries sent to DB using Mongo profiler and checks their plans with explain. Understands profiler entries
+ * and explain output of both legacy (2.x) and current (3.x+) mongod.
+ */
+class QueryPlanVerifier {
+
+    private final DB db
+    private final Set<String> collectionsNames
+    private final int maxExaminedPerReturned
+    private final int examinedTolerance
+
+    /**
+     * @param maxExaminedPerReturned maximum number of documents examined per returned document
+     * @param examinedTolerance number of documents which can be examined above maxExaminedPerReturned ratio,
+     *                          so queries returning few documents are not reported
+     */
+    QueryPlanVerifier(DB db, Collection<String> collectionsNames, int maxExaminedPerReturned, int examinedTolerance) {
+        this.db = db
+        this.collectionsNames = collectionsNames as Set
+        this.maxExaminedPerReturned = maxExaminedPerReturned
+        this.examinedTolerance = examinedTolerance
+    }
+
+    void startCapturing() {
+        db.command(new BasicDBObject('profile', 0))
+        db.getCollection('system.profile').drop()
+        db.command(new BasicDBObject('profile', 2))
+    }
+
+    List<CapturedQuery> stopCapturing() {
+        db.command(new BasicDBObject('profile', 0))
+        def capturedQueries = db.getCollection('system.profile').find().toArray()
+                .collect { toCapturedQuery(it) }
+                .findAll { it != null && !it.filter.keySet().isEmpty() }
+        capturedQueries.unique { [it.collectionName, shapeOf(it.filter), it.sort?.toString()] }
+    }
+
+    /**
+     * @return descriptions of captured queries which scan whole collection or examine too many documents
+     */
+    List<String> findInefficientQueries(List<CapturedQuery> capturedQueries) {
+        capturedQueries.collect { verify(it) }.findAll { it != null }
+    }
+
+    private String verify(CapturedQuery query) {
+        def cursor = db.getCollection(query.collectionName).find(query.filter)
+        if (query.sort != null) {
+            cursor.sort(query.sort)
+        }
+        if (query.limit > 0) {
+            cursor.limit(query.limit)
+        }
+        DBObject explain = cursor.explain()
+        if (isCollectionScan(explain)) {
+            return "$query does a collection scan"
+        }
+        long returned = (explain.get('executionStats')?.get('nReturned') ?: explain.get('n') ?: 0) as long
+        long examined = (explain.get('executionStats')?.get('totalDocsExamined') ?: explain.get('nscannedObjects') ?: 0) as long
+        if (examined > returned * maxExaminedPerReturned + examinedTolerance) {
+            return "$query examines $examined documents to return $returned"
+        }
+        null
+    }
+
+    private static boolean isCollectionScan(Object explainPart) {
+        if (explainPart instanceof Map) {
+            if (explainPart.get('stage') == 'COLLSCAN' || explainPart.get('cursor')?.toString()?.startsWith('BasicCursor')) {
+                return true
+            }
+            // rejected plans are not executed
+            return explainPart.findAll { it.key != 'rejectedPlans' && it.key != 'allPlans' }
+                    .any { isCollectionScan(it.value) }
+        }
+        if (explainPart instanceof Collection) {
+            return explainPart.any { isCollectionScan(it) }
+        }
+        false
+    }
+
+    private CapturedQuery toCapturedQuery(DBObject profileEntry) {
+        def namespace = profileEntry.get('ns') as String
+        def collectionName = namespace?.substring(namespace.indexOf('.') + 1)
+        def command = profileEntry.get('command') as DBObject
+        if (command != null && collectionName == '$cmd') {
+            collectionName = (command.get('findandmodify') ?: command.get('findAndModify') ?: command.get('count') ?:
+                    command.get('distinct') ?: command.get('aggregate')) as String
+        }
+        if (!(collectionName in collectionsNames)) {
+            return null
+        }
+
+        switch (profileEntry.get('op')) {
+            case 'query':
+                return fromFindQuery(collectionName, (profileEntry.get('query') ?: command) as DBObject, profileEntry)
+            case 'update':
+            case 'remove':
+                def filter = profileEntry.get('query') ?: command?.get('q')
+                return filter == null ? null : new CapturedQuery(collectionName, filter as DBObject, null, 0)
+            case 'command':
+                return fromCommand(collectionName, command)
+            default:
+                return null
+        }
+    }
+
+    private static CapturedQuery fromFindQuery(String collectionName, DBObject query, DBObject profileEntry) {
+        if (query == null) {
+            return null
+        }
+        if (query.containsField('filter')) {
+            return new CapturedQuery(collectionName, query.get('filter') as DBObject, query.get('sort') as DBObject,
+                    (query.get('limit') ?: 0) as int)
+        }
+        def limit = Math.abs((profileEntry.get('ntoreturn') ?: 0) as int)
+        if (query.containsField('$query') || query.containsField('query')) {
+            return new CapturedQuery(collectionName, (query.get('$query') ?: query.get('query')) as DBObject,
+                    (query.get('$orderby') ?: query.get('orderby')) as DBObject, limit)
+        }
+        new CapturedQuery(collectionName, query, null, limit)
+    }
+
+    private static CapturedQuery fromCommand(String collectionName, DBObject command) {
+        if (command.containsField('findandmodify') || command.containsField('findAndModify')) {
+            return new CapturedQuery(collectionName, command.get('query') as DBObject, command.get('sort') as DBObject, 1)
+        }
+        if (command.containsField('count') || command.containsField('distinct')) {
+            def filter = command.get('query') as DBObject
+            return filter == null ? null : new CapturedQuery(collectionName, filter, null, 0)
+        }
+        if (command.containsField('aggregate')) {
+            def match = (command.get('pipeline') as List<DBObject>)?.find { it.containsField('$match') }
+            return match == null ? null : new CapturedQuery(collectionName, match.get('$match') as DBObject, null, 0)
+        }
+        null
+    }
+
+    private static Object shapeOf(Object queryPart) {
+        if (queryPart instanceof Map) {
+            return queryPart.collectEntries { key, value -> [key, key.toString().startsWith('$') || value instanceof Map ? shapeOf(value) : '?'] }
+        }
+        if (queryPart instanceof List) {
+            return queryPart.collect { shapeOf(it) }.unique()
+        }
+        '?'
+    }
+
+    static class CapturedQuery {
+        final String collectionName
+        final DBObject filter
+        final DBObject sort
+        final int limit
+
+        CapturedQuery(String collectionName, DBObject filter, DBObject sort, int limit) {
+            this.collectionName = collectionName
+            this.filter = filter
+            this.sort = sort
+            this.limit = limit
+        }
+
+        @Override
+        String toString() {
+            "$collectionName.find($filter)" + (sort == null ? '' : ".sort($sort)") + (limit > 0 ? ".limit($limit)" : '')
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.taskroo.data
+
+import com.taskroo.domain.Role
+import com.taskroo.service.security.SecurityToken
+import spock.lang.Specification
+
+class SecurityTokenAccessTimeUpdaterTest extends Specification {
+
+    SecurityTokenAccessTimeUpdater securityTokenAccessTimeUpdater
+
+    // mocks
+    SecurityTokenDao securityTokenDao
+
+    void setup() {
+        securityTokenDao = Mock(SecurityTokenDao)
+        securityTokenAccessTimeUpdater = new SecurityTokenAccessTimeUpdater(securityTokenDao, 30, 60)
+    }
+
+    def "should not write to DB when access is recorded"() {
+        when:
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token1', new Date(0)))
+        then:
+        0 * securityTokenDao._
+    }
+
+    def "should write all recorded accesses with single update when flushing"() {
+        given:
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token1', new Date(0)))
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token2', new Date(0)))
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token1', new Date(0)))
+        when:
+        securityTokenAccessTimeUpdater.flush()
+        then:
+        1 * securityTokenDao.updateLastAccessedTime({ it as Set == ['token1', 'token2'] as Set }, _ as Date)
+    }
+
+    def "should not write anything when no access has been recorded since last flush"() {
+        given:
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token1', new Date(0)))
+        securityTokenAccessTimeUpdater.flush()
+        when:
+        securityTokenAccessTimeUpdater.flush()
+        then:
+        0 * securityTokenDao.updateLastAccessedTime(_, _)
+    }
+
+    def "should not record access when last accessed time of the token is within accepted staleness"() {
+        when:
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token1', new Date()))
+        then:
+        securityTokenAccessTimeUpdater.pendingAccessesCount == 0
+    }
+
+    def "should not record access again when last accessed time has been written within accepted staleness"() {
+        given:
+        def securityToken = createSecurityToken('token1', new Date(0))
+        securityTokenAccessTimeUpdater.recordAccess(securityToken)
+        securityTokenAccessTimeUpdater.flush()
+        when:
+        securityTokenAccessTimeUpdater.recordAccess(securityToken)
+        then:
+        securityTokenAccessTimeUpdater.pendingAccessesCount == 0
+    }
+
+    def "should keep recorded accesses when writing to DB fails"() {
+        given:
+        securityTokenAccessTimeUpdater.recordAccess(createSecurityToken('token1', new Date(0)))
+        securityTokenDao.updateLastAccessedTime(_, _) >> { throw new RuntimeException('DB unavailable') }
+        when:
+        securityTokenAccessTimeUpdater.flush()
+        then:
+        securityTokenAccessTimeUpdater.pendingAccessesCount == 1
+    }
+
+    private static SecurityToken createSecurityToken(String tokenKey, Date lastAccessedTime) {
+        return new SecurityToken(tokenKey, 'userId', [Role.USER].toSet(), new Date(0), lastAccessedTime)
+    }
+}
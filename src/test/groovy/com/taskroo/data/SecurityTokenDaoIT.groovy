@@ -10,7 +10,7 @@ class SecurityTokenDaoIT extends DaoTestBase {
     SecurityTokenDao securityTokenDao
 
     void setup() {
-        securityTokenDao = new SecurityTokenDao(securityTokensCollection)
+        securityTokenDao = new SecurityTokenDao(securityTokensCollection, mongoOperationMetrics)
         cleanup()
     }
 
@@ -18,17 +18,30 @@ class SecurityTokenDaoIT extends DaoTestBase {
         securityTokensCollection.drop()
     }
 
-    def "should change last accessed time of security token with given id to now"() {
+    def "should change last accessed time of security tokens with given ids"() {
         given:
         def halfHourAgo = DateTime.now().minusMinutes(30)
         def twentyMinutesAgo = DateTime.now().minusMinutes(20)
-        def securityId = createTestSecurityTokenInDb(halfHourAgo, twentyMinutesAgo);
+        def securityId1 = createTestSecurityTokenInDb(halfHourAgo, twentyMinutesAgo)
+        def securityId2 = createTestSecurityTokenInDb(halfHourAgo, twentyMinutesAgo)
+        def now = new Date()
+        when:
+        securityTokenDao.updateLastAccessedTime([securityId1, securityId2], now)
+        then:
+        securityTokensCollection.findOne(new BasicDBObject('_id', securityId1)).get('last_accessed_time') == now
+        securityTokensCollection.findOne(new BasicDBObject('_id', securityId2)).get('last_accessed_time') == now
+    }
+
+    def "should not change last accessed time when retrieving security token"() {
+        given:
+        def halfHourAgo = DateTime.now().minusMinutes(30)
+        def twentyMinutesAgo = DateTime.now().minusMinutes(20)
+        def securityId = createTestSecurityTokenInDb(halfHourAgo, twentyMinutesAgo)
         when:
-        securityTokenDao.findOneAndUpdateLastAccessedTime(securityId)
+        def securityToken = securityTokenDao.findOne(securityId)
         then:
-        def securityTokenDbAfterUpdate = securityTokensCollection.findOne(new BasicDBObject('_id', securityId))
-        securityTokenDbAfterUpdate.get('last_accessed_time').after(DateTime.now().minusSeconds(5).toDate())
-        securityTokenDbAfterUpdate.get('last_accessed_time').before(DateTime.now().plusSeconds(5).toDate())
+        securityToken.lastAccessedTime == twentyMinutesAgo.toDate()
+        securityTokensCollection.findOne(new BasicDBObject('_id', securityId)).get('last_accessed_time') == twentyMinutesAgo.toDate()
     }
 
     def "should retrieve single security token using given security token ID"() {
@@ -37,7 +50,7 @@ class SecurityTokenDaoIT extends DaoTestBase {
         def twentyMinutesAgo = DateTime.now().minusMinutes(20)
         def securityId = createTestSecurityTokenInDb(halfHourAgo, twentyMinutesAgo);
         when:
-        def securityToken = securityTokenDao.findOneAndUpdateLastAccessedTime(securityId)
+        def securityToken = securityTokenDao.findOne(securityId)
         then:
         securityToken.id == securityId
         securityToken.roles.toSet() == [Role.USER, Role.ADMIN].toSet()
@@ -47,7 +60,7 @@ class SecurityTokenDaoIT extends DaoTestBase {
 
     def "should return null when security token with given id has not been found"() {
         when:
-        def securityToken = securityTokenDao.findOneAndUpdateLastAccessedTime(ObjectId.get().toString())
+        def securityToken = securityTokenDao.findOne(ObjectId.get().toString())
         then:
         securityToken == null
     }
@@ -1,6 +1,8 @@
 package com.taskroo.data
 
 import com.mongodb.BasicDBObject
+import com.mongodb.DBCollection
+import com.mongodb.DBObject
 import org.bson.types.ObjectId
 import com.taskroo.domain.Tag
 import com.taskroo.domain.Task
@@ -11,8 +13,12 @@ class TagDaoIT extends DaoTestBase {
     TaskDao taskDao
 
     void setup() {
-        tagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection)
-        taskDao = new TaskDao(tasksCollection, tagDao, new DbTasksConverter())
+        tagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection, new TagsDictionaryCache(100, 60),
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        taskDao = new TaskDao(tasksCollection, tagDao, new DbTasksConverter(),
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
         tagsCollection.drop()
         prepareTestData()
     }
@@ -20,6 +26,7 @@ class TagDaoIT extends DaoTestBase {
     void cleanup() {
         tagsCollection.drop()
         tasksCollection.drop()
+        dataVersionsCollection.drop()
     }
 
     def "should retrieve tags for specified user"() {
@@ -57,6 +64,82 @@ class TagDaoIT extends DaoTestBase {
         tagsFromDao.first().size == 2
     }
 
+    def "should return dictionary of owner's tags indexed by id and name"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'ownerId', 'one', '#123456', true))
+        tagDao.insert(new Tag(null, 'otherOwnerId', 'two', '#123456', true))
+        when:
+        def tagsDictionary = tagDao.getTagsDictionary('ownerId')
+        then:
+        tagsDictionary.size() == 1
+        tagsDictionary.getById(tag.id).name == 'one'
+        tagsDictionary.findIdByName('one') == tag.id
+        tagsDictionary.findIdByName('two') == null
+    }
+
+    def "should return tags dictionary with changed tags after tag has been updated"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'ownerId', 'one', '#123456', true))
+        tagDao.getTagsDictionary('ownerId')
+        when:
+        tagDao.update('ownerId', tag.id, new Tag(null, 'ownerId', 'two', '#123456', true))
+        then:
+        tagDao.getTagsDictionary('ownerId').findIdByName('two') == tag.id
+    }
+
+    def "should keep size of tag when updating tag"() {
+        given:
+        def tagAfterInsert = tagDao.insert(new Tag(null, 'ownerId', 'one', '#123456', true))
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('ownerId').setTitle('taskTitle').addTag(tagAfterInsert).build())
+        when:
+        tagDao.update('ownerId', tagAfterInsert.id, new Tag(null, 'ownerId', 'two', '#654321', false))
+        then:
+        tagDao.getAllTagsByOwnerId('ownerId').first().size == 1
+    }
+
+    def "should repair sizes of tags which differ from number of unfinished tasks when recalculating sizes"() {
+        given:
+        def tag1 = tagDao.insert(new Tag(null, 'ownerId', 'one', '#123456', true))
+        def tag2 = tagDao.insert(new Tag(null, 'ownerId', 'two', '#123456', true))
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('ownerId').setTitle('taskTitle').addTag(tag1).build())
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('ownerId').setTitle('taskTitle').addTag(tag1).build())
+        tagsCollection.update(new BasicDBObject('_id', new ObjectId(tag1.id)), new BasicDBObject('$set', [size: 5]))
+        tagsCollection.update(new BasicDBObject('_id', new ObjectId(tag2.id)), new BasicDBObject('$unset', [size: 1]))
+        when:
+        def repairedTags = tagDao.recalculateSizes('ownerId')
+        then:
+        repairedTags == 2
+        tagDao.getAllTagsByOwnerId('ownerId').find { it.name == 'one' }.size == 2
+        tagsCollection.findOne(new BasicDBObject('_id', new ObjectId(tag2.id))).get('size') == 0
+    }
+
+    def "should not overwrite size changed while tasks are counted when recalculating sizes"() {
+        given: "tag with wrong size, which is changed right after its tasks have been counted"
+        def tag = tagDao.insert(new Tag(null, 'ownerId', 'one', '#123456', true))
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('ownerId').setTitle('taskTitle').addTag(tag).build())
+        tagsCollection.update(new BasicDBObject('_id', new ObjectId(tag.id)), new BasicDBObject('$set', [size: 5]))
+        TagDao tagDaoCountingConcurrently
+        def tasksCollectionMock = Mock(DBCollection)
+        tasksCollectionMock.aggregate(*_) >> { args ->
+            def result = tasksCollection.aggregate(args[0], args[1] as DBObject[])
+            tagDaoCountingConcurrently.changeSizes([(tag.id): 1])
+            result
+        }
+        tagDaoCountingConcurrently = new TagDao(tagsCollection, new DbTagConverter(), tasksCollectionMock,
+                new TagsDictionaryCache(100, 60), new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        when:
+        def repairedTags = tagDaoCountingConcurrently.recalculateSizes('ownerId')
+        then: "concurrent change is kept and the size is left for the next recalculation"
+        repairedTags == 0
+        tagsCollection.findOne(new BasicDBObject('_id', new ObjectId(tag.id))).get('size') == 6
+        when:
+        repairedTags = tagDao.recalculateSizes('ownerId')
+        then:
+        repairedTags == 1
+        tagsCollection.findOne(new BasicDBObject('_id', new ObjectId(tag.id))).get('size') == 1
+    }
+
     def "should return tag when trying to find one with specified name and ownerId"() {
         given: "tag 'abc' for user with id 'userId' exists"
         def tag = new Tag(null, 'userId', 'abc', 'purple', false)
@@ -0,0 +1,107 @@
+package com.taskroo.data
+
+import com.taskroo.domain.Tag
+import spock.lang.Specification
+
+class TagsDictionaryCacheTest extends Specification {
+
+    def "should return cached tags dictionary and count hits and misses"() {
+        given:
+        def cache = new TagsDictionaryCache(10, 60)
+        def tagsDictionary = createTagsDictionary('ownerId')
+        cache.get('ownerId')
+        cache.put('ownerId', cache.getVersion('ownerId'), tagsDictionary)
+        expect:
+        cache.get('ownerId') == tagsDictionary
+        cache.hitCount == 1
+        cache.missCount == 1
+        cache.hitRatio == 0.5d
+    }
+
+    def "should not cache tags dictionary loaded before tags of owner have been invalidated"() {
+        given:
+        def cache = new TagsDictionaryCache(10, 60)
+        def versionBeforeLoad = cache.getVersion('ownerId')
+        cache.invalidate('ownerId')
+        when:
+        cache.put('ownerId', versionBeforeLoad, createTagsDictionary('ownerId'))
+        then:
+        cache.get('ownerId') == null
+        cache.size() == 0
+    }
+
+    def "should remove tags dictionary of owner only when invalidating it"() {
+        given:
+        def cache = new TagsDictionaryCache(10, 60)
+        cache.put('owner1', cache.getVersion('owner1'), createTagsDictionary('owner1'))
+        cache.put('owner2', cache.getVersion('owner2'), createTagsDictionary('owner2'))
+        when:
+        cache.invalidate('owner1')
+        then:
+        cache.get('owner1') == null
+        cache.get('owner2') != null
+    }
+
+    def "should not cache tags dictionary loaded before all tags dictionaries have been invalidated"() {
+        given:
+        def cache = new TagsDictionaryCache(10, 60)
+        def versionBeforeLoad = cache.getVersion('ownerId')
+        cache.invalidateAll()
+        when:
+        cache.put('ownerId', versionBeforeLoad, createTagsDictionary('ownerId'))
+        then:
+        cache.get('ownerId') == null
+    }
+
+    def "should evict least recently used tags dictionary when cache is full"() {
+        given:
+        def cache = new TagsDictionaryCache(2, 60)
+        cache.put('owner1', 0, createTagsDictionary('owner1'))
+        cache.put('owner2', 0, createTagsDictionary('owner2'))
+        cache.get('owner1')
+        when:
+        cache.put('owner3', 0, createTagsDictionary('owner3'))
+        then:
+        cache.get('owner2') == null
+        cache.get('owner1') != null
+        cache.get('owner3') != null
+        cache.evictionCount == 1
+    }
+
+    def "should not cache anything when size is 0"() {
+        given:
+        def cache = new TagsDictionaryCache(0, 60)
+        when:
+        cache.put('ownerId', 0, createTagsDictionary('ownerId'))
+        then:
+        cache.get('ownerId') == null
+    }
+
+    def "should not cache tags dictionary loaded before invalidation when version of owner has been evicted"() {
+        given:
+        def cache = new TagsDictionaryCache(2, 60)
+        def versionBeforeLoad = cache.getVersion('owner1')
+        cache.invalidate('owner1')
+        when:
+        (2..100).each { cache.invalidate("owner$it".toString()) }
+        cache.put('owner1', versionBeforeLoad, createTagsDictionary('owner1'))
+        then:
+        cache.versions.size() == 2
+        cache.get('owner1') == null
+    }
+
+    def "should expire tags dictionary after time to live"() {
+        given:
+        def cache = Spy(TagsDictionaryCache, constructorArgs: [10, 60])
+        cache.currentTimeMillis() >>> [1000L, 60999L, 61000L]
+        cache.put('ownerId', cache.getVersion('ownerId'), createTagsDictionary('ownerId'))
+        expect:
+        cache.get('ownerId') != null
+        cache.get('ownerId') == null
+        cache.evictionCount == 1
+    }
+
+    private static TagsDictionary createTagsDictionary(String ownerId) {
+        new TagsDictionary([new Tag('tagId', ownerId, 'tagName', null, true)])
+    }
+}
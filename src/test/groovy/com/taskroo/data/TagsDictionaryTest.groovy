@@ -0,0 +1,43 @@
+package com.taskroo.data
+
+import com.taskroo.domain.Tag
+import spock.lang.Specification
+
+class TagsDictionaryTest extends Specification {
+
+    def "should look up tag missing in the dictionary in reloaded tags"() {
+        given:
+        def reloader = Mock(TagsDictionary.Reloader)
+        def tagsDictionary = new TagsDictionary([new Tag('tagId1', 'ownerId', 'tag1', null, true)], reloader)
+        when:
+        def tagById = tagsDictionary.getById('tagId2')
+        def tagIdByName = tagsDictionary.findIdByName('tag2')
+        then:
+        1 * reloader.reload() >> new TagsDictionary([new Tag('tagId1', 'ownerId', 'tag1', null, true),
+                                                     new Tag('tagId2', 'ownerId', 'tag2', null, true)])
+        tagById.name == 'tag2'
+        tagIdByName == 'tagId2'
+    }
+
+    def "should not reload tags when tag is found in the dictionary"() {
+        given:
+        def reloader = Mock(TagsDictionary.Reloader)
+        def tagsDictionary = new TagsDictionary([new Tag('tagId1', 'ownerId', 'tag1', null, true)], reloader)
+        when:
+        def tag = tagsDictionary.getById('tagId1')
+        then:
+        0 * reloader.reload()
+        tag.name == 'tag1'
+    }
+
+    def "should return null for tag which does not exist even after reloading"() {
+        given:
+        def reloader = Mock(TagsDictionary.Reloader)
+        def tagsDictionary = new TagsDictionary([], reloader)
+        when:
+        def tags = [tagsDictionary.getById('removedTagId'), tagsDictionary.getById('otherRemovedTagId')]
+        then:
+        1 * reloader.reload() >> TagsDictionary.empty()
+        tags == [null, null]
+    }
+}
@@ -5,9 +5,12 @@ import com.mongodb.DBObject
 import org.bson.types.ObjectId
 import org.joda.time.DateMidnight
 import org.joda.time.DateTime
+import com.taskroo.domain.BatchItemResult
 import com.taskroo.domain.Tag
 import com.taskroo.domain.Task
 
+import java.util.concurrent.TimeUnit
+
 class TaskDaoIT extends DaoTestBase {
 
     TaskDao taskDao
@@ -17,13 +20,40 @@ class TaskDaoIT extends DaoTestBase {
     void setup() {
         cleanup()
         dbTasksConverter = new DbTasksConverter()
-        tagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection)
-        taskDao = new TaskDao(tasksCollection, tagDao, dbTasksConverter)
+        tagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection, new TagsDictionaryCache(100, 60),
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        taskDao = new TaskDao(tasksCollection, tagDao, dbTasksConverter,
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
     }
 
     void cleanup() {
         tasksCollection.drop()
         tagsCollection.drop()
+        dataVersionsCollection.drop()
+        tombstonesCollection.drop()
+    }
+
+    def "should resolve tag created by another instance while tags dictionary is cached"() {
+        given: "tags dictionary of the owner is cached by this instance"
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('first').build())
+        taskDao.findAllByOwnerId('mariusz')
+        def otherInstanceTagDao = new TagDao(tagsCollection, new DbTagConverter(), tasksCollection,
+                new TagsDictionaryCache(100, 60), new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
+        when: "tag is created by another instance and used right away"
+        def tag = otherInstanceTagDao.insert(new Tag(null, 'mariusz', 'created elsewhere', 'red', true))
+        def task = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('second')
+                .addTag(new Tag(null, 'mariusz', 'created elsewhere', null, false)).build())
+        def batchResults = taskDao.insertAll('mariusz', [new Task.TaskBuilder().setOwnerId('mariusz').setTitle('third')
+                .addTag(new Tag(null, 'mariusz', 'created elsewhere', null, false)).build()])
+        then:
+        task.tags*.id == [tag.id]
+        batchResults*.status == [BatchItemResult.Status.CREATED]
+        taskDao.findAllByOwnerId('mariusz').findAll { it.title != 'first' }*.tags*.name == [['created elsewhere']] * 2
+        taskDao.findChangesSince('mariusz', System.currentTimeMillis() - 60000).changedTasks*.task
+                .find { it.title == 'second' }.tags*.name == ['created elsewhere']
     }
 
     def "should create new task in DB"() {
@@ -587,7 +617,9 @@ class TaskDaoIT extends DaoTestBase {
         tasksCollectionMock.findAndModify(_,_,_,_,_,_,_) >>> [new BasicDBObject([_id: ObjectId.get(), title: 'title', owner_id: 'mariusz', finished: false, tags:[]]), new BasicDBObject([_id: ObjectId.get(), title: 'title', owner_id: 'mariusz', finished: false, tags:[]])]
         tasksCollectionMock.findOne(_, _) >> new BasicDBObject([_id: ObjectId.get(), title: 'title', owner_id: 'mariusz', finished: false, tags:[], path: []])
         tasksCollectionMock.find(_) >> { args -> tasksCollection.find(args[0]) }
-        TaskDao taskDaoWithMocks = new TaskDao(tasksCollectionMock, tagDao, dbTasksConverter)
+        TaskDao taskDaoWithMocks = new TaskDao(tasksCollectionMock, tagDao, dbTasksConverter,
+                new DataVersionDao(dataVersionsCollection, mongoOperationMetrics),
+                new TombstoneDao(tombstonesCollection, 30, mongoOperationMetrics), mongoOperationMetrics)
         def existingTask = new Task.TaskBuilder().setOwnerId("mariusz").setTitle("title").build();
         existingTask = taskDaoWithMocks.insert(existingTask)
         when: "request to update task, but status remain unchanged"
@@ -756,4 +788,363 @@ class TaskDaoIT extends DaoTestBase {
         fetchedTasks*.title == ['task finished on day -3', 'task finished on day -4']
 
     }
-}
\ No newline at end of file
+
+    def "should increase size of task's tags when unfinished task is inserted"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        when:
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('title').addTag(tag).build())
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('title').addTag(tag).setFinished(true).build())
+        then:
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 1
+    }
+
+    def "should decrease size of tags of task and its subtasks when task is finished"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').addTag(tag).build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').addTag(tag).build())
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        when:
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(parentTask.id).setOwnerId('mariusz').setTitle('parent')
+                .addTag(tag).setFinished(true).build())
+        then:
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 0
+    }
+
+    def "should increase size of tags of task and its ancestors when task is reopened"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').addTag(tag).build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').addTag(tag).build())
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(parentTask.id).setOwnerId('mariusz').setTitle('parent')
+                .addTag(tag).setFinished(true).build())
+        when:
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(subtask.id).setOwnerId('mariusz').setTitle('subtask')
+                .addTag(tag).setFinished(false).build())
+        then:
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 2
+    }
+
+    def "should move size from removed tag to added tag when unfinished task is retagged"() {
+        given:
+        def tagA = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def tagB = tagDao.insert(new Tag(null, 'mariusz', 'tagB', null, false))
+        def task = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('title').addTag(tagA).build())
+        when:
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(task.id).setOwnerId('mariusz').setTitle('title')
+                .addTag(tagB).build())
+        then:
+        def tags = tagDao.getAllTagsByOwnerId('mariusz')
+        tags.find { it.name == 'tagA' }.size == 0
+        tags.find { it.name == 'tagB' }.size == 1
+    }
+
+    def "should decrease size of tags of removed unfinished tasks"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').addTag(tag).build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').addTag(tag).build())
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('other').addTag(tag).build())
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        when:
+        taskDao.remove('mariusz', parentTask.id)
+        then:
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 1
+    }
+
+    def "should stream tasks trees of all top level tasks in batches when streaming all tasks"() {
+        given:
+        def topLevelTasks = (1..TaskDao.STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE + 1).collect {
+            taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle("task $it").build())
+        }
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').build())
+        def subSubtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subSubtask').build())
+        taskDao.addSubtask('mariusz', topLevelTasks.last().id, subtask.id)
+        taskDao.addSubtask('mariusz', subtask.id, subSubtask.id)
+        when:
+        def streamedTasks = taskDao.streamAllByOwnerId('mariusz').collect()
+        then:
+        streamedTasks*.id == topLevelTasks*.id
+        streamedTasks.last().subtasks*.id == [subtask.id]
+        streamedTasks.last().subtasks.first().subtasks*.id == [subSubtask.id]
+    }
+
+    def "should stream only unfinished tasks trees when streaming unfinished tasks"() {
+        given:
+        def unfinishedTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinished').build())
+        def unfinishedSubtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinishedSubtask').build())
+        def finishedSubtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('finishedSubtask').setFinished(true).build())
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('finished').setFinished(true).build())
+        taskDao.addSubtask('mariusz', unfinishedTask.id, unfinishedSubtask.id)
+        taskDao.addSubtask('mariusz', unfinishedTask.id, finishedSubtask.id)
+        when:
+        def streamedTasks = taskDao.streamUnfinishedByOwnerId('mariusz').collect()
+        then:
+        streamedTasks*.id == [unfinishedTask.id]
+        streamedTasks.first().subtasks*.id == [unfinishedSubtask.id]
+    }
+
+    def "should stream unfinished subtasks of finished tasks as found when finding unfinished tasks"() {
+        given: "customer has unfinished task with unfinished subtask added under finished task"
+        def finishedTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('finished').setFinished(true).build())
+        def unfinishedSubtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinishedSubtask').build())
+        def unfinishedSubSubtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinishedSubSubtask').build())
+        taskDao.addSubtask('mariusz', unfinishedSubtask.id, unfinishedSubSubtask.id)
+        taskDao.addSubtask('mariusz', finishedTask.id, unfinishedSubtask.id)
+        when:
+        def streamedTasks = taskDao.streamUnfinishedByOwnerId('mariusz').collect()
+        def foundTasks = taskDao.findUnfinishedByOwnerId('mariusz')
+        then:
+        streamedTasks*.id == [unfinishedSubtask.id]
+        streamedTasks.first().subtasks*.id == [unfinishedSubSubtask.id]
+        streamedTasks*.id == foundTasks*.id
+        streamedTasks.first().subtasks*.id == foundTasks.first().subtasks*.id
+    }
+
+    def "should stream unfinished tasks of trees in batches of top level tasks when streaming unfinished tasks"() {
+        given: "customer has more finished top level tasks than fit a batch, the last one with unfinished subtask"
+        def finishedTasks = (1..TaskDao.STREAMING_TOP_LEVEL_TASKS_BATCH_SIZE + 1).collect {
+            taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle("finished $it").setFinished(true).build())
+        }
+        def unfinishedSubtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinishedSubtask').build())
+        taskDao.addSubtask('mariusz', finishedTasks.last().id, unfinishedSubtask.id)
+        def unfinishedTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinished').build())
+        when:
+        def streamedTasks = taskDao.streamUnfinishedByOwnerId('mariusz').collect()
+        then:
+        streamedTasks*.id as Set == [unfinishedSubtask.id, unfinishedTask.id] as Set
+        streamedTasks.every { it.subtasks.isEmpty() }
+    }
+
+    def "should stream finished tasks ordered by closed date when streaming finished tasks with offset and limit"() {
+        given:
+        (0..3).each {
+            taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle("task finished on day -$it")
+                    .setFinished(true).setClosedDate(DateTime.now().minusDays(it).toDate()).build())
+        }
+        when:
+        def streamedTasks = taskDao.streamFinished('mariusz', 1, 2).collect()
+        then:
+        streamedTasks*.title == ['task finished on day -1', 'task finished on day -2']
+    }
+
+    def "should read only keys of tasks included in projection when streaming tasks with projection"() {
+        given:
+        def task = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task')
+                .setDescription('long description').setDueDate(new Date()).build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask')
+                .setDescription('long description').setFinished(true).build())
+        taskDao.addSubtask('mariusz', task.id, subtask.id)
+        when:
+        def streamedTasks = taskDao.streamAllByOwnerId('mariusz', TaskProjection.parse('title,finished')).collect()
+        then:
+        streamedTasks*.title == ['task']
+        streamedTasks.first().description == null
+        streamedTasks.first().dueDate == null
+        streamedTasks.first().subtasks*.title == ['subtask']
+        streamedTasks.first().subtasks.first().finished
+        streamedTasks.first().subtasks.first().description == null
+    }
+
+    def "should read all finished tasks page by page using continuation tokens"() {
+        given: "customer has finished tasks, some closed at the same time and one without closed date"
+        def closedDate = DateTime.now().minusDays(1).toDate()
+        def tasks = (0..4).collect {
+            taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle("task $it").setFinished(true)
+                    .setClosedDate(it < 3 ? closedDate : DateTime.now().minusDays(it).toDate()).build())
+        }
+        tasks << taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task 5').setFinished(true).build())
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unfinished task').build())
+        when:
+        def pages = []
+        def page = taskDao.findFinished('mariusz', null, 2)
+        while (!page.isEmpty()) {
+            pages << page*.title
+            page = taskDao.findFinished('mariusz', ContinuationToken.after(page.last()), 2)
+        }
+        then:
+        pages == [['task 2', 'task 1'], ['task 0', 'task 3'], ['task 4', 'task 5']]
+    }
+
+    def "should read finished tasks closed in given range page by page using continuation tokens"() {
+        given:
+        (0..5).each {
+            taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle("task $it").setFinished(true)
+                    .setClosedDate(DateTime.parse('2014-12-01T12:00').plusDays(it).toDate()).build())
+        }
+        taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task without closed date').setFinished(true).build())
+        def closedDateAfter = DateTime.parse('2014-12-02T12:00')
+        def closedDateBefore = DateTime.parse('2014-12-05T12:00')
+        when:
+        def pages = []
+        def page = taskDao.findFinished('mariusz', closedDateAfter, closedDateBefore, null, 3, TaskProjection.ALL)
+        while (!page.isEmpty()) {
+            pages << page*.title
+            page = taskDao.findFinished('mariusz', closedDateAfter, closedDateBefore, ContinuationToken.after(page.last()), 3,
+                    TaskProjection.ALL)
+        }
+        then:
+        pages == [['task 4', 'task 3', 'task 2'], ['task 1']]
+    }
+
+    def "should insert batch of tasks and report invalid tasks without inserting them"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def tasks = [
+                new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task 1').addTag(tag).build(),
+                new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task 2').addTag(new Tag(null, 'mariusz', 'nonExisting', null, false)).build(),
+                new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task 3').setFinished(true).addTag(tag).build(),
+                new Task.TaskBuilder().setOwnerId('mariusz').setTitle(' ').build()]
+        when:
+        def results = taskDao.insertAll('mariusz', tasks)
+        then:
+        results*.index == [0, 1, 2, 3]
+        results*.status == [BatchItemResult.Status.CREATED, BatchItemResult.Status.INVALID,
+                            BatchItemResult.Status.CREATED, BatchItemResult.Status.INVALID]
+        results[0].task.tags*.name == ['tagA']
+        results[1].error != null
+        tasksCollection.find(new BasicDBObject('owner_id', 'mariusz'))*.title as Set == ['task 1', 'task 3'] as Set
+        tasksCollection.findOne(new BasicDBObject('_id', new ObjectId(results[2].taskId))).get('created_date') != null
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 1
+    }
+
+    def "should update batch of tasks, change their statuses and report tasks which cannot be updated"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').build())
+        def finishedTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('finished')
+                .setFinished(true).build())
+        def otherOwnerTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('other').setTitle('other').build())
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        def tasks = [
+                new Task.TaskBuilder().setId(parentTask.id).setTitle('parent updated').setFinished(true).build(),
+                new Task.TaskBuilder().setId(finishedTask.id).setTitle('reopened').addTag(tag).build(),
+                new Task.TaskBuilder().setId(otherOwnerTask.id).setTitle('other updated').build(),
+                new Task.TaskBuilder().setId('invalidId').setTitle('invalid').build(),
+                new Task.TaskBuilder().setId(parentTask.id).setTitle('parent again').build(),
+                new Task.TaskBuilder().setId(finishedTask.id).setTitle('x').addTag(new Tag(null, 'mariusz', 'nonExisting', null, false)).build()]
+        when:
+        def results = taskDao.updateAll('mariusz', tasks)
+        then:
+        results*.index == [0, 1, 2, 3, 4, 5]
+        results*.status == [BatchItemResult.Status.UPDATED, BatchItemResult.Status.UPDATED, BatchItemResult.Status.NOT_FOUND,
+                            BatchItemResult.Status.NOT_FOUND, BatchItemResult.Status.INVALID, BatchItemResult.Status.INVALID]
+        results[0].task.title == 'parent updated'
+        results[0].task.finished
+        results[0].task.subtasks*.finished == [true]
+        !results[1].task.finished
+        results[1].task.tags*.name == ['tagA']
+        tasksCollection.findOne(new BasicDBObject('_id', new ObjectId(otherOwnerTask.id))).get('title') == 'other'
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 1
+    }
+
+    def "should report tasks of batch which DB has failed to update and skip their tags sizes and status changes"() {
+        given: "titles are unique, so updating two tasks to the same title fails for one of them"
+        tasksCollection.ensureIndex(new BasicDBObject('title', 1), new BasicDBObject('unique', true))
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def task1 = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task 1').build())
+        def task2 = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task 2').build())
+        when:
+        def results = taskDao.updateAll('mariusz', [
+                new Task.TaskBuilder().setId(task1.id).setTitle('same title').addTag(tag).build(),
+                new Task.TaskBuilder().setId(task2.id).setTitle('same title').addTag(tag).setFinished(true).build()])
+        then:
+        results*.status as Set == [BatchItemResult.Status.UPDATED, BatchItemResult.Status.FAILED] as Set
+        def failedResult = results.find { it.status == BatchItemResult.Status.FAILED }
+        failedResult.error != null
+        def failedDbTask = tasksCollection.findOne(new BasicDBObject('_id', new ObjectId(failedResult.taskId)))
+        failedDbTask.get('tags').isEmpty()
+        !failedDbTask.get('finished')
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 1
+    }
+
+    def "should remove batch of tasks with their subtasks and report tasks which do not exist"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').addTag(tag).build())
+        def task = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('task').addTag(tag).build())
+        def remainingTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('remaining').addTag(tag).build())
+        def otherOwnerTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('other').setTitle('other').build())
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        when:
+        def results = taskDao.removeAll('mariusz', [parentTask.id, task.id, otherOwnerTask.id, 'invalidId'])
+        then:
+        results*.index == [0, 1, 2, 3]
+        results*.status == [BatchItemResult.Status.DELETED, BatchItemResult.Status.DELETED,
+                            BatchItemResult.Status.NOT_FOUND, BatchItemResult.Status.NOT_FOUND]
+        tasksCollection.find(new BasicDBObject('owner_id', 'mariusz'))*.title == ['remaining']
+        tasksCollection.count(new BasicDBObject('_id', new ObjectId(otherOwnerTask.id))) == 1
+        tagDao.getAllTagsByOwnerId('mariusz').first().size == 1
+    }
+
+    def "should return tasks modified and tasks and tags removed since checkpoint"() {
+        given:
+        def tag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', null, false))
+        def removedTag = tagDao.insert(new Tag(null, 'mariusz', 'tagB', null, false))
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').build())
+        def unchangedTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('unchanged').build())
+        def removedTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('removed').build())
+        def otherOwnerTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('other').setTitle('other').build())
+        tasksCollection.update(new BasicDBObject(), new BasicDBObject('$set', new BasicDBObject('modified_date',
+                new Date(System.currentTimeMillis() - 60000))), false, true)
+        def checkpoint = System.currentTimeMillis() - 30000
+        when:
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(parentTask.id).setTitle('parent').addTag(tag).build())
+        taskDao.remove('mariusz', removedTask.id)
+        tagDao.remove('mariusz', removedTag.id)
+        taskDao.update('other', new Task.TaskBuilder().setId(otherOwnerTask.id).setTitle('other updated').build())
+        def changes = taskDao.findChangesSince('mariusz', checkpoint)
+        then:
+        changes.checkpoint >= checkpoint
+        changes.changedTasks.collectEntries { [it.task.id, it.parentTaskId] } == [(parentTask.id): null, (subtask.id): parentTask.id]
+        changes.changedTasks.find { it.task.id == parentTask.id }.task.tags*.name == ['tagA']
+        changes.removedTasksIds == [removedTask.id] as Set
+        changes.removedTagsIds == [removedTag.id] as Set
+        !changes.changedTasks*.task.id.contains(unchangedTask.id)
+    }
+
+    def "should return tags created and updated since checkpoint"() {
+        given:
+        def updatedTag = tagDao.insert(new Tag(null, 'mariusz', 'tagA', 'red', false))
+        def unchangedTag = tagDao.insert(new Tag(null, 'mariusz', 'tagB', 'red', false))
+        tagsCollection.update(new BasicDBObject(), new BasicDBObject('$set', new BasicDBObject('modified_date',
+                new Date(System.currentTimeMillis() - 60000))), false, true)
+        def checkpoint = System.currentTimeMillis() - 30000
+        when:
+        tagDao.update('mariusz', updatedTag.id, new Tag(null, 'mariusz', 'tagA renamed', 'blue', true))
+        def createdTag = tagDao.insert(new Tag(null, 'mariusz', 'tagC', 'green', true))
+        tagDao.insert(new Tag(null, 'other', 'tagD', 'green', true))
+        def changes = taskDao.findChangesSince('mariusz', checkpoint)
+        then:
+        changes.changedTags*.id as Set == [updatedTag.id, createdTag.id] as Set
+        changes.changedTags.find { it.id == updatedTag.id }.name == 'tagA renamed'
+        changes.changedTags.find { it.id == updatedTag.id }.color == 'blue'
+        !changes.changedTags*.id.contains(unchangedTag.id)
+    }
+
+    def "should stamp modification date of all tasks changed together with the finished task"() {
+        given:
+        def parentTask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('parent').build())
+        def subtask = taskDao.insert(new Task.TaskBuilder().setOwnerId('mariusz').setTitle('subtask').build())
+        taskDao.addSubtask('mariusz', parentTask.id, subtask.id)
+        tasksCollection.update(new BasicDBObject(), new BasicDBObject('$set', new BasicDBObject('modified_date', new Date(0))),
+                false, true)
+        when:
+        taskDao.update('mariusz', new Task.TaskBuilder().setId(parentTask.id).setTitle('parent').setFinished(true).build())
+        then:
+        tasksCollection.find(new BasicDBObject('owner_id', 'mariusz')).every { it.get('modified_date') > new Date(0) }
+    }
+
+    def "should not return changes since checkpoint older than retention of tombstones"() {
+        when:
+        taskDao.findChangesSince('mariusz', System.currentTimeMillis() - TimeUnit.DAYS.toMillis(31))
+        then:
+        thrown(ExpiredCheckpointException)
+    }
+}
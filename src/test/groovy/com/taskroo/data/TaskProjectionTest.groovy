@@ -0,0 +1,45 @@
+package com.taskroo.data
+
+import spock.lang.Specification
+
+class TaskProjectionTest extends Specification {
+
+    def "should include all fields when no fields given"() {
+        expect:
+        TaskProjection.parse(fields).is(TaskProjection.ALL)
+        TaskProjection.ALL.toDbProjection() == null
+        where:
+        fields << [null, '', '  ']
+    }
+
+    def "should always include id and subtasks of tasks"() {
+        when:
+        def projection = TaskProjection.parse('title')
+        then:
+        projection.taskFields == ['id', 'subtasks', 'title'] as Set
+    }
+
+    def "should read only keys needed for given fields from DB"() {
+        when:
+        def projection = TaskProjection.parse('finished, tags.id')
+        then:
+        projection.toDbProjection().keySet() == [TaskDao.ID_KEY, TaskDao.OWNER_ID_KEY, TaskDao.PATH_KEY, TaskDao.TITLE_KEY,
+                                                 TaskDao.CREATED_DATE_KEY, TaskDao.CLOSED_DATE_KEY, TaskDao.FINISHED_KEY,
+                                                 TaskDao.TAGS_KEY] as Set
+        projection.tagFields == ['id'] as Set
+    }
+
+    def "should include all fields of tags when whole tags requested"() {
+        expect:
+        TaskProjection.parse('tags.id,tags').includesAllTagFields()
+    }
+
+    def "should throw exception when unknown field given"() {
+        when:
+        TaskProjection.parse(fields)
+        then:
+        thrown(IllegalArgumentException)
+        where:
+        fields << ['ownerId', 'title,unknown', 'tags.unknown', 'tags.']
+    }
+}
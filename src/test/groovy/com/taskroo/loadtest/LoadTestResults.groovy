@@ -0,0 +1,106 @@
+package com.taskroo.loadtest
+
+import com.taskroo.service.metrics.LatencyHistogram
+
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ConcurrentMap
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicLong
+
+/**
+ * Latencies and errors of requests of a load test run, recorded per endpoint, and comparison of their summary with
+ * the summary of a baseline run.
+ */
+class LoadTestResults {
+
+    private final ConcurrentMap<String, EndpointResults> endpoints = new ConcurrentHashMap<>()
+
+    void record(String endpoint, long durationNanos, boolean error) {
+        EndpointResults endpointResults = endpoints.get(endpoint)
+        if (endpointResults == null) {
+            endpoints.putIfAbsent(endpoint, new EndpointResults())
+            endpointResults = endpoints.get(endpoint)
+        }
+        endpointResults.latencyHistogram.record(durationNanos, TimeUnit.NANOSECONDS)
+        if (error) {
+            endpointResults.errors.incrementAndGet()
+        }
+    }
+
+    /**
+     * @return throughput, error rate and latency percentiles in milliseconds of every endpoint, sorted by endpoint
+     */
+    Map<String, Map<String, Number>> summary(double durationSeconds) {
+        Map<String, Map<String, Number>> summary = new TreeMap<>()
+        endpoints.each { String endpoint, EndpointResults results ->
+            LatencyHistogram histogram = results.latencyHistogram
+            summary[endpoint] = [
+                    requests  : histogram.count,
+                    throughput: round(histogram.count / durationSeconds),
+                    errorRate : round(histogram.count == 0 ? 0 : results.errors.get() / histogram.count),
+                    p50Millis : millis(histogram.getValueAtPercentile(50)),
+                    p95Millis : millis(histogram.getValueAtPercentile(95)),
+                    p99Millis : millis(histogram.getValueAtPercentile(99)),
+                    maxMillis : millis(histogram.maxMicros)
+            ] as Map<String, Number>
+        }
+        return summary
+    }
+
+    static String format(Map<String, Map<String, Number>> summary) {
+        def report = new StringBuilder(String.format('%-50s %9s %9s %7s %9s %9s %9s %9s%n', 'endpoint', 'requests',
+                'req/s', 'errors', 'p50 ms', 'p95 ms', 'p99 ms', 'max ms'))
+        summary.each { endpoint, results ->
+            report.append(String.format(Locale.ROOT, '%-50s %9d %9.2f %6.2f%% %9.2f %9.2f %9.2f %9.2f%n', endpoint,
+                    results.requests, results.throughput, results.errorRate * 100, results.p50Millis,
+                    results.p95Millis, results.p99Millis, results.maxMillis))
+        }
+        return report.toString()
+    }
+
+    /**
+     * Endpoints regress when their throughput is lower or their p50 or p99 latency is higher than in the baseline by
+     * more than the tolerance, or when their error rate exceeds the maximum error rate.
+     *
+     * @param tolerance allowed relative change, e.g. 0.2 for 20%
+     * @return descriptions of regressions, empty when the run has not regressed
+     */
+    static List<String> regressions(Map<String, Map<String, Number>> summary, Map<String, Map<String, Number>> baseline,
+                                    double tolerance, double maxErrorRate) {
+        List<String> regressions = []
+        summary.each { endpoint, results ->
+            if (results.errorRate > maxErrorRate) {
+                regressions << "$endpoint: error rate ${results.errorRate} exceeds ${maxErrorRate}".toString()
+            }
+        }
+        baseline.each { endpoint, baselineResults ->
+            def results = summary[endpoint]
+            if (results == null) {
+                regressions << "$endpoint: no requests made".toString()
+                return
+            }
+            if (results.throughput < baselineResults.throughput * (1 - tolerance)) {
+                regressions << "$endpoint: throughput dropped from ${baselineResults.throughput} to ${results.throughput} req/s".toString()
+            }
+            ['p50Millis', 'p99Millis'].each { String percentile ->
+                if (results[percentile] > baselineResults[percentile] * (1 + tolerance)) {
+                    regressions << "$endpoint: $percentile increased from ${baselineResults[percentile]} to ${results[percentile]}".toString()
+                }
+            }
+        }
+        return regressions
+    }
+
+    private static double millis(long micros) {
+        return round(micros / 1000.0)
+    }
+
+    private static double round(Number value) {
+        return Math.round(value.doubleValue() * 100) / 100.0
+    }
+
+    private static class EndpointResults {
+        final LatencyHistogram latencyHistogram = new LatencyHistogram()
+        final AtomicLong errors = new AtomicLong()
+    }
+}
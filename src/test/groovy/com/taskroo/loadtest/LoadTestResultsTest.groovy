@@ -0,0 +1,58 @@
+package com.taskroo.loadtest
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class LoadTestResultsTest extends Specification {
+
+    LoadTestResults results = new LoadTestResults()
+
+    def "should summarize throughput, error rate and latency percentiles of every endpoint"() {
+        given:
+        (1..100).each { results.record('GET /tasks', TimeUnit.MILLISECONDS.toNanos(it), it > 98) }
+        results.record('PUT /tags/{tagId}', TimeUnit.MILLISECONDS.toNanos(5), false)
+        when:
+        def summary = results.summary(10)
+        then:
+        summary.keySet() as List == ['GET /tasks', 'PUT /tags/{tagId}']
+        summary['GET /tasks'].requests == 100
+        summary['GET /tasks'].throughput == 10
+        summary['GET /tasks'].errorRate == 0.02
+        Math.abs(summary['GET /tasks'].p50Millis - 50) < 50 * 0.07
+        Math.abs(summary['GET /tasks'].p99Millis - 99) < 99 * 0.07
+        summary['GET /tasks'].maxMillis == 100
+    }
+
+    def "should not report regressions when results are within the tolerance of the baseline"() {
+        given:
+        def baseline = ['GET /tasks': [throughput: 100, p50Millis: 10, p99Millis: 50]]
+        def summary = ['GET /tasks': [throughput: 85, errorRate: 0, p50Millis: 11.5, p99Millis: 59]]
+        expect:
+        LoadTestResults.regressions(summary, baseline, 0.2, 0.01) == []
+    }
+
+    def "should report endpoints slower than the baseline"() {
+        given:
+        def baseline = ['GET /tasks': [throughput: 100, p50Millis: 10, p99Millis: 50],
+                        'POST /tasks': [throughput: 20, p50Millis: 20, p99Millis: 80]]
+        def summary = ['GET /tasks': [throughput: 70, errorRate: 0, p50Millis: 10, p99Millis: 61],
+                       'POST /tasks': [throughput: 20, errorRate: 0, p50Millis: 20, p99Millis: 80]]
+        when:
+        def regressions = LoadTestResults.regressions(summary, baseline, 0.2, 0.01)
+        then:
+        regressions == ['GET /tasks: throughput dropped from 100 to 70 req/s',
+                        'GET /tasks: p99Millis increased from 50 to 61']
+    }
+
+    def "should report endpoints failing too often and endpoints of the baseline without requests"() {
+        given:
+        def baseline = ['GET /tasks': [throughput: 100, p50Millis: 10, p99Millis: 50],
+                        'PUT /tags/{tagId}': [throughput: 10, p50Millis: 5, p99Millis: 20]]
+        def summary = ['GET /tasks': [throughput: 100, errorRate: 0.05, p50Millis: 10, p99Millis: 50]]
+        when:
+        def regressions = LoadTestResults.regressions(summary, baseline, 0.2, 0.01)
+        then:
+        regressions == ['GET /tasks: error rate 0.05 exceeds 0.01', 'PUT /tags/{tagId}: no requests made']
+    }
+}
@@ -0,0 +1,266 @@
+package com.taskroo.loadtest
+
+import com.mongodb.QueryBuilder
+import com.taskroo.acceptance.AcceptanceTestBase
+import com.taskroo.testing.RunJetty
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+import org.apache.http.HttpResponse
+import org.apache.http.client.methods.HttpGet
+import org.apache.http.client.methods.HttpPost
+import org.apache.http.client.methods.HttpPut
+import org.apache.http.client.methods.HttpRequestBase
+import org.apache.http.entity.ContentType
+import org.apache.http.entity.StringEntity
+import org.apache.http.impl.client.CloseableHttpClient
+import org.apache.http.impl.client.HttpClients
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager
+import org.apache.http.util.EntityUtils
+
+import java.util.concurrent.Callable
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadLocalRandom
+import java.util.concurrent.TimeUnit
+
+/**
+ * Drives mixed traffic of polling clients against the API started on embedded Jetty and compares throughput and
+ * latency of every endpoint with the stored baseline. Every client thread works on tasks and tags of its own user,
+ * so requests do not fail because of concurrent modifications made by other clients.
+ *
+ * Run with "mvn -Pload-test verify" against local mongod. Baseline depends on the machine it is measured on, so none is
+ * kept in the repository: the first run on a machine has to be made with -DloadTest.updateBaseline=true to store its
+ * results as the baseline, and the test fails when there is no baseline to compare with.
+ */
+@RunJetty
+class MixedTrafficLoadSpec extends AcceptanceTestBase {
+
+    static final String BASE_URL = 'http://localhost:8080/'
+    static final String USER_ID_PREFIX = 'load-test-user-'
+
+    static final int CLIENTS = Integer.getInteger('loadTest.clients', 16)
+    static final int TASKS_PER_USER = Integer.getInteger('loadTest.tasksPerUser', 200)
+    static final int TAGS_PER_USER = Integer.getInteger('loadTest.tagsPerUser', 10)
+    static final int WARMUP_SECONDS = Integer.getInteger('loadTest.warmupSeconds', 15)
+    static final int DURATION_SECONDS = Integer.getInteger('loadTest.durationSeconds', 60)
+    static final double TOLERANCE = Double.parseDouble(System.getProperty('loadTest.tolerance', '0.2'))
+    static final double MAX_ERROR_RATE = Double.parseDouble(System.getProperty('loadTest.maxErrorRate', '0.01'))
+    static final File BASELINE_FILE = new File(System.getProperty('loadTest.baseline', 'src/test/resources/loadtest/baseline.json'))
+    static final File RESULTS_FILE = new File('target/load-test/results.json')
+    static final boolean UPDATE_BASELINE = Boolean.getBoolean('loadTest.updateBaseline')
+    static final int CONNECTION_FAILED = -1
+
+    /**
+     * Operations of the traffic mix with their weights, polling of tasks being the most frequent
+     */
+    static final Map<String, Integer> TRAFFIC_MIX = [
+            'GET /tasks'                                    : 50,
+            'POST /tasks'                                   : 12,
+            'PUT /tasks/{taskId}'                           : 15,
+            'POST /tasks/{parentTaskId}/subtasks/{subtaskId}': 7,
+            'POST /tasks/{subtaskId}'                       : 6,
+            'PUT /tags/{tagId}'                             : 10]
+
+    CloseableHttpClient httpClient
+    LoadTestResults results = new LoadTestResults()
+
+    def setup() {
+        def connectionManager = new PoolingHttpClientConnectionManager()
+        connectionManager.maxTotal = CLIENTS
+        connectionManager.defaultMaxPerRoute = CLIENTS
+        httpClient = HttpClients.custom().setConnectionManager(connectionManager).build()
+        removeLoadTestData()
+    }
+
+    def cleanup() {
+        httpClient.close()
+        removeLoadTestData()
+    }
+
+    private static void removeLoadTestData() {
+        securityTokensCollection.remove(QueryBuilder.start('user_id').regex(~"^$USER_ID_PREFIX").get())
+        tasksCollection.remove(QueryBuilder.start('owner_id').regex(~"^$USER_ID_PREFIX").get())
+        tagsCollection.remove(QueryBuilder.start('owner_id').regex(~"^$USER_ID_PREFIX").get())
+        dataVersionsCollection.remove(QueryBuilder.start('_id').regex(~"^$USER_ID_PREFIX").get())
+        tombstonesCollection.remove(QueryBuilder.start('owner_id').regex(~"^$USER_ID_PREFIX").get())
+    }
+
+    def "should not regress throughput and latency of mixed traffic"() {
+        given: "there is a baseline to compare with, unless it is being created"
+        assert UPDATE_BASELINE || BASELINE_FILE.exists(): "No baseline in $BASELINE_FILE, run with " +
+                "-DloadTest.updateBaseline=true to create it"
+        and: "every client has a user with tasks and tags"
+        List<LoadTestUser> users = (1..CLIENTS).collect { createUser(USER_ID_PREFIX + it) }
+        when: "clients send mixed traffic during warmup and measurement"
+        long measurementStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(WARMUP_SECONDS)
+        long measurementEnd = measurementStart + TimeUnit.SECONDS.toNanos(DURATION_SECONDS)
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS)
+        List<Future> clientsRuns = users.collect { LoadTestUser user ->
+            clients.submit({ runClient(user, measurementStart, measurementEnd) } as Callable)
+        }
+        clientsRuns*.get()
+        clients.shutdown()
+        def summary = results.summary(DURATION_SECONDS)
+        println LoadTestResults.format(summary)
+        RESULTS_FILE.parentFile.mkdirs()
+        RESULTS_FILE.text = JsonOutput.prettyPrint(JsonOutput.toJson(summary))
+        if (UPDATE_BASELINE) {
+            BASELINE_FILE.parentFile.mkdirs()
+            BASELINE_FILE.text = RESULTS_FILE.text
+        }
+        def baseline = new JsonSlurper().parseText(BASELINE_FILE.text)
+        then: "no endpoint is slower than in the baseline or fails too often"
+        LoadTestResults.regressions(summary, baseline, TOLERANCE, MAX_ERROR_RATE) == []
+    }
+
+    private LoadTestUser createUser(String userId) {
+        def user = new LoadTestUser(userId: userId, securityTokenId: createSecurityTokenWithUser(userId))
+        TAGS_PER_USER.times {
+            def tag = send(new HttpPost(BASE_URL + 'tags'), user,
+                    JsonOutput.toJson([name: "tag $it", color: randomColor(), visibleInWorkView: true]))
+            user.tags << tag.json
+        }
+        (0..<TASKS_PER_USER).collate(100).each { List<Integer> batch ->
+            def tasks = batch.collect { randomTask(user, "task $it") }
+            def created = send(new HttpPost(BASE_URL + 'tasks/batch'), user, JsonOutput.toJson(tasks))
+            user.leafTopLevelTaskIds.addAll(created.json*.task*.id)
+        }
+        return user
+    }
+
+    private void runClient(LoadTestUser user, long measurementStart, long measurementEnd) {
+        ThreadLocalRandom random = ThreadLocalRandom.current()
+        int totalWeight = TRAFFIC_MIX.values().sum() as int
+        while (System.nanoTime() < measurementEnd) {
+            int draw = random.nextInt(totalWeight)
+            String operation = TRAFFIC_MIX.find { draw -= it.value; draw < 0 }.key
+            long startTime = System.nanoTime()
+            Integer status
+            try {
+                status = execute(operation, user, random)
+            } catch (IOException e) {
+                status = CONNECTION_FAILED
+            }
+            long endTime = System.nanoTime()
+            if (status != null && startTime >= measurementStart) {
+                results.record(operation, endTime - startTime, !(status in expectedStatuses(operation)))
+            }
+        }
+    }
+
+    /**
+     * @return status of the response or null when the operation could not be made with current tasks of the user
+     */
+    private Integer execute(String operation, LoadTestUser user, ThreadLocalRandom random) {
+        switch (operation) {
+            case 'GET /tasks':
+                def request = new HttpGet(BASE_URL + 'tasks')
+                if (user.tasksEntityTag != null) {
+                    request.setHeader('If-None-Match', user.tasksEntityTag)
+                }
+                def response = send(request, user, null)
+                user.tasksEntityTag = response.entityTag ?: user.tasksEntityTag
+                return response.status
+            case 'POST /tasks':
+                def response = send(new HttpPost(BASE_URL + 'tasks'), user,
+                        JsonOutput.toJson(randomTask(user, "new task ${random.nextInt()}")))
+                if (response.status == 201) {
+                    user.leafTopLevelTaskIds << response.json.id
+                }
+                return response.status
+            case 'PUT /tasks/{taskId}':
+                def taskIds = user.leafTopLevelTaskIds + user.parentTaskIds + user.subtasksParents.keySet()
+                def taskId = taskIds[random.nextInt(taskIds.size())]
+                return send(new HttpPut(BASE_URL + "tasks/$taskId"), user,
+                        JsonOutput.toJson(randomTask(user, "updated task ${random.nextInt()}"))).status
+            case 'POST /tasks/{parentTaskId}/subtasks/{subtaskId}':
+                // only tasks without subtasks are moved, so the trees never get deeper than two levels
+                if (user.leafTopLevelTaskIds.size() < 2) {
+                    return null
+                }
+                def subtaskId = user.leafTopLevelTaskIds.remove(random.nextInt(user.leafTopLevelTaskIds.size()))
+                def parentTaskId = user.leafTopLevelTaskIds.remove(random.nextInt(user.leafTopLevelTaskIds.size()))
+                def response = send(new HttpPost(BASE_URL + "tasks/$parentTaskId/subtasks/$subtaskId"), user, null)
+                if (response.status == 200) {
+                    user.parentTaskIds << parentTaskId
+                    user.subtasksParents[subtaskId] = parentTaskId
+                } else {
+                    user.leafTopLevelTaskIds << subtaskId << parentTaskId
+                }
+                return response.status
+            case 'POST /tasks/{subtaskId}':
+                if (user.subtasksParents.isEmpty()) {
+                    return null
+                }
+                def subtaskId = user.subtasksParents.keySet().toList()[random.nextInt(user.subtasksParents.size())]
+                def response = send(new HttpPost(BASE_URL + "tasks/$subtaskId"), user, null)
+                def parentTaskId = user.subtasksParents.remove(subtaskId)
+                user.leafTopLevelTaskIds << subtaskId
+                if (!user.subtasksParents.containsValue(parentTaskId)) {
+                    user.parentTaskIds.remove(parentTaskId)
+                    user.leafTopLevelTaskIds << parentTaskId
+                }
+                return response.status
+            case 'PUT /tags/{tagId}':
+                def tag = user.tags[random.nextInt(user.tags.size())]
+                return send(new HttpPut(BASE_URL + "tags/$tag.id"), user, JsonOutput.toJson(
+                        [name: tag.name, color: randomColor(), visibleInWorkView: random.nextBoolean()])).status
+            default:
+                throw new IllegalArgumentException("Unknown operation $operation")
+        }
+    }
+
+    private static List<Integer> expectedStatuses(String operation) {
+        switch (operation) {
+            case 'GET /tasks':
+                return [200, 304]
+            case 'POST /tasks':
+                return [201]
+            default:
+                return [200]
+        }
+    }
+
+    private Map randomTask(LoadTestUser user, String title) {
+        ThreadLocalRandom random = ThreadLocalRandom.current()
+        def tags = (1..random.nextInt(1, 4)).collect { [name: user.tags[random.nextInt(user.tags.size())].name] }
+        return [title: title, description: "description of $title".toString(), finished: random.nextInt(10) == 0,
+                dueDate: System.currentTimeMillis() + random.nextInt(1000000000), tags: tags.unique()]
+    }
+
+    private static String randomColor() {
+        return String.format('#%06x', ThreadLocalRandom.current().nextInt(0x1000000))
+    }
+
+    private Map send(HttpRequestBase request, LoadTestUser user, String body) {
+        request.setHeader('Authorization', generateAuthorizationHeader(user.securityTokenId))
+        request.setHeader('Accept', 'application/json')
+        if (body != null) {
+            request.entity = new StringEntity(body, ContentType.APPLICATION_JSON)
+        }
+        HttpResponse response = httpClient.execute(request)
+        try {
+            String content = response.entity == null ? null : EntityUtils.toString(response.entity)
+            int status = response.statusLine.statusCode
+            return [status    : status,
+                    entityTag : response.getFirstHeader('ETag')?.value,
+                    json      : content && status < 300 ? new JsonSlurper().parseText(content) : null]
+        } finally {
+            EntityUtils.consumeQuietly(response.entity)
+        }
+    }
+
+    /**
+     * Tasks and tags of a user, used only by the client thread of the user
+     */
+    static class LoadTestUser {
+        String userId
+        String securityTokenId
+        String tasksEntityTag
+        List<Map> tags = []
+        List<String> leafTopLevelTaskIds = []
+        Set<String> parentTaskIds = new HashSet<>()
+        Map<String, String> subtasksParents = [:]
+    }
+}
@@ -0,0 +1,144 @@
+package com.taskroo.server
+
+import spock.lang.Specification
+
+import javax.ws.rs.WebApplicationException
+import javax.ws.rs.container.ContainerRequestContext
+import javax.ws.rs.container.ContainerResponseContext
+import javax.ws.rs.core.MultivaluedHashMap
+import javax.ws.rs.ext.ReaderInterceptorContext
+import javax.ws.rs.ext.WriterInterceptorContext
+import java.util.zip.DeflaterOutputStream
+import java.util.zip.GZIPInputStream
+import java.util.zip.GZIPOutputStream
+import java.util.zip.InflaterInputStream
+
+class CompressionInterceptorTest extends Specification {
+
+    static final int THRESHOLD_BYTES = 100
+    static final long DECOMPRESSED_REQUEST_MAX_BYTES = 1000
+
+    CompressionInterceptor compressionInterceptor = new CompressionInterceptor(THRESHOLD_BYTES, 6,
+            DECOMPRESSED_REQUEST_MAX_BYTES)
+
+    def "should choose encoding with the highest quality accepted by client"() {
+        expect:
+        CompressionInterceptor.chooseEncoding(acceptEncoding) == encoding
+        where:
+        acceptEncoding                  || encoding
+        null                            || null
+        'identity'                      || null
+        'gzip'                          || 'gzip'
+        'deflate, gzip'                 || 'gzip'
+        'gzip;q=0.5, deflate'           || 'deflate'
+        'gzip;q=0, deflate;q=0'         || null
+        '*'                             || 'gzip'
+        '*;q=0.5, gzip;q=0'             || 'deflate'
+        'x-gzip'                        || 'gzip'
+    }
+
+    def "should set Content-Encoding header of response with entity when client accepts compression"() {
+        given:
+        def requestContext = Mock(ContainerRequestContext)
+        requestContext.getHeaderString('Accept-Encoding') >> 'gzip, deflate'
+        def responseContext = Mock(ContainerResponseContext)
+        def headers = new MultivaluedHashMap<String, Object>()
+        responseContext.getHeaders() >> headers
+        responseContext.hasEntity() >> true
+        when:
+        compressionInterceptor.filter(requestContext, responseContext)
+        then:
+        headers.getFirst('Content-Encoding') == 'gzip'
+        headers.getFirst('Vary') == 'Accept-Encoding'
+    }
+
+    def "should compress response when it reaches the threshold"() {
+        given:
+        def payload = ('x' * THRESHOLD_BYTES * 10).bytes
+        def headers = new MultivaluedHashMap<String, Object>(['Content-Encoding': 'gzip'])
+        def output = new ByteArrayOutputStream()
+        when:
+        writeThroughInterceptor(payload, headers, output)
+        then:
+        headers.getFirst('Content-Encoding') == 'gzip'
+        output.size() < payload.length
+        new GZIPInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == payload
+    }
+
+    def "should compress response with deflate when deflate encoding was chosen"() {
+        given:
+        def payload = ('x' * THRESHOLD_BYTES * 10).bytes
+        def headers = new MultivaluedHashMap<String, Object>(['Content-Encoding': 'deflate'])
+        def output = new ByteArrayOutputStream()
+        when:
+        writeThroughInterceptor(payload, headers, output)
+        then:
+        new InflaterInputStream(new ByteArrayInputStream(output.toByteArray())).bytes == payload
+    }
+
+    def "should send response uncompressed and without Content-Encoding header when it is below the threshold"() {
+        given:
+        def payload = ('x' * (THRESHOLD_BYTES - 1)).bytes
+        def headers = new MultivaluedHashMap<String, Object>(['Content-Encoding': 'gzip'])
+        def output = new ByteArrayOutputStream()
+        when:
+        writeThroughInterceptor(payload, headers, output)
+        then:
+        !headers.containsKey('Content-Encoding')
+        output.toByteArray() == payload
+    }
+
+    def "should decompress request body sent with supported encoding"() {
+        given:
+        def payload = '[{"title": "task"}]'.bytes
+        def compressedPayload = new ByteArrayOutputStream()
+        def compressingStream = encoding == 'gzip' ? new GZIPOutputStream(compressedPayload) : new DeflaterOutputStream(compressedPayload)
+        compressingStream.withStream { it.write(payload) }
+        def headers = new MultivaluedHashMap<String, String>(['Content-Encoding': encoding])
+        def context = Mock(ReaderInterceptorContext)
+        InputStream input = new ByteArrayInputStream(compressedPayload.toByteArray())
+        context.getHeaders() >> headers
+        context.getInputStream() >> { input }
+        context.setInputStream(_) >> { InputStream newInput -> input = newInput }
+        context.proceed() >> { input.bytes }
+        when:
+        def readPayload = compressionInterceptor.aroundReadFrom(context)
+        then:
+        readPayload == payload
+        !headers.containsKey('Content-Encoding')
+        where:
+        encoding << ['gzip', 'deflate']
+    }
+
+    def "should fail with 413 (request entity too large) when decompressed request body exceeds the limit"() {
+        given:
+        def compressedPayload = new ByteArrayOutputStream()
+        def compressingStream = encoding == 'gzip' ? new GZIPOutputStream(compressedPayload) : new DeflaterOutputStream(compressedPayload)
+        compressingStream.withStream { it.write(new byte[DECOMPRESSED_REQUEST_MAX_BYTES + 1]) }
+        def context = Mock(ReaderInterceptorContext)
+        InputStream input = new ByteArrayInputStream(compressedPayload.toByteArray())
+        context.getHeaders() >> new MultivaluedHashMap<String, String>(['Content-Encoding': encoding])
+        context.getInputStream() >> { input }
+        context.setInputStream(_) >> { InputStream newInput -> input = newInput }
+        context.proceed() >> { input.bytes }
+        when:
+        compressionInterceptor.aroundReadFrom(context)
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 413
+        where:
+        encoding << ['gzip', 'deflate']
+    }
+
+    private void writeThroughInterceptor(byte[] payload, MultivaluedHashMap<String, Object> headers, OutputStream output) {
+        def context = Mock(WriterInterceptorContext)
+        OutputStream entityStream = output
+        context.getHeaders() >> headers
+        context.getOutputStream() >> { entityStream }
+        context.setOutputStream(_) >> { OutputStream newStream -> entityStream = newStream }
+        context.proceed() >> { entityStream.write(payload) }
+        compressionInterceptor.aroundWriteTo(context)
+        // entity stream is closed by Jersey after the entity is written
+        entityStream.close()
+    }
+}
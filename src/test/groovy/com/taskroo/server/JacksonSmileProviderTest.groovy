@@ -0,0 +1,44 @@
+package com.taskroo.server
+
+import com.taskroo.domain.Tag
+import com.taskroo.domain.Task
+import com.taskroo.service.TaskRooMediaType
+import spock.lang.Specification
+
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.MultivaluedHashMap
+
+class JacksonSmileProviderTest extends Specification {
+
+    JacksonSmileProvider provider = new JacksonSmileProvider()
+
+    def "should read tasks written in Smile format"() {
+        given:
+        def tasks = [new Task.TaskBuilder().setId('id1').setTitle('title1').setDescription('description')
+                .setCreatedDate(new Date()).addTag(new Tag('tagId', null, 'tagName', 'red', true)).build()]
+        def genericType = JacksonSmileProviderTest.getDeclaredField('tasksListType').genericType
+        def output = new ByteArrayOutputStream()
+        when:
+        provider.writeTo(tasks, ArrayList, ArrayList, null, TaskRooMediaType.APPLICATION_SMILE_TYPE,
+                new MultivaluedHashMap<String, Object>(), output)
+        def readTasks = provider.readFrom(Object, genericType, null, TaskRooMediaType.APPLICATION_SMILE_TYPE,
+                new MultivaluedHashMap<String, String>(), new ByteArrayInputStream(output.toByteArray())) as List<Task>
+        then:
+        readTasks*.title == ['title1']
+        readTasks.first().description == 'description'
+        readTasks.first().tags*.name == ['tagName']
+    }
+
+    def "should handle only Smile media type"() {
+        expect:
+        provider.isWriteable(Object, Object, null, mediaType) == handled
+        provider.isReadable(Object, Object, null, mediaType) == handled
+        where:
+        mediaType                                || handled
+        TaskRooMediaType.APPLICATION_SMILE_TYPE  || true
+        MediaType.APPLICATION_JSON_TYPE          || false
+        MediaType.WILDCARD_TYPE                  || false
+    }
+
+    private List<Task> tasksListType
+}
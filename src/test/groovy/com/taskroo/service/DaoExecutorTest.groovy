@@ -0,0 +1,162 @@
+package com.taskroo.service
+
+import com.taskroo.data.MongoOperationMetrics
+import com.taskroo.service.tracing.Span
+import com.taskroo.service.tracing.Tracer
+import spock.lang.Specification
+
+import javax.ws.rs.container.AsyncResponse
+import javax.ws.rs.container.TimeoutHandler
+import javax.ws.rs.core.Response
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.TimeUnit
+
+class DaoExecutorTest extends Specification {
+
+    Tracer tracer = new Tracer(true)
+    MongoOperationMetrics mongoOperationMetrics = new MongoOperationMetrics(1000, tracer)
+    DaoExecutor daoExecutor
+
+    def cleanup() {
+        daoExecutor?.stop()
+        tracer.setCurrentSpan(null)
+    }
+
+    def "should execute DAO call on the calling thread when executor is disabled"() {
+        given:
+        daoExecutor = new DaoExecutor(false, 1, 1, 1000, mongoOperationMetrics, tracer)
+        def asyncResponse = Mock(AsyncResponse)
+        Thread daoCallThread = null
+        when:
+        daoExecutor.execute(asyncResponse, { daoCallThread = Thread.currentThread(); Response.ok().build() } as Callable<Response>)
+        then:
+        1 * asyncResponse.resume({ it.status == 200 })
+        0 * asyncResponse.setTimeout(_, _)
+        daoCallThread == Thread.currentThread()
+        daoExecutor.completedCount == 1
+    }
+
+    def "should resume response with result of DAO call executed on executor thread"() {
+        given:
+        daoExecutor = new DaoExecutor(true, 1, 1, 1000, mongoOperationMetrics, tracer)
+        def resumed = new CountDownLatch(1)
+        Object resumedWith = null
+        def asyncResponse = Mock(AsyncResponse)
+        asyncResponse.resume(_) >> { resumedWith = it[0]; resumed.countDown(); true }
+        when:
+        daoExecutor.execute(asyncResponse, { Response.ok(Thread.currentThread().name).build() } as Callable<Response>)
+        then:
+        resumed.await(5, TimeUnit.SECONDS)
+        (resumedWith as Response).entity == 'dao-executor-1'
+    }
+
+    def "should resume response with exception thrown by DAO call"() {
+        given:
+        daoExecutor = new DaoExecutor(false, 1, 1, 1000, mongoOperationMetrics, tracer)
+        def asyncResponse = Mock(AsyncResponse)
+        def exception = new IllegalStateException('DB failure')
+        when:
+        daoExecutor.execute(asyncResponse, { throw exception } as Callable<Response>)
+        then:
+        1 * asyncResponse.resume(exception)
+    }
+
+    def "should respond with 503 when all threads are busy and the queue is full"() {
+        given:
+        daoExecutor = new DaoExecutor(true, 1, 1, 1000, mongoOperationMetrics, tracer)
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def blockingCall = { started.countDown(); release.await(); Response.ok().build() } as Callable<Response>
+        daoExecutor.execute(Mock(AsyncResponse), blockingCall)
+        started.await(5, TimeUnit.SECONDS)
+        daoExecutor.execute(Mock(AsyncResponse), blockingCall)
+        def rejectedResponse = Mock(AsyncResponse)
+        when:
+        daoExecutor.execute(rejectedResponse, blockingCall)
+        then:
+        1 * rejectedResponse.resume({ it.status == 503 })
+        daoExecutor.rejectedCount == 1
+        cleanup:
+        release.countDown()
+    }
+
+    def "should respond with 504 when DAO call is still running when the timeout expires"() {
+        given:
+        daoExecutor = new DaoExecutor(true, 1, 1, 250, mongoOperationMetrics, tracer)
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        def asyncResponse = Mock(AsyncResponse)
+        TimeoutHandler timeoutHandler = null
+        when:
+        daoExecutor.execute(asyncResponse, { started.countDown(); release.await(); Response.ok().build() } as Callable<Response>)
+        started.await(5, TimeUnit.SECONDS)
+        timeoutHandler.handleTimeout(asyncResponse)
+        then:
+        1 * asyncResponse.setTimeoutHandler(_) >> { timeoutHandler = it[0] }
+        1 * asyncResponse.setTimeout(250, TimeUnit.MILLISECONDS)
+        1 * asyncResponse.resume({ it instanceof Response && it.status == 504 })
+        daoExecutor.timedOutCount == 1
+        cleanup:
+        release.countDown()
+    }
+
+    def "should respond with 503 and never make DAO call which is still queued when the timeout expires"() {
+        given:
+        daoExecutor = new DaoExecutor(true, 1, 1, 250, mongoOperationMetrics, tracer)
+        def started = new CountDownLatch(1)
+        def release = new CountDownLatch(1)
+        daoExecutor.execute(Mock(AsyncResponse), { started.countDown(); release.await(); Response.ok().build() } as Callable<Response>)
+        started.await(5, TimeUnit.SECONDS)
+        def asyncResponse = Mock(AsyncResponse)
+        TimeoutHandler timeoutHandler = null
+        def queuedCallMade = false
+        when:
+        daoExecutor.execute(asyncResponse, { queuedCallMade = true; Response.ok().build() } as Callable<Response>)
+        timeoutHandler.handleTimeout(asyncResponse)
+        def queueSizeAfterTimeout = daoExecutor.queueSize
+        release.countDown()
+        daoExecutor.stop()
+        daoExecutor.executor.awaitTermination(5, TimeUnit.SECONDS)
+        then:
+        1 * asyncResponse.setTimeoutHandler(_) >> { timeoutHandler = it[0] }
+        1 * asyncResponse.resume({ it instanceof Response && it.status == 503 })
+        0 * asyncResponse.resume(_)
+        !queuedCallMade
+        queueSizeAfterTimeout == 0
+    }
+
+    def "should count Mongo operations made by DAO call"() {
+        given:
+        daoExecutor = new DaoExecutor(false, 1, 1, 1000, mongoOperationMetrics, tracer)
+        def daoCall = {
+            mongoOperationMetrics.record('TaskDao.update', 'findAndModify', null, 1000, 1)
+            mongoOperationMetrics.record('TaskDao.getTask', 'find', null, 1000, 3)
+            Response.ok().build()
+        } as Callable<Response>
+        when:
+        daoExecutor.execute(Mock(AsyncResponse), daoCall)
+        then:
+        mongoOperationMetrics.requestsCount == 1
+        mongoOperationMetrics.requestsOperationsCount == 2
+        mongoOperationMetrics.maxRequestOperationsCount == 2
+    }
+
+    def "should continue trace of the request on executor thread and restore span of server thread"() {
+        given:
+        daoExecutor = new DaoExecutor(true, 1, 1, 1000, mongoOperationMetrics, tracer)
+        def resumed = new CountDownLatch(1)
+        def asyncResponse = Mock(AsyncResponse)
+        asyncResponse.resume(_) >> { resumed.countDown(); true }
+        def requestSpan = tracer.startTrace('GET TasksService.getAll')
+        Span daoCallSpan = null
+        when:
+        daoExecutor.execute(asyncResponse, { daoCallSpan = tracer.currentSpan; Response.ok().build() } as Callable<Response>)
+        then:
+        resumed.await(5, TimeUnit.SECONDS)
+        tracer.currentSpan == requestSpan
+        daoCallSpan.name == 'DaoExecutor.call'
+        daoCallSpan.traceId == requestSpan.traceId
+        daoCallSpan.parentId == requestSpan.id
+    }
+}
@@ -0,0 +1,112 @@
+package com.taskroo.service
+
+import com.taskroo.data.MongoOperationMetrics
+import com.taskroo.data.TagsDictionary
+import com.taskroo.data.TagsDictionaryCache
+import com.taskroo.domain.Role
+import com.taskroo.service.metrics.RequestMetrics
+import com.taskroo.service.security.SecurityToken
+import com.taskroo.service.security.SecurityTokenCache
+import com.taskroo.service.tracing.Tracer
+import spock.lang.Specification
+
+import javax.annotation.security.PermitAll
+import javax.annotation.security.RolesAllowed
+
+import java.util.concurrent.TimeUnit
+
+class MetricsServiceTest extends Specification {
+
+    RequestMetrics requestMetrics = new RequestMetrics()
+    MongoOperationMetrics mongoOperationMetrics = new MongoOperationMetrics(1000, new Tracer(false))
+    SecurityTokenCache securityTokenCache = new SecurityTokenCache(1, 60)
+    TagsDictionaryCache tagsDictionaryCache = new TagsDictionaryCache(10, 60)
+    MetricsService metricsService = new MetricsService(requestMetrics, ResumedResponse.CALLING_THREAD_DAO_EXECUTOR,
+            mongoOperationMetrics, securityTokenCache, tagsDictionaryCache)
+
+    def "should expose latency histogram, status counts and in flight requests of every resource method"() {
+        given:
+        requestMetrics.requestStarted()
+        requestMetrics.requestStarted()
+        requestMetrics.requestStarted()
+        requestMetrics.requestFinished('GET', 'TasksService.getAll', 200, TimeUnit.MILLISECONDS.toNanos(10))
+        requestMetrics.requestFinished('GET', 'TasksService.getAll', 304, TimeUnit.MILLISECONDS.toNanos(10))
+        when:
+        def metrics = metricsService.getMetrics().readLines()
+        then:
+        metrics.contains('# TYPE taskroo_http_request_duration_seconds histogram')
+        metrics.contains('taskroo_http_request_duration_seconds_bucket{method="GET",resource="TasksService.getAll",le="0.005"} 0')
+        metrics.contains('taskroo_http_request_duration_seconds_bucket{method="GET",resource="TasksService.getAll",le="0.01"} 2')
+        metrics.contains('taskroo_http_request_duration_seconds_bucket{method="GET",resource="TasksService.getAll",le="+Inf"} 2')
+        metrics.contains('taskroo_http_request_duration_seconds_sum{method="GET",resource="TasksService.getAll"} 0.020000')
+        metrics.contains('taskroo_http_request_duration_seconds_count{method="GET",resource="TasksService.getAll"} 2')
+        metrics.contains('taskroo_http_responses_total{method="GET",resource="TasksService.getAll",status="200"} 1')
+        metrics.contains('taskroo_http_responses_total{method="GET",resource="TasksService.getAll",status="304"} 1')
+        metrics.contains('taskroo_http_requests_in_flight 1')
+    }
+
+    def "should expose DAO executor counters"() {
+        when:
+        def metrics = metricsService.getMetrics().readLines()
+        then:
+        metrics.contains('# TYPE taskroo_dao_executor_rejected_total counter')
+        metrics.any { it.startsWith('taskroo_dao_executor_submitted_total ') }
+        metrics.contains('taskroo_dao_executor_queue_size 0')
+    }
+
+    def "should expose Mongo operation latencies, returned documents and operations per request"() {
+        given:
+        mongoOperationMetrics.startRequest()
+        mongoOperationMetrics.record('TaskDao.getTask', 'find', null, TimeUnit.MILLISECONDS.toNanos(2), 3)
+        mongoOperationMetrics.record('TaskDao.getTask', 'find', null, TimeUnit.MILLISECONDS.toNanos(2), 4)
+        mongoOperationMetrics.finishRequest()
+        when:
+        def metrics = metricsService.getMetrics().readLines()
+        then:
+        metrics.contains('taskroo_mongo_operation_duration_seconds_bucket{dao_method="TaskDao.getTask",operation="find",le="0.001"} 0')
+        metrics.contains('taskroo_mongo_operation_duration_seconds_bucket{dao_method="TaskDao.getTask",operation="find",le="0.0025"} 2')
+        metrics.contains('taskroo_mongo_operation_duration_seconds_count{dao_method="TaskDao.getTask",operation="find"} 2')
+        metrics.contains('taskroo_mongo_documents_returned_total{dao_method="TaskDao.getTask",operation="find"} 7')
+        metrics.contains('taskroo_mongo_operations_per_request_sum 2')
+        metrics.contains('taskroo_mongo_operations_per_request_count 1')
+        metrics.contains('taskroo_mongo_operations_per_request_max 2')
+    }
+
+    def "should expose security token cache counters"() {
+        given:
+        securityTokenCache.put(new SecurityToken('token1', 'user1', [Role.USER].toSet(), new Date(), new Date()))
+        securityTokenCache.put(new SecurityToken('token2', 'user1', [Role.USER].toSet(), new Date(), new Date()))
+        securityTokenCache.get('token2')
+        securityTokenCache.get('token1')
+        when:
+        def metrics = metricsService.getMetrics().readLines()
+        then:
+        metrics.contains('# TYPE taskroo_security_token_cache_hits_total counter')
+        metrics.contains('taskroo_security_token_cache_hits_total 1')
+        metrics.contains('taskroo_security_token_cache_misses_total 1')
+        metrics.contains('taskroo_security_token_cache_evictions_total 1')
+    }
+
+    def "should expose tags dictionary cache counters and hit ratio"() {
+        given:
+        tagsDictionaryCache.put('owner', tagsDictionaryCache.getVersion('owner'), new TagsDictionary([]))
+        tagsDictionaryCache.get('owner')
+        tagsDictionaryCache.get('owner')
+        tagsDictionaryCache.get('owner')
+        tagsDictionaryCache.get('otherOwner')
+        when:
+        def metrics = metricsService.getMetrics().readLines()
+        then:
+        metrics.contains('# TYPE taskroo_tags_dictionary_cache_hits_total counter')
+        metrics.contains('taskroo_tags_dictionary_cache_hits_total 3')
+        metrics.contains('taskroo_tags_dictionary_cache_misses_total 1')
+        metrics.contains('taskroo_tags_dictionary_cache_evictions_total 0')
+        metrics.contains('taskroo_tags_dictionary_cache_hit_ratio 0.750000')
+    }
+
+    def "should allow only admins to read metrics"() {
+        expect:
+        MetricsService.getAnnotation(RolesAllowed).value() == ['admin'] as String[]
+        !MetricsService.isAnnotationPresent(PermitAll)
+    }
+}
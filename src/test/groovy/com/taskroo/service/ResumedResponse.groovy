@@ -0,0 +1,25 @@
+package com.taskroo.service
+
+import com.taskroo.data.MongoOperationMetrics
+import com.taskroo.service.tracing.Tracer
+
+import javax.ws.rs.container.AsyncResponse
+import javax.ws.rs.core.Response
+
+/**
+ * Calls asynchronous resource method with DAO executor executing DAO work on the calling thread and returns response
+ * the method has resumed. Exception the response has been resumed with is thrown, as by synchronous resource method.
+ */
+class ResumedResponse {
+
+    static final DaoExecutor CALLING_THREAD_DAO_EXECUTOR = new DaoExecutor(false, 1, 1, 1000, new MongoOperationMetrics(1000, new Tracer(false)), new Tracer(false))
+
+    static Response of(Closure<?> resourceMethodCall) {
+        def resumedWith = null
+        resourceMethodCall([resume: { resumedWith = it; true }] as AsyncResponse)
+        if (resumedWith instanceof Throwable) {
+            throw resumedWith
+        }
+        resumedWith as Response
+    }
+}
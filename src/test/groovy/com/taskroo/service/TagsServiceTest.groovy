@@ -1,10 +1,14 @@
 package com.taskroo.service
 
+import com.taskroo.data.DataVersionDao
 import com.taskroo.data.NonExistingResourceOperationException
 import com.taskroo.data.TagDao
 import com.taskroo.domain.Tag
 import spock.lang.Specification
 
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.Request
+import javax.ws.rs.core.Response
 import javax.ws.rs.core.SecurityContext
 import java.security.Principal
 
@@ -14,13 +18,17 @@ class TagsServiceTest extends Specification {
 
     // mocks
     TagDao tagDao
+    DataVersionDao dataVersionDao
     SecurityContext securityContext
+    Request request
     Principal principal
 
     void setup() {
         tagDao = Mock(TagDao)
+        dataVersionDao = Mock(DataVersionDao)
         securityContext = Mock(SecurityContext)
-        tagsService = new TagsService(tagDao)
+        request = Mock(Request)
+        tagsService = new TagsService(tagDao, dataVersionDao, ResumedResponse.CALLING_THREAD_DAO_EXECUTOR)
 
         principal = Mock(Principal)
         securityContext.getUserPrincipal() >> principal
@@ -30,16 +38,29 @@ class TagsServiceTest extends Specification {
         given:
         principal.getName() >> 'testUserName'
         when:
-        tagsService.getAll(securityContext)
+        ResumedResponse.of { tagsService.getAll(it, securityContext, request) }
         then:
         1 * tagDao.getAllTagsByOwnerId('testUserName')
     }
 
+    def "should return 304 (not modified) without reading tags when data version of user has not changed"() {
+        given:
+        principal.getName() >> 'testUserName'
+        dataVersionDao.getVersion('testUserName') >> 3
+        request.evaluatePreconditions(DataVersionEntityTag.of('testUserName', 3, MediaType.APPLICATION_JSON_TYPE)) >> Response.notModified()
+        when:
+        def response = ResumedResponse.of { tagsService.getAll(it, securityContext, request) }
+        then:
+        response.status == 304
+        response.getHeaderString('Vary') == 'Accept'
+        0 * tagDao.getAllTagsByOwnerId(_)
+    }
+
     def "should insert tag to DB when creating new tag"() {
         given:
         def tag = new Tag(null, null, 'someTagName', 'orange', true)
         when:
-        tagsService.create(securityContext, tag)
+        ResumedResponse.of { tagsService.create(it, securityContext, tag) }
         then:
         1 * tagDao.insert(tag) >> tag;
     }
@@ -50,7 +71,7 @@ class TagsServiceTest extends Specification {
         def tagFromDao = new Tag('id', 'ownerId', 'someTagName', 'orange', true)
         tagDao.insert(tag) >> tagFromDao
         when:
-        def response = tagsService.create(securityContext, tag)
+        def response = ResumedResponse.of { tagsService.create(it, securityContext, tag) }
         then:
         response.status == 201
         response.entity == tagFromDao
@@ -61,7 +82,7 @@ class TagsServiceTest extends Specification {
         def tag = new Tag(null, null, 'someTagName', 'orange', true)
         principal.getName() >> 'testUserName'
         when:
-        tagsService.create(securityContext, tag)
+        ResumedResponse.of { tagsService.create(it, securityContext, tag) }
         then:
         1 * tagDao.insert({ it.ownerId == 'testUserName'}) >> tag
     }
@@ -73,7 +94,7 @@ class TagsServiceTest extends Specification {
         tagDao.findByName('ownerId','someTagName') >> new Tag('79821374893', 'ownerId', 'someTagName', 'orange', true)
         tagDao.insert(tag) >> new Tag('id', 'ownerId', 'someTagName', 'orange', true)
         when:
-        def response = tagsService.create(securityContext, tag)
+        def response = ResumedResponse.of { tagsService.create(it, securityContext, tag) }
         then:
         response.status == 200
     }
@@ -82,7 +103,7 @@ class TagsServiceTest extends Specification {
         given:
         principal.getName() >> 'ownerId'
         when:
-        tagsService.delete(securityContext, 'someTagId')
+        ResumedResponse.of { tagsService.delete(it, securityContext, 'someTagId') }
         then:
         1 * tagDao.remove('ownerId', 'someTagId')
     }
@@ -92,7 +113,7 @@ class TagsServiceTest extends Specification {
         principal.getName() >> 'ownerId'
         tagDao.remove(_, _) >> { throw new NonExistingResourceOperationException('') }
         when:
-        def response = tagsService.delete(securityContext, 'someTagId')
+        def response = ResumedResponse.of { tagsService.delete(it, securityContext, 'someTagId') }
         then:
         response.status == 404
     }
@@ -102,7 +123,7 @@ class TagsServiceTest extends Specification {
         principal.getName() >> 'ownerId'
         tagDao.findByName('ownerId', 'someTagId') >> Mock(Tag)
         when:
-        def response = tagsService.delete(securityContext, 'someTagId')
+        def response = ResumedResponse.of { tagsService.delete(it, securityContext, 'someTagId') }
         then:
         response.status == 204
     }
@@ -112,7 +133,7 @@ class TagsServiceTest extends Specification {
         principal.getName() >> 'ownerId'
         def tag = new Tag('tagId1', null, 'newTagName', 'orange', true)
         when:
-        tagsService.update(securityContext, 'tagId1', tag)
+        ResumedResponse.of { tagsService.update(it, securityContext, 'tagId1', tag) }
         then:
         1 * tagDao.update('ownerId', 'tagId1', tag)
     }
@@ -123,7 +144,7 @@ class TagsServiceTest extends Specification {
         def tag = new Tag(null, null, 'newTagName', 'orange', true)
         tagDao.update('ownerId', 'tagId', tag) >> new Tag('tagId', 'ownerId', 'someTagName', 'orange', true)
         when:
-        def response = tagsService.update(securityContext, 'tagId', tag)
+        def response = ResumedResponse.of { tagsService.update(it, securityContext, 'tagId', tag) }
         then:
         response.status == 200
     }
@@ -135,7 +156,7 @@ class TagsServiceTest extends Specification {
         def tagAfterUpdate = new Tag('id', 'ownerId', 'someTagName', 'orange', true)
         tagDao.update('ownerId', 'id', tag) >> tagAfterUpdate
         when:
-        def response = tagsService.update(securityContext, 'id', tag)
+        def response = ResumedResponse.of { tagsService.update(it, securityContext, 'id', tag) }
         then:
         response.entity.is(tagAfterUpdate)
     }
@@ -146,7 +167,7 @@ class TagsServiceTest extends Specification {
         def tag = new Tag(null, null, 'newTagName', 'orange', true)
         tagDao.update('ownerId', 'tagId', tag) >> {throw new NonExistingResourceOperationException('')}
         when:
-        def response = tagsService.update(securityContext, 'tagId', tag)
+        def response = ResumedResponse.of { tagsService.update(it, securityContext, 'tagId', tag) }
         then:
         response.status == 404
     }
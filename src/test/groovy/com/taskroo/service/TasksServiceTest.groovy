@@ -1,11 +1,23 @@
 package com.taskroo.service
 import org.bson.types.ObjectId
 import com.taskroo.data.*
+import com.fasterxml.jackson.databind.ObjectMapper
+import com.fasterxml.jackson.dataformat.smile.SmileFactory
+import com.taskroo.domain.BatchItemResult
+import com.taskroo.domain.Tag
 import com.taskroo.domain.Task
+import com.taskroo.domain.TasksChanges
+import groovy.json.JsonSlurper
+import org.joda.time.DateTime
 import spock.lang.Specification
 
 import javax.ws.rs.WebApplicationException
+import javax.ws.rs.core.EntityTag
+import javax.ws.rs.core.MediaType
+import javax.ws.rs.core.Request
+import javax.ws.rs.core.Response
 import javax.ws.rs.core.SecurityContext
+import javax.ws.rs.core.Variant
 import java.security.Principal
 
 class TasksServiceTest extends Specification {
@@ -15,10 +27,12 @@ class TasksServiceTest extends Specification {
     TasksService tasksService
 
     TaskDao taskDao = Mock(TaskDao)
+    DataVersionDao dataVersionDao = Mock(DataVersionDao)
     SecurityContext securityContext = Mock(SecurityContext)
+    Request request = Mock(Request)
 
     void setup() {
-        tasksService = new TasksService(taskDao);
+        tasksService = new TasksService(taskDao, dataVersionDao, ResumedResponse.CALLING_THREAD_DAO_EXECUTOR, false);
 
         def principal = Mock(Principal)
         principal.getName() >> TEST_USER_ID
@@ -32,7 +46,7 @@ class TasksServiceTest extends Specification {
                 .setId('someTaskId').setCreatedDate(new Date()).build();
         taskDao.insert(task) >> taskAfterSave
         when:
-        def response = tasksService.create(securityContext, task)
+        def response = ResumedResponse.of { tasksService.create(it, securityContext, task) }
         then:
         response.status == 201
     }
@@ -43,7 +57,7 @@ class TasksServiceTest extends Specification {
         def taskAfterSave = new Task.TaskBuilder().setOwnerId(TEST_USER_ID).setTitle('taskTitle')
                 .setId('someTaskId').setCreatedDate(new Date()).build();
         when:
-        tasksService.create(securityContext, task)
+        ResumedResponse.of { tasksService.create(it, securityContext, task) }
         then:
         1 * taskDao.insert(task) >> taskAfterSave
     }
@@ -55,7 +69,7 @@ class TasksServiceTest extends Specification {
                 .setId('someTaskId').setCreatedDate(new Date()).build();
         taskDao.insert(task) >> taskAfterSave
         when:
-        def response = tasksService.create(securityContext, task)
+        def response = ResumedResponse.of { tasksService.create(it, securityContext, task) }
         then:
         response.entity == taskAfterSave
     }
@@ -67,7 +81,7 @@ class TasksServiceTest extends Specification {
                 .setId('someTaskId').setCreatedDate(new Date()).build();
         taskDao.insert(task) >> taskAfterSave
         when:
-        def response = tasksService.create(securityContext, task)
+        def response = ResumedResponse.of { tasksService.create(it, securityContext, task) }
         then:
         response.location == URI.create('tasks/someTaskId')
     }
@@ -76,7 +90,7 @@ class TasksServiceTest extends Specification {
         given:
         def task = new Task.TaskBuilder().setOwnerId('ownerId').setTitle('someTitle').setCreatedDate(new Date()).build()
         when:
-        tasksService.create(securityContext, task)
+        ResumedResponse.of { tasksService.create(it, securityContext, task) }
         then:
         1 * taskDao.insert({ it.getOwnerId() == TEST_USER_ID }) >> task
 
@@ -89,15 +103,293 @@ class TasksServiceTest extends Specification {
         }
         taskDao.findAllByOwnerId(TEST_USER_ID) >> tasks
         when:
-        def response = tasksService.getAll(securityContext, null, null, null, null, null)
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
         then:
         response.status == 200
         response.entity == tasks
     }
 
+    def "should return tasks with entity tag of current data version of user"() {
+        given:
+        dataVersionDao.getVersion(TEST_USER_ID) >> 7
+        taskDao.findAllByOwnerId(TEST_USER_ID) >> []
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
+        then:
+        1 * request.evaluatePreconditions(DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE)) >> null
+        response.status == 200
+        response.entityTag == DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE)
+        response.getHeaderString('Vary') == 'Accept'
+    }
+
+    def "should tag Smile tasks with entity tag different than JSON tasks of the same data version"() {
+        given:
+        dataVersionDao.getVersion(TEST_USER_ID) >> 7
+        taskDao.findAllByOwnerId(TEST_USER_ID) >> []
+        request.selectVariant(_) >> new Variant(TaskRooMediaType.APPLICATION_SMILE_TYPE, (String) null, null)
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
+        then:
+        1 * request.evaluatePreconditions(DataVersionEntityTag.of(TEST_USER_ID, 7, TaskRooMediaType.APPLICATION_SMILE_TYPE)) >> null
+        response.mediaType == TaskRooMediaType.APPLICATION_SMILE_TYPE
+        response.entityTag == DataVersionEntityTag.of(TEST_USER_ID, 7, TaskRooMediaType.APPLICATION_SMILE_TYPE)
+        response.entityTag != DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE)
+        response.getHeaderString('Vary') == 'Accept'
+    }
+
+    def "should return 304 (not modified) without reading tasks when data version of user has not changed"() {
+        given:
+        dataVersionDao.getVersion(TEST_USER_ID) >> 7
+        request.evaluatePreconditions(DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE)) >> Response.notModified()
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
+        then:
+        response.status == 304
+        response.getHeaderString('Vary') == 'Accept'
+        0 * taskDao._
+    }
+
+    def "should create entity tags different for different users and versions"() {
+        expect:
+        DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE) == new EntityTag(DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE).value, true)
+        DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE) != DataVersionEntityTag.of(TEST_USER_ID, 8, MediaType.APPLICATION_JSON_TYPE)
+        DataVersionEntityTag.of(TEST_USER_ID, 7, MediaType.APPLICATION_JSON_TYPE) != DataVersionEntityTag.of('otherUserId', 7, MediaType.APPLICATION_JSON_TYPE)
+    }
+
+    def "should return tasks with checkpoint taken before tasks have been read"() {
+        given:
+        def before = System.currentTimeMillis()
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
+        then:
+        1 * taskDao.findAllByOwnerId(TEST_USER_ID) >> []
+        Long.parseLong(response.getHeaderString(TasksService.SYNC_CHECKPOINT_HEADER)) >= before
+    }
+
+    def "should return changes of tasks since given checkpoint"() {
+        given:
+        def changes = new TasksChanges(1234, [], [], [] as Set, [] as Set)
+        when:
+        def response = ResumedResponse.of { tasksService.getChanges(it, securityContext, 1000) }
+        then:
+        1 * taskDao.findChangesSince(TEST_USER_ID, 1000) >> changes
+        response.status == 200
+        response.entity == changes
+    }
+
+    def "should return 410 (gone) when changes since expired checkpoint are requested"() {
+        given:
+        taskDao.findChangesSince(TEST_USER_ID, 1000) >> { throw new ExpiredCheckpointException('expired') }
+        when:
+        def response = ResumedResponse.of { tasksService.getChanges(it, securityContext, 1000) }
+        then:
+        response.status == 410
+    }
+
+    def "should throw 400 (bad request) when changes are requested without checkpoint"() {
+        when:
+        ResumedResponse.of { tasksService.getChanges(it, securityContext, null) }
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 400
+    }
+
+    def "should stream tasks retrieved from DB as JSON array when streaming is enabled"() {
+        given:
+        def streamingTasksService = new TasksService(taskDao, dataVersionDao, ResumedResponse.CALLING_THREAD_DAO_EXECUTOR, true)
+        def tasks = (1..2).collect {
+            new Task.TaskBuilder().setId("id$it").setOwnerId(TEST_USER_ID).setTitle("title$it").build()
+        }
+        def tasksCursor = Mock(TasksCursor)
+        tasksCursor.hasNext() >>> [true, true, false]
+        tasksCursor.next() >>> tasks
+        taskDao.streamAllByOwnerId(TEST_USER_ID, TaskProjection.ALL) >> tasksCursor
+        def output = new ByteArrayOutputStream()
+        when:
+        def response = ResumedResponse.of { streamingTasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
+        response.entity.write(output)
+        then:
+        response.status == 200
+        new JsonSlurper().parseText(output.toString('UTF-8')).collect { it.id } == ['id1', 'id2']
+        1 * tasksCursor.close()
+    }
+
+    def "should stream tasks as Smile when client prefers Smile"() {
+        given:
+        def streamingTasksService = new TasksService(taskDao, dataVersionDao, ResumedResponse.CALLING_THREAD_DAO_EXECUTOR, true)
+        def tasksCursor = Mock(TasksCursor)
+        tasksCursor.hasNext() >>> [true, false]
+        tasksCursor.next() >> new Task.TaskBuilder().setId('id1').setOwnerId(TEST_USER_ID).setTitle('title1').build()
+        taskDao.streamAllByOwnerId(TEST_USER_ID, TaskProjection.ALL) >> tasksCursor
+        request.selectVariant(_) >> new Variant(TaskRooMediaType.APPLICATION_SMILE_TYPE, (String) null, null)
+        def output = new ByteArrayOutputStream()
+        when:
+        def response = ResumedResponse.of { streamingTasksService.getAll(it, securityContext, request, null, null, null, null, null, null, null) }
+        response.entity.write(output)
+        then:
+        response.mediaType == TaskRooMediaType.APPLICATION_SMILE_TYPE
+        new ObjectMapper(new SmileFactory()).readValue(output.toByteArray(), List).collect { it.id } == ['id1']
+    }
+
+    def "should stream unfinished tasks when streaming is enabled and only unfinished tasks requested"() {
+        given:
+        def streamingTasksService = new TasksService(taskDao, dataVersionDao, ResumedResponse.CALLING_THREAD_DAO_EXECUTOR, true)
+        when:
+        ResumedResponse.of { streamingTasksService.getAll(it, securityContext, request, false, null, null, null, null, null, null) }
+        then:
+        1 * taskDao.streamUnfinishedByOwnerId(TEST_USER_ID, TaskProjection.ALL)
+        0 * taskDao.findUnfinishedByOwnerId(_)
+    }
+
+    def "should return page of finished tasks with continuation token of its last task when page is full"() {
+        given:
+        def tasks = (1..2).collect {
+            new Task.TaskBuilder().setId(ObjectId.get().toString()).setOwnerId(TEST_USER_ID).setTitle("title$it")
+                    .setFinished(true).setClosedDate(new Date(1000 - it)).build()
+        }
+        taskDao.findFinished(TEST_USER_ID, null, null, null, 2, TaskProjection.ALL) >> tasks
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, true, null, null, null, 2, null, null) }
+        then:
+        response.entity == tasks
+        ContinuationToken.decode(response.getHeaderString(TasksService.CONTINUATION_TOKEN_HEADER)) == ContinuationToken.after(tasks.last())
+    }
+
+    def "should return page of finished tasks without continuation token when page is not full"() {
+        given:
+        def continuationToken = ContinuationToken.after(new Task.TaskBuilder().setId(ObjectId.get().toString())
+                .setOwnerId(TEST_USER_ID).setTitle('title').setClosedDate(new Date()).build())
+        def tasks = [new Task.TaskBuilder().setId(ObjectId.get().toString()).setOwnerId(TEST_USER_ID).setTitle('title').build()]
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, true, null, null, null, 2, continuationToken.encode(), null) }
+        then:
+        1 * taskDao.findFinished(TEST_USER_ID, null, null, continuationToken, 2, TaskProjection.ALL) >> tasks
+        response.getHeaderString(TasksService.CONTINUATION_TOKEN_HEADER) == null
+    }
+
+    def "should return page of finished tasks closed in given range"() {
+        given:
+        def closedDateAfter = DateTime.parse('2014-12-01T12:00')
+        def closedDateBefore = DateTime.parse('2014-12-20T13:00')
+        def tasks = [new Task.TaskBuilder().setId(ObjectId.get().toString()).setOwnerId(TEST_USER_ID).setTitle('title')
+                .setFinished(true).setClosedDate(DateTime.parse('2014-12-10T12:00').toDate()).build()]
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, true, closedDateAfter, closedDateBefore, null, 2, null, null) }
+        then:
+        1 * taskDao.findFinished(TEST_USER_ID, closedDateAfter, closedDateBefore, null, 2, TaskProjection.ALL) >> tasks
+        0 * taskDao.findFinishedByOwnerAndClosedBetween(*_)
+        response.entity == tasks
+    }
+
+    def "should throw 400 (bad request) when continuation token is invalid"() {
+        when:
+        ResumedResponse.of { tasksService.getAll(it, securityContext, request, true, null, null, null, 2, 'invalidToken', null) }
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 400
+    }
+
+    def "should write only requested fields of tasks and tags when fields are given"() {
+        given:
+        def task = new Task.TaskBuilder().setId('id1').setOwnerId(TEST_USER_ID).setTitle('title1')
+                .setDescription('long description').setFinished(true)
+                .addTag(new Tag('tagId1', TEST_USER_ID, 'tagName', 'red', true)).build()
+        def tasksCursor = Mock(TasksCursor)
+        tasksCursor.hasNext() >>> [true, false]
+        tasksCursor.next() >> task
+        def output = new ByteArrayOutputStream()
+        when:
+        def response = ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, 'title,finished,tags.id') }
+        response.entity.write(output)
+        then:
+        1 * taskDao.streamAllByOwnerId(TEST_USER_ID, { it.taskFields == ['id', 'subtasks', 'title', 'finished', 'tags'] as Set }) >> tasksCursor
+        def writtenTask = new JsonSlurper().parseText(output.toString('UTF-8'))[0]
+        writtenTask.keySet() == ['id', 'title', 'finished', 'tags', 'subtasks'] as Set
+        writtenTask.tags == [[id: 'tagId1']]
+    }
+
+    def "should throw 400 (bad request) when unknown field of tasks is requested"() {
+        when:
+        ResumedResponse.of { tasksService.getAll(it, securityContext, request, null, null, null, null, null, null, 'title,ownerId') }
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 400
+        0 * taskDao._
+    }
+
+    def "should insert batch of tasks with owner from security context and return results of all tasks"() {
+        given:
+        def tasks = (1..3).collect { new Task.TaskBuilder().setTitle("title$it").build() }
+        def results = (0..2).collect { BatchItemResult.success(it, BatchItemResult.Status.CREATED, tasks[it]) }
+        when:
+        def response = ResumedResponse.of { tasksService.createAll(it, securityContext, tasks) }
+        then:
+        1 * taskDao.insertAll(TEST_USER_ID, { it*.ownerId == [TEST_USER_ID] * 3 }) >> results
+        response.status == 200
+        response.entity == results
+    }
+
+    def "should throw 400 (bad request) when batch of tasks to create is empty, too big or contains null"() {
+        when:
+        ResumedResponse.of { tasksService.createAll(it, securityContext, tasks) }
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 400
+        0 * taskDao.insertAll(_, _)
+        where:
+        tasks << [null, [], (0..TasksService.MAX_BATCH_SIZE).collect { new Task.TaskBuilder().setTitle('title').build() },
+                  [new Task.TaskBuilder().setTitle('title').build(), null]]
+    }
+
+    def "should update batch of tasks of user from security context and return results of all tasks"() {
+        given:
+        def tasks = (1..2).collect { new Task.TaskBuilder().setId("taskId$it").setTitle("title$it").build() }
+        def results = (0..1).collect { BatchItemResult.success(it, BatchItemResult.Status.UPDATED, tasks[it]) }
+        when:
+        def response = ResumedResponse.of { tasksService.updateAll(it, securityContext, tasks) }
+        then:
+        1 * taskDao.updateAll(TEST_USER_ID, tasks) >> results
+        response.status == 200
+        response.entity == results
+    }
+
+    def "should throw 400 (bad request) when batch of tasks to update contains null"() {
+        when:
+        ResumedResponse.of {
+            tasksService.updateAll(it, securityContext, [new Task.TaskBuilder().setId('taskId').setTitle('title').build(), null])
+        }
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 400
+        0 * taskDao.updateAll(_, _)
+    }
+
+    def "should remove batch of tasks of user from security context and return results of all tasks"() {
+        given:
+        def results = [BatchItemResult.success(0, BatchItemResult.Status.DELETED, 'taskId1'),
+                       BatchItemResult.failure(1, BatchItemResult.Status.NOT_FOUND, 'taskId2', 'Task not found')]
+        when:
+        def response = ResumedResponse.of { tasksService.deleteAll(it, securityContext, ['taskId1', 'taskId2']) }
+        then:
+        1 * taskDao.removeAll(TEST_USER_ID, ['taskId1', 'taskId2']) >> results
+        response.status == 200
+        response.entity == results
+    }
+
+    def "should throw 400 (bad request) when batch of tasks to remove is empty, too big or contains null"() {
+        when:
+        ResumedResponse.of { tasksService.deleteAll(it, securityContext, tasksIds) }
+        then:
+        def e = thrown(WebApplicationException)
+        e.response.status == 400
+        0 * taskDao.removeAll(_, _)
+        where:
+        tasksIds << [null, [], (0..TasksService.MAX_BATCH_SIZE).collect { 'taskId' }, ['taskId', null]]
+    }
+
     def "should remove task from DB using given task's id and user from security context when removing task"() {
         when:
-        tasksService.delete(securityContext, "someTaskId")
+        ResumedResponse.of { tasksService.delete(it, securityContext, "someTaskId") }
         then:
         1 * taskDao.remove(TEST_USER_ID, "someTaskId")
     }
@@ -106,14 +398,14 @@ class TasksServiceTest extends Specification {
         given:
         taskDao.remove(TEST_USER_ID, "nonExistingTaskId") >> { throw new NonExistingResourceOperationException('') }
         when:
-        def response = tasksService.delete(securityContext, "nonExistingTaskId")
+        def response = ResumedResponse.of { tasksService.delete(it, securityContext, "nonExistingTaskId") }
         then:
         response.status == 404
     }
 
     def "should return 204 when task has been removed correctly"() {
         when:
-        def response = tasksService.delete(securityContext, "someTaskId")
+        def response = ResumedResponse.of { tasksService.delete(it, securityContext, "someTaskId") }
         then:
         response.status == 204
     }
@@ -122,7 +414,7 @@ class TasksServiceTest extends Specification {
         given:
         def task = new Task.TaskBuilder().setOwnerId(TEST_USER_ID).setTitle('taskTitle').setCreatedDate(new Date()).build()
         when:
-        tasksService.update(securityContext, 'someTaskId', task)
+        ResumedResponse.of { tasksService.update(it, securityContext, 'someTaskId', task) }
         then:
         1 * taskDao.update(TEST_USER_ID, task)
     }
@@ -131,7 +423,7 @@ class TasksServiceTest extends Specification {
         given:
         def task = new Task.TaskBuilder().setOwnerId(TEST_USER_ID).setTitle('taskTitle').setCreatedDate(new Date()).build()
         when:
-        def response = tasksService.update(securityContext, 'someTaskId', task)
+        def response = ResumedResponse.of { tasksService.update(it, securityContext, 'someTaskId', task) }
         then:
         response.status == 200
     }
@@ -142,7 +434,7 @@ class TasksServiceTest extends Specification {
         def taskAfterUpdate = new Task.TaskBuilder().setOwnerId(TEST_USER_ID).setTitle('taskTitle').setCreatedDate(new Date()).build()
         taskDao.update(_, _) >> taskAfterUpdate
         when:
-        def response = tasksService.update(securityContext, 'someTaskId', task)
+        def response = ResumedResponse.of { tasksService.update(it, securityContext, 'someTaskId', task) }
         then:
         response.status == 200
         response.entity.is(taskAfterUpdate)
@@ -153,21 +445,21 @@ class TasksServiceTest extends Specification {
         def task = new Task.TaskBuilder().setOwnerId(TEST_USER_ID).setTitle('taskTitle').setCreatedDate(new Date()).build()
         taskDao.update(TEST_USER_ID, task) >> { throw new NonExistingResourceOperationException('') }
         when:
-        def response = tasksService.update(securityContext, 'someTaskId', task)
+        def response = ResumedResponse.of { tasksService.update(it, securityContext, 'someTaskId', task) }
         then:
         response.status == 404
     }
 
     def "should throw exception when trying to add subtask and give null as parent task's id"() {
         when:
-        tasksService.addSubtask(securityContext, null, ObjectId.get().toString())
+        ResumedResponse.of { tasksService.addSubtask(it, securityContext, null, ObjectId.get().toString()) }
         then:
         thrown(NullPointerException)
     }
 
     def "should throw exception when trying to add subtask and give null as subtaskId"() {
         when:
-        tasksService.addSubtask(securityContext, ObjectId.get().toString(), null)
+        ResumedResponse.of { tasksService.addSubtask(it, securityContext, ObjectId.get().toString(), null) }
         then:
         thrown(NullPointerException)
     }
@@ -177,7 +469,7 @@ class TasksServiceTest extends Specification {
         def parentTaskId = ObjectId.get().toString()
         def subtaskId = ObjectId.get().toString()
         when:
-        tasksService.addSubtask(securityContext, parentTaskId, subtaskId)
+        ResumedResponse.of { tasksService.addSubtask(it, securityContext, parentTaskId, subtaskId) }
         then:
         1 * taskDao.addSubtask(TEST_USER_ID, parentTaskId, subtaskId)
     }
@@ -190,7 +482,7 @@ class TasksServiceTest extends Specification {
             throw new NonExistingResourceOperationException('')
         }
         when:
-        def response = tasksService.addSubtask(securityContext, parentTaskId, subtaskId)
+        def response = ResumedResponse.of { tasksService.addSubtask(it, securityContext, parentTaskId, subtaskId) }
         then:
         response.status == 404
     }
@@ -201,7 +493,7 @@ class TasksServiceTest extends Specification {
         def subtaskId = ObjectId.get().toString()
         taskDao.addSubtask(TEST_USER_ID, parentTaskId, subtaskId) >> { throw new UnsupportedDataOperationException('') }
         when:
-        tasksService.addSubtask(securityContext, parentTaskId, subtaskId)
+        ResumedResponse.of { tasksService.addSubtask(it, securityContext, parentTaskId, subtaskId) }
         then:
         thrown(WebApplicationException)
     }
@@ -211,7 +503,7 @@ class TasksServiceTest extends Specification {
         def parentTaskId = ObjectId.get().toString()
         def subtaskId = ObjectId.get().toString()
         when:
-        def response = tasksService.addSubtask(securityContext, parentTaskId, subtaskId)
+        def response = ResumedResponse.of { tasksService.addSubtask(it, securityContext, parentTaskId, subtaskId) }
         then:
         response.status == 200
     }
@@ -223,7 +515,7 @@ class TasksServiceTest extends Specification {
         def parentTaskAfterUpdateMock = Mock(Task)
         taskDao.addSubtask(TEST_USER_ID, parentTaskId, subtaskId) >> parentTaskAfterUpdateMock
         when:
-        def response = tasksService.addSubtask(securityContext, parentTaskId, subtaskId)
+        def response = ResumedResponse.of { tasksService.addSubtask(it, securityContext, parentTaskId, subtaskId) }
         then:
         response.entity == parentTaskAfterUpdateMock
     }
@@ -236,7 +528,7 @@ class TasksServiceTest extends Specification {
             throw new ConcurrentTasksModificationException('')
         }
         when:
-        def response = tasksService.addSubtask(securityContext, parentTaskId, subtaskId)
+        def response = ResumedResponse.of { tasksService.addSubtask(it, securityContext, parentTaskId, subtaskId) }
         then:
         response.status == 409
         response.entity != null
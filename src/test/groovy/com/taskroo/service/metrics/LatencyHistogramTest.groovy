@@ -0,0 +1,69 @@
+package com.taskroo.service.metrics
+
+import spock.lang.Specification
+
+import java.util.concurrent.TimeUnit
+
+class LatencyHistogramTest extends Specification {
+
+    LatencyHistogram histogram = new LatencyHistogram()
+
+    def "should return zero percentiles when nothing has been recorded"() {
+        expect:
+        histogram.getValueAtPercentile(50) == 0
+        histogram.count == 0
+    }
+
+    def "should return percentiles of recorded latencies within the bucket precision"() {
+        given:
+        (1..1000).each { histogram.record(it, TimeUnit.MILLISECONDS) }
+        expect:
+        withinPrecision(histogram.getValueAtPercentile(50), 500000)
+        withinPrecision(histogram.getValueAtPercentile(99), 990000)
+        withinPrecision(histogram.getValueAtPercentile(99.9), 999000)
+        histogram.getValueAtPercentile(100) == 1000000
+        histogram.count == 1000
+        histogram.totalMicros == 500500000
+        histogram.maxMicros == 1000000
+    }
+
+    def "should return exact values of latencies below 16 microseconds"() {
+        given:
+        histogram.record(3, TimeUnit.MICROSECONDS)
+        histogram.record(7, TimeUnit.MICROSECONDS)
+        expect:
+        histogram.getValueAtPercentile(50) == 3
+        histogram.getValueAtPercentile(100) == 7
+    }
+
+    def "should put every value into the bucket whose upper bound is not lower than the value"() {
+        expect:
+        def index = LatencyHistogram.bucketIndex(micros)
+        LatencyHistogram.bucketUpperBound(index) >= micros
+        index == 0 || LatencyHistogram.bucketUpperBound(index - 1) < micros
+        where:
+        micros << [0L, 15L, 16L, 17L, 31L, 32L, 33L, 1000L, 123456789L, Long.MAX_VALUE >> 8]
+    }
+
+    def "should reject percentile out of range"() {
+        when:
+        histogram.getValueAtPercentile(100.1)
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    private static boolean withinPrecision(long actual, long expected) {
+        Math.abs(actual - expected) <= expected * 0.07
+    }
+
+    def "should count latencies up to bounds of cumulative buckets"() {
+        given:
+        [2, 10, 10, 300].each { histogram.record(it, TimeUnit.MILLISECONDS) }
+        expect:
+        histogram.getCountAtOrBelow(1000) == 0
+        histogram.getCountAtOrBelow(2000) == 1
+        histogram.getCountAtOrBelow(10000) == 3
+        histogram.getCountAtOrBelow(250000) == 3
+        histogram.getCountAtOrBelow(Long.MAX_VALUE) == 4
+    }
+}
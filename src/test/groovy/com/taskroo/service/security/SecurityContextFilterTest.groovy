@@ -1,7 +1,9 @@
 package com.taskroo.service.security
 
+import com.taskroo.data.SecurityTokenAccessTimeUpdater
 import com.taskroo.data.SecurityTokenDao
 import com.taskroo.domain.Role
+import com.taskroo.service.tracing.Tracer
 import spock.lang.Specification
 
 import javax.ws.rs.container.ContainerRequestContext
@@ -12,10 +14,15 @@ class SecurityContextFilterTest extends Specification {
 
     // mocks
     SecurityTokenDao securityTokenDao
+    SecurityTokenCache securityTokenCache
+    SecurityTokenAccessTimeUpdater securityTokenAccessTimeUpdater
 
     void setup() {
         securityTokenDao = Mock(SecurityTokenDao)
-        securityContextFilter = new SecurityContextFilter(securityTokenDao, "http://taskroo.com/auth")
+        securityTokenCache = new SecurityTokenCache(100, 60)
+        securityTokenAccessTimeUpdater = Mock(SecurityTokenAccessTimeUpdater)
+        securityContextFilter = new SecurityContextFilter(securityTokenDao, securityTokenCache,
+                securityTokenAccessTimeUpdater, new Tracer(false), "http://taskroo.com/auth")
     }
 
     def "should set security context without security token when authorization header is not available"() {
@@ -42,10 +49,58 @@ class SecurityContextFilterTest extends Specification {
         ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
         containerRequestContext.getHeaderString('Authorization') >> 'TaskRooAuth realm="taskroo@aetas.pl",cnonce="uniqueValue",tokenKey="someTokenKey"'
         def securityToken = new SecurityToken('someTokenKey', 'userId', [Role.USER].toSet(), null, null)
-        securityTokenDao.findOneAndUpdateLastAccessedTime('someTokenKey') >> securityToken
+        securityTokenDao.findOne('someTokenKey') >> securityToken
         when:
         securityContextFilter.filter(containerRequestContext)
         then:
         1 * containerRequestContext.setSecurityContext({ it.securityToken == securityToken && it.userPrincipal.name == 'userId'})
     }
+
+    def "should put security token found in DB into cache"() {
+        given:
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaderString('Authorization') >> 'TaskRooAuth realm="taskroo@aetas.pl",tokenKey="someTokenKey"'
+        def securityToken = new SecurityToken('someTokenKey', 'userId', [Role.USER].toSet(), null, null)
+        securityTokenDao.findOne('someTokenKey') >> securityToken
+        when:
+        securityContextFilter.filter(containerRequestContext)
+        then:
+        securityTokenCache.get('someTokenKey') == securityToken
+    }
+
+    def "should not query DB when security token is cached"() {
+        given:
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaderString('Authorization') >> 'TaskRooAuth realm="taskroo@aetas.pl",tokenKey="someTokenKey"'
+        def securityToken = new SecurityToken('someTokenKey', 'userId', [Role.USER].toSet(), null, null)
+        securityTokenCache.put(securityToken)
+        when:
+        securityContextFilter.filter(containerRequestContext)
+        then:
+        0 * securityTokenDao.findOne(_)
+        1 * containerRequestContext.setSecurityContext({ it.securityToken == securityToken && it.userPrincipal.name == 'userId'})
+    }
+
+    def "should record access of authenticated security token"() {
+        given:
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaderString('Authorization') >> 'TaskRooAuth realm="taskroo@aetas.pl",tokenKey="someTokenKey"'
+        def securityToken = new SecurityToken('someTokenKey', 'userId', [Role.USER].toSet(), null, null)
+        securityTokenCache.put(securityToken)
+        when:
+        securityContextFilter.filter(containerRequestContext)
+        then:
+        1 * securityTokenAccessTimeUpdater.recordAccess(securityToken)
+    }
+
+    def "should give roles of security token to authenticated user besides user role"() {
+        given:
+        ContainerRequestContext containerRequestContext = Mock(ContainerRequestContext)
+        containerRequestContext.getHeaderString('Authorization') >> 'TaskRooAuth realm="taskroo@aetas.pl",tokenKey="someTokenKey"'
+        securityTokenCache.put(new SecurityToken('someTokenKey', 'adminId', [Role.ADMIN].toSet(), null, null))
+        when:
+        securityContextFilter.filter(containerRequestContext)
+        then:
+        1 * containerRequestContext.setSecurityContext({ it.isUserInRole('admin') && it.isUserInRole('user') })
+    }
 }
@@ -0,0 +1,89 @@
+package com.taskroo.service.security
+
+import com.taskroo.domain.Role
+import spock.lang.Specification
+
+class SecurityTokenCacheTest extends Specification {
+
+    def "should return cached security token"() {
+        given:
+        def cache = new SecurityTokenCache(10, 60)
+        def securityToken = createSecurityToken('tokenKey', 'userId')
+        cache.put(securityToken)
+        expect:
+        cache.get('tokenKey') == securityToken
+        cache.hitCount == 1
+        cache.missCount == 0
+    }
+
+    def "should return null and count miss when security token is not cached"() {
+        given:
+        def cache = new SecurityTokenCache(10, 60)
+        expect:
+        cache.get('tokenKey') == null
+        cache.missCount == 1
+    }
+
+    def "should evict least recently used security token when cache is full"() {
+        given:
+        def cache = new SecurityTokenCache(2, 60)
+        cache.put(createSecurityToken('token1', 'userId'))
+        cache.put(createSecurityToken('token2', 'userId'))
+        cache.get('token1')
+        when:
+        cache.put(createSecurityToken('token3', 'userId'))
+        then:
+        cache.get('token2') == null
+        cache.get('token1') != null
+        cache.get('token3') != null
+        cache.evictionCount == 1
+    }
+
+    def "should evict security token when its TTL has passed"() {
+        given:
+        def cache = new SecurityTokenCache(10, 1)
+        cache.put(createSecurityToken('tokenKey', 'userId'))
+        when:
+        sleep(1100)
+        then:
+        cache.get('tokenKey') == null
+        cache.evictionCount == 1
+        cache.size() == 0
+    }
+
+    def "should not cache anything when TTL is set to 0"() {
+        given:
+        def cache = new SecurityTokenCache(10, 0)
+        when:
+        cache.put(createSecurityToken('tokenKey', 'userId'))
+        then:
+        cache.size() == 0
+    }
+
+    def "should remove invalidated security token"() {
+        given:
+        def cache = new SecurityTokenCache(10, 60)
+        cache.put(createSecurityToken('tokenKey', 'userId'))
+        when:
+        cache.invalidate('tokenKey')
+        then:
+        cache.get('tokenKey') == null
+    }
+
+    def "should remove all security tokens of given user"() {
+        given:
+        def cache = new SecurityTokenCache(10, 60)
+        cache.put(createSecurityToken('token1', 'user1'))
+        cache.put(createSecurityToken('token2', 'user1'))
+        cache.put(createSecurityToken('token3', 'user2'))
+        when:
+        cache.invalidateAllOfUser('user1')
+        then:
+        cache.size() == 1
+        cache.get('token3') != null
+    }
+
+    private static SecurityToken createSecurityToken(String tokenKey, String userId) {
+        return new SecurityToken(tokenKey, userId, [Role.USER].toSet(), new Date(), new Date())
+    }
+}
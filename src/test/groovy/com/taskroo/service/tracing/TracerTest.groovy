@@ -0,0 +1,88 @@
+package com.taskroo.service.tracing
+
+import groovy.json.JsonSlurper
+import spock.lang.Specification
+
+class TracerTest extends Specification {
+
+    Tracer tracer = new Tracer(true)
+
+    def cleanup() {
+        tracer.setCurrentSpan(null)
+    }
+
+    def "should not create spans when tracing is disabled"() {
+        given:
+        def disabledTracer = new Tracer(false)
+        when:
+        def rootSpan = disabledTracer.startTrace('GET TasksService.getAll')
+        def childSpan = disabledTracer.startSpan('DaoExecutor.call')
+        disabledTracer.finish(childSpan)
+        then:
+        rootSpan == null
+        childSpan == null
+        disabledTracer.currentSpan == null
+    }
+
+    def "should start child spans of the span of the current thread"() {
+        given:
+        def rootSpan = tracer.startTrace('GET TasksService.getAll')
+        when:
+        def childSpan = tracer.startSpan('DaoExecutor.call')
+        def clientSpan = tracer.startClientSpan('TaskDao.findAllByOwnerId find', System.nanoTime())
+        then:
+        rootSpan.parentId == null
+        rootSpan.kind == Span.Kind.SERVER
+        childSpan.traceId == rootSpan.traceId
+        childSpan.parentId == rootSpan.id
+        childSpan.id != rootSpan.id
+        clientSpan.parentId == childSpan.id
+        clientSpan.kind == Span.Kind.CLIENT
+        tracer.currentSpan == childSpan
+    }
+
+    def "should make parent the span of the current thread when span is finished"() {
+        given:
+        def rootSpan = tracer.startTrace('GET TasksService.getAll')
+        def childSpan = tracer.startSpan('DaoExecutor.call')
+        when:
+        tracer.finish(childSpan)
+        then:
+        childSpan.finished
+        childSpan.durationMicros >= 1
+        tracer.currentSpan == rootSpan
+        when:
+        tracer.finish(rootSpan)
+        then:
+        tracer.currentSpan == null
+    }
+
+    def "should not start child span when the current thread has no span"() {
+        expect:
+        tracer.startSpan('DaoExecutor.call') == null
+        tracer.startClientSpan('TaskDao.getTask find', System.nanoTime()) == null
+    }
+
+    def "should write span in Zipkin JSON v2 format"() {
+        given:
+        def rootSpan = tracer.startTrace('PUT TasksService.update')
+        def clientSpan = tracer.startClientSpan('TaskDao.update findAndModify', System.nanoTime())
+        clientSpan.setRemoteServiceName('mongodb')
+        clientSpan.tag('dao.method', 'TaskDao.update')
+        tracer.finish(clientSpan)
+        when:
+        def json = new JsonSlurper().parseText(Tracer.toJson(clientSpan))
+        then:
+        json.traceId == rootSpan.traceId
+        json.traceId ==~ /[0-9a-f]{16}/
+        json.parentId == rootSpan.id
+        json.id == clientSpan.id
+        json.kind == 'CLIENT'
+        json.name == 'TaskDao.update findAndModify'
+        json.timestamp == clientSpan.timestampMicros
+        json.duration == clientSpan.durationMicros
+        json.localEndpoint.serviceName == 'taskroo-api'
+        json.remoteEndpoint.serviceName == 'mongodb'
+        json.tags == ['dao.method': 'TaskDao.update']
+    }
+}
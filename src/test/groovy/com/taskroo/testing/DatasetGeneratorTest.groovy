@@ -0,0 +1,114 @@
+package com.taskroo.testing
+
+import com.mongodb.DBCollection
+import com.taskroo.domain.Task
+import spock.lang.Specification
+
+class DatasetGeneratorTest extends Specification {
+
+    def "should generate task trees of given number of levels and fan-out"() {
+        given:
+        def generator = new DatasetGenerator.Builder().setTasksPerUser(100).setLevels(3).setFanOut(4).build()
+        when:
+        def tasks = generator.generateUser(0).tasks
+        then:
+        tasks.size() == 100
+        tasks.collect { it.get('path').size() }.max() == 2
+        tasks.findAll { it.get('path').isEmpty() }.size() == 5
+        tasks.groupBy { it.get('path') }.findAll { !it.key.isEmpty() }.values()*.size().every { it <= 4 }
+    }
+
+    def "should put every subtask after its parent and share finished state within a tree when it is always shared"() {
+        given:
+        def generator = new DatasetGenerator.Builder().setTasksPerUser(500).setLevels(Task.MAX_SUBTASKS_LEVELS)
+                .setFanOut(2).setFinishedRatio(0.5).setSharedFinishedStateRatio(1).build()
+        when:
+        def tasks = generator.generateUser(0).tasks
+        then:
+        tasks.eachWithIndex { task, index ->
+            List<String> path = task.get('path')
+            if (!path.isEmpty()) {
+                def parent = tasks.subList(0, index).find { it.get('_id').toString() == path.last() }
+                assert parent != null
+                assert parent.get('path') + [path.last()] == path
+                assert parent.get('finished') == task.get('finished')
+            }
+        }
+        tasks.collect { it.get('path').size() }.max() == Task.MAX_SUBTASKS_LEVELS - 1
+    }
+
+    def "should generate finished subtasks of unfinished tasks and unfinished subtasks of finished tasks"() {
+        given:
+        def generator = new DatasetGenerator.Builder().setTasksPerUser(500).setLevels(3).setFanOut(3)
+                .setFinishedRatio(0.5).setSharedFinishedStateRatio(0.5).build()
+        when:
+        def tasks = generator.generateUser(0).tasks
+        def tasksById = tasks.collectEntries { [it.get('_id').toString(), it] }
+        def subtasks = tasks.findAll { !it.get('path').isEmpty() }
+        then:
+        subtasks.any { it.get('finished') && !tasksById[it.get('path').last()].get('finished') }
+        subtasks.any { !it.get('finished') && tasksById[it.get('path').last()].get('finished') }
+        tasks.every { it.get('finished') == (it.get('closed_date') != null) }
+        tasks.findAll { it.get('finished') }.every {
+            !it.get('closed_date').before(it.get('created_date')) && it.get('modified_date') == it.get('closed_date')
+        }
+    }
+
+    def "should give tasks distinct tags of the user and count unfinished tasks in sizes of tags"() {
+        given:
+        def generator = new DatasetGenerator.Builder().setTasksPerUser(300).setTagsPerUser(10).setTagsPerTask(3)
+                .setFinishedRatio(0.3).build()
+        when:
+        def user = generator.generateUser(0)
+        then:
+        user.tags.size() == 10
+        user.tasks.every { it.get('tags').size() == 3 && it.get('tags').unique(false).size() == 3 }
+        user.tags.every { tag ->
+            tag.get('size') == user.tasks.count { !it.get('finished') && tag.get('_id').toString() in it.get('tags') }
+        }
+        def finishedRatio = user.tasks.count { it.get('finished') } / user.tasks.size()
+        finishedRatio > 0.1 && finishedRatio < 0.5
+    }
+
+    def "should generate the same content for the same seed"() {
+        given:
+        def generator = new DatasetGenerator.Builder().setTasksPerUser(50).build()
+        when:
+        def first = generator.generateUser(3)
+        def second = generator.generateUser(3)
+        then:
+        first.userId == 'generated-user-3'
+        first.tasks*.get('title') == second.tasks*.get('title')
+        first.tasks*.get('created_date') == second.tasks*.get('created_date')
+        first.tasks*.get('path')*.size() == second.tasks*.get('path')*.size()
+        first.tags*.get('color') == second.tags*.get('color')
+    }
+
+    def "should insert documents of every user"() {
+        given:
+        def generator = new DatasetGenerator.Builder().setUsers(3).setTasksPerUser(2500).setTagsPerUser(5).build()
+        def tasksCollection = Mock(DBCollection)
+        def tagsCollection = Mock(DBCollection)
+        def securityTokensCollection = Mock(DBCollection)
+        when:
+        generator.write(tasksCollection, tagsCollection, securityTokensCollection)
+        then:
+        3 * tagsCollection.insert({ it.size() == 5 })
+        9 * tasksCollection.insert({ it.size() <= 1000 })
+        3 * securityTokensCollection.insert({ it[0].get('roles') == [1] })
+    }
+
+    def "should not allow more levels than tasks can have"() {
+        when:
+        new DatasetGenerator.Builder().setLevels(Task.MAX_SUBTASKS_LEVELS + 1).build()
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    def "should not allow shared finished state ratio out of range"() {
+        when:
+        new DatasetGenerator.Builder().setSharedFinishedStateRatio(1.5).build()
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
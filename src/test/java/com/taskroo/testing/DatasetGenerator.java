@@ -0,0 +1,324 @@
+package com.taskroo.testing;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.taskroo.data.TagDao;
+import com.taskroo.data.TaskDao;
+import com.taskroo.domain.Role;
+import com.taskroo.domain.Task;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generates users with many tasks and tags, as they are stored in DB, for benchmarks and tests which need datasets of
+ * production scale. Tasks of every user form trees of given number of levels and fan-out, which are filled depth
+ * first, so the last tree of a user may be incomplete. Finished state is drawn for every task: a subtask shares the
+ * state of its parent with given probability and is drawn with the finished ratio otherwise, so there are finished
+ * subtasks of unfinished tasks and unfinished subtasks of finished tasks too. Finished tasks are closed after they
+ * have been created. Sizes of tags are the numbers of unfinished tasks with the tag, as they are recalculated by
+ * {@link TagDao}.
+ *
+ * Content of users is generated with fixed seed, so every run generates the same titles, dates, trees and tags; only
+ * ids of documents are unique per run.
+ */
+public final class DatasetGenerator {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+    private static final long MAX_AGE_MILLIS = TimeUnit.DAYS.toMillis(365);
+
+    private final String userIdPrefix;
+    private final int users;
+    private final int tasksPerUser;
+    private final int levels;
+    private final int fanOut;
+    private final double finishedRatio;
+    private final double sharedFinishedStateRatio;
+    private final int tagsPerUser;
+    private final int tagsPerTask;
+    private final long seed;
+    private final long now;
+
+    private DatasetGenerator(Builder builder) {
+        this.userIdPrefix = builder.userIdPrefix;
+        this.users = builder.users;
+        this.tasksPerUser = builder.tasksPerUser;
+        this.levels = builder.levels;
+        this.fanOut = builder.fanOut;
+        this.finishedRatio = builder.finishedRatio;
+        this.sharedFinishedStateRatio = builder.sharedFinishedStateRatio;
+        this.tagsPerUser = builder.tagsPerUser;
+        this.tagsPerTask = builder.tagsPerTask;
+        this.seed = builder.seed;
+        this.now = System.currentTimeMillis();
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public String getUserId(int userNumber) {
+        return userIdPrefix + userNumber;
+    }
+
+    /**
+     * Generates and inserts all users one by one, so only documents of a single user are kept in memory.
+     */
+    public void write(DBCollection tasksCollection, DBCollection tagsCollection, DBCollection securityTokensCollection) {
+        for (int userNumber = 0; userNumber < users; userNumber++) {
+            UserDataset user = generateUser(userNumber);
+            insertInBatches(tagsCollection, user.getTags());
+            insertInBatches(tasksCollection, user.getTasks());
+            securityTokensCollection.insert(user.getSecurityToken());
+        }
+    }
+
+    private static void insertInBatches(DBCollection collection, List<DBObject> documents) {
+        for (int from = 0; from < documents.size(); from += INSERT_BATCH_SIZE) {
+            collection.insert(documents.subList(from, Math.min(from + INSERT_BATCH_SIZE, documents.size())));
+        }
+    }
+
+    /**
+     * @param userNumber number of the user, from 0 to number of users - 1
+     * @return documents of the user, with tasks ordered depth first, so every task follows its parent
+     */
+    public UserDataset generateUser(int userNumber) {
+        Random random = new Random(seed + userNumber);
+        String userId = getUserId(userNumber);
+        List<DBObject> tags = generateTags(userId, random);
+        List<DBObject> tasks = new ArrayList<>(tasksPerUser);
+        Map<String, Integer> unfinishedTasksByTag = new HashMap<>();
+        while (tasks.size() < tasksPerUser) {
+            generateTree(userId, Collections.<String>emptyList(), random.nextDouble() < finishedRatio, tags, tasks,
+                    unfinishedTasksByTag, random);
+        }
+        for (DBObject tag : tags) {
+            Integer size = unfinishedTasksByTag.get(tag.get(TagDao.ID_KEY).toString());
+            tag.put(TagDao.SIZE_KEY, size == null ? 0 : size);
+        }
+        DBObject securityToken = new BasicDBObject("_id", UUID.randomUUID().toString())
+                .append("user_id", userId)
+                .append("roles", Arrays.asList(Role.USER.intValue()))
+                .append("create_time", new Date(now))
+                .append("last_accessed_time", new Date(now));
+        return new UserDataset(userId, securityToken, tags, tasks);
+    }
+
+    private List<DBObject> generateTags(String userId, Random random) {
+        List<DBObject> tags = new ArrayList<>(tagsPerUser);
+        for (int i = 0; i < tagsPerUser; i++) {
+            tags.add(new BasicDBObject(TagDao.ID_KEY, new ObjectId())
+                    .append(TagDao.OWNER_ID_KEY, userId)
+                    .append(TagDao.NAME_KEY, "tag " + i)
+                    .append(TagDao.COLOR_KEY, String.format("#%06x", random.nextInt(0x1000000)))
+                    .append(TagDao.VISIBLE_IN_WORK_VIEW_KEY, random.nextBoolean())
+                    .append(TagDao.SIZE_KEY, 0));
+        }
+        return tags;
+    }
+
+    private void generateTree(String userId, List<String> path, boolean finished, List<DBObject> tags,
+                              List<DBObject> tasks, Map<String, Integer> unfinishedTasksByTag, Random random) {
+        ObjectId id = new ObjectId();
+        List<String> taskTags = drawTags(tags, random);
+        tasks.add(generateTask(id, userId, tasks.size(), path, finished, taskTags, random));
+        if (!finished) {
+            for (String tagId : taskTags) {
+                Integer size = unfinishedTasksByTag.get(tagId);
+                unfinishedTasksByTag.put(tagId, size == null ? 1 : size + 1);
+            }
+        }
+        if (path.size() + 1 >= levels) {
+            return;
+        }
+        List<String> subtasksPath = new ArrayList<>(path);
+        subtasksPath.add(id.toString());
+        for (int i = 0; i < fanOut && tasks.size() < tasksPerUser; i++) {
+            boolean subtaskFinished = random.nextDouble() < sharedFinishedStateRatio ? finished
+                    : random.nextDouble() < finishedRatio;
+            generateTree(userId, subtasksPath, subtaskFinished, tags, tasks, unfinishedTasksByTag, random);
+        }
+    }
+
+    private List<String> drawTags(List<DBObject> tags, Random random) {
+        List<DBObject> shuffledTags = new ArrayList<>(tags);
+        int tagsCount = Math.min(tagsPerTask, tags.size());
+        List<String> taskTags = new ArrayList<>(tagsCount);
+        for (int i = 0; i < tagsCount; i++) {
+            Collections.swap(shuffledTags, i, i + random.nextInt(shuffledTags.size() - i));
+            taskTags.add(shuffledTags.get(i).get(TagDao.ID_KEY).toString());
+        }
+        return taskTags;
+    }
+
+    private DBObject generateTask(ObjectId id, String userId, int number, List<String> path, boolean finished,
+                                  List<String> taskTags, Random random) {
+        long age = (long) (random.nextDouble() * MAX_AGE_MILLIS);
+        Date createdDate = new Date(now - age);
+        Date closedDate = finished ? new Date(now - (long) (random.nextDouble() * age)) : null;
+        return new BasicDBObject(TaskDao.ID_KEY, id)
+                .append(TaskDao.OWNER_ID_KEY, userId)
+                .append(TaskDao.TITLE_KEY, "task " + number)
+                .append(TaskDao.DESCRIPTION_KEY, "description of task " + number)
+                .append(TaskDao.CREATED_DATE_KEY, createdDate)
+                .append(TaskDao.MODIFIED_DATE_KEY, closedDate == null ? createdDate : closedDate)
+                .append(TaskDao.START_DATE_KEY, random.nextInt(4) == 0 ? createdDate : null)
+                .append(TaskDao.DUE_DATE_KEY, random.nextBoolean() ? new Date(now + random.nextInt(1000000000)) : null)
+                .append(TaskDao.CLOSED_DATE_KEY, closedDate)
+                .append(TaskDao.FINISHED_KEY, finished)
+                .append(TaskDao.TAGS_KEY, taskTags)
+                .append(TaskDao.PATH_KEY, path);
+    }
+
+    /**
+     * Documents of a single generated user.
+     */
+    public static final class UserDataset {
+
+        private final String userId;
+        private final DBObject securityToken;
+        private final List<DBObject> tags;
+        private final List<DBObject> tasks;
+
+        private UserDataset(String userId, DBObject securityToken, List<DBObject> tags, List<DBObject> tasks) {
+            this.userId = userId;
+            this.securityToken = securityToken;
+            this.tags = tags;
+            this.tasks = tasks;
+        }
+
+        public String getUserId() {
+            return userId;
+        }
+
+        public String getSecurityTokenId() {
+            return securityToken.get("_id").toString();
+        }
+
+        public DBObject getSecurityToken() {
+            return securityToken;
+        }
+
+        public List<DBObject> getTags() {
+            return tags;
+        }
+
+        public List<DBObject> getTasks() {
+            return tasks;
+        }
+    }
+
+    public static class Builder {
+
+        private String userIdPrefix = "generated-user-";
+        private int users = 1;
+        private int tasksPerUser = 1000;
+        private int levels = 3;
+        private int fanOut = 5;
+        private double finishedRatio = 0.5;
+        private double sharedFinishedStateRatio = 0.8;
+        private int tagsPerUser = 20;
+        private int tagsPerTask = 2;
+        private long seed = 42;
+
+        public Builder setUserIdPrefix(String userIdPrefix) {
+            this.userIdPrefix = userIdPrefix;
+            return this;
+        }
+
+        public Builder setUsers(int users) {
+            this.users = users;
+            return this;
+        }
+
+        public Builder setTasksPerUser(int tasksPerUser) {
+            this.tasksPerUser = tasksPerUser;
+            return this;
+        }
+
+        /**
+         * @param levels number of levels of tasks trees, 1 for top level tasks only, up to
+         *               {@link Task#MAX_SUBTASKS_LEVELS}
+         */
+        public Builder setLevels(int levels) {
+            this.levels = levels;
+            return this;
+        }
+
+        /**
+         * @param fanOut number of direct subtasks of every task which is not on the last level
+         */
+        public Builder setFanOut(int fanOut) {
+            this.fanOut = fanOut;
+            return this;
+        }
+
+        /**
+         * @param finishedRatio probability of a task being finished, from 0 to 1
+         */
+        public Builder setFinishedRatio(double finishedRatio) {
+            this.finishedRatio = finishedRatio;
+            return this;
+        }
+
+        /**
+         * @param sharedFinishedStateRatio probability of a subtask having the same finished state as its parent instead
+         *                                 of drawing it with the finished ratio, from 0 to 1
+         */
+        public Builder setSharedFinishedStateRatio(double sharedFinishedStateRatio) {
+            this.sharedFinishedStateRatio = sharedFinishedStateRatio;
+            return this;
+        }
+
+        public Builder setTagsPerUser(int tagsPerUser) {
+            this.tagsPerUser = tagsPerUser;
+            return this;
+        }
+
+        /**
+         * @param tagsPerTask number of distinct tags of every task, limited by number of tags of the user
+         */
+        public Builder setTagsPerTask(int tagsPerTask) {
+            this.tagsPerTask = tagsPerTask;
+            return this;
+        }
+
+        public Builder setSeed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        public DatasetGenerator build() {
+            if (users < 0 || tasksPerUser < 0 || tagsPerUser < 0 || tagsPerTask < 0) {
+                throw new IllegalArgumentException("Numbers of users, tasks and tags can not be negative.");
+            }
+            if (levels < 1 || levels > Task.MAX_SUBTASKS_LEVELS) {
+                throw new IllegalArgumentException("Levels have to be between 1 and " + Task.MAX_SUBTASKS_LEVELS
+                        + ", but were " + levels + ".");
+            }
+            if (fanOut < 1) {
+                throw new IllegalArgumentException("Fan-out has to be at least 1, but was " + fanOut + ".");
+            }
+            if (finishedRatio < 0 || finishedRatio > 1) {
+                throw new IllegalArgumentException("Finished ratio has to be between 0 and 1, but was "
+                        + finishedRatio + ".");
+            }
+            if (sharedFinishedStateRatio < 0 || sharedFinishedStateRatio > 1) {
+                throw new IllegalArgumentException("Shared finished state ratio has to be between 0 and 1, but was "
+                        + sharedFinishedStateRatio + ".");
+            }
+            return new DatasetGenerator(this);
+        }
+    }
+}
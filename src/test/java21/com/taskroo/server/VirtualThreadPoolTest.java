@@ -0,0 +1,89 @@
+package com.taskroo.server;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class VirtualThreadPoolTest {
+
+    private final VirtualThreadPool virtualThreadPool = new VirtualThreadPool();
+    private Server server;
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.stop();
+        }
+        virtualThreadPool.stop();
+    }
+
+    @Test
+    public void shouldExecuteTasksOnVirtualThreadsAndCountThemAsRunning() throws Exception {
+        virtualThreadPool.start();
+        CountDownLatch taskStarted = new CountDownLatch(1);
+        CountDownLatch taskReleased = new CountDownLatch(1);
+        AtomicBoolean executedOnVirtualThread = new AtomicBoolean();
+        virtualThreadPool.execute(() -> {
+            executedOnVirtualThread.set(Thread.currentThread().isVirtual());
+            taskStarted.countDown();
+            await(taskReleased);
+        });
+        assertTrue(taskStarted.await(5, TimeUnit.SECONDS));
+        assertEquals(1, virtualThreadPool.getThreads());
+        assertFalse(virtualThreadPool.isLowOnThreads());
+        taskReleased.countDown();
+        assertTrue(executedOnVirtualThread.get());
+    }
+
+    @Test
+    public void shouldServeRequestsOfJettyOnVirtualThreads() throws Exception {
+        server = new Server(virtualThreadPool);
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("localhost");
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                response.setStatus(HttpServletResponse.SC_OK);
+                response.getWriter().print(Thread.currentThread().isVirtual());
+                baseRequest.setHandled(true);
+            }
+        });
+        server.start();
+
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + connector.getLocalPort() + "/")
+                .openConnection();
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream body = connection.getInputStream()) {
+            assertEquals("true", new String(body.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}